@@ -0,0 +1,164 @@
+package study.querydsl.bloom;
+
+import study.querydsl.support.Hashing;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 넣을수록 커지는 Bloom filter (scalable bloom filter).
+ * 마지막 layer 가 capacity 만큼 차면 capacity 는 GROWTH 배, 오탐률은 TIGHTENING 배로 줄인 layer 를 뒤에 붙인다.
+ * layer 오탐률의 합이 fpp 를 넘지 않도록 첫 layer 는 fpp * (1 - TIGHTENING) 으로 시작한다.
+ * <p>
+ * put / mightContain 은 락 없이 여러 스레드에서 불러도 된다. 삭제는 지원하지 않는다.
+ */
+public class ScalableBloomFilter {
+
+    private static final int GROWTH = 2;
+    private static final double TIGHTENING = 0.5;
+
+    private final double fpp;
+    private final List<Layer> layers = new CopyOnWriteArrayList<>();
+    private volatile Layer last;
+
+    public ScalableBloomFilter(long initialCapacity, double fpp) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("initialCapacity must be positive. " + initialCapacity);
+        }
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("fpp must be in (0, 1). " + fpp);
+        }
+        this.fpp = fpp;
+        this.last = new Layer(initialCapacity, fpp * (1 - TIGHTENING));
+        this.layers.add(last);
+    }
+
+    /**
+     * @return 새로 들어갔으면 true. 이미 있는 것으로 보이면(오탐 포함) 아무것도 하지 않고 false.
+     */
+    public boolean put(String value) {
+        long hash = Hashing.hash64(value);
+        if (mightContain(hash)) {
+            return false;
+        }
+        Layer layer = last;
+        layer.put(hash);
+        if (layer.count.incrementAndGet() >= layer.capacity) {
+            grow(layer);
+        }
+        return true;
+    }
+
+    public boolean mightContain(String value) {
+        return mightContain(Hashing.hash64(value));
+    }
+
+    private boolean mightContain(long hash) {
+        for (Layer layer : layers) {
+            if (layer.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void grow(Layer full) {
+        if (last != full) {
+            return;
+        }
+        Layer next = new Layer(full.capacity * GROWTH, full.fpp * TIGHTENING);
+        layers.add(next);
+        last = next;
+    }
+
+    public double targetFpp() {
+        return fpp;
+    }
+
+    /**
+     * 들어간 원소 수로 계산한 현재 오탐률 추정치.
+     */
+    public double expectedFpp() {
+        double notFalsePositive = 1;
+        for (Layer layer : layers) {
+            notFalsePositive *= 1 - layer.expectedFpp();
+        }
+        return 1 - notFalsePositive;
+    }
+
+    public long approximateElementCount() {
+        long count = 0;
+        for (Layer layer : layers) {
+            count += layer.count.get();
+        }
+        return count;
+    }
+
+    public int layerCount() {
+        return layers.size();
+    }
+
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (Layer layer : layers) {
+            bytes += layer.bits.length() * 8L;
+        }
+        return bytes;
+    }
+
+    private static class Layer {
+
+        private final long capacity;
+        private final double fpp;
+        private final long numBits;
+        private final int numHashes;
+        private final AtomicLongArray bits;
+        private final AtomicLong count = new AtomicLong();
+
+        private Layer(long capacity, double fpp) {
+            this.capacity = capacity;
+            this.fpp = fpp;
+            // m = -n ln p / (ln 2)^2, k = m / n * ln 2
+            long m = (long) Math.ceil(-capacity * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            this.numBits = Math.max(64, (m + 63) / 64 * 64);
+            this.numHashes = Math.max(1, (int) Math.round((double) numBits / capacity * Math.log(2)));
+            this.bits = new AtomicLongArray((int) (numBits / 64));
+        }
+
+        private void put(long hash) {
+            long h1 = hash;
+            long h2 = Hashing.fmix64(hash) | 1;
+            for (int i = 0; i < numHashes; i++) {
+                long bit = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                do {
+                    current = bits.get(word);
+                    if ((current & mask) != 0) {
+                        break;
+                    }
+                } while (!bits.compareAndSet(word, current, current | mask));
+            }
+        }
+
+        private boolean mightContain(long hash) {
+            long h1 = hash;
+            long h2 = Hashing.fmix64(hash) | 1;
+            for (int i = 0; i < numHashes; i++) {
+                long bit = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private double expectedFpp() {
+            // (1 - e^(-kn/m))^k
+            return Math.pow(1 - Math.exp(-(double) numHashes * count.get() / numBits), numHashes);
+        }
+    }
+}
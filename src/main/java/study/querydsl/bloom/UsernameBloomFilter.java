@@ -0,0 +1,371 @@
+package study.querydsl.bloom;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.event.BulkChangingEvent;
+import study.querydsl.event.ChangeType;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 존재하는 모든 username 을 ScalableBloomFilter 로 들고 있어서, 없는 username 조회는 DB 에 가지 않고 바로 빈 결과로 끝낸다.
+ * <p>
+ * 오답(있는데 없다고 하는 것)이 나오면 안 되므로
+ * <ul>
+ *     <li>username 은 커밋이 아니라 insert / update 가 flush 될 때 넣는다. 롤백되면 오탐만 하나 늘어난다.</li>
+ *     <li>읽기-쓰기 트랜잭션 안에서는 쓰지 않는다. 아직 flush 되지 않은 변경을 auto flush 로 보게 되는 조회이기 때문이다.</li>
+ *     <li>member 벌크 update 가 시작되면 그 트랜잭션이 끝나고 다시 만들 때까지 쓰지 않는다.</li>
+ * </ul>
+ * 삭제는 반영할 수 없어서 rebuild-interval 마다 DB 에서 다시 만든다. 다른 인스턴스나 직접 실행한 SQL 로 들어온 username 은
+ * 모르므로, member 를 이 애플리케이션만 쓰는 경우에만 켠다.
+ */
+@Slf4j
+@ConditionalOnProperty(name = "member.bloom.enabled", havingValue = "true")
+@Component
+public class UsernameBloomFilter implements PostInsertEventListener, PostUpdateEventListener, MeterBinder {
+
+    // layer 가 이만큼 붙으면 조회마다 확인하는 layer 가 많아지므로 적당한 크기로 다시 만든다.
+    private static final int MAX_LAYERS = 4;
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTx;
+    private final long expectedInsertions;
+    private final double fpp;
+    private final long rebuildDelayMillis;
+
+    private final ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "username-bloom-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    // member 벌크 update 가 시작되거나 끝날 때마다 증가. 다시 만드는 도중 바뀌었으면 그 결과는 쓰지 않는다.
+    private final AtomicLong bulkSeq = new AtomicLong();
+    private final AtomicInteger openBulks = new AtomicInteger();
+    // 아직 끝나지 않은 트랜잭션이 넣은 username. 다시 만든 필터에도 넣어야 한다.
+    private final Set<PendingNames> pending = ConcurrentHashMap.newKeySet();
+
+    private volatile ScalableBloomFilter filter;
+    private volatile ScalableBloomFilter building;
+    private volatile long builtSeq = -1;
+
+    private final LongAdder absent = new LongAdder();
+    private final LongAdder maybe = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    public UsernameBloomFilter(EntityManagerFactory entityManagerFactory,
+                               JPAQueryFactory queryFactory,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${member.bloom.expected-insertions:100000}") long expectedInsertions,
+                               @Value("${member.bloom.fpp:0.01}") double fpp,
+                               @Value("${member.bloom.rebuild-delay-ms:1000}") long rebuildDelayMillis) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.queryFactory = queryFactory;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.expectedInsertions = expectedInsertions;
+        this.fpp = fpp;
+        this.rebuildDelayMillis = rebuildDelayMillis;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                                                             .getServiceRegistry()
+                                                             .getService(EventListenerRegistry.class);
+
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        scheduleRebuild(0);
+    }
+
+    @Scheduled(initialDelayString = "${member.bloom.rebuild-interval-ms:600000}",
+               fixedDelayString = "${member.bloom.rebuild-interval-ms:600000}")
+    public void refresh() {
+        scheduleRebuild(0);
+    }
+
+    /**
+     * @return false 면 그 username 의 member 는 확실히 없다. true 는 있을 수도 있다는 뜻이다.
+     */
+    public boolean mightContain(String username) {
+        ScalableBloomFilter current = usable();
+        if (current == null) {
+            bypassed.increment();
+            return true;
+        }
+        if (current.mightContain(username)) {
+            maybe.increment();
+            return true;
+        }
+        absent.increment();
+        return false;
+    }
+
+    /**
+     * username 으로만 조회했는데 결과가 비었을 때 호출한다. 필터가 있을 수도 있다고 답했던 경우면 오탐으로 센다.
+     */
+    public void recordEmptyLookup(String username) {
+        ScalableBloomFilter current = usable();
+        if (current != null && current.mightContain(username)) {
+            falsePositives.increment();
+        }
+    }
+
+    private ScalableBloomFilter usable() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return null;
+        }
+        // openBulks 를 먼저 읽는다. 벌크가 끝날 때 bulkSeq 를 먼저 올리고 openBulks 를 내린다.
+        if (openBulks.get() > 0) {
+            return null;
+        }
+        // rebuild 는 filter 를 바꾼 뒤 builtSeq 를 쓰므로 builtSeq 를 먼저 읽어야 예전 filter 를 새 seq 로 믿지 않는다.
+        long seq = bulkSeq.get();
+        long built = builtSeq;
+        ScalableBloomFilter current = filter;
+        return current != null && built == seq ? current : null;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            add(((Member) event.getEntity()).getUsername());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Member) {
+            add(((Member) event.getEntity()).getUsername());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    @EventListener
+    public void onBulkChanging(BulkChangingEvent event) {
+        if (!Member.class.isAssignableFrom(event.getEntityType()) || event.getType() != ChangeType.UPDATE) {
+            return;
+        }
+        bulkSeq.incrementAndGet();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            scheduleRebuild(rebuildDelayMillis);
+            return;
+        }
+        openBulks.incrementAndGet();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                bulkSeq.incrementAndGet();
+                openBulks.decrementAndGet();
+                scheduleRebuild(rebuildDelayMillis);
+            }
+        });
+    }
+
+    private void add(String username) {
+        if (username == null) {
+            return;
+        }
+        // pending 에 먼저 등록해야 다시 만드는 쪽이 building 을 바꾼 뒤에도 이 이름을 찾을 수 있다.
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingNames().names.add(username);
+        }
+        ScalableBloomFilter current = filter;
+        if (current != null) {
+            current.put(username);
+            if (current.layerCount() > MAX_LAYERS) {
+                scheduleRebuild(rebuildDelayMillis);
+            }
+        }
+        ScalableBloomFilter next = building;
+        if (next != null) {
+            next.put(username);
+        }
+    }
+
+    private PendingNames pendingNames() {
+        PendingNames names = (PendingNames) TransactionSynchronizationManager.getResource(this);
+        if (names == null) {
+            names = new PendingNames();
+            pending.add(names);
+            TransactionSynchronizationManager.bindResource(this, names);
+            TransactionSynchronizationManager.registerSynchronization(names);
+        }
+        return names;
+    }
+
+    private void scheduleRebuild(long delayMillis) {
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            rebuilder.schedule(this::rebuild, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void rebuild() {
+        rebuildScheduled.set(false);
+        long seq = bulkSeq.get();
+        try {
+            long start = System.currentTimeMillis();
+            long count = readOnlyTx.execute(status -> queryFactory.select(member.count()).from(member).fetchOne());
+            ScalableBloomFilter next = new ScalableBloomFilter(Math.max(expectedInsertions, count + count / 4), fpp);
+            // 여기부터 들어오는 username 은 add / afterCompletion 에서 next 에도 들어간다.
+            building = next;
+            List<String> usernames = readOnlyTx.execute(status -> loadUsernames());
+            usernames.forEach(next::put);
+            for (PendingNames names : pending) {
+                names.names.forEach(next::put);
+            }
+            filter = next;
+            builtSeq = seq;
+            log.info("username bloom filter rebuilt. size={}, bytes={}, {}ms",
+                    usernames.size(), next.sizeInBytes(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.warn("username bloom filter rebuild failed", e);
+            scheduleRebuild(rebuildDelayMillis * 10);
+        } finally {
+            building = null;
+        }
+    }
+
+    List<String> loadUsernames() {
+        return queryFactory.select(member.username)
+                           .from(member)
+                           .where(member.username.isNotNull())
+                           .fetch();
+    }
+
+    public boolean isReady() {
+        return filter != null && openBulks.get() == 0 && builtSeq == bulkSeq.get();
+    }
+
+    public long absentCount() {
+        return absent.sum();
+    }
+
+    public long maybeCount() {
+        return maybe.sum();
+    }
+
+    public long bypassedCount() {
+        return bypassed.sum();
+    }
+
+    public long falsePositiveCount() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * 실제로 없던 username 중 필터가 있을 수도 있다고 답한 비율.
+     */
+    public double observedFpp() {
+        long fp = falsePositives.sum();
+        long negatives = fp + absent.sum();
+        return negatives == 0 ? 0 : (double) fp / negatives;
+    }
+
+    private double stat(ToDoubleFunction<ScalableBloomFilter> stat) {
+        ScalableBloomFilter current = filter;
+        return current == null ? 0 : stat.applyAsDouble(current);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("member.bloom.checks", this, UsernameBloomFilter::absentCount)
+                       .tag("result", "absent")
+                       .description("DB 조회 없이 빈 결과로 끝낸 수")
+                       .register(registry);
+        FunctionCounter.builder("member.bloom.checks", this, UsernameBloomFilter::maybeCount)
+                       .tag("result", "maybe")
+                       .register(registry);
+        FunctionCounter.builder("member.bloom.checks", this, UsernameBloomFilter::bypassedCount)
+                       .tag("result", "bypassed")
+                       .description("필터를 쓸 수 없어서 그대로 DB 로 보낸 수")
+                       .register(registry);
+        FunctionCounter.builder("member.bloom.false.positives", this, UsernameBloomFilter::falsePositiveCount)
+                       .register(registry);
+        Gauge.builder("member.bloom.fpp.observed", this, UsernameBloomFilter::observedFpp)
+             .register(registry);
+        Gauge.builder("member.bloom.fpp.expected", this, f -> f.stat(ScalableBloomFilter::expectedFpp))
+             .description("들어간 원소 수로 계산한 오탐률")
+             .register(registry);
+        Gauge.builder("member.bloom.elements", this, f -> f.stat(ScalableBloomFilter::approximateElementCount))
+             .register(registry);
+        Gauge.builder("member.bloom.layers", this, f -> f.stat(ScalableBloomFilter::layerCount))
+             .register(registry);
+        Gauge.builder("member.bloom.bytes", this, f -> f.stat(ScalableBloomFilter::sizeInBytes))
+             .baseUnit("bytes")
+             .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    private class PendingNames implements TransactionSynchronization {
+
+        private final Queue<String> names = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(UsernameBloomFilter.this);
+            // 다시 만드는 중이면 그쪽에 넣은 다음에 pending 에서 빠진다. 순서가 바뀌면 그 사이에 이름을 놓칠 수 있다.
+            ScalableBloomFilter next = building;
+            if (next != null && status != STATUS_ROLLED_BACK) {
+                names.forEach(next::put);
+            }
+            pending.remove(this);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package study.querydsl.config;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.jpa.impl.JPADeleteClause;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.event.BulkChangedEvent;
+import study.querydsl.event.BulkChangingEvent;
+import study.querydsl.event.ChangeType;
+import study.querydsl.repository.support.QueryDeadline;
+
+import javax.persistence.EntityManager;
+
+/**
+ * 애플리케이션 공용 JPAQueryFactory.
+ * 벌크 update / delete 는 영속성 컨텍스트와 Hibernate 이벤트를 우회하므로 커밋 후 BulkChangedEvent 를 직접 발행한다.
+ * 실행 직전에는 트랜잭션 안에서 BulkChangingEvent 를 먼저 발행한다.
+ * 현재 스레드에 QueryDeadline 이 있으면 조회 쿼리에 남은 시간을 timeout 힌트로 건다.
+ */
+public class CustomJPAQueryFactory extends JPAQueryFactory {
+
+    private final EntityManager em;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public CustomJPAQueryFactory(EntityManager em, ApplicationEventPublisher eventPublisher) {
+        super(em);
+        this.em = em;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public JPAQuery<?> query() {
+        JPAQuery<?> query = super.query();
+        QueryDeadline deadline = QueryDeadline.current();
+        if (deadline != null) {
+            deadline.checkNotExpired();
+            // 여러 요청이 같이 기다리는 쿼리는 마지막 요청이 떠날 때까지 DB 쪽 timeout 을 걸지 않는다.
+            if (!deadline.isShared()) {
+                query.setHint(QueryDeadline.TIMEOUT_HINT, deadline.timeoutHintMillis());
+            }
+        }
+        return query;
+    }
+
+    @Override
+    public JPAUpdateClause update(EntityPath<?> path) {
+        return new JPAUpdateClause(em, path) {
+            @Override
+            public long execute() {
+                eventPublisher.publishEvent(new BulkChangingEvent(path.getType(), ChangeType.UPDATE));
+                long affected = super.execute();
+                publishAfterCommit(new BulkChangedEvent(path.getType(), affected));
+                return affected;
+            }
+        };
+    }
+
+    @Override
+    public JPADeleteClause delete(EntityPath<?> path) {
+        return new JPADeleteClause(em, path) {
+            @Override
+            public long execute() {
+                eventPublisher.publishEvent(new BulkChangingEvent(path.getType(), ChangeType.DELETE));
+                long affected = super.execute();
+                publishAfterCommit(new BulkChangedEvent(path.getType(), affected));
+                return affected;
+            }
+        };
+    }
+
+    private void publishAfterCommit(BulkChangedEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eventPublisher.publishEvent(event);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                eventPublisher.publishEvent(event);
+            }
+        });
+    }
+}
@@ -0,0 +1,32 @@
+package study.querydsl.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.repository.support.DeadlineAwareDataSource;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class DataSourceConfig {
+
+    // DataSourceAutoConfiguration 이 만드는, JPA 와 querydsl-sql 이 쓰는 DataSource
+    static final String PRIMARY_DATA_SOURCE = "dataSource";
+
+    /**
+     * 요청 마감은 JPA 가 쓰는 DataSource 에만 건다. 다른 DataSource 가 추가되어도 감싸지 않는다.
+     */
+    @Bean
+    public static BeanPostProcessor deadlineAwareDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (PRIMARY_DATA_SOURCE.equals(beanName)
+                        && bean instanceof DataSource && !(bean instanceof DeadlineAwareDataSource)) {
+                    return new DeadlineAwareDataSource((DataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,56 @@
+package study.querydsl.config;
+
+import com.querydsl.collections.CollQueryTemplates;
+import com.querydsl.collections.QueryEngine;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.sql.H2Templates;
+import com.querydsl.sql.SQLQueryFactory;
+import com.querydsl.sql.spring.SpringConnectionProvider;
+import com.querydsl.sql.spring.SpringExceptionTranslator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.snapshot.CachingEvaluatorFactory;
+import study.querydsl.snapshot.EvaluatorShapeCache;
+import study.querydsl.snapshot.HashJoinQueryEngine;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+
+@Configuration
+public class QuerydslConfig {
+
+    @Bean
+    public JPAQueryFactory jpaQueryFactory(EntityManager em, ApplicationEventPublisher eventPublisher) {
+        return new CustomJPAQueryFactory(em, eventPublisher);
+    }
+
+    /**
+     * MeterBinder 라서 querydsl.collections.evaluator.* 메트릭이 자동으로 등록된다.
+     */
+    @Bean
+    public EvaluatorShapeCache evaluatorShapeCache(@Value("${member.snapshot.evaluator-cache-size:256}") int maxSize) {
+        return new EvaluatorShapeCache(maxSize);
+    }
+
+    /**
+     * 인메모리 스냅샷(querydsl-collections) 조회용
+     */
+    @Bean
+    public QueryEngine collQueryEngine(EvaluatorShapeCache evaluatorShapeCache) {
+        return new HashJoinQueryEngine(new CachingEvaluatorFactory(CollQueryTemplates.DEFAULT, evaluatorShapeCache));
+    }
+
+    /**
+     * JPQL 에 없는 window function 조회용 (querydsl-sql).
+     * SpringConnectionProvider 는 현재 트랜잭션의 커넥션을 쓰고 트랜잭션 밖에서는 IllegalStateException 을 던진다.
+     * SQLException 은 SpringExceptionTranslator 가 DataAccessException 으로 바꾼다.
+     */
+    @Bean
+    public SQLQueryFactory sqlQueryFactory(DataSource dataSource) {
+        com.querydsl.sql.Configuration configuration = new com.querydsl.sql.Configuration(H2Templates.builder().build());
+        configuration.setExceptionTranslator(new SpringExceptionTranslator());
+        return new SQLQueryFactory(configuration, new SpringConnectionProvider(dataSource));
+    }
+}
@@ -1,16 +1,38 @@
 package study.querydsl.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import study.querydsl.dto.AgeBucketDto;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.event.DataVersion;
+import study.querydsl.loader.MemberBatchLoader;
+import study.querydsl.offheap.OffHeapRows;
+import study.querydsl.offheap.OffHeapSearchService;
 import study.querydsl.repository.MemberJPARepository;
+import study.querydsl.repository.MemberLookupRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.search.MemberAgeHistogramService;
+import study.querydsl.search.MemberBatchSearchService;
+import study.querydsl.search.MemberSearchService;
+import study.querydsl.view.MemberTeamViewMaintainer;
 
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 @RequiredArgsConstructor
 @RestController
@@ -18,25 +40,136 @@ public class MemberController {
 
     private final MemberJPARepository memberJPARepository;
     private final MemberRepository memberRepository;
+    private final MemberSearchService memberSearchService;
+    private final OffHeapSearchService offHeapSearchService;
+    private final DataVersion dataVersion;
+    private final MemberBatchLoader memberBatchLoader;
+    private final MemberBatchSearchService memberBatchSearchService;
+    private final MemberAgeHistogramService memberAgeHistogramService;
+    private final MemberLookupRepository memberLookupRepository;
+    private final ObjectProvider<MemberTeamViewMaintainer> memberTeamViewMaintainer;
 
-    @GetMapping("/v1/members")
-    public List<MemberTeamDto> members(MemberSearchCondition cond){
+    @Value("${member.search.batch.max-conditions:100}")
+    private int maxBatchConditions;
+
+    @Value("${member.histogram.max-bounds:100}")
+    private int maxHistogramBounds;
+
+    @Value("${member.lookup.max-values:100000}")
+    private int maxLookupValues;
 
-        return memberJPARepository.searchByConditionWhere(cond);
+    /**
+     * /v1 ~ /v5 는 Callable 로 작업 스레드에서 조회한다. 요청 스레드가 비어 있어야 클라이언트가 끊긴 걸 알고
+     * 실행 중인 쿼리를 취소할 수 있다. (QueryDeadlineAsyncInterceptor)
+     * 304 로 끝나는 요청은 조회가 없으므로 요청 스레드에서 바로 끝낸다.
+     */
+    @GetMapping("/v1/members")
+    public Callable<List<MemberTeamDto>> members(MemberSearchCondition cond, WebRequest webRequest){
+        // 버전이 그대로면 DB 를 조회하지 않고 304 를 돌려준다.
+        // 버전은 조회 전에 읽으므로 조회 도중 커밋된 변경은 다음 요청에서 새 etag 로 반영된다.
+        if (webRequest.checkNotModified(dataVersion.etag())) {
+            return null;
+        }
+        // 인덱스 -> 스냅샷 -> JPA 순으로 실행할 곳을 고른다. (MemberSearchRouter)
+        return () -> memberSearchService.search(cond);
     }
 
     @GetMapping("/v2/members")
-    public Page<MemberTeamDto> membersSimple(MemberSearchCondition cond, Pageable pageable) {
-        return memberRepository.searchSimple(cond, pageable);
+    public Callable<Page<MemberTeamDto>> membersSimple(MemberSearchCondition cond, Pageable pageable, WebRequest webRequest) {
+        if (webRequest.checkNotModified(dataVersion.etag())) {
+            return null;
+        }
+        return () -> memberRepository.searchSimple(cond, pageable);
     }
 
     @GetMapping("/v3/members")
-    public Page<MemberTeamDto> membersComplex(MemberSearchCondition cond, Pageable pageable) {
-        return memberRepository.searchComplex(cond, pageable);
+    public Callable<Page<MemberTeamDto>> membersComplex(MemberSearchCondition cond, Pageable pageable) {
+        return () -> memberRepository.searchComplex(cond, pageable);
     }
 
     @GetMapping("/v4/members")
-    public Page<MemberTeamDto> membersComplexOpt(MemberSearchCondition cond, Pageable pageable) {
-        return memberRepository.searchComplexOptimize(cond, pageable);
+    public Callable<Page<MemberTeamDto>> membersComplexOpt(MemberSearchCondition cond, Pageable pageable) {
+        return () -> memberSearchService.searchComplexOptimize(cond, pageable);
+    }
+
+    /**
+     * v1 과 같은 결과를 off-heap 캐시에서 바로 직렬화한다.
+     */
+    @GetMapping("/v5/members")
+    public Callable<OffHeapRows> membersOffHeap(MemberSearchCondition cond) {
+        return () -> offHeapSearchService.search(cond);
+    }
+
+    /**
+     * v1 과 같은 결과를 team join 없이 member_team_view 에서 조회한다.
+     */
+    @GetMapping("/v6/members")
+    public List<MemberTeamDto> membersView(MemberSearchCondition cond) {
+        if (memberTeamViewMaintainer.getIfAvailable() == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "member.view.enabled is false");
+        }
+        return memberJPARepository.searchByConditionView(cond);
+    }
+
+    /**
+     * 동시에 들어온 단건 조회는 MemberBatchLoader 가 묶어서 한 번에 조회한다.
+     */
+    @GetMapping("/members/{id}")
+    public CompletableFuture<ResponseEntity<MemberTeamDto>> member(@PathVariable Long id) {
+        return memberBatchLoader.load(id)
+                                .thenApply(found -> found.map(ResponseEntity::ok)
+                                                         .orElseGet(() -> ResponseEntity.notFound().build()));
+    }
+
+    /**
+     * 조건 목록을 받아 조건별 결과를 같은 순서로 돌려준다. 각 결과는 /v1/members 와 같다.
+     */
+    @PostMapping("/members/search/batch")
+    public List<List<MemberTeamDto>> searchBatch(@RequestBody List<MemberSearchCondition> conds) {
+        if (conds.size() > maxBatchConditions) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "too many conditions. max=" + maxBatchConditions);
+        }
+        return memberBatchSearchService.search(conds);
+    }
+
+    /**
+     * member id 여러 개로 한 번에 조회한다. 결과는 member id 오름차순이고 없는 id 와 team 이 없는 member 는 빠진다.
+     */
+    @PostMapping("/members/lookup/ids")
+    public List<MemberTeamDto> lookupByIds(@RequestBody List<Long> ids) {
+        checkLookupSize(ids);
+        return memberLookupRepository.findByIds(ids);
+    }
+
+    /**
+     * username 이 정확히 같은 member 를 한 번에 조회한다. 결과는 member id 오름차순이다.
+     */
+    @PostMapping("/members/lookup/usernames")
+    public List<MemberTeamDto> lookupByUsernames(@RequestBody List<String> usernames) {
+        checkLookupSize(usernames);
+        return memberLookupRepository.findByUsernames(usernames);
+    }
+
+    /**
+     * 조건에 맞는 member 의 age 구간별 수. bounds=20,30,40 이면 (~20), [20, 30), [30, 40), [40, ~) 네 구간이다.
+     */
+    @GetMapping("/members/age-histogram")
+    public List<AgeBucketDto> ageHistogram(MemberSearchCondition cond,
+                                           @RequestParam(name = "bounds", defaultValue = "20,30,40,50") List<Integer> bounds) {
+        if (bounds.size() > maxHistogramBounds) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "too many bounds. max=" + maxHistogramBounds);
+        }
+        try {
+            return memberAgeHistogramService.histogram(cond, bounds);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    private void checkLookupSize(List<?> values) {
+        if (values.size() > maxLookupValues) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "too many values. max=" + maxLookupValues);
+        }
     }
 }
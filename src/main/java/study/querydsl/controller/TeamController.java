@@ -0,0 +1,71 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import study.querydsl.dto.TeamMembersDto;
+import study.querydsl.dto.TeamSketchDto;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.repository.TeamRepository;
+import study.querydsl.repository.support.UnsupportedSortException;
+import study.querydsl.sketch.TeamSketchService;
+import study.querydsl.stats.TeamStatsService;
+
+import java.util.List;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+@RestController
+public class TeamController {
+
+    private final TeamRepository teamRepository;
+    private final ObjectProvider<TeamStatsService> teamStatsService;
+    private final ObjectProvider<TeamSketchService> teamSketchService;
+
+    /**
+     * 페이징한 team 과 각 team 의 member 목록. sort 는 id / name 만 받고 그 밖의 property 면 400 이다.
+     */
+    @GetMapping("/teams/with-members")
+    public Page<TeamMembersDto> teamsWithMembers(Pageable pageable) {
+        try {
+            return teamRepository.findTeamsWithMembers(pageable);
+        } catch (UnsupportedSortException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * team 별 member 수 / age 합 / 최소 / 최대 / 평균. TeamStatsService 가 꺼져 있거나 다시 읽는 중이면 DB 에서 집계한다.
+     */
+    @GetMapping("/teams/stats")
+    public List<TeamStatsDto> teamStats() {
+        TeamStatsService service = teamStatsService.getIfAvailable();
+        Optional<List<TeamStatsDto>> maintained = service == null ? Optional.empty() : service.stats();
+        return maintained.orElseGet(teamRepository::findTeamStats);
+    }
+
+    /**
+     * team 별 age 분위수와 서로 다른 username 수의 근사값. 오차 범위는 TeamSketchService 참고.
+     * 정확한 값은 member 테이블 전체를 읽어야 하므로 sketch 를 쓸 수 없으면 DB 로 넘기지 않고 503 을 돌려준다.
+     */
+    @GetMapping("/teams/sketches")
+    public List<TeamSketchDto> teamSketches(@RequestParam(name = "q", defaultValue = "0.5,0.9,0.99") List<Double> quantiles) {
+        for (Double q : quantiles) {
+            if (q == null || q < 0 || q > 1) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "q must be in [0, 1]. " + q);
+            }
+        }
+        TeamSketchService service = teamSketchService.getIfAvailable();
+        if (service == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "member.sketch.enabled is false");
+        }
+        return service.sketches(quantiles)
+                      .orElseThrow(() -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "team sketches are not built yet"));
+    }
+}
@@ -0,0 +1,20 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+/**
+ * age 구간 [from, to) 의 member 수. 첫 구간은 from, 마지막 구간은 to 가 null 이다.
+ */
+@Data
+public class AgeBucketDto {
+
+    private Integer from;
+    private Integer to;
+    private long count;
+
+    public AgeBucketDto(Integer from, Integer to, long count) {
+        this.from = from;
+        this.to = to;
+        this.count = count;
+    }
+}
@@ -0,0 +1,30 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.annotations.QueryProjection;
+import lombok.Data;
+
+/**
+ * member age 와 소속 team 평균 age 의 차이. 평균보다 많으면 diff 가 양수다.
+ */
+@Data
+public class MemberAgeVsTeamDto {
+
+    private Long memberId;
+    private String username;
+    private Integer age;
+    private Long teamId;
+    private String teamName;
+    private Double teamAvgAge;
+    private Double diff;
+
+    @QueryProjection
+    public MemberAgeVsTeamDto(Long memberId, String username, Integer age, Long teamId, String teamName, Double teamAvgAge) {
+        this.memberId = memberId;
+        this.username = username;
+        this.age = age;
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.teamAvgAge = teamAvgAge;
+        this.diff = age == null || teamAvgAge == null ? null : age - teamAvgAge;
+    }
+}
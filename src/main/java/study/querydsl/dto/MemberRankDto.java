@@ -0,0 +1,28 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.annotations.QueryProjection;
+import lombok.Data;
+
+/**
+ * team 안에서 age 가 많은 순서의 순위. 1 부터 시작한다.
+ */
+@Data
+public class MemberRankDto {
+
+    private Long memberId;
+    private String username;
+    private Integer age;
+    private Long teamId;
+    private String teamName;
+    private Long rank;
+
+    @QueryProjection
+    public MemberRankDto(Long memberId, String username, Integer age, Long teamId, String teamName, Long rank) {
+        this.memberId = memberId;
+        this.username = username;
+        this.age = age;
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.rank = rank;
+    }
+}
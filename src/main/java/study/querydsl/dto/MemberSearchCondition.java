@@ -6,6 +6,10 @@ import lombok.Data;
 public class MemberSearchCondition {
 
     private String username;
+    // '*' 와일드카드 패턴. member1* (prefix), *ber1* (포함)
+    private String usernameLike;
+    // true 면 username / usernameLike 를 대소문자 구분 없이 비교한다. (username_lower 컬럼 사용)
+    private boolean usernameIgnoreCase;
     private Integer ageGoe;
     private Integer ageLoe;
     private String teamName;
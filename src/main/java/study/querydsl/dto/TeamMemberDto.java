@@ -0,0 +1,19 @@
+package study.querydsl.dto;
+
+import com.querydsl.core.annotations.QueryProjection;
+import lombok.Data;
+
+@Data
+public class TeamMemberDto {
+
+    private Long memberId;
+    private String username;
+    private Integer age;
+
+    @QueryProjection
+    public TeamMemberDto(Long memberId, String username, Integer age) {
+        this.memberId = memberId;
+        this.username = username;
+        this.age = age;
+    }
+}
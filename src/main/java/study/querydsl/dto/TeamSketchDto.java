@@ -0,0 +1,35 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * team 별 근사 통계. TeamSketchService 참고.
+ */
+@Data
+public class TeamSketchDto {
+
+    private Long teamId;
+    private String teamName;
+    // t-digest 에 들어간 값 개수. staleChanges 가 0 이 아니면 부풀어 있을 수 있다.
+    private long count;
+    // "0.5" -> age. 값이 없으면 비어 있다.
+    private Map<String, Double> ageQuantiles;
+    private long distinctUsernames;
+    // distinctUsernames 의 상대 표준 오차 (1.04 / √m)
+    private double distinctUsernamesError;
+    // 마지막 재구성 이후 반영하지 못한 수정 / 삭제 수
+    private long staleChanges;
+
+    public TeamSketchDto(Long teamId, String teamName, long count, Map<String, Double> ageQuantiles,
+                         long distinctUsernames, double distinctUsernamesError, long staleChanges) {
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.count = count;
+        this.ageQuantiles = ageQuantiles;
+        this.distinctUsernames = distinctUsernames;
+        this.distinctUsernamesError = distinctUsernamesError;
+        this.staleChanges = staleChanges;
+    }
+}
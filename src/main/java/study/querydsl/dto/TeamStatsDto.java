@@ -0,0 +1,28 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+/**
+ * team 별 member age 집계. member 가 없으면 count / sum 은 0, min / max / avg 는 null 이다.
+ */
+@Data
+public class TeamStatsDto {
+
+    private Long teamId;
+    private String teamName;
+    private long count;
+    private long sum;
+    private Integer min;
+    private Integer max;
+    private Double avg;
+
+    public TeamStatsDto(Long teamId, String teamName, long count, long sum, Integer min, Integer max) {
+        this.teamId = teamId;
+        this.teamName = teamName;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.avg = count == 0 ? null : (double) sum / count;
+    }
+}
@@ -0,0 +1,39 @@
+package study.querydsl.entity;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import java.io.Serializable;
+
+/**
+ * 큰 IN 목록 대신 member 와 join 할 값들을 담는 작업 테이블.
+ * LookupKeyTable 로만 넣고 조회가 끝나면 지운다. 쓰기 트랜잭션에서는 커밋되는 일이 없고, 읽기 전용 트랜잭션에서는 따로 커밋했다가 지운다.
+ * batchId 는 조회마다 새로 뽑는다.
+ */
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Getter
+@Entity
+@IdClass(LookupKey.Pk.class)
+public class LookupKey {
+
+    @Id
+    private Long batchId;
+    @Id
+    private Integer seq;
+
+    private Long longValue;
+    private String stringValue;
+
+    @NoArgsConstructor
+    @EqualsAndHashCode
+    public static class Pk implements Serializable {
+
+        private Long batchId;
+        private Integer seq;
+    }
+}
@@ -1,13 +1,20 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.Hibernate;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 
 @ToString(of = {"id", "username", "age"})
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @Getter
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_member_username", columnList = "username"),
+        @Index(name = "idx_member_username_lower", columnList = "username_lower"),
+        @Index(name = "idx_member_changed_at", columnList = "changed_at")
+})
 public class Member {
 
     @Column(name = "member_id")
@@ -15,7 +22,19 @@ public class Member {
     @Id
     private Long id;
     private String username;
+    // 대소문자 무시 검색용. DB 가 username 으로 계산하는 generated column 이라 어떤 경로로 쓰든(벌크 update, 직접 SQL) 맞춰진다.
+    // 엔티티에서는 읽기 전용이고 insert 직후에는 null 이므로 조건절에서만 쓴다.
+    @Getter(AccessLevel.NONE)
+    @Column(name = "username_lower", insertable = false, updatable = false,
+            columnDefinition = "varchar(255) generated always as (lower(username))")
+    private String usernameLower;
     private int age;
+    // 마지막으로 insert / update 된 시각. username_lower 처럼 DB 가 채우므로 벌크 update, 직접 SQL 도 반영된다.
+    // 재시작한 MemberIndexService 가 스냅샷 파일 이후에 바뀐 행을 찾는 데 쓴다.
+    @Getter(AccessLevel.NONE)
+    @Column(name = "changed_at", insertable = false, updatable = false,
+            columnDefinition = "timestamp default localtimestamp on update localtimestamp")
+    private LocalDateTime changedAt;
 
     @JoinColumn(name = "team_id")
     @ManyToOne(fetch = FetchType.LAZY)
@@ -35,8 +54,17 @@ public class Member {
         this.age = age;
     }
 
-    private void changeTeam(Team team) {
+    /**
+     * 읽지 않은 inverse bag 에 add 하면 컬렉션을 읽지 않고 작업만 쌓아 두었다가 나중에 읽을 때 적용한다.
+     * remove 는 대상을 찾으려고 컬렉션 전체를 읽으므로 이미 읽은 경우에만 한다. (읽지 않았으면 나중에 DB 에서 빠진 채로 읽힌다)
+     */
+    public void changeTeam(Team team) {
+        if (this.team != null && Hibernate.isInitialized(this.team.getMembers())) {
+            this.team.getMembers().remove(this);
+        }
         this.team = team;
-        team.getMembers().add(this);
+        if (team != null) {
+            team.getMembers().add(this);
+        }
     }
 }
@@ -0,0 +1,47 @@
+package study.querydsl.entity;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * member 와 team.name 을 미리 합쳐 둔 조회 전용 테이블. 검색할 때 team 과 join 하지 않는다.
+ * MemberTeamViewMaintainer 가 Member / Team 을 쓰는 트랜잭션 안에서 같이 고치므로 엔티티로는 읽기만 한다.
+ * team 이 없는 member 도 team_id, team_name 이 null 인 채로 들어 있다.
+ */
+@ToString(of = {"memberId", "username", "age", "teamId", "teamName"})
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Getter
+@Immutable
+@Entity
+@Table(name = "member_team_view", indexes = {
+        @Index(name = "idx_member_team_view_username", columnList = "username"),
+        @Index(name = "idx_member_team_view_username_lower", columnList = "username_lower"),
+        @Index(name = "idx_member_team_view_team_id", columnList = "team_id"),
+        @Index(name = "idx_member_team_view_team_name", columnList = "team_name")
+})
+public class MemberTeamView {
+
+    @Column(name = "member_id")
+    @Id
+    private Long memberId;
+    private String username;
+    // Member.usernameLower 와 같은 generated column
+    @Getter(AccessLevel.NONE)
+    @Column(name = "username_lower", insertable = false, updatable = false,
+            columnDefinition = "varchar(255) generated always as (lower(username))")
+    private String usernameLower;
+    private int age;
+    @Column(name = "team_id")
+    private Long teamId;
+    @Column(name = "team_name")
+    private String teamName;
+}
@@ -1,11 +1,15 @@
 package study.querydsl.entity;
 
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.hibernate.annotations.LazyCollection;
+import org.hibernate.annotations.LazyCollectionOption;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,6 +25,14 @@ public class Team {
 
     private String name;
 
+    // 마지막으로 insert / update 된 시각. DB 가 채운다. (Member.changedAt)
+    @Getter(AccessLevel.NONE)
+    @Column(name = "changed_at", insertable = false, updatable = false,
+            columnDefinition = "timestamp default localtimestamp on update localtimestamp")
+    private LocalDateTime changedAt;
+
+    // size() / isEmpty() 는 컬렉션을 읽지 않고 count 쿼리로 답한다. 목록은 TeamRepository.findMembers 로 나눠서 읽는다.
+    @LazyCollection(LazyCollectionOption.EXTRA)
     @OneToMany(mappedBy = "team")
     private List<Member> members = new ArrayList<>();
 
@@ -28,4 +40,8 @@ public class Team {
     public Team(String name) {
         this.name = name;
     }
+
+    public void changeName(String name) {
+        this.name = name;
+    }
 }
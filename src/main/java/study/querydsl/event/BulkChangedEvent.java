@@ -0,0 +1,17 @@
+package study.querydsl.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 커밋된 벌크 update / delete. 어떤 row 가 바뀌었는지는 알 수 없다.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class BulkChangedEvent {
+
+    private final Class<?> entityType;
+    private final long affectedRows;
+}
@@ -0,0 +1,18 @@
+package study.querydsl.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 벌크 update / delete 를 실행하기 직전에 트랜잭션 안에서 발행된다. 커밋될지는 아직 모른다.
+ * 커밋 전부터 결과가 달라지는 걸 알아야 하는 쪽(같은 트랜잭션의 조회)만 쓴다. 나머지는 BulkChangedEvent 를 본다.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class BulkChangingEvent {
+
+    private final Class<?> entityType;
+    private final ChangeType type;
+}
@@ -0,0 +1,40 @@
+package study.querydsl.event;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Member / Team 쓰기가 커밋될 때마다 1씩 증가하는 버전.
+ * 재시작하면 0 부터 다시 시작하므로 etag 에는 기동 시각(epoch)을 같이 넣는다.
+ */
+@Component
+public class DataVersion {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    public String etag() {
+        return "\"" + epoch + "-" + version.get() + "\"";
+    }
+
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        version.incrementAndGet();
+    }
+
+    @EventListener
+    public void onTeamChanged(TeamChangedEvent event) {
+        version.incrementAndGet();
+    }
+
+    @EventListener
+    public void onBulkChanged(BulkChangedEvent event) {
+        version.incrementAndGet();
+    }
+}
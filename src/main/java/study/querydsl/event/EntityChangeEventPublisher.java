@@ -0,0 +1,115 @@
+package study.querydsl.event;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.tuple.entity.EntityMetamodel;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Member / Team 의 insert, update, delete 가 커밋되면 스프링 이벤트로 다시 발행한다.
+ * 롤백된 변경은 발행되지 않는다.
+ */
+@Component
+public class EntityChangeEventPublisher implements PostCommitInsertEventListener,
+                                                   PostCommitUpdateEventListener,
+                                                   PostCommitDeleteEventListener {
+
+    private final transient EntityManagerFactory entityManagerFactory;
+    private final transient ApplicationEventPublisher eventPublisher;
+
+    public EntityChangeEventPublisher(EntityManagerFactory entityManagerFactory, ApplicationEventPublisher eventPublisher) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                                                             .getServiceRegistry()
+                                                             .getService(EventListenerRegistry.class);
+
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Member) {
+            eventPublisher.publishEvent(new MemberChangedEvent(ChangeType.INSERT, null, MemberState.of((Member) entity)));
+        } else if (entity instanceof Team) {
+            Team team = (Team) entity;
+            eventPublisher.publishEvent(new TeamChangedEvent(ChangeType.INSERT, team.getId(), null, team.getName()));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        Object entity = event.getEntity();
+        Object[] oldState = event.getOldState();
+
+        if (entity instanceof Member) {
+            Member member = (Member) entity;
+            MemberState before = oldState == null ? null : MemberState.of(member.getId(),
+                    (String) oldState[index(event.getPersister(), "username")],
+                    (Integer) oldState[index(event.getPersister(), "age")],
+                    (Team) oldState[index(event.getPersister(), "team")]);
+
+            eventPublisher.publishEvent(new MemberChangedEvent(ChangeType.UPDATE, before, MemberState.of(member)));
+        } else if (entity instanceof Team) {
+            Team team = (Team) entity;
+            String beforeName = oldState == null ? null : (String) oldState[index(event.getPersister(), "name")];
+
+            eventPublisher.publishEvent(new TeamChangedEvent(ChangeType.UPDATE, team.getId(), beforeName, team.getName()));
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Member) {
+            eventPublisher.publishEvent(new MemberChangedEvent(ChangeType.DELETE, MemberState.of((Member) entity), null));
+        } else if (entity instanceof Team) {
+            Team team = (Team) entity;
+            eventPublisher.publishEvent(new TeamChangedEvent(ChangeType.DELETE, team.getId(), team.getName(), null));
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        Class<?> type = persister.getMappedClass();
+        return Member.class.isAssignableFrom(type) || Team.class.isAssignableFrom(type);
+    }
+
+    private static int index(EntityPersister persister, String property) {
+        EntityMetamodel metamodel = persister.getEntityMetamodel();
+        return metamodel.getPropertyIndex(property);
+    }
+}
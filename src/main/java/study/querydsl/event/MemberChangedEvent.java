@@ -0,0 +1,19 @@
+package study.querydsl.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 커밋된 Member 변경. INSERT 는 before, DELETE 는 after 가 null 이다.
+ * UPDATE 인데 before 가 null 이면 이전 값을 알 수 없는 경우다.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class MemberChangedEvent {
+
+    private final ChangeType type;
+    private final MemberState before;
+    private final MemberState after;
+}
@@ -0,0 +1,56 @@
+package study.querydsl.event;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.hibernate.Hibernate;
+import org.hibernate.proxy.HibernateProxy;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+/**
+ * 변경 이벤트에 실리는 Member 의 한 시점 값.
+ * teamName 은 team 이 초기화되어 있을 때만 채워진다. (null 이면 "모름")
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class MemberState {
+
+    private final Long id;
+    private final String username;
+    private final int age;
+    private final Long teamId;
+    private final String teamName;
+
+    public MemberState(Long id, String username, int age, Long teamId, String teamName) {
+        this.id = id;
+        this.username = username;
+        this.age = age;
+        this.teamId = teamId;
+        this.teamName = teamName;
+    }
+
+    public static MemberState of(Member member) {
+        return of(member.getId(), member.getUsername(), member.getAge(), member.getTeam());
+    }
+
+    public static MemberState of(Long id, String username, int age, Team team) {
+        return new MemberState(id, username, age, teamId(team), teamName(team));
+    }
+
+    private static Long teamId(Team team) {
+        if (team == null) {
+            return null;
+        }
+        // 프록시의 getId() 는 필드 접근 매핑이라 초기화를 유발하므로 LazyInitializer 에서 꺼낸다.
+        if (team instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        }
+        return team.getId();
+    }
+
+    private static String teamName(Team team) {
+        return team != null && Hibernate.isInitialized(team) ? team.getName() : null;
+    }
+}
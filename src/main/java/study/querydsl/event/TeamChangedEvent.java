@@ -0,0 +1,19 @@
+package study.querydsl.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * 커밋된 Team 변경. INSERT 는 beforeName, DELETE 는 afterName 이 null 이다.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class TeamChangedEvent {
+
+    private final ChangeType type;
+    private final Long teamId;
+    private final String beforeName;
+    private final String afterName;
+}
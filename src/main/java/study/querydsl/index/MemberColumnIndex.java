@@ -0,0 +1,484 @@
+package study.querydsl.index;
+
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.ngram.UsernamePattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+/**
+ * member 검색용 불변 컬럼 인덱스.
+ * <p>
+ * 모든 컬럼은 (age, id) 오름차순으로 정렬된 같은 위치(position)를 공유한다.
+ * age 범위는 이진 탐색으로 [from, to) 구간이 되고, teamName 은 위치 bitmap, username 은 위치 목록(posting)으로 교집합을 만든다.
+ * team 이 없는 member 는 검색 쿼리(inner join)와 맞추기 위해 넣지 않는다.
+ */
+public class MemberColumnIndex {
+
+    private final int[] ages;
+    private final long[] ids;
+    private final long[] teamIds;
+    private final int[] usernameCodes;
+    private final int[] teamNameCodes;
+
+    private final StringDictionary usernames;
+    private final StringDictionary teamNames;
+    // team id -> teamName 코드. 이벤트에 teamName 이 없을 때 채우는 데 쓴다.
+    private final Map<Long, Integer> teamNameCodesById = new HashMap<>();
+
+    // teamName 코드별 위치 bitmap
+    private final long[][] teamNameBitmaps;
+    // username 코드별 위치 목록 (CSR): usernamePositions[usernameOffsets[code] .. usernameOffsets[code + 1])
+    private final int[] usernameOffsets;
+    private final int[] usernamePositions;
+
+    private MemberColumnIndex(int[] ages, long[] ids, long[] teamIds, int[] usernameCodes, int[] teamNameCodes,
+                              StringDictionary usernames, StringDictionary teamNames) {
+        this.ages = ages;
+        this.ids = ids;
+        this.teamIds = teamIds;
+        this.usernameCodes = usernameCodes;
+        this.teamNameCodes = teamNameCodes;
+        this.usernames = usernames;
+        this.teamNames = teamNames;
+
+        int size = ages.length;
+        this.teamNameBitmaps = new long[teamNames.size()][(size + 63) >>> 6];
+        for (int pos = 0; pos < size; pos++) {
+            teamNameBitmaps[teamNameCodes[pos]][pos >>> 6] |= 1L << pos;
+            teamNameCodesById.put(teamIds[pos], teamNameCodes[pos]);
+        }
+
+        this.usernameOffsets = new int[usernames.size() + 1];
+        for (int pos = 0; pos < size; pos++) {
+            usernameOffsets[usernameCodes[pos] + 1]++;
+        }
+        for (int code = 0; code < usernames.size(); code++) {
+            usernameOffsets[code + 1] += usernameOffsets[code];
+        }
+        this.usernamePositions = new int[size];
+        int[] next = Arrays.copyOf(usernameOffsets, usernames.size());
+        for (int pos = 0; pos < size; pos++) {
+            usernamePositions[next[usernameCodes[pos]]++] = pos;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 이미 age 순으로 정렬된 컬럼으로 만든다. (MemberIndexSnapshotFile 에서 읽을 때)
+     */
+    static MemberColumnIndex ofSorted(int[] ages, long[] ids, long[] teamIds, int[] usernameCodes, int[] teamNameCodes,
+                                      StringDictionary usernames, StringDictionary teamNames) {
+        return new MemberColumnIndex(ages, ids, teamIds, usernameCodes, teamNameCodes, usernames, teamNames);
+    }
+
+    /**
+     * 현재 행을 모두 담은 Builder. 행을 더 넣어서 새 인덱스를 만들 때 쓴다.
+     */
+    public Builder toBuilder() {
+        return toBuilder(id -> false);
+    }
+
+    /**
+     * skip 이 true 인 id 를 뺀 나머지 행을 담은 Builder. 바뀐 행을 빼고 새 값으로 다시 넣을 때 쓴다.
+     */
+    public Builder toBuilder(LongPredicate skip) {
+        Builder builder = new Builder();
+        for (int pos = 0; pos < ages.length; pos++) {
+            if (skip.test(ids[pos])) {
+                continue;
+            }
+            builder.add(ids[pos], usernames.decode(usernameCodes[pos]), ages[pos], teamIds[pos], teamNames.decode(teamNameCodes[pos]));
+        }
+        return builder;
+    }
+
+    public long maxId() {
+        long max = 0;
+        for (long id : ids) {
+            max = Math.max(max, id);
+        }
+        return max;
+    }
+
+    public int size() {
+        return ages.length;
+    }
+
+    /**
+     * @return 인덱스에 그 team 의 member 가 없으면 null
+     */
+    public String teamName(long teamId) {
+        Integer code = teamNameCodesById.get(teamId);
+        return code == null ? null : teamNames.decode(code);
+    }
+
+    /**
+     * team 에 속한 member 들 (age 오름차순). team 이름이 바뀌었을 때 다시 담을 행을 찾는 데 쓴다.
+     */
+    public List<MemberTeamDto> membersOf(long teamId) {
+        int[] result = new int[16];
+        int count = 0;
+        for (int pos = 0; pos < teamIds.length; pos++) {
+            if (teamIds[pos] == teamId) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count * 2);
+                }
+                result[count++] = pos;
+            }
+        }
+        return materialize(Arrays.copyOf(result, count));
+    }
+
+    /**
+     * 인덱스 밖의 한 행이 search(cond) 에 걸리는지. positions 와 같은 규칙이다.
+     */
+    public static boolean matches(MemberSearchCondition cond, String username, int age, String teamName) {
+        if (cond.getAgeGoe() != null && age < cond.getAgeGoe()) {
+            return false;
+        }
+        if (cond.getAgeLoe() != null && age > cond.getAgeLoe()) {
+            return false;
+        }
+        if (StringUtils.hasText(cond.getTeamName()) && !cond.getTeamName().equals(teamName)) {
+            return false;
+        }
+        boolean ignoreCase = cond.isUsernameIgnoreCase();
+        String compared = ignoreCase && username != null ? username.toLowerCase(Locale.ROOT) : username;
+        if (StringUtils.hasText(cond.getUsername())) {
+            String expected = ignoreCase ? cond.getUsername().toLowerCase(Locale.ROOT) : cond.getUsername();
+            if (!expected.equals(compared)) {
+                return false;
+            }
+        }
+        UsernamePattern pattern = UsernamePattern.parse(cond.getUsernameLike());
+        if (pattern != null) {
+            return (ignoreCase ? pattern.toLowerCase() : pattern).matches(compared);
+        }
+        return true;
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition cond) {
+        return materialize(positions(cond));
+    }
+
+    /**
+     * 조건에 맞는 member 를 age 구간별로 센다. bounds 는 오름차순이고 결과 i 번째는 [bounds[i - 1], bounds[i]) 구간이다.
+     * 위치가 age 순이므로 구간 경계마다 이진 탐색만 하면 된다.
+     */
+    public long[] ageHistogram(MemberSearchCondition cond, int[] bounds) {
+        long[] counts = new long[bounds.length + 1];
+        boolean ageOnly = !StringUtils.hasText(cond.getUsername())
+                && UsernamePattern.parse(cond.getUsernameLike()) == null
+                && !StringUtils.hasText(cond.getTeamName());
+        if (ageOnly) {
+            // 위치 목록을 만들지 않고 age 범위 [from, to) 안에서 바로 자른다.
+            int from = cond.getAgeGoe() == null ? 0 : lowerBound(cond.getAgeGoe());
+            int to = cond.getAgeLoe() == null ? ages.length : upperBound(cond.getAgeLoe());
+            int prev = from;
+            for (int i = 0; i < bounds.length; i++) {
+                int cut = Math.min(to, Math.max(from, lowerBound(bounds[i])));
+                counts[i] = Math.max(0, cut - prev);
+                prev = Math.max(prev, cut);
+            }
+            counts[bounds.length] = Math.max(0, to - prev);
+            return counts;
+        }
+
+        int[] positions = positions(cond);
+        int prev = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            int cut = lowerBound(positions, bounds[i]);
+            counts[i] = cut - prev;
+            prev = cut;
+        }
+        counts[bounds.length] = positions.length - prev;
+        return counts;
+    }
+
+    /**
+     * age 순으로 정렬된 positions 중 age >= value 인 첫 인덱스
+     */
+    private int lowerBound(int[] positions, int value) {
+        int lo = 0;
+        int hi = positions.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ages[positions[mid]] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * 조건에 맞는 위치들 (age 오름차순).
+     */
+    public int[] positions(MemberSearchCondition cond) {
+        int[] positions = indexedPositions(cond);
+        boolean ignoreCase = cond.isUsernameIgnoreCase();
+        if (ignoreCase && StringUtils.hasText(cond.getUsername())) {
+            String lower = cond.getUsername().toLowerCase(Locale.ROOT);
+            positions = filterUsernames(positions, username -> username != null && username.toLowerCase(Locale.ROOT).equals(lower));
+        }
+        UsernamePattern pattern = UsernamePattern.parse(cond.getUsernameLike());
+        if (pattern != null) {
+            UsernamePattern matcher = ignoreCase ? pattern.toLowerCase() : pattern;
+            positions = filterUsernames(positions,
+                    username -> matcher.matches(ignoreCase && username != null ? username.toLowerCase(Locale.ROOT) : username));
+        }
+        return positions;
+    }
+
+    /**
+     * usernameLike, 대소문자 무시 username 을 제외한 조건에 맞는 위치들
+     */
+    private int[] indexedPositions(MemberSearchCondition cond) {
+        int from = cond.getAgeGoe() == null ? 0 : lowerBound(cond.getAgeGoe());
+        int to = cond.getAgeLoe() == null ? ages.length : upperBound(cond.getAgeLoe());
+        if (from >= to) {
+            return new int[0];
+        }
+
+        long[] teamBitmap = null;
+        if (StringUtils.hasText(cond.getTeamName())) {
+            int teamCode = teamNames.code(cond.getTeamName());
+            if (teamCode < 0) {
+                return new int[0];
+            }
+            teamBitmap = teamNameBitmaps[teamCode];
+        }
+
+        if (StringUtils.hasText(cond.getUsername()) && !cond.isUsernameIgnoreCase()) {
+            int usernameCode = usernames.code(cond.getUsername());
+            if (usernameCode < 0) {
+                return new int[0];
+            }
+            return intersectPostings(usernameCode, from, to, teamBitmap);
+        }
+        if (teamBitmap != null) {
+            return scanBitmap(teamBitmap, from, to);
+        }
+
+        int[] positions = new int[to - from];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = from + i;
+        }
+        return positions;
+    }
+
+    /**
+     * username 사전을 한 번 훑어 조건에 맞는 코드를 표시한 뒤 위치를 거른다.
+     */
+    private int[] filterUsernames(int[] positions, Predicate<String> condition) {
+        boolean[] matched = new boolean[usernames.size()];
+        for (int code = 0; code < matched.length; code++) {
+            matched[code] = condition.test(usernames.decode(code));
+        }
+        int[] result = new int[positions.length];
+        int count = 0;
+        for (int pos : positions) {
+            if (matched[usernameCodes[pos]]) {
+                result[count++] = pos;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private int[] intersectPostings(int usernameCode, int from, int to, long[] teamBitmap) {
+        int[] result = new int[usernameOffsets[usernameCode + 1] - usernameOffsets[usernameCode]];
+        int count = 0;
+        for (int i = usernameOffsets[usernameCode]; i < usernameOffsets[usernameCode + 1]; i++) {
+            int pos = usernamePositions[i];
+            if (pos >= from && pos < to && (teamBitmap == null || (teamBitmap[pos >>> 6] & (1L << pos)) != 0)) {
+                result[count++] = pos;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * [from, to) 구간 mask 와 bitmap 을 64 비트 단위로 AND 하면서 켜진 위치만 꺼낸다.
+     */
+    private int[] scanBitmap(long[] bitmap, int from, int to) {
+        int[] result = new int[16];
+        int count = 0;
+        int lastWord = (to - 1) >>> 6;
+        for (int w = from >>> 6; w <= lastWord; w++) {
+            long word = bitmap[w];
+            if (w == from >>> 6) {
+                word &= -1L << from;
+            }
+            if (w == lastWord) {
+                word &= -1L >>> (63 - ((to - 1) & 63));
+            }
+            while (word != 0) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count * 2);
+                }
+                result[count++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * age >= value 인 첫 위치
+     */
+    public int lowerBound(int value) {
+        int lo = 0;
+        int hi = ages.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ages[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * age > value 인 첫 위치
+     */
+    public int upperBound(int value) {
+        int lo = 0;
+        int hi = ages.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ages[mid] <= value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    public List<MemberTeamDto> materialize(int[] positions) {
+        List<MemberTeamDto> result = new ArrayList<>(positions.length);
+        for (int pos : positions) {
+            result.add(rowAt(pos));
+        }
+        return result;
+    }
+
+    public MemberTeamDto rowAt(int position) {
+        return new MemberTeamDto(ids[position],
+                usernames.decode(usernameCodes[position]),
+                ages[position],
+                teamIds[position],
+                teamNames.decode(teamNameCodes[position]));
+    }
+
+    public int ageAt(int position) {
+        return ages[position];
+    }
+
+    public long idAt(int position) {
+        return ids[position];
+    }
+
+    int[] ages() {
+        return ages;
+    }
+
+    long[] ids() {
+        return ids;
+    }
+
+    long[] teamIds() {
+        return teamIds;
+    }
+
+    int[] usernameCodes() {
+        return usernameCodes;
+    }
+
+    int[] teamNameCodes() {
+        return teamNameCodes;
+    }
+
+    StringDictionary usernames() {
+        return usernames;
+    }
+
+    StringDictionary teamNames() {
+        return teamNames;
+    }
+
+    public static class Builder {
+
+        private int size;
+        private int[] ages = new int[1024];
+        private long[] ids = new long[1024];
+        private long[] teamIds = new long[1024];
+        private int[] usernameCodes = new int[1024];
+        private int[] teamNameCodes = new int[1024];
+
+        private final StringDictionary usernames = new StringDictionary();
+        private final StringDictionary teamNames = new StringDictionary();
+
+        public Builder add(long id, String username, int age, long teamId, String teamName) {
+            if (size == ages.length) {
+                int capacity = size * 2;
+                ages = Arrays.copyOf(ages, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+                teamIds = Arrays.copyOf(teamIds, capacity);
+                usernameCodes = Arrays.copyOf(usernameCodes, capacity);
+                teamNameCodes = Arrays.copyOf(teamNameCodes, capacity);
+            }
+            ages[size] = age;
+            ids[size] = id;
+            teamIds[size] = teamId;
+            usernameCodes[size] = usernames.encode(username);
+            teamNameCodes[size] = teamNames.encode(teamName);
+            size++;
+            return this;
+        }
+
+        public MemberColumnIndex build() {
+            // (age, id 순위) 를 long 하나로 묶어서 boxing 없이 정렬한다. 같은 age 안에서는 id 순이다.
+            long[] sortedIds = Arrays.copyOf(ids, size);
+            Arrays.sort(sortedIds);
+            int[] byRank = new int[size];
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++) {
+                int rank = Arrays.binarySearch(sortedIds, ids[i]);
+                byRank[rank] = i;
+                order[i] = ((long) ages[i] << 32) | rank;
+            }
+            Arrays.sort(order);
+
+            int[] sortedAges = new int[size];
+            long[] sortedTeamIds = new long[size];
+            int[] sortedUsernames = new int[size];
+            int[] sortedTeamNames = new int[size];
+            for (int pos = 0; pos < size; pos++) {
+                int i = byRank[(int) order[pos]];
+                sortedAges[pos] = ages[i];
+                sortedIds[pos] = ids[i];
+                sortedTeamIds[pos] = teamIds[i];
+                sortedUsernames[pos] = usernameCodes[i];
+                sortedTeamNames[pos] = teamNameCodes[i];
+            }
+            return new MemberColumnIndex(sortedAges, sortedIds, sortedTeamIds, sortedUsernames, sortedTeamNames,
+                    usernames, teamNames);
+        }
+    }
+}
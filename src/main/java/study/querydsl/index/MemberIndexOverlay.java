@@ -0,0 +1,135 @@
+package study.querydsl.index;
+
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 인덱스를 만든 뒤 바뀐 member 행들. 불변이고 바뀔 때마다 새로 만든다.
+ * <p>
+ * 바뀐 id 는 정렬된 long[] 로, 검색에 나올 행은 인덱스와 같은 (age, id) 순으로 한 번만 정렬해 둔다.
+ * 검색할 때는 인덱스 결과에서 바뀐 id 를 이진 탐색으로 빼고 overlay 행을 순서대로 끼워 넣으므로 다시 정렬하지 않는다.
+ */
+final class MemberIndexOverlay {
+
+    static final MemberIndexOverlay EMPTY = new MemberIndexOverlay(new HashMap<>());
+
+    static final Comparator<MemberTeamDto> ORDER = Comparator.comparingInt(MemberTeamDto::getAge)
+                                                             .thenComparing(MemberTeamDto::getMemberId);
+
+    // member id -> 검색에 나올 행 (삭제, team 없음은 null)
+    private final Map<Long, MemberTeamDto> rows;
+    private final long[] ids;
+    private final MemberTeamDto[] sorted;
+
+    private MemberIndexOverlay(Map<Long, MemberTeamDto> rows) {
+        this.rows = rows;
+        this.ids = new long[rows.size()];
+        List<MemberTeamDto> present = new ArrayList<>(rows.size());
+        int i = 0;
+        for (Map.Entry<Long, MemberTeamDto> entry : rows.entrySet()) {
+            ids[i++] = entry.getKey();
+            if (entry.getValue() != null) {
+                present.add(entry.getValue());
+            }
+        }
+        Arrays.sort(ids);
+        present.sort(ORDER);
+        this.sorted = present.toArray(new MemberTeamDto[0]);
+    }
+
+    /**
+     * rows 는 넘긴 뒤에 바꾸지 않는다.
+     */
+    static MemberIndexOverlay of(Map<Long, MemberTeamDto> rows) {
+        return rows.isEmpty() ? EMPTY : new MemberIndexOverlay(rows);
+    }
+
+    Map<Long, MemberTeamDto> rows() {
+        return Collections.unmodifiableMap(rows);
+    }
+
+    boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    boolean contains(long id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    /**
+     * 인덱스 검색 결과에 overlay 를 덧씌운다. 결과는 인덱스와 같은 (age, id) 순이다.
+     */
+    List<MemberTeamDto> apply(MemberColumnIndex index, MemberSearchCondition cond) {
+        int[] positions = index.positions(cond);
+        List<MemberTeamDto> result = new ArrayList<>(positions.length);
+        int next = 0;
+        for (int pos : positions) {
+            long id = index.idAt(pos);
+            if (contains(id)) {
+                continue;
+            }
+            int age = index.ageAt(pos);
+            next = addMatching(result, cond, next, age, id);
+            result.add(index.rowAt(pos));
+        }
+        addMatching(result, cond, next, Integer.MAX_VALUE, Long.MAX_VALUE);
+        return result;
+    }
+
+    /**
+     * 인덱스 결과에 overlay 를 덧씌운 뒤 age 구간별로 센다. 행을 만들지 않고 위치와 age 만 본다.
+     */
+    long[] ageHistogram(MemberColumnIndex index, MemberSearchCondition cond, int[] bounds) {
+        long[] counts = new long[bounds.length + 1];
+        for (int pos : index.positions(cond)) {
+            if (!contains(index.idAt(pos))) {
+                counts[bucket(bounds, index.ageAt(pos))]++;
+            }
+        }
+        for (MemberTeamDto row : sorted) {
+            if (matches(cond, row)) {
+                counts[bucket(bounds, row.getAge())]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * sorted[from] 부터 (age, id) 가 기준보다 앞서는 행 중 조건에 맞는 것을 붙이고 다음 위치를 돌려준다.
+     */
+    private int addMatching(List<MemberTeamDto> result, MemberSearchCondition cond, int from, int age, long id) {
+        int i = from;
+        while (i < sorted.length
+                && (sorted[i].getAge() < age || sorted[i].getAge() == age && sorted[i].getMemberId() < id)) {
+            if (matches(cond, sorted[i])) {
+                result.add(sorted[i]);
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean matches(MemberSearchCondition cond, MemberTeamDto row) {
+        return MemberColumnIndex.matches(cond, row.getUsername(), row.getAge(), row.getTeamName());
+    }
+
+    private static int bucket(int[] bounds, int age) {
+        int bucket = 0;
+        while (bucket < bounds.length && age >= bounds[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+}
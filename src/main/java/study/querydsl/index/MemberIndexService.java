@@ -0,0 +1,446 @@
+package study.querydsl.index;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.event.BulkChangedEvent;
+import study.querydsl.event.ChangeType;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.MemberState;
+import study.querydsl.event.TeamChangedEvent;
+import study.querydsl.support.RebuildScheduler;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * MemberColumnIndex 를 들고 변경 이벤트를 반영한다.
+ * <ul>
+ *     <li>단건 member 변경, team 이름 변경 : 인덱스는 불변이므로 바뀐 member 행만 overlay 에 모아 두고 검색 결과에 덧씌운다.
+ *     overlay 가 max-overlay 를 넘으면 다시 만든다.</li>
+ *     <li>벌크 변경 : 어떤 row 가 바뀌었는지 모르므로 stale 로 표시하고 잠시 뒤 다시 만든다.
+ *     stale 인 동안 search 는 빈 Optional 을 돌려주므로 호출하는 쪽은 DB 로 조회해야 한다.</li>
+ * </ul>
+ * <p>
+ * member.index.snapshot-file 이 있으면 다시 만들 때마다 파일로 남기고, 재시작할 때 그 파일로 먼저 띄운다.
+ * 파일의 watermark 이후(catch-up-lag 만큼 앞당겨서) changed_at 이 바뀐 member 와 team 만 DB 에서 읽어 반영하고 바로 fresh 로 쓴다.
+ * lag 보다 오래 걸린 트랜잭션의 변경은 놓칠 수 있으므로 reconcile-delay 뒤에 전체를 한 번 다시 만든다.
+ */
+@Slf4j
+@ConditionalOnProperty(name = "member.index.enabled", havingValue = "true")
+@Component
+public class MemberIndexService {
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTx;
+    private final Path snapshotFile;
+    private final long reconcileDelayMillis;
+    private final long catchUpLagMillis;
+    private final int maxOverlay;
+    // 벌크 변경마다 changeSeq 가 늘어난다. 다시 만드는 도중 변경이 있었으면 그 결과는 fresh 로 보지 않는다.
+    private final RebuildScheduler scheduler;
+
+    private final Object lock = new Object();
+    private volatile MemberColumnIndex index;
+    private volatile long indexedSeq = -1;
+    // 인덱스를 만든 뒤 바뀐 member 행. 바꿀 때마다 새로 만들어 갈아 끼운다.
+    private volatile MemberIndexOverlay overlay = MemberIndexOverlay.EMPTY;
+    // overlay 에 넣은 순번. 다시 만드는 동안 들어온 변경만 새 overlay 로 넘긴다.
+    private Map<Long, Long> overlaySeqs = new HashMap<>();
+    // 이름이 바뀐 team id -> 새 이름, 바뀐 순번. 다시 만든 인덱스에도 다시 펼친다.
+    private Map<Long, String> renamedTeams = new HashMap<>();
+    private Map<Long, Long> renamedSeqs = new HashMap<>();
+    private long overlaySeq;
+
+    public MemberIndexService(JPAQueryFactory queryFactory,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${member.index.rebuild-delay-ms:200}") long rebuildDelayMillis,
+                              @Value("${member.index.snapshot-file:}") String snapshotFile,
+                              @Value("${member.index.reconcile-delay-ms:0}") long reconcileDelayMillis,
+                              @Value("${member.index.catch-up-lag-ms:60000}") long catchUpLagMillis,
+                              @Value("${member.index.max-overlay:1000}") int maxOverlay) {
+        this.queryFactory = queryFactory;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.scheduler = new RebuildScheduler("member-index-rebuild", rebuildDelayMillis, this::rebuild);
+        this.snapshotFile = StringUtils.hasText(snapshotFile) ? Paths.get(snapshotFile) : null;
+        this.reconcileDelayMillis = reconcileDelayMillis;
+        this.catchUpLagMillis = catchUpLagMillis;
+        this.maxOverlay = maxOverlay;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        if (snapshotFile != null && Files.exists(snapshotFile)) {
+            scheduler.execute(this::restore);
+            scheduler.schedule(reconcileDelayMillis);
+        } else {
+            scheduler.schedule(0);
+        }
+    }
+
+    void restore() {
+        try {
+            long seq = scheduler.changeSeq();
+            long fromOverlaySeq;
+            synchronized (lock) {
+                fromOverlaySeq = overlaySeq;
+            }
+            long start = System.currentTimeMillis();
+            MemberIndexSnapshotFile.Loaded loaded = MemberIndexSnapshotFile.read(snapshotFile);
+            long mapped = System.currentTimeMillis();
+
+            LocalDateTime since = new Timestamp(loaded.getWatermark() - catchUpLagMillis).toLocalDateTime();
+            MemberColumnIndex restored = readOnlyTx.execute(status -> catchUp(loaded.getIndex(), since));
+            // rebuild 와 같다. 읽기 시작한 뒤 들어온 단건 변경은 overlay 에 남고, 벌크 변경이 있었으면 fresh 가 아니다.
+            swap(restored, seq, fromOverlaySeq);
+            log.info("member index restored from {}. size={}, read={}ms, total={}ms",
+                    snapshotFile, restored.size(), mapped - start, System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            // 파일이 깨졌거나 형식이 바뀌었으면 DB 에서 다시 만든다.
+            log.warn("member index snapshot restore failed. rebuilding from database", e);
+            scheduler.schedule(0);
+        }
+    }
+
+    public boolean isFresh() {
+        return index != null && indexedSeq == scheduler.changeSeq();
+    }
+
+    /**
+     * 결과는 (age, id) 오름차순이다.
+     */
+    public Optional<List<MemberTeamDto>> search(MemberSearchCondition cond) {
+        MemberColumnIndex current;
+        MemberIndexOverlay changed;
+        synchronized (lock) {
+            current = index;
+            changed = overlay;
+        }
+        if (current == null || !isFresh()) {
+            return Optional.empty();
+        }
+        if (changed.isEmpty()) {
+            return Optional.of(current.search(cond));
+        }
+        return Optional.of(changed.apply(current, cond));
+    }
+
+    /**
+     * 조건에 맞는 member 의 age 구간별 수. (MemberColumnIndex.ageHistogram)
+     * overlay 가 비어 있으면 인덱스에서 바로 세고, 아니면 overlay 를 덧씌워 센다.
+     */
+    public Optional<long[]> ageHistogram(MemberSearchCondition cond, int[] bounds) {
+        MemberColumnIndex current;
+        MemberIndexOverlay changed;
+        synchronized (lock) {
+            current = index;
+            changed = overlay;
+        }
+        if (current == null || !isFresh()) {
+            return Optional.empty();
+        }
+        if (changed.isEmpty()) {
+            return Optional.of(current.ageHistogram(cond, bounds));
+        }
+        return Optional.of(changed.ageHistogram(current, cond, bounds));
+    }
+
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        MemberState state = event.getAfter() != null ? event.getAfter() : event.getBefore();
+        if (state == null) {
+            scheduler.markChanged();
+            return;
+        }
+        MemberState after = event.getAfter();
+        int size;
+        synchronized (lock) {
+            MemberTeamDto row = null;
+            if (after != null && after.getTeamId() != null) {
+                String teamName = after.getTeamName() != null ? after.getTeamName() : teamName(after.getTeamId());
+                if (teamName == null) {
+                    // 처음 보는 team 인데 이름을 모른다.
+                    scheduler.markChanged();
+                    return;
+                }
+                row = new MemberTeamDto(after.getId(), after.getUsername(), after.getAge(), after.getTeamId(), teamName);
+            }
+            Map<Long, MemberTeamDto> next = new HashMap<>(overlay.rows());
+            next.put(state.getId(), row);
+            overlaySeqs.put(state.getId(), ++overlaySeq);
+            overlay = MemberIndexOverlay.of(next);
+            size = next.size();
+        }
+        if (size > maxOverlay) {
+            scheduler.schedule(0);
+        }
+    }
+
+    /**
+     * 이름이 바뀌면 그 team 의 member 를 새 이름으로 overlay 에 담는다.
+     * 추가된 team 은 아직 member 가 없고, member 가 남은 team 은 삭제되지 않으므로 (FK) 이름 변경만 본다.
+     */
+    @EventListener
+    public void onTeamChanged(TeamChangedEvent event) {
+        if (event.getType() != ChangeType.UPDATE || event.getAfterName() == null
+                || event.getAfterName().equals(event.getBeforeName())) {
+            return;
+        }
+        int size;
+        synchronized (lock) {
+            long seq = ++overlaySeq;
+            renamedTeams.put(event.getTeamId(), event.getAfterName());
+            renamedSeqs.put(event.getTeamId(), seq);
+            Map<Long, MemberTeamDto> next = new HashMap<>(overlay.rows());
+            rename(next, event.getTeamId(), event.getAfterName(), seq);
+            overlay = MemberIndexOverlay.of(next);
+            size = next.size();
+        }
+        if (size > maxOverlay) {
+            scheduler.schedule(0);
+        }
+    }
+
+    @EventListener
+    public void onBulkChanged(BulkChangedEvent event) {
+        scheduler.markChanged();
+    }
+
+    /**
+     * lock 안에서 부른다.
+     */
+    private void rename(Map<Long, MemberTeamDto> next, Long teamId, String teamName, long seq) {
+        if (index != null) {
+            for (MemberTeamDto row : index.membersOf(teamId)) {
+                if (!next.containsKey(row.getMemberId())) {
+                    next.put(row.getMemberId(), row);
+                    overlaySeqs.put(row.getMemberId(), seq);
+                }
+            }
+        }
+        for (Map.Entry<Long, MemberTeamDto> entry : next.entrySet()) {
+            MemberTeamDto row = entry.getValue();
+            if (row != null && teamId.equals(row.getTeamId()) && !teamName.equals(row.getTeamName())) {
+                entry.setValue(new MemberTeamDto(row.getMemberId(), row.getUsername(), row.getAge(), teamId, teamName));
+            }
+        }
+    }
+
+    /**
+     * lock 안에서 부른다. 이름이 바뀐 team 이면 새 이름을 돌려준다.
+     */
+    private String teamName(Long teamId) {
+        String renamed = renamedTeams.get(teamId);
+        if (renamed != null) {
+            return renamed;
+        }
+        for (MemberTeamDto row : overlay.rows().values()) {
+            if (row != null && teamId.equals(row.getTeamId())) {
+                return row.getTeamName();
+            }
+        }
+        return index == null ? null : index.teamName(teamId);
+    }
+
+    /**
+     * since 이후 바뀐 member 와 이름이 바뀐 team 의 member 를 다시 읽어 파일의 인덱스에 바꿔 끼운다.
+     * 삭제는 changed_at 으로 알 수 없으므로 행 수를 DB 와 비교하고, 다르면 id 를 모두 읽어 없는 것을 뺀다.
+     * (바뀌지 않은 행은 파일과 DB 가 같으므로 행 수가 같으면 빠진 것이 없다)
+     */
+    private MemberColumnIndex catchUp(MemberColumnIndex index, LocalDateTime since) {
+        Map<Long, Tuple> changed = new LinkedHashMap<>();
+        for (Tuple row : rows(member.changedAt.goe(since))) {
+            changed.put(row.get(member.id), row);
+        }
+        List<Long> renamedTeamIds = queryFactory.select(team.id)
+                                                .from(team)
+                                                .where(team.changedAt.goe(since))
+                                                .fetch();
+        if (!renamedTeamIds.isEmpty()) {
+            for (Tuple row : rows(team.id.in(renamedTeamIds))) {
+                changed.put(row.get(member.id), row);
+            }
+        }
+        // team 이 빠진 member 는 rows(inner join) 에 나오지 않으므로 바뀐 id 는 따로 읽는다.
+        Set<Long> changedIds = new HashSet<>(changed.keySet());
+        changedIds.addAll(queryFactory.select(member.id)
+                                      .from(member)
+                                      .where(member.changedAt.goe(since))
+                                      .fetch());
+        long[] skipped = sortedIds(changedIds);
+
+        long kept = 0;
+        for (int pos = 0; pos < index.size(); pos++) {
+            if (Arrays.binarySearch(skipped, index.idAt(pos)) < 0) {
+                kept++;
+            }
+        }
+        Long total = queryFactory.select(member.count())
+                                 .from(member)
+                                 .join(member.team, team)
+                                 .fetchOne();
+        long[] present = null;
+        if (total == null || kept + changed.size() != total) {
+            present = sortedIds(queryFactory.select(member.id)
+                                            .from(member)
+                                            .join(member.team, team)
+                                            .fetch());
+        }
+        log.info("member index catching up since {}. changed={}, deleted check={}", since, changedIds.size(), present != null);
+        if (skipped.length == 0 && present == null) {
+            return index;
+        }
+        long[] remaining = present;
+        MemberColumnIndex.Builder builder = index.toBuilder(id -> Arrays.binarySearch(skipped, id) >= 0
+                || remaining != null && Arrays.binarySearch(remaining, id) < 0);
+        addAll(builder, changed.values());
+        return builder.build();
+    }
+
+    private static long[] sortedIds(Collection<Long> ids) {
+        long[] sorted = new long[ids.size()];
+        int i = 0;
+        for (Long id : ids) {
+            sorted[i++] = id;
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * 인덱스를 읽기 직전의 changed_at 최댓값(epoch ms). 이 시점 이후의 변경은 인덱스에 없을 수 있다.
+     */
+    private long watermark() {
+        LocalDateTime memberMax = queryFactory.select(member.changedAt.max())
+                                              .from(member)
+                                              .fetchOne();
+        LocalDateTime teamMax = queryFactory.select(team.changedAt.max())
+                                            .from(team)
+                                            .fetchOne();
+        long watermark = 0;
+        if (memberMax != null) {
+            watermark = Timestamp.valueOf(memberMax).getTime();
+        }
+        if (teamMax != null) {
+            watermark = Math.max(watermark, Timestamp.valueOf(teamMax).getTime());
+        }
+        return watermark;
+    }
+
+    void rebuild() {
+        long seq = scheduler.changeSeq();
+        long fromOverlaySeq;
+        synchronized (lock) {
+            fromOverlaySeq = overlaySeq;
+        }
+        long start = System.currentTimeMillis();
+        long watermark = readOnlyTx.execute(status -> watermark());
+        MemberColumnIndex built = readOnlyTx.execute(status -> load());
+        swap(built, seq, fromOverlaySeq);
+        log.info("member index rebuilt. size={}, {}ms", built.size(), System.currentTimeMillis() - start);
+        writeSnapshot(built, watermark);
+    }
+
+    /**
+     * 새 인덱스로 갈아 끼운다. 읽기 시작한 뒤(fromOverlaySeq 이후)에 들어온 변경은 읽은 결과에 있을 수도 없을 수도 있으므로 남겨 둔다.
+     * (다시 덮어써도 같은 값이다)
+     */
+    private void swap(MemberColumnIndex built, long seq, long fromOverlaySeq) {
+        synchronized (lock) {
+            Map<Long, MemberTeamDto> next = new HashMap<>();
+            Map<Long, Long> nextSeqs = new HashMap<>();
+            for (Map.Entry<Long, Long> entry : overlaySeqs.entrySet()) {
+                if (entry.getValue() > fromOverlaySeq) {
+                    next.put(entry.getKey(), overlay.rows().get(entry.getKey()));
+                    nextSeqs.put(entry.getKey(), entry.getValue());
+                }
+            }
+            Map<Long, String> nextRenamed = new HashMap<>();
+            Map<Long, Long> nextRenamedSeqs = new HashMap<>();
+            for (Map.Entry<Long, Long> entry : renamedSeqs.entrySet()) {
+                if (entry.getValue() > fromOverlaySeq) {
+                    nextRenamed.put(entry.getKey(), renamedTeams.get(entry.getKey()));
+                    nextRenamedSeqs.put(entry.getKey(), entry.getValue());
+                }
+            }
+            index = built;
+            overlaySeqs = nextSeqs;
+            renamedTeams = nextRenamed;
+            renamedSeqs = nextRenamedSeqs;
+            // 새 인덱스에 옛 이름으로 읽혔을 수 있는 member 도 새 이름으로 덮는다.
+            for (Map.Entry<Long, String> entry : nextRenamed.entrySet()) {
+                rename(next, entry.getKey(), entry.getValue(), nextRenamedSeqs.get(entry.getKey()));
+            }
+            overlay = MemberIndexOverlay.of(next);
+            indexedSeq = seq;
+        }
+    }
+
+    private void writeSnapshot(MemberColumnIndex built, long watermark) {
+        if (snapshotFile == null) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            MemberIndexSnapshotFile.write(built, watermark, snapshotFile);
+            log.debug("member index snapshot written. {}ms", System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            log.warn("member index snapshot write failed. file={}", snapshotFile, e);
+        }
+    }
+
+    MemberColumnIndex load() {
+        MemberColumnIndex.Builder builder = MemberColumnIndex.builder();
+        addAll(builder, rows(null));
+        return builder.build();
+    }
+
+    private List<Tuple> rows(Predicate where) {
+        return queryFactory.select(member.id, member.username, member.age, team.id, team.name)
+                           .from(member)
+                           .join(member.team, team)
+                           .where(where)
+                           .fetch();
+    }
+
+    private static void addAll(MemberColumnIndex.Builder builder, Collection<Tuple> rows) {
+        for (Tuple row : rows) {
+            builder.add(row.get(member.id), row.get(member.username), row.get(member.age),
+                    row.get(team.id), row.get(team.name));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+}
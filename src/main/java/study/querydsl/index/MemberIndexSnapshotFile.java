@@ -0,0 +1,156 @@
+package study.querydsl.index;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import study.querydsl.support.SnapshotFiles;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * MemberColumnIndex 를 컬럼 그대로 파일에 쓰고, 재시작할 때 mmap 으로 읽어 DB 조회 없이 인덱스를 되살린다.
+ * <pre>
+ * header  : magic(int) formatVersion(int) size(int) watermark(long) writtenAt(long)
+ * columns : ages(int x size) ids(long x size) teamIds(long x size) usernameCodes(int x size) teamNameCodes(int x size)
+ * dict x 2: count(int) nullCode(int, null 이 없으면 -1) offsets(int x (count + 1)) UTF-8 bytes   -- username, teamName 순
+ * trailer : 앞의 모든 바이트의 CRC32(long)
+ * </pre>
+ * watermark 는 인덱스를 읽기 직전 member / team changed_at 의 최댓값(epoch ms)이다. 재시작할 때 이 시점 이후 바뀐 행만 DB 에서 다시 읽는다.
+ * 컬럼은 인덱스 위치(age, id 순) 그대로 쓰므로 읽을 때 정렬하지 않는다. trailer 와 파일 교체는 SnapshotFiles 가 한다.
+ */
+public final class MemberIndexSnapshotFile {
+
+    static final int MAGIC = 0x4D494458; // "MIDX"
+    static final int FORMAT_VERSION = 3;
+
+    private MemberIndexSnapshotFile() {
+    }
+
+    public static void write(MemberColumnIndex index, long watermark, Path file) throws IOException {
+        SnapshotFiles.write(file, out -> {
+            int size = index.size();
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(size);
+            out.writeLong(watermark);
+            out.writeLong(System.currentTimeMillis());
+
+            for (int v : index.ages()) {
+                out.writeInt(v);
+            }
+            for (long v : index.ids()) {
+                out.writeLong(v);
+            }
+            for (long v : index.teamIds()) {
+                out.writeLong(v);
+            }
+            for (int v : index.usernameCodes()) {
+                out.writeInt(v);
+            }
+            for (int v : index.teamNameCodes()) {
+                out.writeInt(v);
+            }
+            writeDictionary(out, index.usernames());
+            writeDictionary(out, index.teamNames());
+        });
+    }
+
+    /**
+     * username 은 nullable 이므로 null 도 코드 하나를 가진다. 그 코드는 길이 0 으로 쓰고 nullCode 로 구분한다.
+     */
+    private static void writeDictionary(DataOutputStream out, StringDictionary dictionary) throws IOException {
+        byte[][] values = new byte[dictionary.size()][];
+        int nullCode = -1;
+        for (int code = 0; code < values.length; code++) {
+            String value = dictionary.decode(code);
+            if (value == null) {
+                nullCode = code;
+                values[code] = new byte[0];
+            } else {
+                values[code] = value.getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        out.writeInt(values.length);
+        out.writeInt(nullCode);
+        int offset = 0;
+        for (byte[] value : values) {
+            out.writeInt(offset);
+            offset += value.length;
+        }
+        out.writeInt(offset);
+        for (byte[] value : values) {
+            out.write(value);
+        }
+    }
+
+    /**
+     * @throws IOException 파일이 없거나, 형식 버전이 다르거나, CRC 가 맞지 않으면
+     */
+    public static Loaded read(Path file) throws IOException {
+        ByteBuffer buffer = SnapshotFiles.read(file, 36);
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("not a member index snapshot: " + file);
+        }
+        int version = buffer.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("unsupported snapshot version " + version + ": " + file);
+        }
+        int size = buffer.getInt();
+        long watermark = buffer.getLong();
+        long writtenAt = buffer.getLong();
+
+        int[] ages = new int[size];
+        long[] ids = new long[size];
+        long[] teamIds = new long[size];
+        int[] usernameCodes = new int[size];
+        int[] teamNameCodes = new int[size];
+        buffer.asIntBuffer().get(ages);
+        buffer.position(buffer.position() + size * 4);
+        buffer.asLongBuffer().get(ids);
+        buffer.position(buffer.position() + size * 8);
+        buffer.asLongBuffer().get(teamIds);
+        buffer.position(buffer.position() + size * 8);
+        buffer.asIntBuffer().get(usernameCodes);
+        buffer.position(buffer.position() + size * 4);
+        buffer.asIntBuffer().get(teamNameCodes);
+        buffer.position(buffer.position() + size * 4);
+
+        StringDictionary usernames = readDictionary(buffer);
+        StringDictionary teamNames = readDictionary(buffer);
+
+        MemberColumnIndex index = MemberColumnIndex.ofSorted(ages, ids, teamIds, usernameCodes, teamNameCodes,
+                usernames, teamNames);
+        return new Loaded(index, watermark, writtenAt);
+    }
+
+    private static StringDictionary readDictionary(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        int nullCode = buffer.getInt();
+        int[] offsets = new int[count + 1];
+        buffer.asIntBuffer().get(offsets);
+        buffer.position(buffer.position() + offsets.length * 4);
+
+        StringDictionary dictionary = new StringDictionary();
+        byte[] bytes = new byte[offsets[count]];
+        buffer.get(bytes);
+        for (int code = 0; code < count; code++) {
+            dictionary.encode(code == nullCode
+                    ? null
+                    : new String(bytes, offsets[code], offsets[code + 1] - offsets[code], StandardCharsets.UTF_8));
+        }
+        return dictionary;
+    }
+
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class Loaded {
+        private final MemberColumnIndex index;
+        private final long watermark;
+        private final long writtenAt;
+    }
+}
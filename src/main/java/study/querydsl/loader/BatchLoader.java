@@ -0,0 +1,133 @@
+package study.querydsl.loader;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * DataLoader 식 묶음 조회. 첫 요청이 들어오고 window 동안 모인 key 들을 batchFunction 한 번으로 조회한다.
+ * maxBatch 개가 모이면 window 를 기다리지 않고 바로 조회한다.
+ * <p>
+ * 같은 묶음 안에서 같은 key 는 한 번만 조회하고, 호출한 쪽마다 따로 future 를 돌려준다.
+ * batchFunction 결과에 없는 key 는 null 로 완료된다.
+ */
+public class BatchLoader<K, V> {
+
+    private final Function<List<K>, Map<K, V>> batchFunction;
+    private final long windowMillis;
+    private final int maxBatch;
+    private final ScheduledExecutorService scheduler;
+    private final Executor executor;
+
+    private final Object lock = new Object();
+    private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * @param scheduler window 타이머용
+     * @param executor  batchFunction 을 실행할 곳
+     */
+    public BatchLoader(Function<List<K>, Map<K, V>> batchFunction, long windowMillis, int maxBatch,
+                       ScheduledExecutorService scheduler, Executor executor) {
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("maxBatch must be positive. " + maxBatch);
+        }
+        this.batchFunction = batchFunction;
+        this.windowMillis = windowMillis;
+        this.maxBatch = maxBatch;
+        this.scheduler = scheduler;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<V> load(K key) {
+        requests.increment();
+        Map<K, CompletableFuture<V>> full = null;
+        CompletableFuture<V> shared;
+        synchronized (lock) {
+            shared = pending.get(key);
+            if (shared != null) {
+                deduplicated.increment();
+            } else {
+                shared = new CompletableFuture<>();
+                pending.put(key, shared);
+                if (pending.size() >= maxBatch) {
+                    full = takePending();
+                } else if (pending.size() == 1) {
+                    scheduledFlush = scheduler.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        // 호출한 쪽이 cancel / complete 해도 같은 key 를 기다리는 다른 호출에 영향이 없게 한다.
+        return shared.thenApply(Function.identity());
+    }
+
+    /**
+     * window 를 기다리지 않고 지금까지 모인 key 를 조회한다.
+     */
+    public void flush() {
+        Map<K, CompletableFuture<V>> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        dispatch(batch);
+    }
+
+    private Map<K, CompletableFuture<V>> takePending() {
+        Map<K, CompletableFuture<V>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(Map<K, CompletableFuture<V>> batch) {
+        try {
+            executor.execute(() -> run(batch));
+        } catch (RejectedExecutionException e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    private void run(Map<K, CompletableFuture<V>> batch) {
+        batches.increment();
+        try {
+            Map<K, V> loaded = batchFunction.apply(new ArrayList<>(batch.keySet()));
+            batch.forEach((key, future) -> future.complete(loaded.get(key)));
+        } catch (Throwable e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    public long requestCount() {
+        return requests.sum();
+    }
+
+    public long deduplicatedCount() {
+        return deduplicated.sum();
+    }
+
+    public long batchCount() {
+        return batches.sum();
+    }
+}
@@ -0,0 +1,150 @@
+package study.querydsl.loader;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.support.InListPadding;
+
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * id 로 member 한 건을 찾는 요청을 window 동안 모아서 member.id in (...) 한 번으로 조회한다.
+ * 여러 요청(스레드)에서 동시에 들어온 조회도 같이 묶인다.
+ * <p>
+ * 조회는 loader 스레드의 별도 트랜잭션에서 실행되므로 엔티티 대신 MemberTeamDto 를 돌려준다.
+ * 호출한 쪽 트랜잭션에서 아직 커밋되지 않은 변경은 보이지 않는다.
+ * team 은 left join 이므로 team 이 없는 member 도 나온다.
+ */
+@Component
+public class MemberBatchLoader {
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTx;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "member-batch-loader-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService workers;
+    private final BatchLoader<Long, MemberTeamDto> loader;
+
+    private final DistributionSummary batchSize;
+
+    public MemberBatchLoader(JPAQueryFactory queryFactory,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${member.loader.window-ms:2}") long windowMillis,
+                             @Value("${member.loader.max-batch:256}") int maxBatch,
+                             @Value("${member.loader.threads:2}") int threads) {
+        this.queryFactory = queryFactory;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+
+        AtomicInteger workerSeq = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "member-batch-loader-" + workerSeq.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.loader = new BatchLoader<>(this::fetch, windowMillis, maxBatch, timer, workers);
+
+        this.batchSize = DistributionSummary.builder("member.loader.batch.size")
+                                            .description("한 번에 조회한 id 개수")
+                                            .register(meterRegistry);
+        FunctionCounter.builder("member.loader.requests", loader, BatchLoader::requestCount)
+                       .register(meterRegistry);
+        FunctionCounter.builder("member.loader.deduplicated", loader, BatchLoader::deduplicatedCount)
+                       .description("같은 묶음에 이미 있던 id 라 조회에 더하지 않은 요청 수")
+                       .register(meterRegistry);
+        FunctionCounter.builder("member.loader.batches", loader, BatchLoader::batchCount)
+                       .register(meterRegistry);
+    }
+
+    /**
+     * @return 없는 id 면 빈 Optional
+     */
+    public CompletableFuture<Optional<MemberTeamDto>> load(Long id) {
+        if (id == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        return loader.load(id).thenApply(Optional::ofNullable);
+    }
+
+    /**
+     * id 여러 개를 한꺼번에 찾는다. findById 를 반복해서 부르는 대신 쓴다.
+     * 다른 요청의 조회와 같은 묶음에 들어가고, id 를 다 넣은 뒤 window 를 기다리지 않고 조회한다.
+     *
+     * @return 넘긴 id 순서대로, 없는 id 와 null 은 빠진다
+     */
+    public CompletableFuture<Map<Long, MemberTeamDto>> loadAll(Collection<Long> ids) {
+        Map<Long, CompletableFuture<MemberTeamDto>> futures = new LinkedHashMap<>();
+        for (Long id : ids) {
+            if (id != null && !futures.containsKey(id)) {
+                futures.put(id, loader.load(id));
+            }
+        }
+        if (futures.isEmpty()) {
+            return CompletableFuture.completedFuture(new LinkedHashMap<>());
+        }
+        loader.flush();
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+                                .thenApply(done -> {
+                                    Map<Long, MemberTeamDto> found = new LinkedHashMap<>();
+                                    futures.forEach((id, future) -> {
+                                        MemberTeamDto row = future.join();
+                                        if (row != null) {
+                                            found.put(id, row);
+                                        }
+                                    });
+                                    return found;
+                                });
+    }
+
+    private Map<Long, MemberTeamDto> fetch(List<Long> ids) {
+        batchSize.record(ids.size());
+        List<MemberTeamDto> rows = readOnlyTx.execute(status ->
+                queryFactory.select(new QMemberTeamDto(
+                                    member.id.as("memberId"),
+                                    member.username,
+                                    member.age,
+                                    team.id.as("teamId"),
+                                    team.name.as("teamName")))
+                            .from(member)
+                            .leftJoin(member.team, team)
+                            .where(member.id.in(InListPadding.pad(ids)))
+                            .fetch());
+        Map<Long, MemberTeamDto> byId = new HashMap<>(rows.size() * 2);
+        for (MemberTeamDto row : rows) {
+            byId.put(row.getMemberId(), row);
+        }
+        return byId;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,111 @@
+package study.querydsl.ngram;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.JPAExpressions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.repository.support.InListPadding;
+import study.querydsl.repository.support.LookupKeyTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static study.querydsl.entity.QLookupKey.lookupKey;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * MemberSearchCondition.usernameLike 를 where 절 조건으로 바꾼다.
+ * <ul>
+ *     <li>UsernameNgramService 가 fresh 하고 후보가 max-in-size 이하 : member.id in (후보 id)</li>
+ *     <li>후보가 그보다 많으면 : 후보 id 를 lookup_key 작업 테이블에 넣고 member.id in (select ...) 으로 조회한다.
+ *     읽기 전용 트랜잭션이면 insert 만 따로 커밋한다. 트랜잭션 밖에서는 지울 시점이 없으므로 like 로 조회한다.</li>
+ *     <li>인덱스가 stale(벌크 변경 직후)이거나 꺼져 있으면 like 로 조회한다.</li>
+ * </ul>
+ * 조건을 만들 때 후보를 고르므로 content 와 count 쿼리가 같은 결과를 보려면 한 요청에서 한 번만 만들어서 같이 써야 한다.
+ * 작업 테이블의 row 는 트랜잭션이 끝날 때 지워진다. (LookupKeyTable)
+ */
+@Component
+public class UsernameLikePredicate {
+
+    private final ObjectProvider<UsernameNgramService> ngramService;
+    private final LookupKeyTable lookupKeyTable;
+    private final int maxInSize;
+
+    private final Counter indexed;
+    private final Counter table;
+    private final Counter scanned;
+
+    public UsernameLikePredicate(ObjectProvider<UsernameNgramService> ngramService,
+                                 LookupKeyTable lookupKeyTable,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${member.ngram.max-in-size:1000}") int maxInSize) {
+        this.ngramService = ngramService;
+        this.lookupKeyTable = lookupKeyTable;
+        this.maxInSize = maxInSize;
+        this.indexed = Counter.builder("member.ngram.predicate")
+                              .tag("route", "index")
+                              .description("ngram 인덱스의 후보 id 로 조회한 수")
+                              .register(meterRegistry);
+        this.table = Counter.builder("member.ngram.predicate")
+                            .tag("route", "table")
+                            .register(meterRegistry);
+        this.scanned = Counter.builder("member.ngram.predicate")
+                              .tag("route", "like")
+                              .register(meterRegistry);
+    }
+
+    /**
+     * @return 조건이 없으면 null
+     */
+    public Predicate of(String usernameLike) {
+        return of(usernameLike, false);
+    }
+
+    /**
+     * ignoreCase 면 인덱스가 있는 username_lower 에 소문자 패턴으로 like 를 건다. ngram 인덱스는 원래 username 으로 만들어져 있어 쓰지 않는다.
+     */
+    public Predicate of(String usernameLike, boolean ignoreCase) {
+        UsernamePattern pattern = UsernamePattern.parse(usernameLike);
+        if (pattern == null) {
+            return null;
+        }
+        if (ignoreCase) {
+            scanned.increment();
+            return member.usernameLower.like(pattern.toLowerCase().toLikePattern(), UsernamePattern.LIKE_ESCAPE);
+        }
+
+        UsernameNgramService service = ngramService.getIfAvailable();
+        Optional<long[]> candidates = service == null ? Optional.empty() : service.candidateIds(pattern);
+        if (candidates.isPresent() && (candidates.get().length <= maxInSize || workTableAvailable())) {
+            List<Long> ids = new ArrayList<>(candidates.get().length);
+            for (long id : candidates.get()) {
+                ids.add(id);
+            }
+            if (ids.size() <= maxInSize) {
+                indexed.increment();
+                // 빈 목록은 JPQLSerializer 가 1 = 2 로 바꾼다.
+                return member.id.in(InListPadding.pad(ids));
+            }
+            table.increment();
+            long batchId = lookupKeyTable.insert(ids);
+            return member.id.in(JPAExpressions.select(lookupKey.longValue)
+                                              .from(lookupKey)
+                                              .where(lookupKey.batchId.eq(batchId)));
+        }
+
+        scanned.increment();
+        return member.username.like(pattern.toLikePattern(), UsernamePattern.LIKE_ESCAPE);
+    }
+
+    /**
+     * 검색 메서드는 읽기 전용 트랜잭션이라 UsernameBloomFilter 를 쓸 수 있다. 작업 테이블은 LookupKeyTable 이 따로 커밋한다.
+     */
+    private static boolean workTableAvailable() {
+        return TransactionSynchronizationManager.isSynchronizationActive();
+    }
+}
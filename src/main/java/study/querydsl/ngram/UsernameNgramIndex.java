@@ -0,0 +1,188 @@
+package study.querydsl.ngram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * username 의 trigram(연속한 세 글자) -> member 위치 목록 역인덱스. 불변이다.
+ * <p>
+ * username 앞뒤에 START, END 를 두 개씩 붙여서 자르므로 "m*", "*z" 처럼 짧은 prefix / suffix 도 trigram 이 된다.
+ * 패턴의 trigram 목록을 모두 가진 위치를 교집합으로 구한 뒤, 실제 username 으로 패턴을 다시 확인해서 정확한 id 만 돌려준다.
+ */
+public class UsernameNgramIndex {
+
+    private static final char START = '\u0002';
+    private static final char END = '\u0003';
+
+    // id 오름차순
+    private final long[] ids;
+    private final String[] usernames;
+    // trigram 별 위치 목록 (CSR): positions[offsets[slot] .. offsets[slot + 1])
+    private final Map<Long, Integer> slots;
+    private final int[] offsets;
+    private final int[] positions;
+
+    private UsernameNgramIndex(long[] ids, String[] usernames) {
+        this.ids = ids;
+        this.usernames = usernames;
+        this.slots = new HashMap<>();
+
+        // 1 pass: trigram 별 개수. 같은 username 안에서 반복되는 trigram 은 한 번만 센다.
+        int[] counts = new int[1024];
+        int[] lastPos = new int[1024];
+        for (int pos = 0; pos < usernames.length; pos++) {
+            for (long key : trigrams(usernames[pos], true, true)) {
+                Integer slot = slots.get(key);
+                if (slot == null) {
+                    slot = slots.size();
+                    slots.put(key, slot);
+                    if (slot == counts.length) {
+                        counts = Arrays.copyOf(counts, slot * 2);
+                        lastPos = Arrays.copyOf(lastPos, slot * 2);
+                    }
+                }
+                if (lastPos[slot] != pos + 1) {
+                    lastPos[slot] = pos + 1;
+                    counts[slot]++;
+                }
+            }
+        }
+
+        this.offsets = new int[slots.size() + 1];
+        for (int slot = 0; slot < slots.size(); slot++) {
+            offsets[slot + 1] = offsets[slot] + counts[slot];
+        }
+
+        // 2 pass: 위치 채우기. pos 순서로 넣으므로 각 목록은 오름차순이다.
+        this.positions = new int[offsets[slots.size()]];
+        int[] next = Arrays.copyOf(offsets, slots.size());
+        Arrays.fill(lastPos, 0);
+        for (int pos = 0; pos < usernames.length; pos++) {
+            for (long key : trigrams(usernames[pos], true, true)) {
+                int slot = slots.get(key);
+                if (lastPos[slot] != pos + 1) {
+                    lastPos[slot] = pos + 1;
+                    positions[next[slot]++] = pos;
+                }
+            }
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int trigramCount() {
+        return slots.size();
+    }
+
+    /**
+     * @return 패턴에 맞는 member id (오름차순). 패턴에서 trigram 을 하나도 만들 수 없으면(앵커 없는 두 글자 이하) null.
+     */
+    public long[] search(UsernamePattern pattern) {
+        Set<Long> keys = new LinkedHashSet<>();
+        List<String> literals = pattern.getLiterals();
+        for (int i = 0; i < literals.size(); i++) {
+            boolean start = i == 0 && pattern.isAnchoredStart();
+            boolean end = i == literals.size() - 1 && pattern.isAnchoredEnd();
+            keys.addAll(trigrams(literals.get(i), start, end));
+        }
+        if (keys.isEmpty()) {
+            return null;
+        }
+
+        List<int[]> postings = new ArrayList<>();
+        for (long key : keys) {
+            Integer slot = slots.get(key);
+            if (slot == null) {
+                return new long[0];
+            }
+            postings.add(new int[]{offsets[slot], offsets[slot + 1]});
+        }
+        // 짧은 목록부터 교집합
+        postings.sort(Comparator.comparingInt(range -> range[1] - range[0]));
+
+        int[] candidates = Arrays.copyOfRange(positions, postings.get(0)[0], postings.get(0)[1]);
+        int count = candidates.length;
+        for (int p = 1; p < postings.size() && count > 0; p++) {
+            count = retain(candidates, count, postings.get(p)[0], postings.get(p)[1]);
+        }
+
+        long[] result = new long[count];
+        int matched = 0;
+        for (int i = 0; i < count; i++) {
+            int pos = candidates[i];
+            if (pattern.matches(usernames[pos])) {
+                result[matched++] = ids[pos];
+            }
+        }
+        return Arrays.copyOf(result, matched);
+    }
+
+    /**
+     * candidates[0 .. count) 중 positions[from .. to) 에도 있는 것만 앞으로 모은다. 둘 다 오름차순이다.
+     */
+    private int retain(int[] candidates, int count, int from, int to) {
+        int kept = 0;
+        int j = from;
+        for (int i = 0; i < count && j < to; i++) {
+            int pos = candidates[i];
+            while (j < to && positions[j] < pos) {
+                j++;
+            }
+            if (j < to && positions[j] == pos) {
+                candidates[kept++] = pos;
+            }
+        }
+        return kept;
+    }
+
+    private static List<Long> trigrams(String value, boolean start, boolean end) {
+        StringBuilder padded = new StringBuilder(value.length() + 4);
+        if (start) {
+            padded.append(START).append(START);
+        }
+        padded.append(value);
+        if (end) {
+            padded.append(END).append(END);
+        }
+        List<Long> keys = new ArrayList<>(Math.max(0, padded.length() - 2));
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            keys.add(((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2));
+        }
+        return keys;
+    }
+
+    public static class Builder {
+
+        private final List<Object[]> rows = new ArrayList<>();
+
+        public Builder add(long id, String username) {
+            if (username != null) {
+                rows.add(new Object[]{id, username});
+            }
+            return this;
+        }
+
+        public UsernameNgramIndex build() {
+            rows.sort(Comparator.comparingLong(row -> (Long) row[0]));
+            long[] ids = new long[rows.size()];
+            String[] usernames = new String[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                ids[i] = (Long) rows.get(i)[0];
+                usernames[i] = (String) rows.get(i)[1];
+            }
+            return new UsernameNgramIndex(ids, usernames);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package study.querydsl.ngram;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.event.BulkChangedEvent;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.MemberState;
+import study.querydsl.support.RebuildScheduler;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Optional;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * UsernameNgramIndex 를 들고 member 변경 이벤트를 반영한다.
+ * <ul>
+ *     <li>단건 변경 : 인덱스는 불변이므로 바뀐 member 의 username 만 overlay 에 모아 두고, 검색할 때 인덱스 결과에 덧씌운다.
+ *     overlay 가 max-overlay 를 넘으면 다시 만든다.</li>
+ *     <li>벌크 변경 : 어떤 row 가 바뀌었는지 모르므로 stale 로 표시하고 잠시 뒤 다시 만든다.
+ *     stale 인 동안 candidateIds 는 빈 Optional 을 돌려주므로 호출하는 쪽은 like 로 조회해야 한다.</li>
+ * </ul>
+ * team 변경은 username 과 무관하므로 보지 않는다.
+ */
+@Slf4j
+@ConditionalOnProperty(name = "member.ngram.enabled", havingValue = "true")
+@Component
+public class UsernameNgramService {
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTx;
+    private final int maxOverlay;
+    private final RebuildScheduler scheduler;
+
+    private final Object lock = new Object();
+    private volatile UsernameNgramIndex index;
+    private volatile long indexedSeq = -1;
+    // 인덱스를 만든 뒤 바뀐 member 의 username. 바꿀 때마다 새로 만들어 갈아 끼운다.
+    private volatile UsernameOverlay overlay = UsernameOverlay.EMPTY;
+    private long overlaySeq;
+
+    public UsernameNgramService(JPAQueryFactory queryFactory,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${member.ngram.rebuild-delay-ms:200}") long rebuildDelayMillis,
+                                @Value("${member.ngram.max-overlay:1000}") int maxOverlay) {
+        this.queryFactory = queryFactory;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.maxOverlay = maxOverlay;
+        this.scheduler = new RebuildScheduler("username-ngram-rebuild", rebuildDelayMillis, this::rebuild);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        scheduler.schedule(0);
+    }
+
+    public boolean isFresh() {
+        return index != null && indexedSeq == scheduler.changeSeq();
+    }
+
+    /**
+     * @return 패턴에 맞는 member id (오름차순). 인덱스가 stale 이거나 패턴이 너무 짧아 인덱스로 좁힐 수 없으면 빈 Optional.
+     */
+    public Optional<long[]> candidateIds(UsernamePattern pattern) {
+        UsernameNgramIndex current;
+        UsernameOverlay changed;
+        synchronized (lock) {
+            current = index;
+            changed = overlay;
+        }
+        if (current == null || !isFresh()) {
+            return Optional.empty();
+        }
+        long[] indexed = current.search(pattern);
+        if (indexed == null) {
+            return Optional.empty();
+        }
+        if (changed.isEmpty()) {
+            return Optional.of(indexed);
+        }
+        return Optional.of(changed.apply(indexed, pattern));
+    }
+
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        MemberState state = event.getAfter() != null ? event.getAfter() : event.getBefore();
+        if (state == null) {
+            scheduler.markChanged();
+            return;
+        }
+        String username = event.getAfter() == null ? null : event.getAfter().getUsername();
+        int size;
+        synchronized (lock) {
+            overlay = overlay.with(state.getId(), username, ++overlaySeq);
+            size = overlay.size();
+        }
+        if (size > maxOverlay) {
+            scheduler.schedule(0);
+        }
+    }
+
+    @EventListener
+    public void onBulkChanged(BulkChangedEvent event) {
+        if (Member.class.isAssignableFrom(event.getEntityType())) {
+            scheduler.markChanged();
+        }
+    }
+
+    void rebuild() {
+        long seq = scheduler.changeSeq();
+        long fromOverlaySeq;
+        synchronized (lock) {
+            fromOverlaySeq = overlaySeq;
+        }
+        long start = System.currentTimeMillis();
+        UsernameNgramIndex built = readOnlyTx.execute(status -> load());
+        synchronized (lock) {
+            // 읽기 시작한 뒤에 들어온 변경은 읽은 결과에 있을 수도 없을 수도 있으므로 남겨 둔다. (다시 덮어써도 같은 값이다)
+            index = built;
+            overlay = overlay.after(fromOverlaySeq);
+            indexedSeq = seq;
+        }
+        log.info("username ngram index rebuilt. size={}, trigrams={}, {}ms",
+                built.size(), built.trigramCount(), System.currentTimeMillis() - start);
+    }
+
+    UsernameNgramIndex load() {
+        List<Tuple> rows = queryFactory.select(member.id, member.username)
+                                       .from(member)
+                                       .fetch();
+        UsernameNgramIndex.Builder builder = UsernameNgramIndex.builder();
+        for (Tuple row : rows) {
+            builder.add(row.get(member.id), row.get(member.username));
+        }
+        return builder.build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+}
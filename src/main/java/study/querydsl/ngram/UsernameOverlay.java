@@ -0,0 +1,123 @@
+package study.querydsl.ngram;
+
+import java.util.Arrays;
+
+/**
+ * 인덱스를 만든 뒤 바뀐 member id -> username (삭제는 null). 불변이고 바뀔 때마다 새로 만든다.
+ * <p>
+ * id 는 정렬된 long[] 이고 username, 넣은 순번은 같은 위치에 둔다.
+ * 인덱스 결과도 id 오름차순이므로 검색할 때 두 목록을 한 번씩만 훑어 병합하고 다시 정렬하지 않는다.
+ */
+final class UsernameOverlay {
+
+    static final UsernameOverlay EMPTY = new UsernameOverlay(new long[0], new String[0], new long[0]);
+
+    private final long[] ids;
+    private final String[] usernames;
+    // 넣은 순번. 다시 만드는 동안 들어온 변경만 새 overlay 로 넘긴다.
+    private final long[] seqs;
+
+    private UsernameOverlay(long[] ids, String[] usernames, long[] seqs) {
+        this.ids = ids;
+        this.usernames = usernames;
+        this.seqs = seqs;
+    }
+
+    boolean isEmpty() {
+        return ids.length == 0;
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    /**
+     * id 의 username 을 바꾼 새 overlay. 있던 id 면 덮어쓴다.
+     */
+    UsernameOverlay with(long id, String username, long seq) {
+        int pos = Arrays.binarySearch(ids, id);
+        if (pos >= 0) {
+            String[] nextUsernames = usernames.clone();
+            long[] nextSeqs = seqs.clone();
+            nextUsernames[pos] = username;
+            nextSeqs[pos] = seq;
+            return new UsernameOverlay(ids, nextUsernames, nextSeqs);
+        }
+        int at = -pos - 1;
+        return new UsernameOverlay(insert(ids, at, id), insert(usernames, at, username), insert(seqs, at, seq));
+    }
+
+    /**
+     * fromSeq 보다 나중에 넣은 것만 남긴다.
+     */
+    UsernameOverlay after(long fromSeq) {
+        int count = 0;
+        for (long seq : seqs) {
+            if (seq > fromSeq) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return EMPTY;
+        }
+        long[] nextIds = new long[count];
+        String[] nextUsernames = new String[count];
+        long[] nextSeqs = new long[count];
+        int next = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (seqs[i] > fromSeq) {
+                nextIds[next] = ids[i];
+                nextUsernames[next] = usernames[i];
+                nextSeqs[next] = seqs[i];
+                next++;
+            }
+        }
+        return new UsernameOverlay(nextIds, nextUsernames, nextSeqs);
+    }
+
+    /**
+     * 인덱스 결과(id 오름차순)에서 overlay 에 있는 id 를 빼고, overlay 중 패턴에 맞는 id 를 끼워 넣는다. 결과도 id 오름차순이다.
+     */
+    long[] apply(long[] indexed, UsernamePattern pattern) {
+        long[] result = new long[indexed.length + ids.length];
+        int count = 0;
+        int next = 0;
+        for (long id : indexed) {
+            while (next < ids.length && ids[next] < id) {
+                count = addMatching(result, count, next++, pattern);
+            }
+            if (next < ids.length && ids[next] == id) {
+                count = addMatching(result, count, next++, pattern);
+                continue;
+            }
+            result[count++] = id;
+        }
+        while (next < ids.length) {
+            count = addMatching(result, count, next++, pattern);
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    private int addMatching(long[] result, int count, int pos, UsernamePattern pattern) {
+        if (usernames[pos] != null && pattern.matches(usernames[pos])) {
+            result[count++] = ids[pos];
+        }
+        return count;
+    }
+
+    private static long[] insert(long[] values, int at, long value) {
+        long[] next = new long[values.length + 1];
+        System.arraycopy(values, 0, next, 0, at);
+        next[at] = value;
+        System.arraycopy(values, at, next, at + 1, values.length - at);
+        return next;
+    }
+
+    private static String[] insert(String[] values, int at, String value) {
+        String[] next = new String[values.length + 1];
+        System.arraycopy(values, 0, next, 0, at);
+        next[at] = value;
+        System.arraycopy(values, at, next, at + 1, values.length - at);
+        return next;
+    }
+}
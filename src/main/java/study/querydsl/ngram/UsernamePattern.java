@@ -0,0 +1,132 @@
+package study.querydsl.ngram;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * MemberSearchCondition.usernameLike 의 패턴. '*' 만 와일드카드이고 나머지 문자는 그대로 비교한다.
+ * <ul>
+ *     <li>member1* : member1 로 시작</li>
+ *     <li>*ber1* : ber1 을 포함</li>
+ *     <li>*1 : 1 로 끝남</li>
+ * </ul>
+ */
+@Getter
+@EqualsAndHashCode(of = "pattern")
+public final class UsernamePattern {
+
+    /**
+     * toLikePattern 이 쓰는 escape 문자
+     */
+    public static final char LIKE_ESCAPE = '!';
+
+    private final String pattern;
+    // '*' 사이의 비어 있지 않은 문자열들 (순서대로)
+    private final List<String> literals;
+    private final boolean anchoredStart;
+    private final boolean anchoredEnd;
+
+    private UsernamePattern(String pattern, List<String> literals) {
+        this.pattern = pattern;
+        this.literals = Collections.unmodifiableList(literals);
+        this.anchoredStart = !pattern.startsWith("*");
+        this.anchoredEnd = !pattern.endsWith("*");
+    }
+
+    /**
+     * @return 조건이 없으면(빈 문자열, '*' 만 있는 패턴) null
+     */
+    public static UsernamePattern parse(String pattern) {
+        if (!StringUtils.hasText(pattern)) {
+            return null;
+        }
+        List<String> literals = new ArrayList<>();
+        for (String literal : pattern.split("\\*")) {
+            if (!literal.isEmpty()) {
+                literals.add(literal);
+            }
+        }
+        return literals.isEmpty() ? null : new UsernamePattern(pattern, literals);
+    }
+
+    /**
+     * 대소문자 무시 검색용. 소문자로 바꾼 패턴을 돌려준다. 비교할 username 도 소문자로 바꿔서 넘겨야 한다.
+     */
+    public UsernamePattern toLowerCase() {
+        return parse(pattern.toLowerCase(Locale.ROOT));
+    }
+
+    public boolean matches(String username) {
+        if (username == null) {
+            return false;
+        }
+        int last = literals.size() - 1;
+        if (last == 0 && anchoredStart && anchoredEnd) {
+            return username.equals(literals.get(0));
+        }
+
+        int first = 0;
+        int from = 0;
+        int end = username.length();
+        if (anchoredStart) {
+            if (!username.startsWith(literals.get(0))) {
+                return false;
+            }
+            from = literals.get(0).length();
+            first = 1;
+        }
+        if (anchoredEnd) {
+            String suffix = literals.get(last);
+            if (end - suffix.length() < from || !username.endsWith(suffix)) {
+                return false;
+            }
+            end -= suffix.length();
+            last--;
+        }
+        for (int i = first; i <= last; i++) {
+            String literal = literals.get(i);
+            int at = username.indexOf(literal, from);
+            if (at < 0 || at + literal.length() > end) {
+                return false;
+            }
+            from = at + literal.length();
+        }
+        return true;
+    }
+
+    /**
+     * LIKE_ESCAPE 로 %, _ 를 escape 한 like 패턴.
+     */
+    public String toLikePattern() {
+        StringBuilder like = new StringBuilder();
+        if (!anchoredStart) {
+            like.append('%');
+        }
+        for (int i = 0; i < literals.size(); i++) {
+            if (i > 0) {
+                like.append('%');
+            }
+            for (char c : literals.get(i).toCharArray()) {
+                if (c == LIKE_ESCAPE || c == '%' || c == '_') {
+                    like.append(LIKE_ESCAPE);
+                }
+                like.append(c);
+            }
+        }
+        if (!anchoredEnd) {
+            like.append('%');
+        }
+        return like.toString();
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
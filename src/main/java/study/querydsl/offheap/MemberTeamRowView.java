@@ -0,0 +1,76 @@
+package study.querydsl.offheap;
+
+import study.querydsl.dto.MemberTeamDto;
+
+/**
+ * OffHeapRows 의 한 행을 가리키는 flyweight. at(row) 로 위치만 바꾸므로 행마다 객체를 만들지 않는다.
+ * 숫자 값은 null 이면 hasXxx() 가 false 다.
+ */
+public final class MemberTeamRowView {
+
+    private final OffHeapRows rows;
+    private int offset;
+
+    MemberTeamRowView(OffHeapRows rows) {
+        this.rows = rows;
+    }
+
+    public MemberTeamRowView at(int row) {
+        this.offset = rows.rowOffset(row);
+        return this;
+    }
+
+    public boolean hasMemberId() {
+        return memberId() != OffHeapRows.NULL_LONG;
+    }
+
+    public long memberId() {
+        return rows.getLong(offset + OffHeapRows.MEMBER_ID);
+    }
+
+    public boolean hasAge() {
+        return age() != OffHeapRows.NULL_INT;
+    }
+
+    public int age() {
+        return rows.getInt(offset + OffHeapRows.AGE);
+    }
+
+    public boolean hasTeamId() {
+        return teamId() != OffHeapRows.NULL_LONG;
+    }
+
+    public long teamId() {
+        return rows.getLong(offset + OffHeapRows.TEAM_ID);
+    }
+
+    /**
+     * 문자열 사전 번호. null 이면 -1
+     */
+    public int usernameCode() {
+        return rows.getInt(offset + OffHeapRows.USERNAME);
+    }
+
+    public int teamNameCode() {
+        return rows.getInt(offset + OffHeapRows.TEAM_NAME);
+    }
+
+    /**
+     * String 을 새로 만든다. 직렬화에서는 바이트를 바로 쓰므로 쓰지 않는다.
+     */
+    public String username() {
+        return rows.string(usernameCode());
+    }
+
+    public String teamName() {
+        return rows.string(teamNameCode());
+    }
+
+    public MemberTeamDto toDto() {
+        return new MemberTeamDto(hasMemberId() ? memberId() : null,
+                username(),
+                hasAge() ? age() : null,
+                hasTeamId() ? teamId() : null,
+                teamName());
+    }
+}
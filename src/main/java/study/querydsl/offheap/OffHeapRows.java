@@ -0,0 +1,191 @@
+package study.querydsl.offheap;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * MemberTeamDto 목록을 direct ByteBuffer 하나에 고정 레이아웃으로 담는다. heap 에는 이 객체와 ByteBuffer 껍데기만 남는다.
+ * <pre>
+ * header  : rowCount(int) stringCount(int) maxStringBytes(int)
+ * rows    : memberId(long) age(int) teamId(long) username(int) teamName(int)  - 28 bytes x rowCount
+ * offsets : 문자열 시작 위치(int) x (stringCount + 1)
+ * strings : UTF-8 바이트
+ * </pre>
+ * username / teamName 은 이 결과 안에서만 쓰는 사전의 번호다. null 은 id/age 는 MIN_VALUE, 문자열은 -1 로 적는다.
+ * 만든 뒤에는 절대 위치로 읽기만 하므로 여러 스레드가 같이 읽어도 된다.
+ */
+@JsonSerialize(using = OffHeapRowsSerializer.class)
+public final class OffHeapRows {
+
+    static final int HEADER_BYTES = 12;
+    static final int ROW_BYTES = 28;
+
+    static final int MEMBER_ID = 0;
+    static final int AGE = 8;
+    static final int TEAM_ID = 12;
+    static final int USERNAME = 20;
+    static final int TEAM_NAME = 24;
+
+    static final long NULL_LONG = Long.MIN_VALUE;
+    static final int NULL_INT = Integer.MIN_VALUE;
+    static final int NULL_STRING = -1;
+
+    private final ByteBuffer buffer;
+    private final int rowCount;
+    private final int maxStringBytes;
+    private final int offsetsStart;
+    private final int stringsStart;
+
+    private OffHeapRows(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.rowCount = buffer.getInt(0);
+        this.maxStringBytes = buffer.getInt(8);
+        this.offsetsStart = HEADER_BYTES + rowCount * ROW_BYTES;
+        this.stringsStart = offsetsStart + (buffer.getInt(4) + 1) * 4;
+    }
+
+    public static OffHeapRows of(List<MemberTeamDto> rows) {
+        Map<String, Integer> codes = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int[] usernames = new int[rows.size()];
+        int[] teamNames = new int[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            usernames[i] = code(rows.get(i).getUsername(), codes, strings);
+            teamNames[i] = code(rows.get(i).getTeamName(), codes, strings);
+        }
+
+        int stringBytes = 0;
+        int maxStringBytes = 0;
+        for (byte[] string : strings) {
+            stringBytes += string.length;
+            maxStringBytes = Math.max(maxStringBytes, string.length);
+        }
+        int size = HEADER_BYTES + rows.size() * ROW_BYTES + (strings.size() + 1) * 4 + stringBytes;
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.putInt(rows.size()).putInt(strings.size()).putInt(maxStringBytes);
+        for (int i = 0; i < rows.size(); i++) {
+            MemberTeamDto row = rows.get(i);
+            buffer.putLong(row.getMemberId() != null ? row.getMemberId() : NULL_LONG)
+                  .putInt(row.getAge() != null ? row.getAge() : NULL_INT)
+                  .putLong(row.getTeamId() != null ? row.getTeamId() : NULL_LONG)
+                  .putInt(usernames[i])
+                  .putInt(teamNames[i]);
+        }
+        int offset = 0;
+        for (byte[] string : strings) {
+            buffer.putInt(offset);
+            offset += string.length;
+        }
+        buffer.putInt(offset);
+        for (byte[] string : strings) {
+            buffer.put(string);
+        }
+        buffer.flip();
+        return new OffHeapRows(buffer);
+    }
+
+    private static int code(String value, Map<String, Integer> codes, List<byte[]> strings) {
+        if (value == null) {
+            return NULL_STRING;
+        }
+        return codes.computeIfAbsent(value, v -> {
+            strings.add(v.getBytes(StandardCharsets.UTF_8));
+            return strings.size() - 1;
+        });
+    }
+
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * off-heap 에 잡힌 바이트 수
+     */
+    public int capacityBytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * 행을 옮겨 다니며 읽는 flyweight. 스레드마다 따로 만들어 쓴다.
+     */
+    public MemberTeamRowView view() {
+        return new MemberTeamRowView(this);
+    }
+
+    public Set<Long> teamIds() {
+        Set<Long> teamIds = new HashSet<>();
+        for (int row = 0; row < rowCount; row++) {
+            long teamId = buffer.getLong(rowOffset(row) + TEAM_ID);
+            if (teamId != NULL_LONG) {
+                teamIds.add(teamId);
+            }
+        }
+        return teamIds;
+    }
+
+    /**
+     * heap 객체로 다시 만든다. 테스트나 디버깅용.
+     */
+    public List<MemberTeamDto> toList() {
+        List<MemberTeamDto> result = new ArrayList<>(rowCount);
+        MemberTeamRowView view = view();
+        for (int row = 0; row < rowCount; row++) {
+            result.add(view.at(row).toDto());
+        }
+        return result;
+    }
+
+    int rowOffset(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("row=" + row + ", size=" + rowCount);
+        }
+        return HEADER_BYTES + row * ROW_BYTES;
+    }
+
+    long getLong(int offset) {
+        return buffer.getLong(offset);
+    }
+
+    int getInt(int offset) {
+        return buffer.getInt(offset);
+    }
+
+    int maxStringBytes() {
+        return maxStringBytes;
+    }
+
+    int stringLength(int code) {
+        return buffer.getInt(offsetsStart + (code + 1) * 4) - buffer.getInt(offsetsStart + code * 4);
+    }
+
+    /**
+     * code 번 문자열의 UTF-8 바이트를 dst 에 복사하고 길이를 돌려준다.
+     */
+    int copyString(int code, byte[] dst) {
+        int start = buffer.getInt(offsetsStart + code * 4);
+        int length = stringLength(code);
+        for (int i = 0; i < length; i++) {
+            dst[i] = buffer.get(stringsStart + start + i);
+        }
+        return length;
+    }
+
+    String string(int code) {
+        if (code == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[stringLength(code)];
+        copyString(code, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,99 @@
+package study.querydsl.offheap;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.UTF8JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * OffHeapRows 를 MemberTeamDto 목록과 같은 JSON 배열로 쓴다. 행마다 DTO 를 만들지 않고 off-heap 에서 바로 읽는다.
+ * 응답 스트림(UTF8JsonGenerator)이면 문자열도 UTF-8 바이트 그대로 쓰고, 아니면(writeValueAsString 등) 결과 안에서 한 번만 디코딩한다.
+ */
+public class OffHeapRowsSerializer extends JsonSerializer<OffHeapRows> {
+
+    @Override
+    public void serialize(OffHeapRows rows, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        StringField strings = gen instanceof UTF8JsonGenerator ? new Utf8Strings(rows) : new DecodedStrings(rows);
+        MemberTeamRowView view = rows.view();
+
+        gen.writeStartArray();
+        for (int row = 0; row < rows.size(); row++) {
+            view.at(row);
+            gen.writeStartObject();
+            gen.writeFieldName("memberId");
+            if (view.hasMemberId()) {
+                gen.writeNumber(view.memberId());
+            } else {
+                gen.writeNull();
+            }
+            gen.writeFieldName("username");
+            strings.write(gen, view.usernameCode());
+            gen.writeFieldName("age");
+            if (view.hasAge()) {
+                gen.writeNumber(view.age());
+            } else {
+                gen.writeNull();
+            }
+            gen.writeFieldName("teamId");
+            if (view.hasTeamId()) {
+                gen.writeNumber(view.teamId());
+            } else {
+                gen.writeNull();
+            }
+            gen.writeFieldName("teamName");
+            strings.write(gen, view.teamNameCode());
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
+
+    private interface StringField {
+        void write(JsonGenerator gen, int code) throws IOException;
+    }
+
+    private static class Utf8Strings implements StringField {
+        private final OffHeapRows rows;
+        private final byte[] scratch;
+
+        private Utf8Strings(OffHeapRows rows) {
+            this.rows = rows;
+            this.scratch = new byte[rows.maxStringBytes()];
+        }
+
+        @Override
+        public void write(JsonGenerator gen, int code) throws IOException {
+            if (code == OffHeapRows.NULL_STRING) {
+                gen.writeNull();
+                return;
+            }
+            int length = rows.copyString(code, scratch);
+            gen.writeUTF8String(scratch, 0, length);
+        }
+    }
+
+    private static class DecodedStrings implements StringField {
+        private final OffHeapRows rows;
+        private final byte[] scratch;
+        private final Map<Integer, String> decoded = new HashMap<>();
+
+        private DecodedStrings(OffHeapRows rows) {
+            this.rows = rows;
+            this.scratch = new byte[rows.maxStringBytes()];
+        }
+
+        @Override
+        public void write(JsonGenerator gen, int code) throws IOException {
+            if (code == OffHeapRows.NULL_STRING) {
+                gen.writeNull();
+                return;
+            }
+            String value = decoded.computeIfAbsent(code, c -> new String(scratch, 0, rows.copyString(c, scratch), StandardCharsets.UTF_8));
+            gen.writeString(value);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package study.querydsl.offheap;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.event.BulkChangedEvent;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.TeamChangedEvent;
+import study.querydsl.search.FlightKey;
+import study.querydsl.search.MemberSearchCache;
+import study.querydsl.search.MemberSearchKey;
+import study.querydsl.search.MemberSearchRouter;
+import study.querydsl.search.SingleFlight;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 검색 결과를 OffHeapRows 로 캐시한다. 결과가 큰 검색을 오래 들고 있어도 heap 에는 거의 남지 않는다.
+ * 캐시는 off-heap 바이트 합계(member.offheap.max-bytes)로 제한하고, 무효화 규칙은 MemberSearchService 와 같다.
+ * <p>
+ * 내보낸 entry 의 메모리는 ByteBuffer 가 GC 될 때 풀린다. 직렬화 중인 결과를 내보내도 안전하게 읽을 수 있게 하려고 직접 해제하지 않는다.
+ */
+@Service
+public class OffHeapSearchService {
+
+    private final MemberSearchRouter router;
+
+    private final SingleFlight<FlightKey, OffHeapRows> flight = new SingleFlight<>();
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "member-offheap-cache-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final MemberSearchCache<OffHeapRows> cache;
+
+    public OffHeapSearchService(MemberSearchRouter router,
+                                MeterRegistry meterRegistry,
+                                @Value("${member.offheap.max-bytes:268435456}") long maxBytes,
+                                @Value("${member.search.cache.refresh-after-ms:30000}") long refreshAfterMillis,
+                                @Value("${member.search.cache.expire-after-ms:600000}") long expireAfterMillis,
+                                @Value("${member.search.cache.hot-hits:10}") int hotHits) {
+        this.router = router;
+        this.cache = new MemberSearchCache<>(Integer.MAX_VALUE, maxBytes, OffHeapRows::capacityBytes,
+                refreshAfterMillis, expireAfterMillis, hotHits, OffHeapRows::teamIds, refreshExecutor);
+
+        FunctionCounter.builder("member.offheap.cache.hits", cache, MemberSearchCache::hitCount).register(meterRegistry);
+        FunctionCounter.builder("member.offheap.cache.misses", cache, MemberSearchCache::missCount).register(meterRegistry);
+        FunctionCounter.builder("member.offheap.cache.evictions", cache, MemberSearchCache::evictionCount).register(meterRegistry);
+        FunctionCounter.builder("member.offheap.cache.invalidations", cache, MemberSearchCache::invalidationCount).register(meterRegistry);
+        Gauge.builder("member.offheap.cache.size", cache, MemberSearchCache::size).register(meterRegistry);
+        Gauge.builder("member.offheap.cache.bytes", cache, MemberSearchCache::weight)
+             .description("캐시에 남아 있는 결과의 off-heap 바이트 합계")
+             .register(meterRegistry);
+    }
+
+    public OffHeapRows search(MemberSearchCondition cond) {
+        return cache.get(MemberSearchKey.of(cond), this::load);
+    }
+
+    private OffHeapRows load(MemberSearchKey key) {
+        // 로딩 중에 만든 DTO 는 바로 버려지므로 young 영역에서 정리된다.
+        return flight.execute(FlightKey.of(key, cache), () -> OffHeapRows.of(router.search(key)));
+    }
+
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        cache.onMemberChanged(event);
+    }
+
+    @EventListener
+    public void onTeamChanged(TeamChangedEvent event) {
+        cache.onTeamChanged(event);
+    }
+
+    @EventListener
+    public void onBulkChanged(BulkChangedEvent event) {
+        cache.onBulkChanged(event);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,113 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.sql.SQLExpressions;
+import com.querydsl.sql.SQLQueryFactory;
+import com.querydsl.sql.WindowFunction;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberAgeVsTeamDto;
+import study.querydsl.dto.MemberRankDto;
+import study.querydsl.dto.QMemberAgeVsTeamDto;
+import study.querydsl.dto.QMemberRankDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static study.querydsl.repository.sql.SMember.member;
+import static study.querydsl.repository.sql.STeam.team;
+
+/**
+ * team 단위 분석 조회. JPAExpressions 상관 서브쿼리는 바깥 row 마다 member 를 다시 읽으므로
+ * querydsl-sql 의 window function 으로 member 를 한 번만 읽는다.
+ * team 과 inner join 하므로 team 이 없는 member 는 나오지 않는다.
+ * <p>
+ * SQLQuery 는 Hibernate 를 거치지 않으므로 JPQL 처럼 auto flush 가 일어나지 않는다.
+ * 같은 트랜잭션에서 바꾼 엔티티가 아직 flush 되지 않았으면 보이지 않으니, 필요하면 호출 전에 em.flush() 해야 한다.
+ */
+@Repository
+public class MemberAnalyticsRepository {
+
+    private final SQLQueryFactory sqlQueryFactory;
+
+    public MemberAnalyticsRepository(SQLQueryFactory sqlQueryFactory) {
+        this.sqlQueryFactory = sqlQueryFactory;
+    }
+
+    /**
+     * team 안에서 age 내림차순 순위. 같은 age 는 같은 순위다. (rank)
+     * @return team id, 순위, member id 오름차순
+     */
+    @Transactional(readOnly = true)
+    public List<MemberRankDto> rankWithinTeam() {
+        return sqlQueryFactory.select(new QMemberRankDto(
+                                      member.memberId,
+                                      member.username,
+                                      member.age,
+                                      team.id,
+                                      team.name,
+                                      SQLExpressions.rank().over()
+                                                    .partitionBy(member.teamId)
+                                                    .orderBy(member.age.desc())))
+                              .from(member)
+                              .join(team).on(team.id.eq(member.teamId))
+                              .orderBy(team.id.asc(), member.age.desc(), member.memberId.asc())
+                              .fetch();
+    }
+
+    /**
+     * member age 와 소속 team 의 평균 age.
+     * @return team id, member id 오름차순
+     */
+    @Transactional(readOnly = true)
+    public List<MemberAgeVsTeamDto> ageVsTeamAverage() {
+        // int 평균은 DB 에 따라 정수로 잘리므로 double 로 바꿔서 평균을 낸다.
+        return sqlQueryFactory.select(new QMemberAgeVsTeamDto(
+                                      member.memberId,
+                                      member.username,
+                                      member.age,
+                                      team.id,
+                                      team.name,
+                                      SQLExpressions.avg(member.age.castToNum(Double.class)).over()
+                                                    .partitionBy(member.teamId)))
+                              .from(member)
+                              .join(team).on(team.id.eq(member.teamId))
+                              .orderBy(team.id.asc(), member.memberId.asc())
+                              .fetch();
+    }
+
+    /**
+     * team 별 age 가 많은 member n 명. age 가 같으면 member id 가 작은 쪽이 앞선다. (row_number)
+     * @return team id, 순위 오름차순. rank 는 1 .. n 이다.
+     */
+    @Transactional(readOnly = true)
+    public List<MemberRankDto> topNPerTeam(int n) {
+        if (n <= 0) {
+            return new ArrayList<>();
+        }
+        WindowFunction<Long> rowNumber = SQLExpressions.rowNumber().over()
+                                                       .partitionBy(member.teamId)
+                                                       .orderBy(member.age.desc(), member.memberId.asc());
+
+        // where 절에서 window function 을 쓸 수 없으므로 인라인 뷰에서 번호를 매기고 바깥에서 자른다.
+        PathBuilder<Object> ranked = new PathBuilder<>(Object.class, "ranked");
+        NumberPath<Long> rankedTeamId = ranked.getNumber("team_id", Long.class);
+        NumberPath<Long> rn = ranked.getNumber("rn", Long.class);
+
+        return sqlQueryFactory.select(new QMemberRankDto(
+                                      ranked.getNumber("member_id", Long.class),
+                                      ranked.getString("username"),
+                                      ranked.getNumber("age", Integer.class),
+                                      team.id,
+                                      team.name,
+                                      rn))
+                              .from(SQLExpressions.select(member.memberId, member.username, member.age, member.teamId, rowNumber.as("rn"))
+                                                  .from(member)
+                                                  .where(member.teamId.isNotNull()), ranked)
+                              .join(team).on(team.id.eq(rankedTeamId))
+                              .where(rn.loe((long) n))
+                              .orderBy(team.id.asc(), rn.asc())
+                              .fetch();
+    }
+}
@@ -1,31 +1,54 @@
 package study.querydsl.repository;
 
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.ExpressionUtils;
 import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.CaseBuilder;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
+import study.querydsl.bloom.UsernameBloomFilter;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.ngram.UsernameLikePredicate;
+import study.querydsl.view.MemberTeamViewPaths;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 
 import static study.querydsl.entity.QMember.*;
+import static study.querydsl.entity.QMemberTeamView.memberTeamView;
 import static study.querydsl.entity.QTeam.*;
 
+/**
+ * 검색 메서드는 읽기 전용 트랜잭션에서 실행한다. UsernameBloomFilter 를 쓸 수 있고, usernameLike 의 lookup_key 작업 테이블은 따로 커밋된다. (UsernameLikePredicate)
+ */
 @Repository
 public class MemberJPARepository {
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final ObjectProvider<UsernameBloomFilter> usernameFilter;
+    private final UsernameLikePredicate usernameLike;
 
-    public MemberJPARepository(EntityManager em) {
+    public MemberJPARepository(EntityManager em, JPAQueryFactory queryFactory,
+                               ObjectProvider<UsernameBloomFilter> usernameFilter,
+                               UsernameLikePredicate usernameLike) {
         this.em = em;
-        this.queryFactory = new JPAQueryFactory(em);
+        this.queryFactory = queryFactory;
+        this.usernameFilter = usernameFilter;
+        this.usernameLike = usernameLike;
     }
 
     public void save(Member member) {
@@ -50,28 +73,37 @@ public class MemberJPARepository {
     }
 
     public List<Member> findByUsername(String username) {
+        if (definitelyAbsent(username)) {
+            return new ArrayList<>();
+        }
         // 컴파일 시점에 오류가 나지 않음.
         List<Member> members = em.createQuery("select m from Member m where username = :username", Member.class)
                                  .setParameter("username", username)
                                  .getResultList();
 
-        return members;
+        return recordLookup(username, members);
     }
 
     public List<Member> findByUsernameQueryDsl(String username) {
+        if (definitelyAbsent(username)) {
+            return new ArrayList<>();
+        }
         // queryDsl의 경우 컴파일 시점에 오류가 남.
-        return queryFactory.selectFrom(member)
-                           .where(member.username.eq(username))
-                           .fetch();
+        return recordLookup(username, queryFactory.selectFrom(member)
+                                                  .where(member.username.eq(username))
+                                                  .fetch());
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByCondition(MemberSearchCondition cond) {
+        if (definitelyAbsent(cond)) {
+            return new ArrayList<>();
+        }
 
         BooleanBuilder builder = new BooleanBuilder();
 
-        if (StringUtils.hasText(cond.getUsername())) {
-            builder.and(member.username.eq(cond.getUsername()));
-        }
+        builder.and(usernameEq(cond.getUsername(), cond.isUsernameIgnoreCase()));
+        builder.and(usernameLike.of(cond.getUsernameLike(), cond.isUsernameIgnoreCase()));
         if (StringUtils.hasText(cond.getTeamName())) {
             builder.and(team.name.eq(cond.getTeamName()));
         }
@@ -95,7 +127,11 @@ public class MemberJPARepository {
                            .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> searchByConditionWhere(MemberSearchCondition cond) {
+        if (definitelyAbsent(cond)) {
+            return new ArrayList<>();
+        }
         return queryFactory.select(new QMemberTeamDto(
                                    member.id.as("memberId"),
                                    member.username,
@@ -106,7 +142,8 @@ public class MemberJPARepository {
                            .from(member)
                            .join(member.team, team)
                            .where(
-                                   usernameEq(cond.getUsername()),
+                                   usernameEq(cond.getUsername(), cond.isUsernameIgnoreCase()),
+                                   usernameLike.of(cond.getUsernameLike(), cond.isUsernameIgnoreCase()),
                                    teamNameEq(cond.getTeamName()),
                                    ageGoe(cond.getAgeGoe()),
                                    ageLoe(cond.getAgeLoe())
@@ -114,11 +151,126 @@ public class MemberJPARepository {
                            .fetch();
     }
 
+    /**
+     * searchByConditionWhere 와 같은 결과를 team join 없이 member_team_view 에서 조회한다.
+     * 조건은 같은 메서드로 만들고 경로만 view 로 바꾼다. member.view.enabled 가 꺼져 있으면 view 가 채워지지 않는다.
+     */
+    @Transactional(readOnly = true)
+    public List<MemberTeamDto> searchByConditionView(MemberSearchCondition cond) {
+        if (definitelyAbsent(cond)) {
+            return new ArrayList<>();
+        }
+        Predicate where = ExpressionUtils.allOf(
+                usernameEq(cond.getUsername(), cond.isUsernameIgnoreCase()),
+                usernameLike.of(cond.getUsernameLike(), cond.isUsernameIgnoreCase()),
+                teamNameEq(cond.getTeamName()),
+                ageGoe(cond.getAgeGoe()),
+                ageLoe(cond.getAgeLoe()));
+        return queryFactory.select(new QMemberTeamDto(
+                                   memberTeamView.memberId,
+                                   memberTeamView.username,
+                                   memberTeamView.age,
+                                   memberTeamView.teamId,
+                                   memberTeamView.teamName
+                           ))
+                           .from(memberTeamView)
+                           // inner join 과 같게 team 이 없는 member 는 뺀다.
+                           .where(memberTeamView.teamId.isNotNull(), MemberTeamViewPaths.rebind(where))
+                           .fetch();
+    }
+
+    /**
+     * 조건들 중 하나라도 맞는 member 를 쿼리 한 번으로 조회한다. (조건마다 where 절을 and 로 묶고 그것들을 or 로 묶는다)
+     * 어느 조건에 맞는 row 인지는 구분하지 않으므로 호출하는 쪽에서 나눠야 한다.
+     */
+    @Transactional(readOnly = true)
+    public List<MemberTeamDto> searchByAnyCondition(List<MemberSearchCondition> conds) {
+        BooleanBuilder any = new BooleanBuilder();
+        boolean unfiltered = false;
+        for (MemberSearchCondition cond : conds) {
+            if (definitelyAbsent(cond)) {
+                continue;
+            }
+            Predicate all = ExpressionUtils.allOf(
+                    usernameEq(cond.getUsername(), cond.isUsernameIgnoreCase()),
+                    usernameLike.of(cond.getUsernameLike(), cond.isUsernameIgnoreCase()),
+                    teamNameEq(cond.getTeamName()),
+                    ageGoe(cond.getAgeGoe()),
+                    ageLoe(cond.getAgeLoe()));
+            if (all == null) {
+                // 조건이 없는 검색이 하나라도 있으면 전체를 조회해야 한다.
+                unfiltered = true;
+                break;
+            }
+            any.or(all);
+        }
+        if (!unfiltered && !any.hasValue()) {
+            return new ArrayList<>();
+        }
+
+        return queryFactory.select(new QMemberTeamDto(
+                                   member.id.as("memberId"),
+                                   member.username,
+                                   member.age,
+                                   team.id.as("teamId"),
+                                   team.name.as("teamName")
+                           ))
+                           .from(member)
+                           .join(member.team, team)
+                           .where(unfiltered ? null : any)
+                           .fetch();
+    }
+
+    /**
+     * 조건에 맞는 member 를 age 구간별로 센다. bounds 는 오름차순이고 결과 i 번째는 [bounds[i - 1], bounds[i]) 구간이다.
+     * row 를 가져와서 세지 않고 group by case 쿼리 한 번으로 구간별 count 만 받는다.
+     */
+    @Transactional(readOnly = true)
+    public long[] ageHistogram(MemberSearchCondition cond, int[] bounds) {
+        if (bounds.length == 0) {
+            throw new IllegalArgumentException("bounds is empty");
+        }
+        long[] counts = new long[bounds.length + 1];
+        if (definitelyAbsent(cond)) {
+            return counts;
+        }
+
+        // 경계값을 파라미터로 넘기면 select 와 group by 의 case 가 서로 다른 식이 되어 DB 가 거부하므로 리터럴로 넣는다.
+        CaseBuilder.Cases<Integer, NumberExpression<Integer>> cases = null;
+        for (int i = 0; i < bounds.length; i++) {
+            BooleanExpression below = member.age.lt(literal(bounds[i]));
+            cases = cases == null ? new CaseBuilder().when(below).then(literal(i)) : cases.when(below).then(literal(i));
+        }
+        NumberExpression<Integer> bucket = cases.otherwise(literal(bounds.length));
+
+        List<Tuple> rows = queryFactory.select(bucket, member.count())
+                                       .from(member)
+                                       .join(member.team, team)
+                                       .where(
+                                               usernameEq(cond.getUsername(), cond.isUsernameIgnoreCase()),
+                                               usernameLike.of(cond.getUsernameLike(), cond.isUsernameIgnoreCase()),
+                                               teamNameEq(cond.getTeamName()),
+                                               ageGoe(cond.getAgeGoe()),
+                                               ageLoe(cond.getAgeLoe())
+                                       )
+                                       .groupBy(bucket)
+                                       .fetch();
+        for (Tuple row : rows) {
+            counts[row.get(0, Number.class).intValue()] = row.get(1, Long.class);
+        }
+        return counts;
+    }
+
+    @Transactional(readOnly = true)
     public List<Member> searchMembers(MemberSearchCondition cond) {
+        if (definitelyAbsent(cond)) {
+            return new ArrayList<>();
+        }
         return queryFactory.selectFrom(member)
                            .join(member.team, team)
                            .where(
-                                   usernameEq(cond.getUsername()),
+                                   usernameEq(cond.getUsername(), cond.isUsernameIgnoreCase()),
+                                   usernameLike.of(cond.getUsernameLike(), cond.isUsernameIgnoreCase()),
                                    teamNameEq(cond.getTeamName()),
                                    ageGoe(cond.getAgeGoe()),
                                    ageLoe(cond.getAgeLoe())
@@ -126,8 +278,35 @@ public class MemberJPARepository {
                            .fetch();
     }
 
-    private Predicate usernameEq(String username) {
-        return StringUtils.hasText(username) ? member.username.eq(username) : null;
+    /**
+     * UsernameBloomFilter 가 켜져 있고 그런 username 은 없다고 확실히 답하면 true. 이때는 DB 를 조회하지 않는다.
+     */
+    private boolean definitelyAbsent(String username) {
+        UsernameBloomFilter filter = usernameFilter.getIfAvailable();
+        return filter != null && StringUtils.hasText(username) && !filter.mightContain(username);
+    }
+
+    /**
+     * 필터에는 username 이 그대로 들어 있으므로 대소문자 무시 검색에는 쓰지 않는다.
+     */
+    private boolean definitelyAbsent(MemberSearchCondition cond) {
+        return !cond.isUsernameIgnoreCase() && definitelyAbsent(cond.getUsername());
+    }
+
+    private List<Member> recordLookup(String username, List<Member> members) {
+        UsernameBloomFilter filter = usernameFilter.getIfAvailable();
+        if (filter != null && members.isEmpty() && StringUtils.hasText(username)) {
+            filter.recordEmptyLookup(username);
+        }
+        return members;
+    }
+
+    private Predicate usernameEq(String username, boolean ignoreCase) {
+        if (!StringUtils.hasText(username)) {
+            return null;
+        }
+        // lower(username) 으로 비교하면 인덱스를 못 타므로 인덱스가 있는 username_lower 와 비교한다.
+        return ignoreCase ? member.usernameLower.eq(username.toLowerCase(Locale.ROOT)) : member.username.eq(username);
     }
 
     private Predicate teamNameEq(String teamName) {
@@ -142,5 +321,7 @@ public class MemberJPARepository {
         return ageLoe != null ? member.age.loe(ageLoe) : null;
     }
 
-
+    private static NumberExpression<Integer> literal(int value) {
+        return Expressions.numberTemplate(Integer.class, String.valueOf(value));
+    }
 }
@@ -0,0 +1,125 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.support.InListPadding;
+import study.querydsl.repository.support.LookupKeyTable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static study.querydsl.entity.QLookupKey.lookupKey;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * member id 나 username 여러 개로 한 번에 조회한다.
+ * <ul>
+ *     <li>in-threshold 개 이하 : IN 목록을 2 의 거듭제곱 크기로 채워서(InListPadding) 실행 계획을 재사용한다.</li>
+ *     <li>그보다 많으면 : 값을 lookup_key 작업 테이블에 batch insert 하고 member 와 join 한 뒤 지운다. (LookupKeyTable)</li>
+ * </ul>
+ * 작업 테이블을 쓰는 insert / select / delete 가 같은 커넥션에서 실행되어야 하므로 트랜잭션 안에서 실행한다.
+ * 조회가 실패해도 넣은 row 는 롤백되거나 커밋 직전에 지워진다.
+ * team 과 inner join 하므로 team 이 없는 member 는 나오지 않는다.
+ */
+@Repository
+public class MemberLookupRepository {
+
+    private final JPAQueryFactory queryFactory;
+    private final LookupKeyTable lookupKeyTable;
+    private final int inThreshold;
+
+    private final Counter inRoute;
+    private final Counter tableRoute;
+    private final DistributionSummary lookupSize;
+
+    public MemberLookupRepository(JPAQueryFactory queryFactory,
+                                  LookupKeyTable lookupKeyTable,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${member.lookup.in-threshold:1024}") int inThreshold) {
+        this.queryFactory = queryFactory;
+        this.lookupKeyTable = lookupKeyTable;
+        this.inThreshold = inThreshold;
+        this.inRoute = Counter.builder("member.lookup.route").tag("route", "in").register(meterRegistry);
+        this.tableRoute = Counter.builder("member.lookup.route").tag("route", "table").register(meterRegistry);
+        this.lookupSize = DistributionSummary.builder("member.lookup.size")
+                                             .description("중복을 뺀 조회 값 개수")
+                                             .register(meterRegistry);
+    }
+
+    /**
+     * @return member id 오름차순
+     */
+    @Transactional
+    public List<MemberTeamDto> findByIds(Collection<Long> ids) {
+        List<Long> values = InListPadding.distinct(ids);
+        lookupSize.record(values.size());
+        if (values.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (values.size() <= inThreshold) {
+            inRoute.increment();
+            return fetch(select().from(member), member.id.in(InListPadding.pad(values)));
+        }
+
+        tableRoute.increment();
+        long batchId = lookupKeyTable.insert(values);
+        try {
+            return fetch(select().from(lookupKey).join(member).on(member.id.eq(lookupKey.longValue)),
+                    lookupKey.batchId.eq(batchId));
+        } finally {
+            lookupKeyTable.release(batchId);
+        }
+    }
+
+    /**
+     * username 이 정확히 같은 member. 결과는 member id 오름차순이다.
+     */
+    @Transactional
+    public List<MemberTeamDto> findByUsernames(Collection<String> usernames) {
+        List<String> values = InListPadding.distinct(usernames);
+        lookupSize.record(values.size());
+        if (values.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (values.size() <= inThreshold) {
+            inRoute.increment();
+            return fetch(select().from(member), member.username.in(InListPadding.pad(values)));
+        }
+
+        tableRoute.increment();
+        long batchId = lookupKeyTable.insert(values);
+        try {
+            return fetch(select().from(lookupKey).join(member).on(member.username.eq(lookupKey.stringValue)),
+                    lookupKey.batchId.eq(batchId));
+        } finally {
+            lookupKeyTable.release(batchId);
+        }
+    }
+
+    private JPAQuery<MemberTeamDto> select() {
+        return queryFactory.select(new QMemberTeamDto(
+                member.id.as("memberId"),
+                member.username,
+                member.age,
+                team.id.as("teamId"),
+                team.name.as("teamName")));
+    }
+
+    private List<MemberTeamDto> fetch(JPAQuery<MemberTeamDto> query, Predicate where) {
+        return query.join(member.team, team)
+                    .where(where)
+                    .orderBy(member.id.asc())
+                    .fetch();
+    }
+}
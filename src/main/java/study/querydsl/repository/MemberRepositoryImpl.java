@@ -5,37 +5,56 @@ import com.querydsl.core.types.Predicate;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
+import study.querydsl.bloom.UsernameBloomFilter;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
+import study.querydsl.ngram.UsernameLikePredicate;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
 
+/**
+ * 검색 메서드는 읽기 전용 트랜잭션에서 실행한다. UsernameBloomFilter 를 쓸 수 있고, usernameLike 의 lookup_key 작업 테이블은 따로 커밋된다. (UsernameLikePredicate)
+ */
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
     private final JPAQueryFactory queryFactory;
+    private final ObjectProvider<UsernameBloomFilter> usernameFilter;
+    private final UsernameLikePredicate usernameLike;
 
     @PersistenceContext
     private EntityManager em;
 
-    public MemberRepositoryImpl(EntityManager em) {
-        this.queryFactory = new JPAQueryFactory(em);
+    public MemberRepositoryImpl(JPAQueryFactory queryFactory, ObjectProvider<UsernameBloomFilter> usernameFilter,
+                                UsernameLikePredicate usernameLike) {
+        this.queryFactory = queryFactory;
+        this.usernameFilter = usernameFilter;
+        this.usernameLike = usernameLike;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<MemberTeamDto> search(MemberSearchCondition cond) {
+        if (definitelyAbsent(cond)) {
+            return new ArrayList<>();
+        }
+        Predicate[] where = where(cond);
 
         return queryFactory.select(new QMemberTeamDto(member.id.as("memberId"),
                                    member.username,
@@ -44,17 +63,17 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                                    team.name.as("teamName")))
                            .from(member)
                            .join(member.team, team)
-                           .where(
-                                   usernameEq(cond.getUsername()),
-                                   teamNameEq(cond.getTeamName()),
-                                   ageGoe(cond.getAgeGoe()),
-                                   ageLoe(cond.getAgeLoe())
-                           )
+                           .where(where)
                            .fetch();
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchSimple(MemberSearchCondition cond, Pageable pageable) {
+        if (definitelyAbsent(cond)) {
+            return new PageImpl<>(new ArrayList<>(), pageable, 0);
+        }
+        Predicate[] where = where(cond);
         QueryResults<MemberTeamDto> results = queryFactory.select(new QMemberTeamDto(member.id.as("memberId"),
                                                                   member.username,
                                                                   member.age,
@@ -62,12 +81,7 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                                                                   team.name.as("teamName")))
                                                           .from(member)
                                                           .join(member.team, team)
-                                                          .where(
-                                                                  usernameEq(cond.getUsername()),
-                                                                  teamNameEq(cond.getTeamName()),
-                                                                  ageGoe(cond.getAgeGoe()),
-                                                                  ageLoe(cond.getAgeLoe())
-                                                          )
+                                                          .where(where)
                                                           .orderBy(member.username.asc()) // count 쿼리에서는 알아서 order by를 제외한다.
                                                           .offset(pageable.getOffset())
                                                           .limit(pageable.getPageSize())
@@ -80,7 +94,12 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchComplex(MemberSearchCondition cond, Pageable pageable) {
+        if (definitelyAbsent(cond)) {
+            return new PageImpl<>(new ArrayList<>(), pageable, 0);
+        }
+        Predicate[] where = where(cond);
         List<MemberTeamDto> content = queryFactory.select(
                                                           new QMemberTeamDto(member.id.as("memberId"),
                                                                   member.username,
@@ -90,12 +109,7 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                                                           ))
                                                   .from(member)
                                                   .join(member.team, team)
-                                                  .where(
-                                                          usernameEq(cond.getUsername()),
-                                                          teamNameEq(cond.getTeamName()),
-                                                          ageGoe(cond.getAgeGoe()),
-                                                          ageLoe(cond.getAgeLoe())
-                                                  )
+                                                  .where(where)
                                                   .offset(pageable.getOffset())
                                                   .limit(pageable.getPageSize())
                                                   .fetch();
@@ -103,12 +117,7 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
         long total = queryFactory.select(member)
                                  .from(member)
                                  .join(member.team, team)
-                                 .where(
-                                         usernameEq(cond.getUsername()),
-                                         teamNameEq(cond.getTeamName()),
-                                         ageGoe(cond.getAgeGoe()),
-                                         ageLoe(cond.getAgeLoe())
-                                 )
+                                 .where(where)
                                  .fetchCount();
 
         // fetchCount가 deprecated 되어 이렇게 카운트를 조회하면 될 듯 하다.
@@ -127,7 +136,12 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<MemberTeamDto> searchComplexOptimize(MemberSearchCondition cond, Pageable pageable) {
+        if (definitelyAbsent(cond)) {
+            return new PageImpl<>(new ArrayList<>(), pageable, 0);
+        }
+        Predicate[] where = where(cond);
         List<MemberTeamDto> content = queryFactory.select(
                                                           new QMemberTeamDto(member.id.as("memberId"),
                                                                   member.username,
@@ -137,12 +151,7 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                                                           ))
                                                   .from(member)
                                                   .join(member.team, team)
-                                                  .where(
-                                                          usernameEq(cond.getUsername()),
-                                                          teamNameEq(cond.getTeamName()),
-                                                          ageGoe(cond.getAgeGoe()),
-                                                          ageLoe(cond.getAgeLoe())
-                                                  )
+                                                  .where(where)
                                                   .offset(pageable.getOffset())
                                                   .limit(pageable.getPageSize())
                                                   .fetch();
@@ -160,18 +169,40 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
         JPAQuery<Long> countQuery = queryFactory.select(member.id.count())
                                            .from(member)
                                            .join(member.team, team)
-                                           .where(
-                                                   usernameEq(cond.getUsername()),
-                                                   teamNameEq(cond.getTeamName()),
-                                                   ageGoe(cond.getAgeGoe()),
-                                                   ageLoe(cond.getAgeLoe())
-                                           );
+                                           .where(where);
 
         return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchFirst);
     }
 
-    private Predicate usernameEq(String username) {
-        return StringUtils.hasText(username) ? member.username.eq(username) : null;
+    /**
+     * 요청마다 한 번만 만들어서 content 와 count 쿼리에 같이 쓴다.
+     * usernameLike 는 만들 때 ngram 후보를 고르므로 두 번 만들면 그 사이 인덱스가 바뀌어 content 와 count 가 어긋날 수 있다.
+     */
+    private Predicate[] where(MemberSearchCondition cond) {
+        return new Predicate[]{
+                usernameEq(cond.getUsername(), cond.isUsernameIgnoreCase()),
+                usernameLike.of(cond.getUsernameLike(), cond.isUsernameIgnoreCase()),
+                teamNameEq(cond.getTeamName()),
+                ageGoe(cond.getAgeGoe()),
+                ageLoe(cond.getAgeLoe())
+        };
+    }
+
+    /**
+     * 필터에는 username 이 그대로 들어 있으므로 대소문자 무시 검색에는 쓰지 않는다.
+     */
+    private boolean definitelyAbsent(MemberSearchCondition cond) {
+        UsernameBloomFilter filter = usernameFilter.getIfAvailable();
+        return filter != null && !cond.isUsernameIgnoreCase()
+                && StringUtils.hasText(cond.getUsername()) && !filter.mightContain(cond.getUsername());
+    }
+
+    private Predicate usernameEq(String username, boolean ignoreCase) {
+        if (!StringUtils.hasText(username)) {
+            return null;
+        }
+        // lower(username) 으로 비교하면 인덱스를 못 타므로 인덱스가 있는 username_lower 와 비교한다.
+        return ignoreCase ? member.usernameLower.eq(username.toLowerCase(Locale.ROOT)) : member.username.eq(username);
     }
 
     private Predicate teamNameEq(String teamName) {
@@ -0,0 +1,24 @@
+package study.querydsl.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import study.querydsl.dto.TeamMembersDto;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.List;
+
+public interface TeamRepositoryCustom {
+
+    Page<TeamMembersDto> findTeamsWithMembers(Pageable pageable);
+
+    Page<Team> findTeamsFetchMembers(Pageable pageable);
+
+    long countMembers(Long teamId);
+
+    Slice<Member> findMembers(Long teamId, Pageable pageable);
+
+    List<TeamStatsDto> findTeamStats();
+}
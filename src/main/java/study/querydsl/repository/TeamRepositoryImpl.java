@@ -0,0 +1,163 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.support.PageableExecutionUtils;
+import study.querydsl.dto.QTeamMemberDto;
+import study.querydsl.dto.QTeamMembersDto;
+import study.querydsl.dto.TeamMembersDto;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.FetchJoinPaging;
+import study.querydsl.repository.support.InListPadding;
+import study.querydsl.repository.support.SortablePaths;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.querydsl.core.group.GroupBy.groupBy;
+import static com.querydsl.core.group.GroupBy.list;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+public class TeamRepositoryImpl implements TeamRepositoryCustom {
+
+    /**
+     * /teams/with-members 가 pageable 의 sort 로 받을 수 있는 경로.
+     */
+    private static final SortablePaths TEAM_SORTABLE = SortablePaths.of(team.id, team.name);
+
+    private final JPAQueryFactory queryFactory;
+
+    public TeamRepositoryImpl(JPAQueryFactory queryFactory) {
+        this.queryFactory = queryFactory;
+    }
+
+    /**
+     * team 목록과 각 team 의 member 를 쿼리 두 번으로 조회한다.
+     * team 은 pageable 의 sort (id / name) 뒤에 team id 순, member 는 member id 순이다.
+     * <ol>
+     *     <li>페이지에 해당하는 team id 만 먼저 조회한다.</li>
+     *     <li>그 team 들과 member 를 join 한 row 를 team id 순으로 읽으면서 groupBy 로 한 번에 묶고 1 의 순서로 다시 정렬한다.</li>
+     * </ol>
+     * 허용하지 않은 property 로 정렬을 요청하면 UnsupportedSortException 을 던진다.
+     * 컬렉션 fetch join 에 offset / limit 을 걸면 Hibernate 가 전체를 읽어 메모리에서 페이징(HHH000104)하므로
+     * 페이징은 team id 에만 건다.
+     */
+    @Override
+    public Page<TeamMembersDto> findTeamsWithMembers(Pageable pageable) {
+        List<OrderSpecifier<?>> orders = TEAM_SORTABLE.toOrders(pageable.getSort());
+        orders.add(team.id.asc());
+        List<Long> teamIds = queryFactory.select(team.id)
+                                         .from(team)
+                                         .orderBy(orders.toArray(new OrderSpecifier<?>[0]))
+                                         .offset(pageable.getOffset())
+                                         .limit(pageable.getPageSize())
+                                         .fetch();
+        if (teamIds.isEmpty()) {
+            return PageableExecutionUtils.getPage(Collections.emptyList(), pageable, this::countTeams);
+        }
+
+        // member 가 없는 team 은 left join 의 null row 가 skipNulls 로 빠져서 빈 목록이 된다.
+        List<TeamMembersDto> content = queryFactory.from(team)
+                                                   .leftJoin(team.members, member)
+                                                   .where(team.id.in(InListPadding.pad(teamIds)))
+                                                   .orderBy(team.id.asc(), member.id.asc())
+                                                   .transform(groupBy(team.id).list(new QTeamMembersDto(
+                                                           team.id,
+                                                           team.name,
+                                                           list(new QTeamMemberDto(member.id, member.username, member.age).skipNulls()))));
+
+        Map<Long, Integer> positions = new HashMap<>(teamIds.size() * 2);
+        for (int i = 0; i < teamIds.size(); i++) {
+            positions.put(teamIds.get(i), i);
+        }
+        content.sort(Comparator.comparingInt((TeamMembersDto dto) -> positions.get(dto.getTeamId())));
+
+        return PageableExecutionUtils.getPage(content, pageable, this::countTeams);
+    }
+
+    /**
+     * members 를 fetch join 한 Team 엔티티 페이지. team id 로 먼저 페이징한다. (FetchJoinPaging)
+     * pageable 의 sort 는 findTeamsWithMembers 와 같은 경로만 받는다.
+     */
+    @Override
+    public Page<Team> findTeamsFetchMembers(Pageable pageable) {
+        return FetchJoinPaging.of(queryFactory, team, team.id, Team::getId)
+                              .fetchJoin(query -> query.leftJoin(team.members, member).fetchJoin())
+                              .sortable(TEAM_SORTABLE)
+                              .fetchPage(pageable);
+    }
+
+    @Override
+    public long countMembers(Long teamId) {
+        return queryFactory.select(member.count())
+                           .from(member)
+                           .where(member.team.id.eq(teamId))
+                           .fetchFirst();
+    }
+
+    /**
+     * team 의 member 를 id 순으로 한 페이지씩 읽는다. 전체 개수는 세지 않고 한 건 더 읽어서 다음 페이지가 있는지만 본다.
+     */
+    @Override
+    public Slice<Member> findMembers(Long teamId, Pageable pageable) {
+        List<Member> content = queryFactory.selectFrom(member)
+                                           .where(member.team.id.eq(teamId))
+                                           .orderBy(member.id.asc())
+                                           .offset(pageable.getOffset())
+                                           .limit(pageable.getPageSize() + 1)
+                                           .fetch();
+        boolean hasNext = content.size() > pageable.getPageSize();
+        if (hasNext) {
+            content = content.subList(0, pageable.getPageSize());
+        }
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    /**
+     * team 별 member age 집계를 member 테이블을 읽어서 구한다. (TeamStatsService 를 쓸 수 없을 때)
+     * member 가 없는 team 도 나오도록 left join 한다.
+     */
+    @Override
+    public List<TeamStatsDto> findTeamStats() {
+        NumberExpression<Long> count = member.count();
+        NumberExpression<Integer> sum = member.age.sum();
+        NumberExpression<Integer> min = member.age.min();
+        NumberExpression<Integer> max = member.age.max();
+        List<Tuple> rows = queryFactory.select(team.id, team.name, count, sum, min, max)
+                                       .from(team)
+                                       .leftJoin(team.members, member)
+                                       .groupBy(team.id, team.name)
+                                       .orderBy(team.id.asc())
+                                       .fetch();
+
+        List<TeamStatsDto> result = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            // sum 은 DB 에 따라 Integer / Long 으로 오므로 Number 로 받는다.
+            Number ageSum = row.get(3, Number.class);
+            result.add(new TeamStatsDto(row.get(team.id), row.get(team.name),
+                    row.get(count),
+                    ageSum == null ? 0 : ageSum.longValue(),
+                    row.get(min), row.get(max)));
+        }
+        return result;
+    }
+
+    private long countTeams() {
+        return queryFactory.select(team.count())
+                           .from(team)
+                           .fetchFirst();
+    }
+}
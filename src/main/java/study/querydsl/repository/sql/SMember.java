@@ -0,0 +1,36 @@
+package study.querydsl.repository.sql;
+
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.RelationalPathBase;
+
+import java.sql.Types;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+/**
+ * querydsl-sql 용 member 테이블 메타데이터. 코드 생성을 쓰지 않으므로 Member 엔티티 매핑이 바뀌면 같이 고쳐야 한다.
+ */
+public class SMember extends RelationalPathBase<SMember> {
+
+    public static final SMember member = new SMember("member");
+
+    public final NumberPath<Long> memberId = createNumber("memberId", Long.class);
+    public final StringPath username = createString("username");
+    public final NumberPath<Integer> age = createNumber("age", Integer.class);
+    public final NumberPath<Long> teamId = createNumber("teamId", Long.class);
+
+    public SMember(String variable) {
+        this(forVariable(variable));
+    }
+
+    public SMember(PathMetadata metadata) {
+        super(SMember.class, metadata, null, "member");
+        addMetadata(memberId, ColumnMetadata.named("member_id").ofType(Types.BIGINT).notNull());
+        addMetadata(username, ColumnMetadata.named("username").ofType(Types.VARCHAR).withSize(255));
+        addMetadata(age, ColumnMetadata.named("age").ofType(Types.INTEGER).notNull());
+        addMetadata(teamId, ColumnMetadata.named("team_id").ofType(Types.BIGINT));
+    }
+}
@@ -0,0 +1,32 @@
+package study.querydsl.repository.sql;
+
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.sql.ColumnMetadata;
+import com.querydsl.sql.RelationalPathBase;
+
+import java.sql.Types;
+
+import static com.querydsl.core.types.PathMetadataFactory.forVariable;
+
+/**
+ * querydsl-sql 용 team 테이블 메타데이터. SMember 와 같이 손으로 관리한다.
+ */
+public class STeam extends RelationalPathBase<STeam> {
+
+    public static final STeam team = new STeam("team");
+
+    public final NumberPath<Long> id = createNumber("id", Long.class);
+    public final StringPath name = createString("name");
+
+    public STeam(String variable) {
+        this(forVariable(variable));
+    }
+
+    public STeam(PathMetadata metadata) {
+        super(STeam.class, metadata, null, "team");
+        addMetadata(id, ColumnMetadata.named("id").ofType(Types.BIGINT).notNull());
+        addMetadata(name, ColumnMetadata.named("name").ofType(Types.VARCHAR).withSize(255));
+    }
+}
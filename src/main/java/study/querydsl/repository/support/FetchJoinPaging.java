@@ -0,0 +1,132 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * 컬렉션 fetch join 을 페이징한다.
+ * <p>
+ * 컬렉션 fetch join 에 offset / limit 을 걸면 Hibernate 가 전체 row 를 읽어 메모리에서 페이징(HHH000104)하므로
+ * <ol>
+ *     <li>root 의 id 만 where / orderBy 로 DB 에서 페이징하고</li>
+ *     <li>그 id 들의 root 만 fetch join 해서 읽은 뒤 1 의 순서대로 다시 정렬한다.</li>
+ * </ol>
+ * <pre>
+ * FetchJoinPaging.of(queryFactory, team, team.id, Team::getId)
+ *                .fetchJoin(query -> query.leftJoin(team.members, member).fetchJoin())
+ *                .sortable(SortablePaths.of(team.name))
+ *                .orderBy(team.name.asc())
+ *                .fetchPage(pageable);
+ * </pre>
+ * where / orderBy / sortable 은 root 의 경로만 써야 한다. (1 은 join 없이 root 만 조회한다)
+ * <p>
+ * pageable 의 sort 는 sortable 로 허용한 경로만 쓸 수 있고, 그 밖의 property 면 UnsupportedSortException 을 던진다.
+ */
+public final class FetchJoinPaging<T, I extends Comparable<?>> {
+
+    private final JPAQueryFactory queryFactory;
+    private final EntityPath<T> root;
+    private final ComparableExpressionBase<I> id;
+    private final Function<T, I> idOf;
+
+    private Predicate[] where = new Predicate[0];
+    private final List<OrderSpecifier<?>> orders = new ArrayList<>();
+    private UnaryOperator<JPAQuery<T>> fetchJoins = UnaryOperator.identity();
+    private SortablePaths sortable = SortablePaths.none();
+
+    private FetchJoinPaging(JPAQueryFactory queryFactory, EntityPath<T> root, ComparableExpressionBase<I> id, Function<T, I> idOf) {
+        this.queryFactory = queryFactory;
+        this.root = root;
+        this.id = id;
+        this.idOf = idOf;
+    }
+
+    /**
+     * @param id   root 의 id 경로 (team.id)
+     * @param idOf 읽은 엔티티에서 id 를 꺼내는 함수 (Team::getId)
+     */
+    public static <T, I extends Comparable<?>> FetchJoinPaging<T, I> of(JPAQueryFactory queryFactory, EntityPath<T> root,
+                                                                         ComparableExpressionBase<I> id, Function<T, I> idOf) {
+        return new FetchJoinPaging<>(queryFactory, root, id, idOf);
+    }
+
+    public FetchJoinPaging<T, I> where(Predicate... where) {
+        this.where = where;
+        return this;
+    }
+
+    /**
+     * pageable 의 sort 로 정렬할 수 있는 경로. sort 는 orderBy 보다 앞에 붙는다.
+     */
+    public FetchJoinPaging<T, I> sortable(SortablePaths sortable) {
+        this.sortable = sortable;
+        return this;
+    }
+
+    /**
+     * 같은 값이 있어도 페이지가 흔들리지 않게 마지막에 id 오름차순이 붙는다.
+     */
+    public FetchJoinPaging<T, I> orderBy(OrderSpecifier<?>... orders) {
+        this.orders.addAll(Arrays.asList(orders));
+        return this;
+    }
+
+    public FetchJoinPaging<T, I> fetchJoin(UnaryOperator<JPAQuery<T>> fetchJoins) {
+        this.fetchJoins = fetchJoins;
+        return this;
+    }
+
+    public Page<T> fetchPage(Pageable pageable) {
+        List<OrderSpecifier<?>> idOrders = sortable.toOrders(pageable.getSort());
+        idOrders.addAll(orders);
+        idOrders.add(id.asc());
+        List<I> ids = queryFactory.select(id)
+                                  .from(root)
+                                  .where(where)
+                                  .orderBy(idOrders.toArray(new OrderSpecifier<?>[0]))
+                                  .offset(pageable.getOffset())
+                                  .limit(pageable.getPageSize())
+                                  .fetch();
+        if (ids.isEmpty()) {
+            return PageableExecutionUtils.getPage(Collections.emptyList(), pageable, this::count);
+        }
+
+        // 컬렉션 fetch join 은 root 가 자식 수만큼 중복되므로 distinct 로 한 번씩만 받는다.
+        List<T> content = new ArrayList<>(fetchJoins.apply(queryFactory.selectFrom(root))
+                                                    .distinct()
+                                                    .where(id.in(InListPadding.pad(ids)))
+                                                    .fetch());
+
+        Map<I, Integer> positions = new HashMap<>(ids.size() * 2);
+        for (int i = 0; i < ids.size(); i++) {
+            positions.put(ids.get(i), i);
+        }
+        content.sort(Comparator.comparingInt((T entity) -> positions.get(idOf.apply(entity))));
+
+        return PageableExecutionUtils.getPage(content, pageable, this::count);
+    }
+
+    private long count() {
+        return queryFactory.select(id.count())
+                           .from(root)
+                           .where(where)
+                           .fetchFirst();
+    }
+}
@@ -0,0 +1,159 @@
+package study.querydsl.repository.support;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * lookup_key 작업 테이블에 값 목록을 넣는다. (LookupKey)
+ * <p>
+ * 넣은 row 는 그 트랜잭션에서만 쓴다.
+ * <ul>
+ *     <li>다 쓴 쪽이 release 로 바로 지운다.</li>
+ *     <li>지우지 않은 batch 는 커밋 직전(beforeCommit)에 지운다.</li>
+ *     <li>롤백되면 insert 도 같이 취소된다.</li>
+ * </ul>
+ * 그래서 쓰기 트랜잭션에서 넣은 row 가 커밋되는 일은 없다.
+ * <p>
+ * 읽기 전용 트랜잭션(검색 메서드)에서는 insert 만 따로 트랜잭션(REQUIRES_NEW)으로 커밋하고,
+ * release 하거나 바깥 트랜잭션이 끝날 때(afterCompletion) 다시 따로 트랜잭션으로 지운다.
+ * batchId 가 무작위라 그 사이 다른 트랜잭션에 보여도 읽히지 않는다.
+ * 트랜잭션 밖에서 넣으면 지울 시점이 없으므로 IllegalStateException 을 던진다.
+ */
+@Component
+public class LookupKeyTable {
+
+    private static final String INSERT_KEY = "insert into lookup_key (batch_id, seq, long_value, string_value) values (?, ?, ?, ?)";
+    private static final String DELETE_KEYS = "delete from lookup_key where batch_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate separateTx;
+    private final int insertBatchSize;
+    // 트랜잭션에 묶는 리소스 key. 값은 아직 지우지 않은 batchId 목록이다.
+    private final Object pendingKey = new Object();
+    // 따로 커밋한 batchId 목록
+    private final Object committedKey = new Object();
+
+    public LookupKeyTable(JdbcTemplate jdbcTemplate,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${member.lookup.insert-batch-size:1000}") int insertBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.separateTx = new TransactionTemplate(transactionManager);
+        this.separateTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.insertBatchSize = insertBatchSize;
+    }
+
+    /**
+     * Long 은 long_value 에, String 은 string_value 에 넣는다.
+     * @return 이번 목록의 batchId. 동시에 도는 다른 트랜잭션과 겹치지 않도록 무작위로 뽑는다.
+     */
+    public long insert(List<?> values) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("lookup_key 는 트랜잭션 안에서만 쓸 수 있습니다.");
+        }
+        long batchId = ThreadLocalRandom.current().nextLong();
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            pending().add(batchId);
+            insertRows(batchId, values);
+        } else {
+            // 실패해도 지우는 쪽은 아무 일도 하지 않으므로 먼저 등록한다.
+            committed().add(batchId);
+            separateTx.executeWithoutResult(status -> insertRows(batchId, values));
+        }
+        return batchId;
+    }
+
+    private void insertRows(long batchId, List<?> values) {
+        List<Object[]> rows = new ArrayList<>(Math.min(values.size(), insertBatchSize));
+        for (int seq = 0; seq < values.size(); seq++) {
+            Object value = values.get(seq);
+            rows.add(new Object[]{batchId, seq,
+                    value instanceof Long ? value : null,
+                    value instanceof String ? value : null});
+            if (rows.size() == insertBatchSize) {
+                jdbcTemplate.batchUpdate(INSERT_KEY, rows);
+                rows.clear();
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_KEY, rows);
+        }
+    }
+
+    /**
+     * 다 쓴 batch 를 바로 지운다. 지우지 않아도 커밋 직전에 지워진다.
+     */
+    public void release(long batchId) {
+        if (TransactionSynchronizationManager.hasResource(committedKey) && committed().remove(batchId)) {
+            deleteSeparately(batchId);
+            return;
+        }
+        jdbcTemplate.update(DELETE_KEYS, batchId);
+        if (TransactionSynchronizationManager.hasResource(pendingKey)) {
+            pending().remove(batchId);
+        }
+    }
+
+    private void deleteSeparately(long batchId) {
+        separateTx.executeWithoutResult(status -> jdbcTemplate.update(DELETE_KEYS, batchId));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<Long> pending() {
+        Set<Long> pending = (Set<Long>) TransactionSynchronizationManager.getResource(pendingKey);
+        if (pending != null) {
+            return pending;
+        }
+        Set<Long> created = new LinkedHashSet<>();
+        TransactionSynchronizationManager.bindResource(pendingKey, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                for (Long batchId : created) {
+                    jdbcTemplate.update(DELETE_KEYS, batchId);
+                }
+                created.clear();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(pendingKey);
+            }
+        });
+        return created;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<Long> committed() {
+        Set<Long> committed = (Set<Long>) TransactionSynchronizationManager.getResource(committedKey);
+        if (committed != null) {
+            return committed;
+        }
+        Set<Long> created = new LinkedHashSet<>();
+        TransactionSynchronizationManager.bindResource(committedKey, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(committedKey);
+                // 바깥 트랜잭션은 끝났으므로 따로 트랜잭션을 열어 지운다.
+                for (Long batchId : created) {
+                    deleteSeparately(batchId);
+                }
+                created.clear();
+            }
+        });
+        return created;
+    }
+}
@@ -0,0 +1,202 @@
+package study.querydsl.repository.support;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 현재 스레드에서 실행되는 쿼리들의 마감 시각.
+ * <p>
+ * JPA 의 javax.persistence.query.timeout 힌트는 초 단위로 잘리기 때문에,
+ * 마감 시각이 되면 실행 중인 Statement 를 직접 cancel() 해서 1초 미만의 마감도 지킨다.
+ * <pre>
+ * try (QueryDeadline deadline = QueryDeadline.start(500)) {
+ *     ...
+ * }
+ * </pre>
+ * 여러 요청이 한 쿼리를 같이 기다릴 때(SingleFlight)는 그 쿼리를 shared() 마감에 등록하고,
+ * 각 요청의 마감은 onCancel 로 자기 몫만 빠지게 한다.
+ */
+@Slf4j
+public final class QueryDeadline implements AutoCloseable {
+
+    public static final String TIMEOUT_HINT = "javax.persistence.query.timeout";
+
+    private static final ThreadLocal<QueryDeadline> CURRENT = new ThreadLocal<>();
+
+    private static final ScheduledExecutorService CANCELLER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "query-deadline-canceller");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long budgetMillis;
+    private final long deadlineNanos;
+    private final QueryDeadline previous;
+    private final Set<Statement> running = ConcurrentHashMap.newKeySet();
+    // cancel() 때 한 번 부른다. null 이면 이미 불렀다.
+    private List<Runnable> cancelListeners = new ArrayList<>();
+    // shared() 는 null. 시각으로는 만료되지 않고 cancel() 로만 끝난다.
+    private final ScheduledFuture<?> expiry;
+    private volatile boolean cancelled;
+
+    private QueryDeadline(long budgetMillis, QueryDeadline previous) {
+        this.budgetMillis = budgetMillis;
+        this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.previous = previous;
+        this.expiry = CANCELLER.schedule(this::cancel, budgetMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private QueryDeadline() {
+        this.budgetMillis = 0;
+        this.deadlineNanos = 0;
+        this.previous = null;
+        this.expiry = null;
+    }
+
+    /**
+     * 이미 더 짧은 마감이 걸려 있으면 그 마감을 넘지 않는다.
+     */
+    public static QueryDeadline start(long budgetMillis) {
+        QueryDeadline previous = CURRENT.get();
+        long budget = previous == null ? budgetMillis : Math.min(budgetMillis, previous.remainingMillis());
+        QueryDeadline deadline = new QueryDeadline(budget, previous);
+        CURRENT.set(deadline);
+        return deadline;
+    }
+
+    public static QueryDeadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 여러 요청이 같이 기다리는 쿼리용 마감. 스스로 만료되지 않고, 기다리는 쪽이 모두 떠났을 때 cancel() 한다.
+     * 스레드에 걸리지 않은 채로 만들어지므로 실행하는 동안 attach 한다.
+     */
+    public static QueryDeadline shared() {
+        return new QueryDeadline();
+    }
+
+    public boolean isShared() {
+        return expiry == null;
+    }
+
+    /**
+     * 요청을 비동기로 처리할 때 작업 스레드에 이 마감을 건다. 작업이 끝나면 detach 해야 한다.
+     */
+    public void attach() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * 이 스레드에 걸린 마감이 이것이면 뗀다. 취소 예약과 실행 중인 쿼리는 그대로 둔다.
+     */
+    public void detach() {
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+
+    public long remainingMillis() {
+        if (isShared()) {
+            return cancelled ? 0 : Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return cancelled || !isShared() && deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    public void checkNotExpired() {
+        if (isExpired()) {
+            throw new QueryDeadlineExceededException(budgetMillis);
+        }
+    }
+
+    /**
+     * JPA 힌트 값 (ms). Hibernate 가 초 단위로 내림하므로 0 이 되지 않게 올림한다.
+     */
+    public int timeoutHintMillis() {
+        long seconds = (remainingMillis() + 999) / 1000;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, seconds) * 1000);
+    }
+
+    /**
+     * 마감 시각이 지났거나 클라이언트가 떠났을 때 실행 중인 쿼리를 모두 취소한다.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (Statement statement : running) {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                log.debug("statement cancel failed", e);
+            }
+        }
+        List<Runnable> listeners;
+        synchronized (this) {
+            listeners = cancelListeners == null ? Collections.emptyList() : cancelListeners;
+            cancelListeners = null;
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * 취소되면(마감 시각, 클라이언트 연결 끊김) 한 번 부른다. 이미 취소됐으면 바로 부른다.
+     */
+    public void onCancel(Runnable listener) {
+        synchronized (this) {
+            if (cancelListeners != null) {
+                cancelListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    void register(Statement statement) {
+        running.add(statement);
+        // 등록 직전에 만료됐으면 취소 스케줄이 이미 지나갔을 수 있다.
+        if (cancelled) {
+            cancel();
+        }
+    }
+
+    void unregister(Statement statement) {
+        running.remove(statement);
+    }
+
+    @Override
+    public void close() {
+        if (expiry != null) {
+            expiry.cancel(false);
+        }
+        running.clear();
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
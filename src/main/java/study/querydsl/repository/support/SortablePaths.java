@@ -0,0 +1,57 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pageable 의 sort 를 허용한 root 경로의 OrderSpecifier 로 바꾼다.
+ * <p>
+ * 허용하지 않은 property 로 정렬을 요청하면 조용히 무시하지 않고 UnsupportedSortException 을 던진다.
+ * (controller 에서 400 으로 바꾼다)
+ */
+public final class SortablePaths {
+
+    private final Map<String, ComparableExpressionBase<?>> paths = new LinkedHashMap<>();
+
+    private SortablePaths(ComparableExpressionBase<?>... paths) {
+        for (ComparableExpressionBase<?> path : paths) {
+            String name = path.toString();
+            this.paths.put(name.substring(name.indexOf('.') + 1), path);
+        }
+    }
+
+    /**
+     * property 이름은 root 를 뺀 경로다. (team.name → name)
+     */
+    public static SortablePaths of(ComparableExpressionBase<?>... paths) {
+        return new SortablePaths(paths);
+    }
+
+    public static SortablePaths none() {
+        return new SortablePaths();
+    }
+
+    public List<OrderSpecifier<?>> toOrders(Sort sort) {
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            ComparableExpressionBase<?> path = paths.get(order.getProperty());
+            if (path == null) {
+                throw new UnsupportedSortException(order.getProperty(), paths.keySet());
+            }
+            OrderSpecifier<?> specifier = order.isAscending() ? path.asc() : path.desc();
+            if (order.getNullHandling() == Sort.NullHandling.NULLS_FIRST) {
+                specifier = specifier.nullsFirst();
+            } else if (order.getNullHandling() == Sort.NullHandling.NULLS_LAST) {
+                specifier = specifier.nullsLast();
+            }
+            orders.add(specifier);
+        }
+        return orders;
+    }
+}
@@ -0,0 +1,14 @@
+package study.querydsl.repository.support;
+
+import java.util.Set;
+
+/**
+ * 허용하지 않은 property 로 정렬을 요청했다.
+ * IllegalArgumentException 이면 repository proxy 가 InvalidDataAccessApiUsageException 으로 바꾸므로 따로 둔다.
+ */
+public class UnsupportedSortException extends RuntimeException {
+
+    public UnsupportedSortException(String property, Set<String> sortable) {
+        super("unsupported sort property '" + property + "'. sortable=" + sortable);
+    }
+}
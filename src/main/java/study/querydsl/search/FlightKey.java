@@ -0,0 +1,27 @@
+package study.querydsl.search;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 캐시 뒤의 SingleFlight key. 같은 검색이라도 캐시 무효화 세대(MemberSearchCache.generation)가 다르면 따로 실행한다.
+ * 그래야 변경이 커밋되기 전에 시작된 조회의 결과를 변경 뒤에 들어온 요청이 받아 가지 않는다.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class FlightKey {
+
+    private final MemberSearchKey key;
+    private final long generation;
+
+    private FlightKey(MemberSearchKey key, long generation) {
+        this.key = key;
+        this.generation = generation;
+    }
+
+    public static FlightKey of(MemberSearchKey key, MemberSearchCache<?> cache) {
+        return new FlightKey(key, cache.generation());
+    }
+}
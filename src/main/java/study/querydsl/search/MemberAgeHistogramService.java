@@ -0,0 +1,178 @@
+package study.querydsl.search;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import study.querydsl.dto.AgeBucketDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.event.BulkChangedEvent;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.TeamChangedEvent;
+import study.querydsl.index.MemberIndexService;
+import study.querydsl.repository.MemberJPARepository;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 검색 조건에 맞는 member 의 age 구간별 수.
+ * MemberIndexService 가 켜져 있고 최신이면 인덱스에서 세고, 아니면 group by case 쿼리 한 번으로 센다.
+ * <p>
+ * 결과는 구간 설정(bounds)별 MemberSearchCache 에 담는다. 자주 쓰이는 구간 설정 max-configs 개만 LRU 로 유지한다.
+ * member 변경은 조건에 걸릴 수 있는 entry 만 지우고, 건수는 team 이름과 무관하므로 teamName 조건이 없는 entry 는 team 변경에 남긴다.
+ */
+@Service
+public class MemberAgeHistogramService {
+
+    private final MemberJPARepository memberJPARepository;
+    private final ObjectProvider<MemberIndexService> memberIndex;
+    private final int maxSize;
+    private final long refreshAfterMillis;
+    private final long expireAfterMillis;
+    private final int hotHits;
+
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "member-age-histogram-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LinkedHashMap<List<Integer>, MemberSearchCache<long[]>> caches;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder indexed = new LongAdder();
+    private final LongAdder queried = new LongAdder();
+
+    public MemberAgeHistogramService(MemberJPARepository memberJPARepository,
+                                     ObjectProvider<MemberIndexService> memberIndex,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${member.histogram.cache.max-configs:16}") int maxConfigs,
+                                     @Value("${member.histogram.cache.max-size:256}") int maxSize,
+                                     @Value("${member.histogram.cache.refresh-after-ms:30000}") long refreshAfterMillis,
+                                     @Value("${member.histogram.cache.expire-after-ms:600000}") long expireAfterMillis,
+                                     @Value("${member.histogram.cache.hot-hits:10}") int hotHits) {
+        this.memberJPARepository = memberJPARepository;
+        this.memberIndex = memberIndex;
+        this.maxSize = maxSize;
+        this.refreshAfterMillis = refreshAfterMillis;
+        this.expireAfterMillis = expireAfterMillis;
+        this.hotHits = hotHits;
+        this.caches = new LinkedHashMap<List<Integer>, MemberSearchCache<long[]>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Integer>, MemberSearchCache<long[]>> eldest) {
+                return size() > maxConfigs;
+            }
+        };
+
+        FunctionCounter.builder("member.histogram.requests", requests, LongAdder::sum)
+                       .description("age histogram 요청 수. route 합계와의 차이가 캐시 적중 수다.")
+                       .register(meterRegistry);
+        FunctionCounter.builder("member.histogram.route", indexed, LongAdder::sum).tag("route", "index").register(meterRegistry);
+        FunctionCounter.builder("member.histogram.route", queried, LongAdder::sum).tag("route", "jpa").register(meterRegistry);
+        Gauge.builder("member.histogram.cache.configs", this, MemberAgeHistogramService::configCount).register(meterRegistry);
+    }
+
+    /**
+     * @param bounds 오름차순 구간 경계. 결과는 bounds.size() + 1 개 구간이다.
+     */
+    public List<AgeBucketDto> histogram(MemberSearchCondition cond, List<Integer> bounds) {
+        int[] sorted = validate(bounds);
+        requests.increment();
+        long[] counts = cacheFor(bounds).get(MemberSearchKey.of(cond), key -> load(key, sorted));
+
+        List<AgeBucketDto> buckets = new ArrayList<>(counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            buckets.add(new AgeBucketDto(i == 0 ? null : sorted[i - 1], i == sorted.length ? null : sorted[i], counts[i]));
+        }
+        return buckets;
+    }
+
+    private long[] load(MemberSearchKey key, int[] bounds) {
+        MemberIndexService index = memberIndex.getIfAvailable();
+        Optional<long[]> counts = index == null ? Optional.empty() : index.ageHistogram(key.toCondition(), bounds);
+        if (counts.isPresent()) {
+            indexed.increment();
+            return counts.get();
+        }
+        queried.increment();
+        return memberJPARepository.ageHistogram(key.toCondition(), bounds);
+    }
+
+    private static int[] validate(List<Integer> bounds) {
+        if (bounds == null || bounds.isEmpty()) {
+            throw new IllegalArgumentException("bounds is empty");
+        }
+        int[] sorted = new int[bounds.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            Integer bound = bounds.get(i);
+            if (bound == null || (i > 0 && bound <= sorted[i - 1])) {
+                throw new IllegalArgumentException("bounds must be strictly ascending. " + bounds);
+            }
+            sorted[i] = bound;
+        }
+        return sorted;
+    }
+
+    private MemberSearchCache<long[]> cacheFor(List<Integer> bounds) {
+        List<Integer> key = Collections.unmodifiableList(new ArrayList<>(bounds));
+        synchronized (caches) {
+            MemberSearchCache<long[]> cache = caches.get(key);
+            if (cache == null) {
+                cache = new MemberSearchCache<>(maxSize, Long.MAX_VALUE, counts -> 0,
+                        refreshAfterMillis, expireAfterMillis, hotHits,
+                        counts -> Collections.emptySet(), refreshExecutor);
+                caches.put(key, cache);
+            }
+            return cache;
+        }
+    }
+
+    public int configCount() {
+        synchronized (caches) {
+            return caches.size();
+        }
+    }
+
+    private List<MemberSearchCache<long[]>> allCaches() {
+        synchronized (caches) {
+            return new ArrayList<>(caches.values());
+        }
+    }
+
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        for (MemberSearchCache<long[]> cache : allCaches()) {
+            cache.onMemberChanged(event);
+        }
+    }
+
+    @EventListener
+    public void onTeamChanged(TeamChangedEvent event) {
+        for (MemberSearchCache<long[]> cache : allCaches()) {
+            cache.onTeamChanged(event);
+        }
+    }
+
+    @EventListener
+    public void onBulkChanged(BulkChangedEvent event) {
+        for (MemberSearchCache<long[]> cache : allCaches()) {
+            cache.onBulkChanged(event);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,85 @@
+package study.querydsl.search;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.event.MemberState;
+import study.querydsl.repository.MemberJPARepository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 검색 조건 여러 개를 한 번에 처리한다.
+ * 같은 조건은 한 번만 보고, max-merge 개씩 or 로 합친 쿼리 한 번으로 조회한 뒤
+ * 각 row 가 어느 조건에 맞는지는 MemberSearchKey.matches 로 다시 확인해서 조건별 결과로 나눈다.
+ * 여러 조건에 맞는 row 는 한 번만 읽는다.
+ */
+@Service
+public class MemberBatchSearchService {
+
+    private final MemberJPARepository memberJPARepository;
+    private final int maxMerge;
+
+    private final DistributionSummary batchSize;
+    private final Counter queries;
+
+    public MemberBatchSearchService(MemberJPARepository memberJPARepository,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${member.search.batch.max-merge:32}") int maxMerge) {
+        this.memberJPARepository = memberJPARepository;
+        this.maxMerge = maxMerge;
+        this.batchSize = DistributionSummary.builder("member.search.batch.conditions")
+                                            .description("한 요청에 들어온 검색 조건 수")
+                                            .register(meterRegistry);
+        this.queries = Counter.builder("member.search.batch.queries")
+                              .description("합친 조건으로 실행한 쿼리 수")
+                              .register(meterRegistry);
+    }
+
+    /**
+     * @return conds 와 같은 순서의 조건별 결과. 결과는 /v1/members 와 같다.
+     * usernameLike 가 lookup_key 작업 테이블을 쓸 수 있으므로 readOnly 로 열지 않는다.
+     */
+    @Transactional
+    public List<List<MemberTeamDto>> search(List<MemberSearchCondition> conds) {
+        batchSize.record(conds.size());
+        Map<MemberSearchKey, List<MemberTeamDto>> results = new LinkedHashMap<>();
+        for (MemberSearchCondition cond : conds) {
+            results.putIfAbsent(MemberSearchKey.of(cond), new ArrayList<>());
+        }
+
+        List<MemberSearchKey> keys = new ArrayList<>(results.keySet());
+        for (int from = 0; from < keys.size(); from += maxMerge) {
+            List<MemberSearchKey> chunk = keys.subList(from, Math.min(from + maxMerge, keys.size()));
+            List<MemberSearchCondition> merged = new ArrayList<>(chunk.size());
+            for (MemberSearchKey key : chunk) {
+                merged.add(key.toCondition());
+            }
+
+            queries.increment();
+            for (MemberTeamDto row : memberJPARepository.searchByAnyCondition(merged)) {
+                MemberState state = new MemberState(row.getMemberId(), row.getUsername(), row.getAge(),
+                        row.getTeamId(), row.getTeamName());
+                for (MemberSearchKey key : chunk) {
+                    if (key.matches(state)) {
+                        results.get(key).add(row);
+                    }
+                }
+            }
+        }
+
+        List<List<MemberTeamDto>> ordered = new ArrayList<>(conds.size());
+        for (MemberSearchCondition cond : conds) {
+            ordered.add(new ArrayList<>(results.get(MemberSearchKey.of(cond))));
+        }
+        return ordered;
+    }
+}
@@ -0,0 +1,326 @@
+package study.querydsl.search;
+
+import lombok.extern.slf4j.Slf4j;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.event.BulkChangedEvent;
+import study.querydsl.event.ChangeType;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.TeamChangedEvent;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * MemberSearchKey 단위의 검색 결과 캐시 (LRU, 크기 제한).
+ * <p>
+ * 변경 이벤트가 들어오면 그 변경이 결과에 영향을 줄 수 있는 entry 만 지운다.
+ * 자주 조회되는 entry 는 refreshAfter 가 지나면 기존 값을 돌려주면서 백그라운드로 다시 읽는다.
+ * weigher 를 주면 entry 수와 별개로 무게(예: 바이트 수) 합계가 maxWeight 를 넘지 않게 오래된 것부터 내보낸다.
+ */
+@Slf4j
+public class MemberSearchCache<V> {
+
+    private final int maxSize;
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final long refreshAfterMillis;
+    private final long expireAfterMillis;
+    private final int hotHits;
+    private final Function<V, Set<Long>> teamIds;
+    private final Executor refreshExecutor;
+
+    private final LinkedHashMap<MemberSearchKey, Entry<V>> entries;
+    private long totalWeight;
+    // 로딩 중인 key. 로딩 도중 영향을 주는 변경이 커밋되면 결과를 캐시에 넣지 않는다.
+    private final List<PendingLoad> pendingLoads = new ArrayList<>();
+    // 로딩 중인 key 를 stale 로 만든 무효화 횟수
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    public MemberSearchCache(int maxSize, long refreshAfterMillis, long expireAfterMillis, int hotHits,
+                             Function<V, List<MemberTeamDto>> rows, Executor refreshExecutor) {
+        this(maxSize, Long.MAX_VALUE, value -> 0, refreshAfterMillis, expireAfterMillis, hotHits,
+                value -> teamIdsOf(rows.apply(value)), refreshExecutor);
+    }
+
+    /**
+     * @param teamIds 결과에 들어 있는 team id. team 이름 변경 시 어떤 entry 를 지울지 정하는 데 쓴다.
+     */
+    public MemberSearchCache(int maxSize, long maxWeight, ToLongFunction<V> weigher,
+                             long refreshAfterMillis, long expireAfterMillis, int hotHits,
+                             Function<V, Set<Long>> teamIds, Executor refreshExecutor) {
+        this.maxSize = maxSize;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.refreshAfterMillis = refreshAfterMillis;
+        this.expireAfterMillis = expireAfterMillis;
+        this.hotHits = hotHits;
+        this.teamIds = teamIds;
+        this.refreshExecutor = refreshExecutor;
+        this.entries = new LinkedHashMap<MemberSearchKey, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MemberSearchKey, Entry<V>> eldest) {
+                boolean evict = size() > MemberSearchCache.this.maxSize;
+                if (evict) {
+                    evictions.increment();
+                    totalWeight -= eldest.getValue().weight;
+                }
+                return evict;
+            }
+        };
+    }
+
+    public V get(MemberSearchKey key, Function<MemberSearchKey, V> loader) {
+        long now = System.currentTimeMillis();
+        Entry<V> entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+
+        if (entry != null && now - entry.loadedAt < expireAfterMillis) {
+            hits.increment();
+            if (entry.hits.incrementAndGet() >= hotHits
+                    && now - entry.loadedAt >= refreshAfterMillis
+                    && entry.refreshing.compareAndSet(false, true)) {
+                refreshAsync(key, entry, loader);
+            }
+            return entry.value;
+        }
+
+        misses.increment();
+        PendingLoad pending = startLoad(key);
+        try {
+            V value = loader.apply(key);
+            complete(pending, value, null);
+            return value;
+        } finally {
+            finishLoad(pending);
+        }
+    }
+
+    private void refreshAsync(MemberSearchKey key, Entry<V> current, Function<MemberSearchKey, V> loader) {
+        try {
+            refreshExecutor.execute(() -> {
+                PendingLoad pending = startLoad(key);
+                try {
+                    complete(pending, loader.apply(key), current);
+                    refreshes.increment();
+                } catch (RuntimeException e) {
+                    log.warn("search cache refresh failed. key={}", key, e);
+                } finally {
+                    finishLoad(pending);
+                    current.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            current.refreshing.set(false);
+        }
+    }
+
+    private PendingLoad startLoad(MemberSearchKey key) {
+        PendingLoad pending = new PendingLoad(key);
+        synchronized (entries) {
+            pendingLoads.add(pending);
+        }
+        return pending;
+    }
+
+    private void finishLoad(PendingLoad pending) {
+        synchronized (entries) {
+            pendingLoads.remove(pending);
+        }
+    }
+
+    /**
+     * @param replacing refresh 인 경우 교체 대상 entry. 그 사이 다른 값으로 바뀌었거나 지워졌으면 넣지 않는다.
+     */
+    private void complete(PendingLoad pending, V value, Entry<V> replacing) {
+        Entry<V> entry = new Entry<>(value, teamIds.apply(value), weigher.applyAsLong(value), System.currentTimeMillis());
+        synchronized (entries) {
+            if (pending.stale) {
+                return;
+            }
+            if (replacing != null && entries.get(pending.key) != replacing) {
+                return;
+            }
+            // 혼자서 한도를 넘는 결과는 캐시하지 않는다.
+            if (entry.weight > maxWeight) {
+                remove(pending.key);
+                return;
+            }
+            remove(pending.key);
+            entries.put(pending.key, entry);
+            totalWeight += entry.weight;
+            evictOverweight();
+        }
+    }
+
+    private void remove(MemberSearchKey key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed != null) {
+            totalWeight -= removed.weight;
+        }
+    }
+
+    private void evictOverweight() {
+        Iterator<Entry<V>> it = entries.values().iterator();
+        while (totalWeight > maxWeight && it.hasNext()) {
+            Entry<V> eldest = it.next();
+            it.remove();
+            totalWeight -= eldest.weight;
+            evictions.increment();
+        }
+    }
+
+    public static Set<Long> teamIdsOf(List<MemberTeamDto> rows) {
+        Set<Long> teamIds = new HashSet<>();
+        for (MemberTeamDto row : rows) {
+            teamIds.add(row.getTeamId());
+        }
+        return teamIds;
+    }
+
+    public void onMemberChanged(MemberChangedEvent event) {
+        if (event.getType() == ChangeType.UPDATE && event.getBefore() == null) {
+            invalidateAll();
+            return;
+        }
+        invalidateIf((key, teamIds) -> key.mayMatch(event.getBefore()) || key.mayMatch(event.getAfter()));
+    }
+
+    public void onTeamChanged(TeamChangedEvent event) {
+        // 새 팀에는 아직 member 가 없으므로 기존 결과에 영향이 없다.
+        if (event.getType() == ChangeType.INSERT) {
+            return;
+        }
+        if (event.getType() == ChangeType.UPDATE && Objects.equals(event.getBeforeName(), event.getAfterName())) {
+            return;
+        }
+        invalidateIf((key, teamIds) -> {
+            if (key.getTeamName() != null) {
+                return key.getTeamName().equals(event.getBeforeName()) || key.getTeamName().equals(event.getAfterName());
+            }
+            // teamIds 가 null 이면 아직 로딩 중이라 결과를 모르는 경우
+            return teamIds == null || teamIds.contains(event.getTeamId());
+        });
+    }
+
+    public void onBulkChanged(BulkChangedEvent event) {
+        invalidateAll();
+    }
+
+    public void invalidateAll() {
+        invalidateIf((key, teamIds) -> true);
+    }
+
+    private void invalidateIf(BiPredicate<MemberSearchKey, Set<Long>> affected) {
+        synchronized (entries) {
+            Iterator<Map.Entry<MemberSearchKey, Entry<V>>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<MemberSearchKey, Entry<V>> e = it.next();
+                if (affected.test(e.getKey(), e.getValue().teamIds)) {
+                    it.remove();
+                    totalWeight -= e.getValue().weight;
+                    invalidations.increment();
+                }
+            }
+            boolean staled = false;
+            for (PendingLoad pending : pendingLoads) {
+                if (affected.test(pending.key, null)) {
+                    pending.stale = true;
+                    staled = true;
+                }
+            }
+            if (staled) {
+                generation++;
+            }
+        }
+    }
+
+    /**
+     * 로딩 중인 조회를 stale 로 만든 무효화 횟수.
+     * loader 안에서 읽으면 그 조회의 pending 이 등록된 뒤의 값이므로, 이 값이 다른 조회는 이미 지난 변경 이전에 시작된 것이다.
+     * 로딩을 다른 호출과 공유할 때(SingleFlight) key 에 넣어서 그런 조회에 합류하지 않게 한다.
+     */
+    public long generation() {
+        synchronized (entries) {
+            return generation;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long weight() {
+        synchronized (entries) {
+            return totalWeight;
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public long invalidationCount() {
+        return invalidations.sum();
+    }
+
+    public long refreshCount() {
+        return refreshes.sum();
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final Set<Long> teamIds;
+        private final long weight;
+        private final long loadedAt;
+        private final AtomicInteger hits = new AtomicInteger();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(V value, Set<Long> teamIds, long weight, long loadedAt) {
+            this.value = value;
+            this.teamIds = teamIds;
+            this.weight = weight;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private static class PendingLoad {
+        private final MemberSearchKey key;
+        private boolean stale;
+
+        private PendingLoad(MemberSearchKey key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package study.querydsl.search;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.event.MemberState;
+import study.querydsl.ngram.UsernamePattern;
+
+import java.util.Locale;
+
+/**
+ * MemberSearchCondition + Pageable 을 정규화한 불변 key.
+ * 리포지토리의 where 절과 같은 규칙(빈 문자열은 조건 없음)으로 정규화해야 같은 쿼리가 같은 key 가 된다.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class MemberSearchKey {
+
+    private final String username;
+    private final UsernamePattern usernameLike;
+    private final boolean usernameIgnoreCase;
+    private final Integer ageGoe;
+    private final Integer ageLoe;
+    private final String teamName;
+
+    private final boolean paged;
+    private final long offset;
+    private final int pageSize;
+    private final Sort sort;
+
+    private MemberSearchKey(MemberSearchCondition cond, Pageable pageable) {
+        // 대소문자 무시 검색은 소문자로 맞춰서 Member1 / member1 이 같은 key 가 되게 한다.
+        this.usernameIgnoreCase = cond.isUsernameIgnoreCase();
+        String username = StringUtils.hasText(cond.getUsername()) ? cond.getUsername() : null;
+        UsernamePattern usernameLike = UsernamePattern.parse(cond.getUsernameLike());
+        this.username = username != null && usernameIgnoreCase ? username.toLowerCase(Locale.ROOT) : username;
+        this.usernameLike = usernameLike != null && usernameIgnoreCase ? usernameLike.toLowerCase() : usernameLike;
+        this.ageGoe = cond.getAgeGoe();
+        this.ageLoe = cond.getAgeLoe();
+        this.teamName = StringUtils.hasText(cond.getTeamName()) ? cond.getTeamName() : null;
+
+        // toPageable 은 page 번호로 되돌리므로 page 경계가 아닌 offset 은 다른 행을 읽게 된다.
+        if (pageable.isPaged() && pageable.getOffset() % pageable.getPageSize() != 0) {
+            throw new IllegalArgumentException("offset must be a multiple of page size. offset="
+                    + pageable.getOffset() + ", size=" + pageable.getPageSize());
+        }
+        this.paged = pageable.isPaged();
+        this.offset = pageable.isPaged() ? pageable.getOffset() : 0;
+        this.pageSize = pageable.isPaged() ? pageable.getPageSize() : 0;
+        this.sort = pageable.getSort();
+    }
+
+    public static MemberSearchKey of(MemberSearchCondition cond) {
+        return new MemberSearchKey(cond, Pageable.unpaged());
+    }
+
+    public static MemberSearchKey of(MemberSearchCondition cond, Pageable pageable) {
+        return new MemberSearchKey(cond, pageable);
+    }
+
+    /**
+     * 이 검색 결과에 state 가 포함될 수 있으면 true.
+     * member 는 team 과 inner join 되므로 team 이 없으면 포함되지 않고, teamName 을 모르면 포함될 수 있다고 본다.
+     */
+    public boolean mayMatch(MemberState state) {
+        return matches(state, true);
+    }
+
+    /**
+     * 리포지토리의 where 절이 state 를 고르면 true. mayMatch 와 달리 teamName 이 null 이면 teamName 조건에 맞지 않는다.
+     * 대소문자 무시는 username_lower 와 같이 소문자로, usernameLike 는 escape 된 like 와 같이 '*' 밖의 문자를 그대로 비교한다.
+     */
+    public boolean matches(MemberState state) {
+        return matches(state, false);
+    }
+
+    private boolean matches(MemberState state, boolean unknownTeamNameMatches) {
+        if (state == null || state.getTeamId() == null) {
+            return false;
+        }
+        String stateUsername = usernameIgnoreCase && state.getUsername() != null
+                ? state.getUsername().toLowerCase(Locale.ROOT)
+                : state.getUsername();
+        if (username != null && !username.equals(stateUsername)) {
+            return false;
+        }
+        if (usernameLike != null && !usernameLike.matches(stateUsername)) {
+            return false;
+        }
+        if (ageGoe != null && state.getAge() < ageGoe) {
+            return false;
+        }
+        if (ageLoe != null && state.getAge() > ageLoe) {
+            return false;
+        }
+        if (teamName != null) {
+            return state.getTeamName() == null ? unknownTeamNameMatches : teamName.equals(state.getTeamName());
+        }
+        return true;
+    }
+
+    public MemberSearchCondition toCondition() {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setUsername(username);
+        cond.setUsernameLike(usernameLike == null ? null : usernameLike.getPattern());
+        cond.setUsernameIgnoreCase(usernameIgnoreCase);
+        cond.setAgeGoe(ageGoe);
+        cond.setAgeLoe(ageLoe);
+        cond.setTeamName(teamName);
+        return cond;
+    }
+
+    public Pageable toPageable() {
+        if (!paged) {
+            return Pageable.unpaged();
+        }
+        return PageRequest.of((int) (offset / pageSize), pageSize, sort);
+    }
+}
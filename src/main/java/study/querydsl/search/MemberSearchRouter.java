@@ -0,0 +1,98 @@
+package study.querydsl.search;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.index.MemberIndexService;
+import study.querydsl.repository.MemberJPARepository;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.snapshot.MemberSnapshotService;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 검색을 어디서 실행할지 고른다.
+ * 켜져 있고 최신인 인메모리 엔진이 있으면 그쪽으로 보내고, 없으면 JPA 로 조회한다.
+ * <ul>
+ *     <li>search (/v1/members) : MemberColumnIndex -> MemberSnapshot -> JPA (searchByConditionWhere)</li>
+ *     <li>searchComplexOptimize (/v4/members) : MemberSnapshot -> JPA</li>
+ * </ul>
+ */
+@Component
+public class MemberSearchRouter {
+
+    public enum Route {
+        INDEX, SNAPSHOT, JPA
+    }
+
+    private final MemberRepository memberRepository;
+    private final MemberJPARepository memberJPARepository;
+    private final ObjectProvider<MemberIndexService> memberIndex;
+    private final ObjectProvider<MemberSnapshotService> memberSnapshot;
+
+    private final Map<Route, LongAdder> routed = new EnumMap<>(Route.class);
+
+    public MemberSearchRouter(MemberRepository memberRepository,
+                              MemberJPARepository memberJPARepository,
+                              ObjectProvider<MemberIndexService> memberIndex,
+                              ObjectProvider<MemberSnapshotService> memberSnapshot,
+                              MeterRegistry meterRegistry) {
+        this.memberRepository = memberRepository;
+        this.memberJPARepository = memberJPARepository;
+        this.memberIndex = memberIndex;
+        this.memberSnapshot = memberSnapshot;
+
+        for (Route route : Route.values()) {
+            LongAdder counter = new LongAdder();
+            routed.put(route, counter);
+            FunctionCounter.builder("member.search.route", counter, LongAdder::sum)
+                           .tag("route", route.name().toLowerCase())
+                           .description("검색이 실행된 곳")
+                           .register(meterRegistry);
+        }
+    }
+
+    public List<MemberTeamDto> search(MemberSearchKey key) {
+        MemberIndexService index = memberIndex.getIfAvailable();
+        Optional<List<MemberTeamDto>> indexed = index == null ? Optional.empty() : index.search(key.toCondition());
+        if (indexed.isPresent()) {
+            return routed(Route.INDEX, indexed.get());
+        }
+
+        MemberSnapshotService snapshot = memberSnapshot.getIfAvailable();
+        Optional<List<MemberTeamDto>> inMemory = snapshot == null ? Optional.empty() : snapshot.search(key.toCondition());
+        if (inMemory.isPresent()) {
+            return routed(Route.SNAPSHOT, inMemory.get());
+        }
+
+        return routed(Route.JPA, memberJPARepository.searchByConditionWhere(key.toCondition()));
+    }
+
+    public Page<MemberTeamDto> searchComplexOptimize(MemberSearchKey key) {
+        MemberSnapshotService snapshot = memberSnapshot.getIfAvailable();
+        Optional<Page<MemberTeamDto>> inMemory = snapshot == null
+                ? Optional.empty()
+                : snapshot.searchComplexOptimize(key.toCondition(), key.toPageable());
+        if (inMemory.isPresent()) {
+            return routed(Route.SNAPSHOT, inMemory.get());
+        }
+
+        return routed(Route.JPA, memberRepository.searchComplexOptimize(key.toCondition(), key.toPageable()));
+    }
+
+    public long routedCount(Route route) {
+        return routed.get(route).sum();
+    }
+
+    private <T> T routed(Route route, T result) {
+        routed.get(route).increment();
+        return result;
+    }
+}
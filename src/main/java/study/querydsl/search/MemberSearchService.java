@@ -0,0 +1,117 @@
+package study.querydsl.search;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.event.BulkChangedEvent;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.TeamChangedEvent;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Service
+public class MemberSearchService {
+
+    private final MemberSearchRouter router;
+
+    private final SingleFlight<FlightKey, List<MemberTeamDto>> searchFlight = new SingleFlight<>();
+    private final SingleFlight<FlightKey, Page<MemberTeamDto>> pageFlight = new SingleFlight<>();
+
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "member-search-cache-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final MemberSearchCache<List<MemberTeamDto>> searchCache;
+    private final MemberSearchCache<Page<MemberTeamDto>> pageCache;
+
+    public MemberSearchService(MemberSearchRouter router,
+                               MeterRegistry meterRegistry,
+                               @Value("${member.search.cache.max-size:1000}") int maxSize,
+                               @Value("${member.search.cache.refresh-after-ms:30000}") long refreshAfterMillis,
+                               @Value("${member.search.cache.expire-after-ms:600000}") long expireAfterMillis,
+                               @Value("${member.search.cache.hot-hits:10}") int hotHits) {
+        this.router = router;
+        this.searchCache = new MemberSearchCache<>(maxSize, refreshAfterMillis, expireAfterMillis, hotHits,
+                rows -> rows, refreshExecutor);
+        this.pageCache = new MemberSearchCache<>(maxSize, refreshAfterMillis, expireAfterMillis, hotHits,
+                Page::getContent, refreshExecutor);
+
+        bindMetrics(meterRegistry, "search", searchFlight, searchCache);
+        bindMetrics(meterRegistry, "searchComplexOptimize", pageFlight, pageCache);
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition cond) {
+        return searchCache.get(MemberSearchKey.of(cond), this::loadSearch);
+    }
+
+    public Page<MemberTeamDto> searchComplexOptimize(MemberSearchCondition cond, Pageable pageable) {
+        return pageCache.get(MemberSearchKey.of(cond, pageable), this::loadPage);
+    }
+
+    private List<MemberTeamDto> loadSearch(MemberSearchKey key) {
+        return searchFlight.execute(FlightKey.of(key, searchCache), () -> router.search(key));
+    }
+
+    private Page<MemberTeamDto> loadPage(MemberSearchKey key) {
+        return pageFlight.execute(FlightKey.of(key, pageCache), () -> router.searchComplexOptimize(key));
+    }
+
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        searchCache.onMemberChanged(event);
+        pageCache.onMemberChanged(event);
+    }
+
+    @EventListener
+    public void onTeamChanged(TeamChangedEvent event) {
+        searchCache.onTeamChanged(event);
+        pageCache.onTeamChanged(event);
+    }
+
+    @EventListener
+    public void onBulkChanged(BulkChangedEvent event) {
+        searchCache.onBulkChanged(event);
+        pageCache.onBulkChanged(event);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private static void bindMetrics(MeterRegistry registry, String operation,
+                                    SingleFlight<?, ?> flight, MemberSearchCache<?> cache) {
+        Tags tags = Tags.of("operation", operation);
+
+        FunctionCounter.builder("member.search.singleflight.executions", flight, SingleFlight::executionCount)
+                       .tags(tags)
+                       .description("실제로 DB 까지 내려간 검색 수")
+                       .register(registry);
+        FunctionCounter.builder("member.search.singleflight.shared", flight, SingleFlight::sharedCount)
+                       .tags(tags)
+                       .description("다른 요청의 결과를 공유해서 생략된 검색 수 (= 절약된 DB 호출)")
+                       .register(registry);
+        Gauge.builder("member.search.singleflight.inflight", flight, SingleFlight::inFlightCount)
+             .tags(tags)
+             .register(registry);
+
+        FunctionCounter.builder("member.search.cache.hits", cache, MemberSearchCache::hitCount).tags(tags).register(registry);
+        FunctionCounter.builder("member.search.cache.misses", cache, MemberSearchCache::missCount).tags(tags).register(registry);
+        FunctionCounter.builder("member.search.cache.evictions", cache, MemberSearchCache::evictionCount).tags(tags).register(registry);
+        FunctionCounter.builder("member.search.cache.invalidations", cache, MemberSearchCache::invalidationCount).tags(tags).register(registry);
+        FunctionCounter.builder("member.search.cache.refreshes", cache, MemberSearchCache::refreshCount).tags(tags).register(registry);
+        Gauge.builder("member.search.cache.size", cache, MemberSearchCache::size).tags(tags).register(registry);
+    }
+}
@@ -0,0 +1,180 @@
+package study.querydsl.search;
+
+import study.querydsl.repository.support.QueryDeadline;
+import study.querydsl.repository.support.QueryDeadlineExceededException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 같은 key 로 동시에 들어온 호출은 먼저 들어온 한 건만 실행하고, 나머지는 그 결과를 같이 받는다.
+ * 실행이 끝나면 key 는 바로 제거되므로 결과를 캐시하지는 않는다.
+ * <p>
+ * 호출한 스레드에 QueryDeadline 이 있으면 실행은 공유 마감(QueryDeadline.shared)에 걸리고,
+ * 각 호출은 자기 마감까지만 기다린다. 한 호출의 마감이 지나거나 클라이언트가 떠나면 그 호출만 빠지고,
+ * 기다리는 호출이 하나도 남지 않았을 때 실행 중인 쿼리를 취소한다.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Call<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    public V execute(K key, Supplier<V> loader) {
+        QueryDeadline own = QueryDeadline.current();
+        if (own != null) {
+            own.checkNotExpired();
+        }
+
+        Call<V> call = new Call<>(own == null ? null : QueryDeadline.shared());
+        while (true) {
+            Call<V> existing = inFlight.putIfAbsent(key, call);
+            if (existing == null) {
+                break;
+            }
+            if (existing.join()) {
+                shared.increment();
+                return await(existing, own);
+            }
+            // 모두 떠나서 취소되는 중인 실행에는 합류하지 않는다.
+            if (inFlight.replace(key, existing, call)) {
+                break;
+            }
+        }
+
+        executions.increment();
+        Runnable leave = leaveOnce(call);
+        if (own != null) {
+            own.onCancel(leave);
+            call.deadline.attach();
+        }
+        try {
+            V value = loader.get();
+            call.result.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+            if (own != null) {
+                own.attach();
+            }
+            leave.run();
+        }
+    }
+
+    private V await(Call<V> call, QueryDeadline own) {
+        Runnable leave = leaveOnce(call);
+        try {
+            if (own == null) {
+                return unwrap(call.result);
+            }
+            CompletableFuture<V> mine = new CompletableFuture<>();
+            call.result.whenComplete((value, e) -> {
+                if (e != null) {
+                    mine.completeExceptionally(e);
+                } else {
+                    mine.complete(value);
+                }
+            });
+            own.onCancel(() -> {
+                leave.run();
+                mine.completeExceptionally(new QueryDeadlineExceededException(own.getBudgetMillis()));
+            });
+            try {
+                return mine.get(own.remainingMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                throw new QueryDeadlineExceededException(own.getBudgetMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new QueryDeadlineExceededException(own.getBudgetMillis());
+            } catch (ExecutionException e) {
+                throw rethrow(e.getCause(), e);
+            }
+        } finally {
+            leave.run();
+        }
+    }
+
+    private static Runnable leaveOnce(Call<?> call) {
+        AtomicBoolean left = new AtomicBoolean();
+        return () -> {
+            if (left.compareAndSet(false, true)) {
+                call.leave();
+            }
+        };
+    }
+
+    private static <V> V unwrap(CompletableFuture<V> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw rethrow(e.getCause(), e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause, Exception wrapper) {
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new IllegalStateException(wrapper);
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    public long executionCount() {
+        return executions.sum();
+    }
+
+    public long sharedCount() {
+        return shared.sum();
+    }
+
+    private static class Call<V> {
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        // 실행 중인 쿼리가 등록되는 마감. 처음 호출에 마감이 없으면 null 이고 취소하지 않는다.
+        private final QueryDeadline deadline;
+        // 만든 호출(실행하는 쪽)을 포함한다.
+        private int participants = 1;
+        private boolean abandoned;
+
+        private Call(QueryDeadline deadline) {
+            this.deadline = deadline;
+        }
+
+        private synchronized boolean join() {
+            if (abandoned) {
+                return false;
+            }
+            participants++;
+            return true;
+        }
+
+        private void leave() {
+            synchronized (this) {
+                if (--participants > 0 || result.isDone()) {
+                    return;
+                }
+                abandoned = true;
+            }
+            if (deadline != null) {
+                deadline.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package study.querydsl.sketch;
+
+import study.querydsl.support.Hashing;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 서로 다른 값의 개수를 근사하는 HyperLogLog.
+ * <p>
+ * 64bit hash 의 앞 p bit 로 register 를 고르고, 나머지 bit 의 앞쪽 0 개수 + 1 의 최대값을 register 에 남긴다.
+ * 크기는 2^p byte 로 값 개수와 상관없다.
+ * <p>
+ * 오차 : 상대 표준 오차가 1.04 / √(2^p) 이다. (p = 12 면 1.6%, 99.7% 의 경우 ±4.9% 안)
+ * 작은 개수(2.5 · 2^p 이하)는 빈 register 수로 세는 linear counting 으로 보정한다.
+ * merge 는 register 별 최대값이므로 합친 결과는 처음부터 한 sketch 에 넣은 것과 같다.
+ * 스레드 안전하지 않다.
+ */
+public class HyperLogLog {
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("precision must be in [4, 18]. " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public void add(String value) {
+        long hash = Hashing.hash64(value);
+        int index = (int) (hash >>> (64 - precision));
+        // 남은 bit 가 모두 0 이어도 rank 가 64 - p + 1 을 넘지 않도록 끝에 1 을 둔다.
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("precision mismatch. " + precision + " != " + other.precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long cardinality() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public double relativeStandardError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    public int precision() {
+        return precision;
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(precision);
+        out.write(registers);
+    }
+
+    public static HyperLogLog read(DataInput in) throws IOException {
+        HyperLogLog hll = new HyperLogLog(in.readByte());
+        in.readFully(hll.registers);
+        return hll;
+    }
+}
@@ -0,0 +1,223 @@
+package study.querydsl.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 분위수(percentile)를 근사하는 merging t-digest.
+ * <p>
+ * 값들을 (평균, 개수) centroid 로 묶어 두는데, 분위수 q 근처 centroid 크기를 k(q) = δ/2π · asin(2q - 1) 로 제한해서
+ * 양 끝(p1, p99)일수록 centroid 가 작다. 그래서 오차는 중앙보다 꼬리에서 더 작다.
+ * 크기는 값 개수와 상관없이 centroid 대략 δ 개 이하다.
+ * <p>
+ * 오차 : δ = 100 일 때 분위수(rank) 오차는 보통 q(1 - q) 에 비례해서 중앙(p50)에서 ±0.5% 안팎, p99 에서 ±0.1% 안팎이다.
+ * 반환값은 그 rank 에 해당하는 값이므로 값 오차는 분포의 밀도에 따라 다르다.
+ * merge 해도 같은 범위의 오차를 유지하므로 team 별 digest 를 합쳐 전체 분위수를 구할 수 있다.
+ * 스레드 안전하지 않다.
+ */
+public class TDigest {
+
+    private final double compression;
+
+    // 정렬된 centroid
+    private double[] means;
+    private double[] weights;
+    private int centroids;
+
+    // 아직 합치지 않은 값
+    private final double[] bufferMeans;
+    private final double[] bufferWeights;
+    private int buffered;
+
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest(double compression) {
+        if (compression < 10) {
+            throw new IllegalArgumentException("compression must be >= 10. " + compression);
+        }
+        this.compression = compression;
+        int capacity = (int) Math.ceil(compression * 2) + 10;
+        this.means = new double[capacity];
+        this.weights = new double[capacity];
+        this.bufferMeans = new double[capacity * 5];
+        this.bufferWeights = new double[capacity * 5];
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public void add(double value, double weight) {
+        if (Double.isNaN(value) || !(weight > 0)) {
+            throw new IllegalArgumentException("invalid value " + value + " / weight " + weight);
+        }
+        if (buffered == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[buffered] = value;
+        bufferWeights[buffered] = weight;
+        buffered++;
+        totalWeight += weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * other 의 centroid 를 그대로 더한다. other 는 바뀌지 않는다.
+     */
+    public void merge(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.centroids; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        if (other.totalWeight > 0) {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+    }
+
+    public double size() {
+        return totalWeight;
+    }
+
+    public double compression() {
+        return compression;
+    }
+
+    public int centroidCount() {
+        compress();
+        return centroids;
+    }
+
+    /**
+     * @param q 0 ~ 1
+     * @return 값이 하나도 없으면 NaN
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("q must be in [0, 1]. " + q);
+        }
+        compress();
+        if (centroids == 0) {
+            return Double.NaN;
+        }
+        if (centroids == 1) {
+            return means[0];
+        }
+
+        double index = q * totalWeight;
+        if (index <= weights[0] / 2) {
+            // 최소값과 첫 centroid 사이
+            return min + (means[0] - min) * (index / (weights[0] / 2));
+        }
+        double last = weights[centroids - 1] / 2;
+        if (index >= totalWeight - last) {
+            return max - (max - means[centroids - 1]) * ((totalWeight - index) / last);
+        }
+
+        // centroid 중심 사이를 선형 보간
+        double weightSoFar = weights[0] / 2;
+        for (int i = 0; i < centroids - 1; i++) {
+            double gap = (weights[i] + weights[i + 1]) / 2;
+            if (weightSoFar + gap >= index) {
+                double left = index - weightSoFar;
+                return means[i] + (means[i + 1] - means[i]) * (left / gap);
+            }
+            weightSoFar += gap;
+        }
+        return means[centroids - 1];
+    }
+
+    /**
+     * 버퍼와 centroid 를 평균 순으로 정렬해서 k 크기 한도 안에서 이웃끼리 합친다.
+     */
+    private void compress() {
+        if (buffered == 0) {
+            return;
+        }
+        int n = centroids + buffered;
+        double[] allMeans = Arrays.copyOf(means, n);
+        double[] allWeights = Arrays.copyOf(weights, n);
+        System.arraycopy(bufferMeans, 0, allMeans, centroids, buffered);
+        System.arraycopy(bufferWeights, 0, allWeights, centroids, buffered);
+        buffered = 0;
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(allMeans[a], allMeans[b]));
+
+        double[] mergedMeans = new double[means.length];
+        double[] mergedWeights = new double[weights.length];
+        int merged = 0;
+        double weightSoFar = 0;
+        double currentMean = allMeans[order[0]];
+        double currentWeight = allWeights[order[0]];
+        double kLeft = k(0);
+        for (int i = 1; i < n; i++) {
+            int next = order[i];
+            double proposed = currentWeight + allWeights[next];
+            if (k((weightSoFar + proposed) / totalWeight) - kLeft <= 1) {
+                currentWeight = proposed;
+                currentMean += (allMeans[next] - currentMean) * allWeights[next] / currentWeight;
+            } else {
+                if (merged == mergedMeans.length) {
+                    mergedMeans = Arrays.copyOf(mergedMeans, merged * 2);
+                    mergedWeights = Arrays.copyOf(mergedWeights, merged * 2);
+                }
+                mergedMeans[merged] = currentMean;
+                mergedWeights[merged] = currentWeight;
+                merged++;
+                weightSoFar += currentWeight;
+                kLeft = k(weightSoFar / totalWeight);
+                currentMean = allMeans[next];
+                currentWeight = allWeights[next];
+            }
+        }
+        if (merged == mergedMeans.length) {
+            mergedMeans = Arrays.copyOf(mergedMeans, merged + 1);
+            mergedWeights = Arrays.copyOf(mergedWeights, merged + 1);
+        }
+        mergedMeans[merged] = currentMean;
+        mergedWeights[merged] = currentWeight;
+        merged++;
+
+        means = mergedMeans;
+        weights = mergedWeights;
+        centroids = merged;
+    }
+
+    private double k(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, Math.max(0, q)) - 1);
+    }
+
+    public void write(DataOutput out) throws IOException {
+        compress();
+        out.writeDouble(compression);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeInt(centroids);
+        for (int i = 0; i < centroids; i++) {
+            out.writeDouble(means[i]);
+            out.writeDouble(weights[i]);
+        }
+    }
+
+    public static TDigest read(DataInput in) throws IOException {
+        TDigest digest = new TDigest(in.readDouble());
+        double min = in.readDouble();
+        double max = in.readDouble();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            digest.add(in.readDouble(), in.readDouble());
+        }
+        digest.min = min;
+        digest.max = max;
+        return digest;
+    }
+}
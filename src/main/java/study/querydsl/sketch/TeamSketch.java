@@ -0,0 +1,69 @@
+package study.querydsl.sketch;
+
+import lombok.Getter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * team 하나의 age 분포(t-digest)와 서로 다른 username 수(HyperLogLog).
+ * <p>
+ * 두 sketch 모두 값을 뺄 수 없으므로 member 의 수정 / 삭제는 반영하지 못하고 staleChanges 로만 센다.
+ * 수정은 새 값을 더하므로 그만큼 count 가 부풀고, 삭제된 값도 남는다. DB 에서 다시 만들면 0 이 된다.
+ * 스레드 안전하지 않다.
+ */
+@Getter
+public class TeamSketch {
+
+    private String teamName;
+    private final TDigest ages;
+    private final HyperLogLog usernames;
+    private long staleChanges;
+
+    public TeamSketch(String teamName, double compression, int precision) {
+        this(teamName, new TDigest(compression), new HyperLogLog(precision), 0);
+    }
+
+    private TeamSketch(String teamName, TDigest ages, HyperLogLog usernames, long staleChanges) {
+        this.teamName = teamName;
+        this.ages = ages;
+        this.usernames = usernames;
+        this.staleChanges = staleChanges;
+    }
+
+    public void rename(String teamName) {
+        this.teamName = teamName;
+    }
+
+    public void add(String username, int age) {
+        ages.add(age);
+        if (username != null) {
+            usernames.add(username);
+        }
+    }
+
+    public void markStale() {
+        staleChanges++;
+    }
+
+    public long count() {
+        return (long) ages.size();
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeBoolean(teamName != null);
+        if (teamName != null) {
+            out.writeUTF(teamName);
+        }
+        out.writeLong(staleChanges);
+        ages.write(out);
+        usernames.write(out);
+    }
+
+    public static TeamSketch read(DataInput in) throws IOException {
+        String teamName = in.readBoolean() ? in.readUTF() : null;
+        long staleChanges = in.readLong();
+        return new TeamSketch(teamName, TDigest.read(in), HyperLogLog.read(in), staleChanges);
+    }
+}
@@ -0,0 +1,78 @@
+package study.querydsl.sketch;
+
+import study.querydsl.support.SnapshotFiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * team 별 TeamSketch 를 파일로 남긴다.
+ * <pre>
+ * header  : magic(int) formatVersion(int) writtenAt(long) count(int)
+ * team    : teamId(long) TeamSketch   -- count 번
+ * trailer : 앞의 모든 바이트의 CRC32(long)
+ * </pre>
+ * trailer 와 파일 교체는 SnapshotFiles 가 한다.
+ */
+public final class TeamSketchFile {
+
+    static final int MAGIC = 0x54534B54; // "TSKT"
+    static final int FORMAT_VERSION = 1;
+
+    private TeamSketchFile() {
+    }
+
+    /**
+     * 호출하는 쪽이 lock 을 잡은 채로 부를 수 있도록 메모리에만 쓴다. 파일 쓰기는 write 로 따로 한다.
+     */
+    public static byte[] encode(Map<Long, TeamSketch> sketches) {
+        return SnapshotFiles.encode(out -> {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(sketches.size());
+            for (Map.Entry<Long, TeamSketch> entry : sketches.entrySet()) {
+                out.writeLong(entry.getKey());
+                entry.getValue().write(out);
+            }
+        });
+    }
+
+    public static void write(byte[] encoded, Path file) throws IOException {
+        SnapshotFiles.write(file, encoded);
+    }
+
+    /**
+     * @throws IOException 파일이 없거나, 형식 버전이 다르거나, CRC 가 맞지 않으면
+     */
+    public static Map<Long, TeamSketch> read(Path file) throws IOException {
+        ByteBuffer buffer = SnapshotFiles.read(file, 20);
+        byte[] body = new byte[buffer.remaining()];
+        buffer.get(body);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a team sketch file: " + file);
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("unsupported team sketch version " + version + ": " + file);
+            }
+            in.readLong();
+            int count = in.readInt();
+            Map<Long, TeamSketch> sketches = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                long teamId = in.readLong();
+                sketches.put(teamId, TeamSketch.read(in));
+            }
+            return sketches;
+        } catch (EOFException e) {
+            throw new IOException("truncated team sketch file: " + file, e);
+        }
+    }
+}
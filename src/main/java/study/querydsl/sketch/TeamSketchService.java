@@ -0,0 +1,329 @@
+package study.querydsl.sketch;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.TeamSketchDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.BulkChangedEvent;
+import study.querydsl.event.ChangeType;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.MemberState;
+import study.querydsl.event.TeamChangedEvent;
+import study.querydsl.support.RebuildScheduler;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * team 별 TeamSketch(age 분위수 t-digest, username HyperLogLog)를 커밋된 변경 이벤트로 고친다.
+ * 조회는 DB 를 보지 않고 team 수 x centroid 수 만큼만 걸린다.
+ * <p>
+ * 오차 (기본값 compression = 100, hll-precision = 12)
+ * <ul>
+ *     <li>age 분위수 : rank 오차 p50 ±0.5%, p99 ±0.1% 안팎 (TDigest)</li>
+ *     <li>서로 다른 username 수 : 상대 표준 오차 1.6% (HyperLogLog)</li>
+ *     <li>sketch 는 값을 뺄 수 없어서 수정 / 삭제는 staleChanges 로만 센다.
+ *         stale 이 전체의 max-stale-ratio 를 넘거나 벌크 변경이 있으면 DB 에서 다시 만든다.</li>
+ *     <li>DB 에서 읽는 동안 들어온 변경은 읽은 결과에 이미 들어 있을 수 있으므로 다시 적용하지 않고 stale 로만 센다.
+ *         (다시 적용하면 같은 member 가 두 번 들어간다)</li>
+ * </ul>
+ * member.sketch.snapshot-file 이 있으면 주기적으로 파일에 남기고, 재시작할 때 그 파일로 먼저 띄운 뒤 DB 에서 다시 만든다.
+ */
+@Slf4j
+@ConditionalOnProperty(name = "member.sketch.enabled", havingValue = "true")
+@Component
+public class TeamSketchService {
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTx;
+    private final double compression;
+    private final int precision;
+    private final double maxStaleRatio;
+    private final long rebuildDelayMillis;
+    private final Path snapshotFile;
+    private final long reconcileDelayMillis;
+    private final RebuildScheduler scheduler;
+
+    private final Object lock = new Object();
+    // 아래는 lock 으로 보호한다.
+    private Map<Long, TeamSketch> sketches;
+    private long staleChanges;
+    private boolean dirty;
+    // DB 에서 읽는 동안 들어온 member 변경. 새 sketch 에서 stale 로 센다.
+    private List<MemberChangedEvent> duringRebuild;
+
+    private final LongAdder rebuilds = new LongAdder();
+
+    public TeamSketchService(JPAQueryFactory queryFactory,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${member.sketch.compression:100}") double compression,
+                             @Value("${member.sketch.hll-precision:12}") int precision,
+                             @Value("${member.sketch.max-stale-ratio:0.01}") double maxStaleRatio,
+                             @Value("${member.sketch.rebuild-delay-ms:1000}") long rebuildDelayMillis,
+                             @Value("${member.sketch.snapshot-file:}") String snapshotFile,
+                             @Value("${member.sketch.reconcile-delay-ms:5000}") long reconcileDelayMillis) {
+        this.queryFactory = queryFactory;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.compression = compression;
+        this.precision = precision;
+        this.maxStaleRatio = maxStaleRatio;
+        this.rebuildDelayMillis = rebuildDelayMillis;
+        this.snapshotFile = StringUtils.hasText(snapshotFile) ? Paths.get(snapshotFile) : null;
+        this.reconcileDelayMillis = reconcileDelayMillis;
+        this.scheduler = new RebuildScheduler("team-sketch-rebuild", rebuildDelayMillis, this::rebuild);
+
+        FunctionCounter.builder("member.sketch.rebuilds", rebuilds, LongAdder::sum)
+                       .register(meterRegistry);
+        Gauge.builder("member.sketch.stale.changes", this, TeamSketchService::staleChanges)
+             .description("마지막 재구성 이후 sketch 에 반영하지 못한 수정 / 삭제 수")
+             .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        if (snapshotFile != null && Files.exists(snapshotFile)) {
+            scheduler.execute(this::restore);
+            scheduler.schedule(reconcileDelayMillis);
+        } else {
+            scheduler.schedule(0);
+        }
+    }
+
+    void restore() {
+        try {
+            long start = System.currentTimeMillis();
+            Map<Long, TeamSketch> restored = TeamSketchFile.read(snapshotFile);
+            synchronized (lock) {
+                if (sketches == null) {
+                    sketches = restored;
+                }
+            }
+            log.info("team sketches restored from {}. teams={}, {}ms",
+                    snapshotFile, restored.size(), System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            log.warn("team sketch restore failed. rebuilding from database", e);
+            scheduler.schedule(0);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${member.sketch.persist-interval-ms:60000}",
+               fixedDelayString = "${member.sketch.persist-interval-ms:60000}")
+    public void persist() {
+        if (snapshotFile == null) {
+            return;
+        }
+        byte[] encoded;
+        synchronized (lock) {
+            if (sketches == null || !dirty) {
+                return;
+            }
+            encoded = TeamSketchFile.encode(sketches);
+            dirty = false;
+        }
+        try {
+            TeamSketchFile.write(encoded, snapshotFile);
+        } catch (IOException e) {
+            log.warn("team sketch write failed. file={}", snapshotFile, e);
+        }
+    }
+
+    /**
+     * @param quantiles 0 ~ 1
+     * @return team id 오름차순. 아직 한 번도 만들지 못했으면 빈 Optional.
+     */
+    public Optional<List<TeamSketchDto>> sketches(List<Double> quantiles) {
+        synchronized (lock) {
+            if (sketches == null) {
+                return Optional.empty();
+            }
+            List<TeamSketchDto> result = new ArrayList<>(sketches.size());
+            for (Map.Entry<Long, TeamSketch> entry : new TreeMap<>(sketches).entrySet()) {
+                result.add(toDto(entry.getKey(), entry.getValue(), quantiles));
+            }
+            return Optional.of(result);
+        }
+    }
+
+    private TeamSketchDto toDto(Long teamId, TeamSketch sketch, List<Double> quantiles) {
+        Map<String, Double> ages = new LinkedHashMap<>();
+        if (sketch.count() > 0) {
+            for (Double q : quantiles) {
+                ages.put(String.valueOf(q), sketch.getAges().quantile(q));
+            }
+        }
+        return new TeamSketchDto(teamId, sketch.getTeamName(), sketch.count(), ages,
+                sketch.getUsernames().cardinality(), sketch.getUsernames().relativeStandardError(),
+                sketch.getStaleChanges());
+    }
+
+    public long staleChanges() {
+        synchronized (lock) {
+            return staleChanges;
+        }
+    }
+
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        boolean rebuild;
+        synchronized (lock) {
+            if (duringRebuild != null) {
+                duringRebuild.add(event);
+            }
+            if (sketches == null) {
+                return;
+            }
+            staleChanges += apply(sketches, event);
+            dirty = true;
+            rebuild = staleChanges > maxStaleRatio * Math.max(1, totalCount());
+        }
+        if (rebuild) {
+            scheduler.schedule(rebuildDelayMillis);
+        }
+    }
+
+    /**
+     * @return 반영하지 못한 변경 수
+     */
+    private int apply(Map<Long, TeamSketch> target, MemberChangedEvent event) {
+        MemberState before = event.getBefore();
+        MemberState after = event.getAfter();
+        if (event.getType() == ChangeType.UPDATE && before != null
+                && Objects.equals(before.getTeamId(), after.getTeamId())
+                && before.getAge() == after.getAge()
+                && Objects.equals(before.getUsername(), after.getUsername())) {
+            return 0;
+        }
+        if (after != null && after.getTeamId() != null) {
+            sketch(target, after.getTeamId()).add(after.getUsername(), after.getAge());
+        }
+        if (event.getType() == ChangeType.INSERT) {
+            return 0;
+        }
+        // 이전 값을 뺄 수 없다. 이전 team 을 모르면 새 team 에 센다.
+        Long staleTeamId = before != null ? before.getTeamId() : after.getTeamId();
+        if (staleTeamId != null) {
+            sketch(target, staleTeamId).markStale();
+        }
+        return 1;
+    }
+
+    private TeamSketch sketch(Map<Long, TeamSketch> target, Long teamId) {
+        return target.computeIfAbsent(teamId, id -> new TeamSketch(null, compression, precision));
+    }
+
+    private long totalCount() {
+        long total = 0;
+        for (TeamSketch sketch : sketches.values()) {
+            total += sketch.count();
+        }
+        return total;
+    }
+
+    @EventListener
+    public void onTeamChanged(TeamChangedEvent event) {
+        synchronized (lock) {
+            if (sketches == null) {
+                return;
+            }
+            if (event.getType() == ChangeType.DELETE) {
+                sketches.remove(event.getTeamId());
+            } else {
+                sketch(sketches, event.getTeamId()).rename(event.getAfterName());
+            }
+            dirty = true;
+        }
+    }
+
+    @EventListener
+    public void onBulkChanged(BulkChangedEvent event) {
+        if (Member.class.isAssignableFrom(event.getEntityType()) || Team.class.isAssignableFrom(event.getEntityType())) {
+            synchronized (lock) {
+                staleChanges += event.getAffectedRows();
+            }
+            scheduler.schedule(rebuildDelayMillis);
+        }
+    }
+
+    void rebuild() {
+        synchronized (lock) {
+            duringRebuild = new ArrayList<>();
+        }
+        long start = System.currentTimeMillis();
+        Map<Long, TeamSketch> loaded;
+        try {
+            loaded = readOnlyTx.execute(status -> load());
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                duringRebuild = null;
+            }
+            throw e;
+        }
+        synchronized (lock) {
+            // 읽는 동안 커밋된 변경은 읽은 결과에 있을 수도 없을 수도 있다. 더하지 않고 그 team 을 stale 로만 센다.
+            for (MemberChangedEvent event : duringRebuild) {
+                MemberState state = event.getAfter() != null ? event.getAfter() : event.getBefore();
+                if (state != null && state.getTeamId() != null) {
+                    sketch(loaded, state.getTeamId()).markStale();
+                }
+            }
+            sketches = loaded;
+            staleChanges = duringRebuild.size();
+            dirty = true;
+            duringRebuild = null;
+        }
+        rebuilds.increment();
+        log.info("team sketches rebuilt. teams={}, {}ms", loaded.size(), System.currentTimeMillis() - start);
+        persist();
+    }
+
+    Map<Long, TeamSketch> load() {
+        Map<Long, TeamSketch> loaded = new HashMap<>();
+        for (Tuple row : queryFactory.select(team.id, team.name).from(team).fetch()) {
+            loaded.put(row.get(team.id), new TeamSketch(row.get(team.name), compression, precision));
+        }
+        List<Tuple> rows = queryFactory.select(member.team.id, member.username, member.age)
+                                       .from(member)
+                                       .where(member.team.isNotNull())
+                                       .fetch();
+        for (Tuple row : rows) {
+            sketch(loaded, row.get(member.team.id)).add(row.get(member.username), row.get(member.age));
+        }
+        return loaded;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,22 @@
+package study.querydsl.snapshot;
+
+import com.querydsl.collections.CollQueryTemplates;
+import com.querydsl.collections.DefaultEvaluatorFactory;
+
+/**
+ * 컴파일을 EvaluatorShapeCache 에 맡기는 DefaultEvaluatorFactory.
+ * DefaultQueryEngine / HashJoinQueryEngine 은 DefaultEvaluatorFactory 만 받으므로 상속해서 끼워 넣는다.
+ */
+public class CachingEvaluatorFactory extends DefaultEvaluatorFactory {
+
+    private final EvaluatorShapeCache cache;
+
+    public CachingEvaluatorFactory(CollQueryTemplates templates, EvaluatorShapeCache cache) {
+        super(templates, cache);
+        this.cache = cache;
+    }
+
+    public EvaluatorShapeCache getCache() {
+        return cache;
+    }
+}
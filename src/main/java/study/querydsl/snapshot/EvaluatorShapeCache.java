@@ -0,0 +1,177 @@
+package study.querydsl.snapshot;
+
+import com.querydsl.codegen.utils.ECJEvaluatorFactory;
+import com.querydsl.codegen.utils.Evaluator;
+import com.querydsl.codegen.utils.EvaluatorFactory;
+import com.querydsl.codegen.utils.model.ClassType;
+import com.querydsl.codegen.utils.model.Type;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * querydsl-collections 가 만든 evaluator 소스를 모양(shape) 단위로 기억하는 EvaluatorFactory.
+ * <p>
+ * 상수는 직렬화 단계에서 a1, a2 같은 이름으로 바뀌므로 소스 + 소스 타입 + 상수 타입이 같으면 같은 shape 이고
+ * 이미 컴파일된 클래스를 다시 쓴다.
+ * 컴파일된 클래스는 세대(ECJEvaluatorFactory 하나 = ClassLoader 하나)에 쌓이는데, 한 세대가 maxSize 개를 컴파일하면
+ * 새 세대로 넘어간다. 이전 세대는 LRU 에서 그 세대를 가리키는 shape 가 모두 빠지면 클래스째로 GC 된다.
+ */
+public class EvaluatorShapeCache implements EvaluatorFactory, MeterBinder {
+
+    private final int maxSize;
+    private final ClassLoader parent;
+
+    private final LinkedHashMap<String, EvaluatorFactory> shapes;
+    private EvaluatorFactory generation;
+    private int generationShapes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicLong generations = new AtomicLong(1);
+    private final LongAdder compiles = new LongAdder();
+    private final LongAdder compileNanos = new LongAdder();
+
+    public EvaluatorShapeCache(int maxSize) {
+        this(maxSize, EvaluatorShapeCache.class.getClassLoader());
+    }
+
+    public EvaluatorShapeCache(int maxSize, ClassLoader parent) {
+        this.maxSize = maxSize;
+        this.parent = parent;
+        this.generation = new ECJEvaluatorFactory(parent);
+        this.shapes = new LinkedHashMap<String, EvaluatorFactory>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EvaluatorFactory> eldest) {
+                boolean evict = size() > EvaluatorShapeCache.this.maxSize;
+                if (evict) {
+                    evictions.increment();
+                }
+                return evict;
+            }
+        };
+    }
+
+    @Override
+    public <T> Evaluator<T> createEvaluator(String source, Class<? extends T> projectionType, String[] names,
+                                            Class<?>[] classes, Map<String, Object> constants) {
+        StringBuilder shape = new StringBuilder(source).append('|').append(projectionType.getName());
+        for (int i = 0; i < names.length; i++) {
+            shape.append('|').append(names[i]).append(':').append(classes[i].getName());
+        }
+        return create(shape(shape, constants),
+                factory -> factory.createEvaluator(source, projectionType, names, classes, constants));
+    }
+
+    @Override
+    public <T> Evaluator<T> createEvaluator(String source, ClassType projection, String[] names, Type[] types,
+                                            Class<?>[] classes, Map<String, Object> constants) {
+        StringBuilder shape = new StringBuilder(source).append('|').append(projection.getFullName());
+        for (int i = 0; i < names.length; i++) {
+            shape.append('|').append(names[i]).append(':').append(types[i].getFullName());
+        }
+        return create(shape(shape, constants),
+                factory -> factory.createEvaluator(source, projection, names, types, classes, constants));
+    }
+
+    private static String shape(StringBuilder shape, Map<String, Object> constants) {
+        for (Map.Entry<String, Object> constant : new TreeMap<>(constants).entrySet()) {
+            Object value = constant.getValue();
+            shape.append('|').append(constant.getKey()).append(':').append(value == null ? "null" : value.getClass().getName());
+        }
+        return shape.toString();
+    }
+
+    private <T> Evaluator<T> create(String shape, Function<EvaluatorFactory, Evaluator<T>> creator) {
+        EvaluatorFactory factory;
+        boolean compile;
+        synchronized (shapes) {
+            factory = shapes.get(shape);
+            compile = factory == null;
+            if (compile) {
+                if (generationShapes >= maxSize) {
+                    generation = new ECJEvaluatorFactory(parent);
+                    generationShapes = 0;
+                    generations.incrementAndGet();
+                }
+                factory = generation;
+                generationShapes++;
+            }
+        }
+
+        if (!compile) {
+            hits.increment();
+            // 이미 로딩된 클래스에 이번 상수만 넣어서 돌려준다.
+            synchronized (factory) {
+                return creator.apply(factory);
+            }
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        Evaluator<T> evaluator;
+        // 같은 세대의 ClassLoader 에 동시에 컴파일하지 않도록 세대 단위로 막는다.
+        synchronized (factory) {
+            evaluator = creator.apply(factory);
+        }
+        compiles.increment();
+        compileNanos.add(System.nanoTime() - start);
+
+        synchronized (shapes) {
+            shapes.put(shape, factory);
+        }
+        return evaluator;
+    }
+
+    public int size() {
+        synchronized (shapes) {
+            return shapes.size();
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public long generationCount() {
+        return generations.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("querydsl.collections.evaluator.hits", this, EvaluatorShapeCache::hitCount)
+                       .description("이미 컴파일된 shape 를 다시 쓴 수")
+                       .register(registry);
+        FunctionCounter.builder("querydsl.collections.evaluator.misses", this, EvaluatorShapeCache::missCount)
+                       .description("새 shape 라서 컴파일한 수")
+                       .register(registry);
+        FunctionCounter.builder("querydsl.collections.evaluator.evictions", this, EvaluatorShapeCache::evictionCount)
+                       .register(registry);
+        FunctionTimer.builder("querydsl.collections.evaluator.compile", this,
+                             cache -> cache.compiles.sum(), cache -> cache.compileNanos.sum(), TimeUnit.NANOSECONDS)
+                     .register(registry);
+        Gauge.builder("querydsl.collections.evaluator.size", this, EvaluatorShapeCache::size)
+             .register(registry);
+        Gauge.builder("querydsl.collections.evaluator.generations", this, EvaluatorShapeCache::generationCount)
+             .register(registry);
+    }
+}
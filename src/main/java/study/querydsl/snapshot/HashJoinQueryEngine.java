@@ -0,0 +1,486 @@
+package study.querydsl.snapshot;
+
+import com.querydsl.codegen.utils.Evaluator;
+import com.querydsl.collections.CollQueryTemplates;
+import com.querydsl.collections.DefaultEvaluatorFactory;
+import com.querydsl.collections.DefaultQueryEngine;
+import com.querydsl.collections.QueryEngine;
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.JoinType;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * DefaultQueryEngine 앞에서 eq 조건을 hash 로 처리하는 QueryEngine.
+ * <ul>
+ *     <li>path.eq(상수) : IndexedCollection 이면 인덱스로, 아니면 한 번 훑어서 소스를 먼저 줄인다.</li>
+ *     <li>a.path.eq(b.path) : from 에 여러 소스가 있을 때 중첩 루프 대신 hash join 한다. (from 순서대로 붙인다)</li>
+ * </ul>
+ * 나머지 조건, 정렬, projection 은 DefaultEvaluatorFactory 가 만든 evaluator 로 평가한다.
+ * 컬렉션 프로퍼티 join, group by, 집계 projection 이 있으면 DefaultQueryEngine 에 그대로 맡긴다.
+ * eq 의 한쪽 값이 null 이면 SQL 처럼 맞지 않는 것으로 본다.
+ */
+public class HashJoinQueryEngine implements QueryEngine {
+
+    public static final HashJoinQueryEngine DEFAULT = new HashJoinQueryEngine(new DefaultEvaluatorFactory(CollQueryTemplates.DEFAULT));
+
+    private final DefaultEvaluatorFactory evaluatorFactory;
+    private final QueryEngine delegate;
+
+    public HashJoinQueryEngine(DefaultEvaluatorFactory evaluatorFactory) {
+        this.evaluatorFactory = evaluatorFactory;
+        this.delegate = new DefaultQueryEngine(evaluatorFactory);
+    }
+
+    @Override
+    public long count(QueryMetadata metadata, Map<Expression<?>, Iterable<?>> iterables) {
+        Plan plan = plan(metadata, iterables);
+        if (plan == null) {
+            return delegate.count(metadata, iterables);
+        }
+        if (!plan.hashJoin()) {
+            return delegate.count(metadata, plan.narrowed);
+        }
+        List<Object[]> rows = join(plan, metadata);
+        if (metadata.isDistinct() && metadata.getProjection() != null) {
+            return new LinkedHashSet<>(project(metadata, plan, rows, metadata.getProjection())).size();
+        }
+        return rows.size();
+    }
+
+    @Override
+    public boolean exists(QueryMetadata metadata, Map<Expression<?>, Iterable<?>> iterables) {
+        Plan plan = plan(metadata, iterables);
+        if (plan == null) {
+            return delegate.exists(metadata, iterables);
+        }
+        if (!plan.hashJoin()) {
+            return delegate.exists(metadata, plan.narrowed);
+        }
+        return !join(plan, metadata).isEmpty();
+    }
+
+    @Override
+    public <T> List<T> list(QueryMetadata metadata, Map<Expression<?>, Iterable<?>> iterables, Expression<T> projection) {
+        Plan plan = plan(metadata, iterables);
+        if (plan == null) {
+            return delegate.list(metadata, iterables, projection);
+        }
+        if (!plan.hashJoin()) {
+            return delegate.list(metadata, plan.narrowed, projection);
+        }
+
+        List<Object[]> rows = join(plan, metadata);
+        if (!metadata.getOrderBy().isEmpty()) {
+            sort(metadata, plan, rows);
+        }
+        List<T> result = project(metadata, plan, rows, projection);
+        if (metadata.isDistinct()) {
+            result = new ArrayList<>(new LinkedHashSet<>(result));
+        }
+        return page(result, metadata.getModifiers());
+    }
+
+    /**
+     * 처리할 eq 조건이 없거나 지원하지 않는 쿼리면 null.
+     */
+    private Plan plan(QueryMetadata metadata, Map<Expression<?>, Iterable<?>> iterables) {
+        if (metadata.getWhere() == null || !metadata.getGroupBy().isEmpty() || metadata.getHaving() != null) {
+            return null;
+        }
+        Expression<?> projection = metadata.getProjection();
+        if (projection instanceof Operation && ((Operation<?>) projection).getOperator() instanceof Ops.AggOps) {
+            return null;
+        }
+
+        List<Expression<?>> sources = new ArrayList<>();
+        for (JoinExpression join : metadata.getJoins()) {
+            if (join.getType() != JoinType.DEFAULT || join.getCondition() != null
+                    || !(join.getTarget() instanceof Path) || !iterables.containsKey(join.getTarget())) {
+                return null;
+            }
+            sources.add(join.getTarget());
+        }
+
+        List<Predicate> residual = new ArrayList<>();
+        List<ConstantEq> constants = new ArrayList<>();
+        List<JoinEq> joins = new ArrayList<>();
+        for (Predicate conjunct : conjuncts(metadata.getWhere())) {
+            if (!classify(conjunct, sources, constants, joins)) {
+                residual.add(conjunct);
+            }
+        }
+        if (constants.isEmpty() && joins.isEmpty()) {
+            return null;
+        }
+        // 단일 소스를 리플렉션으로 한 번 더 훑는 건 evaluator 로 훑는 것보다 나을 게 없다.
+        if (sources.size() == 1 && !(iterables.get(sources.get(0)) instanceof IndexedCollection)) {
+            return null;
+        }
+
+        Map<Expression<?>, Iterable<?>> narrowed = new LinkedHashMap<>(iterables);
+        for (int i = 0; i < sources.size(); i++) {
+            narrowed.put(sources.get(i), narrow(iterables.get(sources.get(i)), constantsOf(constants, i)));
+        }
+
+        if (joins.isEmpty() || sources.size() < 2) {
+            // 소스만 줄이고 나머지는 DefaultQueryEngine 에 맡긴다. 상수 조건은 where 에 남아 있어 한 번 더 확인된다.
+            return new Plan(sources, narrowed, Collections.emptyList(), null);
+        }
+
+        // hash join 으로 처리하는 조건은 evaluator 가 다시 보지 않는다.
+        return new Plan(sources, narrowed, joins, ExpressionUtils.allOf(residual));
+    }
+
+    private static List<Predicate> conjuncts(Predicate where) {
+        List<Predicate> result = new ArrayList<>();
+        collect(where, result);
+        return result;
+    }
+
+    private static void collect(Predicate predicate, List<Predicate> result) {
+        if (predicate instanceof BooleanBuilder) {
+            Predicate value = ((BooleanBuilder) predicate).getValue();
+            if (value != null) {
+                collect(value, result);
+            }
+            return;
+        }
+        if (predicate instanceof Operation && ((Operation<?>) predicate).getOperator() == Ops.AND) {
+            for (Expression<?> arg : ((Operation<?>) predicate).getArgs()) {
+                collect((Predicate) arg, result);
+            }
+            return;
+        }
+        result.add(predicate);
+    }
+
+    private static boolean classify(Predicate conjunct, List<Expression<?>> sources,
+                                    List<ConstantEq> constants, List<JoinEq> joins) {
+        if (!(conjunct instanceof Operation) || ((Operation<?>) conjunct).getOperator() != Ops.EQ) {
+            return false;
+        }
+        Expression<?> left = ((Operation<?>) conjunct).getArg(0);
+        Expression<?> right = ((Operation<?>) conjunct).getArg(1);
+
+        if (left instanceof Path && right instanceof Path) {
+            SourcePath a = SourcePath.of((Path<?>) left, sources);
+            SourcePath b = SourcePath.of((Path<?>) right, sources);
+            if (a != null && b != null && a.source != b.source) {
+                joins.add(new JoinEq(a, b));
+                return true;
+            }
+            return false;
+        }
+
+        Path<?> path = left instanceof Path ? (Path<?>) left : right instanceof Path ? (Path<?>) right : null;
+        Expression<?> other = path == left ? right : left;
+        if (path != null && other instanceof Constant) {
+            SourcePath p = SourcePath.of(path, sources);
+            if (p != null) {
+                constants.add(new ConstantEq(p, ((Constant<?>) other).getConstant()));
+            }
+            // 상수 조건은 where 에도 남겨 둔다.
+        }
+        return false;
+    }
+
+    private static List<ConstantEq> constantsOf(List<ConstantEq> constants, int source) {
+        List<ConstantEq> result = new ArrayList<>();
+        for (ConstantEq constant : constants) {
+            if (constant.path.source == source) {
+                result.add(constant);
+            }
+        }
+        return result;
+    }
+
+    private static Iterable<?> narrow(Iterable<?> iterable, List<ConstantEq> constants) {
+        if (constants.isEmpty()) {
+            return iterable;
+        }
+        Iterable<?> current = iterable;
+        int from = 0;
+        if (iterable instanceof IndexedCollection) {
+            ConstantEq first = constants.get(0);
+            current = ((IndexedCollection<?>) iterable).lookup(first.path.properties, first.value);
+            from = 1;
+        }
+        List<Object> result = new ArrayList<>();
+        for (Object element : current) {
+            boolean matches = true;
+            for (int i = from; i < constants.size() && matches; i++) {
+                ConstantEq constant = constants.get(i);
+                matches = Objects.equals(PathValues.read(element, constant.path.properties), constant.value);
+            }
+            if (matches) {
+                result.add(element);
+            }
+        }
+        return result;
+    }
+
+    private List<Object[]> join(Plan plan, QueryMetadata metadata) {
+        int width = plan.sources.size();
+        List<Object[]> rows = new ArrayList<>();
+        for (Object element : plan.narrowed.get(plan.sources.get(0))) {
+            Object[] row = new Object[width];
+            row[0] = element;
+            rows.add(row);
+        }
+
+        List<JoinEq> unused = new ArrayList<>(plan.joins);
+        for (int k = 1; k < width && !rows.isEmpty(); k++) {
+            Iterable<?> right = plan.narrowed.get(plan.sources.get(k));
+            JoinEq joinEq = take(unused, k);
+            rows = joinEq == null ? crossJoin(rows, right, k) : hashJoin(rows, right, k, joinEq);
+            // 이미 붙은 두 소스 사이의 조건이 더 있으면 여기서 바로 확인한다.
+            rows = filterJoined(rows, unused, k);
+        }
+
+        if (plan.residual == null) {
+            return rows;
+        }
+        Evaluator<Boolean> filter = evaluatorFactory.create(metadata, plan.sources, plan.residual);
+        List<Object[]> filtered = new ArrayList<>();
+        for (Object[] row : rows) {
+            if (Boolean.TRUE.equals(filter.evaluate(row))) {
+                filtered.add(row);
+            }
+        }
+        return filtered;
+    }
+
+    private static JoinEq take(List<JoinEq> unused, int k) {
+        for (int i = 0; i < unused.size(); i++) {
+            JoinEq joinEq = unused.get(i);
+            if (joinEq.probe(k) != null) {
+                return unused.remove(i);
+            }
+        }
+        return null;
+    }
+
+    private static List<Object[]> hashJoin(List<Object[]> rows, Iterable<?> right, int k, JoinEq joinEq) {
+        SourcePath build = joinEq.build(k);
+        SourcePath probe = joinEq.probe(k);
+
+        Map<Object, ? extends List<?>> table;
+        if (right instanceof IndexedCollection) {
+            table = ((IndexedCollection<?>) right).index(build.properties);
+        } else {
+            Map<Object, List<Object>> built = new HashMap<>();
+            for (Object element : right) {
+                Object key = PathValues.read(element, build.properties);
+                if (key != null) {
+                    built.computeIfAbsent(key, x -> new ArrayList<>()).add(element);
+                }
+            }
+            table = built;
+        }
+
+        List<Object[]> joined = new ArrayList<>();
+        for (Object[] row : rows) {
+            Object key = PathValues.read(row[probe.source], probe.properties);
+            List<?> matches = key == null ? null : table.get(key);
+            if (matches == null) {
+                continue;
+            }
+            for (Object match : matches) {
+                Object[] next = row.clone();
+                next[k] = match;
+                joined.add(next);
+            }
+        }
+        return joined;
+    }
+
+    private static List<Object[]> crossJoin(List<Object[]> rows, Iterable<?> right, int k) {
+        List<Object[]> joined = new ArrayList<>();
+        for (Object[] row : rows) {
+            for (Object element : right) {
+                Object[] next = row.clone();
+                next[k] = element;
+                joined.add(next);
+            }
+        }
+        return joined;
+    }
+
+    private static List<Object[]> filterJoined(List<Object[]> rows, List<JoinEq> unused, int k) {
+        List<JoinEq> ready = new ArrayList<>();
+        for (JoinEq joinEq : unused) {
+            if (joinEq.left.source <= k && joinEq.right.source <= k) {
+                ready.add(joinEq);
+            }
+        }
+        if (ready.isEmpty()) {
+            return rows;
+        }
+        unused.removeAll(ready);
+        List<Object[]> filtered = new ArrayList<>();
+        for (Object[] row : rows) {
+            boolean matches = true;
+            for (JoinEq joinEq : ready) {
+                Object a = PathValues.read(row[joinEq.left.source], joinEq.left.properties);
+                Object b = PathValues.read(row[joinEq.right.source], joinEq.right.properties);
+                matches &= a != null && a.equals(b);
+            }
+            if (matches) {
+                filtered.add(row);
+            }
+        }
+        return filtered;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void sort(QueryMetadata metadata, Plan plan, List<Object[]> rows) {
+        List<OrderSpecifier<?>> orderBy = metadata.getOrderBy();
+        List<Evaluator<?>> keys = new ArrayList<>();
+        for (OrderSpecifier<?> order : orderBy) {
+            keys.add(evaluatorFactory.create(metadata, plan.sources, order.getTarget()));
+        }
+
+        Map<Object[], Object[]> sortKeys = new HashMap<>();
+        for (Object[] row : rows) {
+            Object[] values = new Object[keys.size()];
+            for (int i = 0; i < keys.size(); i++) {
+                values[i] = keys.get(i).evaluate(row);
+            }
+            sortKeys.put(row, values);
+        }
+
+        rows.sort((a, b) -> {
+            Object[] x = sortKeys.get(a);
+            Object[] y = sortKeys.get(b);
+            for (int i = 0; i < orderBy.size(); i++) {
+                OrderSpecifier<?> order = orderBy.get(i);
+                Comparator<Comparable> comparator = Comparator.naturalOrder();
+                if (order.getOrder() == Order.DESC) {
+                    comparator = comparator.reversed();
+                }
+                comparator = order.getNullHandling() == OrderSpecifier.NullHandling.NullsLast
+                        ? Comparator.nullsLast(comparator)
+                        : Comparator.nullsFirst(comparator);
+                int result = comparator.compare((Comparable) x[i], (Comparable) y[i]);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return 0;
+        });
+    }
+
+    private <T> List<T> project(QueryMetadata metadata, Plan plan, List<Object[]> rows, Expression<T> projection) {
+        Evaluator<T> evaluator = evaluatorFactory.create(metadata, plan.sources, projection);
+        List<T> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            result.add(evaluator.evaluate(row));
+        }
+        return result;
+    }
+
+    private static <T> List<T> page(List<T> list, QueryModifiers modifiers) {
+        if (modifiers == null || !modifiers.isRestricting()) {
+            return list;
+        }
+        int from = modifiers.getOffset() != null ? (int) Math.min(modifiers.getOffset(), list.size()) : 0;
+        int to = modifiers.getLimit() != null ? (int) Math.min((long) from + modifiers.getLimit(), list.size()) : list.size();
+        return new ArrayList<>(list.subList(from, to));
+    }
+
+    private static class Plan {
+        private final List<Expression<?>> sources;
+        private final Map<Expression<?>, Iterable<?>> narrowed;
+        private final List<JoinEq> joins;
+        private final Predicate residual;
+
+        private Plan(List<Expression<?>> sources, Map<Expression<?>, Iterable<?>> narrowed,
+                     List<JoinEq> joins, Predicate residual) {
+            this.sources = sources;
+            this.narrowed = narrowed;
+            this.joins = joins;
+            this.residual = residual;
+        }
+
+        private boolean hashJoin() {
+            return !joins.isEmpty();
+        }
+    }
+
+    /**
+     * from 의 몇 번째 소스에서 시작하는 어떤 프로퍼티 경로인지.
+     */
+    private static class SourcePath {
+        private final int source;
+        private final List<String> properties;
+
+        private SourcePath(int source, List<String> properties) {
+            this.source = source;
+            this.properties = properties;
+        }
+
+        private static SourcePath of(Path<?> path, List<Expression<?>> sources) {
+            int source = sources.indexOf(path.getRoot());
+            List<String> properties = PathValues.properties(path);
+            return source < 0 || properties == null ? null : new SourcePath(source, properties);
+        }
+    }
+
+    private static class ConstantEq {
+        private final SourcePath path;
+        private final Object value;
+
+        private ConstantEq(SourcePath path, Object value) {
+            this.path = path;
+            this.value = value;
+        }
+    }
+
+    private static class JoinEq {
+        private final SourcePath left;
+        private final SourcePath right;
+
+        private JoinEq(SourcePath left, SourcePath right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        /**
+         * k 번째 소스를 붙일 때 쓸 수 있으면 이미 붙은 쪽 경로, 아니면 null.
+         */
+        private SourcePath probe(int k) {
+            if (left.source == k && right.source < k) {
+                return right;
+            }
+            if (right.source == k && left.source < k) {
+                return left;
+            }
+            return null;
+        }
+
+        private SourcePath build(int k) {
+            return left.source == k ? left : right;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package study.querydsl.snapshot;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 변경되지 않는 리스트 + 프로퍼티 경로별 hash 인덱스.
+ * HashJoinQueryEngine 이 eq 조건과 equi-join 에 쓸 인덱스를 처음 필요할 때 만들어 두고 재사용한다.
+ * 원소가 바뀌면 인덱스가 틀어지므로 스냅샷처럼 읽기 전용 데이터에만 쓴다.
+ */
+public final class IndexedCollection<T> extends AbstractList<T> {
+
+    private final List<T> elements;
+    private final Map<List<String>, Map<Object, List<T>>> indexes = new ConcurrentHashMap<>();
+
+    public IndexedCollection(List<T> elements) {
+        this.elements = Collections.unmodifiableList(new ArrayList<>(elements));
+    }
+
+    @Override
+    public T get(int index) {
+        return elements.get(index);
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    /**
+     * @param properties root 를 뺀 프로퍼티 경로. 예) member.team.name -> [team, name]
+     */
+    public List<T> lookup(List<String> properties, Object value) {
+        List<T> found = index(properties).get(value);
+        return found != null ? found : Collections.emptyList();
+    }
+
+    /**
+     * 값이 null 인 원소는 어떤 eq 조건에도 맞지 않으므로 인덱스에 넣지 않는다.
+     */
+    Map<Object, List<T>> index(List<String> properties) {
+        return indexes.computeIfAbsent(properties, p -> {
+            Map<Object, List<T>> index = new HashMap<>();
+            for (T element : elements) {
+                Object key = PathValues.read(element, p);
+                if (key != null) {
+                    index.computeIfAbsent(key, k -> new ArrayList<>()).add(element);
+                }
+            }
+            return index;
+        });
+    }
+
+    int indexCount() {
+        return indexes.size();
+    }
+}
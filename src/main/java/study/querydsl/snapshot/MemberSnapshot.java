@@ -0,0 +1,80 @@
+package study.querydsl.snapshot;
+
+import lombok.Getter;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 특정 시점의 member / team 목록. 트랜잭션이 끝난 detached 엔티티라 읽기만 해야 한다.
+ * member 는 id 순으로 정렬해 두므로 단일 소스 쿼리의 결과도 id 순이다.
+ * 두 목록 모두 IndexedCollection 이라 HashJoinQueryEngine 이 eq 조건에 인덱스를 만들어 재사용한다.
+ */
+@Getter
+public final class MemberSnapshot {
+
+    private static final Comparator<Member> BY_ID =
+            Comparator.comparing(Member::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final IndexedCollection<Team> teams;
+    private final IndexedCollection<Member> members;
+    private final long loadedAt;
+
+    public MemberSnapshot(List<Team> teams, List<Member> members) {
+        this(teams, sorted(members));
+    }
+
+    private MemberSnapshot(List<Team> teams, ArrayList<Member> sortedMembers) {
+        this.teams = new IndexedCollection<>(teams);
+        this.members = new IndexedCollection<>(sortedMembers);
+        this.loadedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * teamIds 의 team 과 그 소속 member, memberIds 의 member 를 새로 읽은 것으로 바꾼 스냅샷을 만든다.
+     * 새로 읽은 member 의 team 은 loadedTeams 의 인스턴스여야 한다. (같은 영속성 컨텍스트에서 읽는다)
+     * 기존 member 는 이미 id 순이므로 다시 정렬하지 않고 병합한다.
+     */
+    public MemberSnapshot replace(Set<Long> teamIds, Set<Long> memberIds,
+                                  List<Team> loadedTeams, List<Member> loadedMembers) {
+        List<Team> nextTeams = new ArrayList<>(teams.size() + loadedTeams.size());
+        for (Team team : teams) {
+            if (!teamIds.contains(team.getId())) {
+                nextTeams.add(team);
+            }
+        }
+        nextTeams.addAll(loadedTeams);
+
+        ArrayList<Member> added = sorted(loadedMembers);
+        ArrayList<Member> nextMembers = new ArrayList<>(members.size() + added.size());
+        int next = 0;
+        for (Member member : members) {
+            if (memberIds.contains(member.getId())
+                    || member.getTeam() != null && teamIds.contains(member.getTeam().getId())) {
+                continue;
+            }
+            while (next < added.size() && BY_ID.compare(added.get(next), member) < 0) {
+                nextMembers.add(added.get(next++));
+            }
+            nextMembers.add(member);
+        }
+        while (next < added.size()) {
+            nextMembers.add(added.get(next++));
+        }
+        return new MemberSnapshot(nextTeams, nextMembers);
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    private static ArrayList<Member> sorted(List<Member> members) {
+        ArrayList<Member> sorted = new ArrayList<>(members);
+        sorted.sort(BY_ID);
+        return sorted;
+    }
+}
@@ -0,0 +1,137 @@
+package study.querydsl.snapshot;
+
+import com.querydsl.collections.CollQuery;
+import com.querydsl.collections.QueryEngine;
+import com.querydsl.core.types.Predicate;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.ngram.UsernamePattern;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * MemberRepositoryImpl 의 search / searchComplexOptimize 와 같은 조건을 MemberSnapshot 위에서 querydsl-collections 로 실행한다.
+ * inner join 과 결과를 맞추기 위해 team 이 없는 member 는 제외한다.
+ */
+public class MemberSnapshotQuery {
+
+    private final MemberSnapshot snapshot;
+    private final QueryEngine queryEngine;
+
+    public MemberSnapshotQuery(MemberSnapshot snapshot, QueryEngine queryEngine) {
+        this.snapshot = snapshot;
+        this.queryEngine = queryEngine;
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition cond) {
+        return where(cond).select(projection())
+                          .fetch();
+    }
+
+    public Page<MemberTeamDto> searchComplexOptimize(MemberSearchCondition cond, Pageable pageable) {
+        CollQuery<MemberTeamDto> contentQuery = where(cond).select(projection());
+        if (pageable.isPaged()) {
+            contentQuery.offset(pageable.getOffset())
+                        .limit(pageable.getPageSize());
+        }
+        List<MemberTeamDto> content = contentQuery.fetch();
+
+        return PageableExecutionUtils.getPage(content, pageable, where(cond)::fetchCount);
+    }
+
+    /**
+     * 검색 조건 4개의 모든 조합(16가지)을 한 건짜리 스냅샷에 실행해서 evaluator 를 미리 컴파일해 둔다.
+     * 상수 값은 shape 에 들어가지 않으므로 아무 값이나 같은 타입이면 된다.
+     */
+    public static void warmUp(QueryEngine queryEngine) {
+        Team team = new Team("warmup");
+        MemberSnapshot snapshot = new MemberSnapshot(Collections.singletonList(team),
+                Collections.singletonList(new Member("warmup", 0, team)));
+        MemberSnapshotQuery query = new MemberSnapshotQuery(snapshot, queryEngine);
+
+        for (int mask = 0; mask < 16; mask++) {
+            MemberSearchCondition cond = new MemberSearchCondition();
+            cond.setUsername((mask & 1) != 0 ? "warmup" : null);
+            cond.setTeamName((mask & 2) != 0 ? "warmup" : null);
+            cond.setAgeGoe((mask & 4) != 0 ? 0 : null);
+            cond.setAgeLoe((mask & 8) != 0 ? 0 : null);
+
+            query.search(cond);
+            // offset 이 있고 결과가 비어 있으면 count 쿼리까지 실행된다.
+            query.searchComplexOptimize(cond, PageRequest.of(1, 1));
+        }
+    }
+
+    private CollQuery<Member> where(MemberSearchCondition cond) {
+        return new CollQuery<Member>(queryEngine).from(member, members(cond))
+                                                 .select(member)
+                                                 .where(
+                                                         member.team.isNotNull(),
+                                                         usernameEq(cond),
+                                                         teamNameEq(cond.getTeamName()),
+                                                         ageGoe(cond.getAgeGoe()),
+                                                         ageLoe(cond.getAgeLoe())
+                                                 );
+    }
+
+    /**
+     * usernameLike 는 querydsl-collections 의 like 대신 UsernamePattern 으로 source 를 먼저 거른다.
+     * 대소문자 무시 검색도 여기서 소문자로 맞춰 비교한다.
+     */
+    private List<Member> members(MemberSearchCondition cond) {
+        UsernamePattern pattern = UsernamePattern.parse(cond.getUsernameLike());
+        boolean ignoreCase = cond.isUsernameIgnoreCase();
+        String lower = ignoreCase && StringUtils.hasText(cond.getUsername()) ? cond.getUsername().toLowerCase(Locale.ROOT) : null;
+        if (pattern == null && lower == null) {
+            return snapshot.getMembers();
+        }
+        UsernamePattern matcher = pattern != null && ignoreCase ? pattern.toLowerCase() : pattern;
+        List<Member> matched = new ArrayList<>();
+        for (Member candidate : snapshot.getMembers()) {
+            String username = ignoreCase && candidate.getUsername() != null
+                    ? candidate.getUsername().toLowerCase(Locale.ROOT)
+                    : candidate.getUsername();
+            if ((lower == null || lower.equals(username)) && (matcher == null || matcher.matches(username))) {
+                matched.add(candidate);
+            }
+        }
+        return matched;
+    }
+
+    private static QMemberTeamDto projection() {
+        return new QMemberTeamDto(member.id,
+                member.username,
+                member.age,
+                member.team.id,
+                member.team.name);
+    }
+
+    private Predicate usernameEq(MemberSearchCondition cond) {
+        return StringUtils.hasText(cond.getUsername()) && !cond.isUsernameIgnoreCase() ? member.username.eq(cond.getUsername()) : null;
+    }
+
+    private Predicate teamNameEq(String teamName) {
+        return StringUtils.hasText(teamName) ? member.team.name.eq(teamName) : null;
+    }
+
+    private Predicate ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    }
+
+    private Predicate ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    }
+}
@@ -0,0 +1,279 @@
+package study.querydsl.snapshot;
+
+import com.querydsl.collections.QueryEngine;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.BulkChangedEvent;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.MemberState;
+import study.querydsl.event.TeamChangedEvent;
+import study.querydsl.support.RebuildScheduler;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * member / team 전체를 MemberSnapshot 으로 들고 있다가 querydsl-collections 로 검색한다.
+ * <p>
+ * 변경 이벤트가 오면 stale 로 표시하고 잠시 뒤 반영한다.
+ * <ul>
+ *     <li>단건 member / team 변경 : 바뀐 member 와 관련된 team(변경 전후), 그 team 의 member 만 다시 읽어 기존 스냅샷에 바꿔 끼운다.
+ *     모인 id 가 max-incremental 을 넘으면 전체를 다시 읽는다.</li>
+ *     <li>벌크 변경 : 어떤 row 가 바뀌었는지 모르므로 전체를 다시 읽는다.</li>
+ * </ul>
+ * 이벤트로 잡히지 않는 변경(다른 인스턴스, 직접 실행한 SQL)이 있을 수 있으므로 refresh-interval 마다 한 번씩 무조건 전체를 다시 읽는다.
+ * 주기적으로 다시 읽는 동안에는 알려진 변경이 없으므로 stale 로 표시하지 않고 새 스냅샷으로 바꿀 때까지 기존 것을 계속 쓴다.
+ */
+@Slf4j
+@ConditionalOnProperty(name = "member.snapshot.enabled", havingValue = "true")
+@Component
+public class MemberSnapshotService {
+
+    private final JPAQueryFactory queryFactory;
+    private final QueryEngine collQueryEngine;
+    private final TransactionTemplate readOnlyTx;
+    private final RebuildScheduler scheduler;
+    private final int maxIncremental;
+
+    private volatile MemberSnapshot snapshot;
+    private volatile long loadedSeq = -1;
+
+    private final Object lock = new Object();
+    // 다음 반영 때 다시 읽을 id. fullReload 면 전체를 다시 읽는다. (처음, 벌크 변경, 주기적 refresh, 반영 실패)
+    private Set<Long> changedMembers = new HashSet<>();
+    private Set<Long> changedTeams = new HashSet<>();
+    private boolean fullReload = true;
+
+    public MemberSnapshotService(JPAQueryFactory queryFactory,
+                                 QueryEngine collQueryEngine,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${member.snapshot.reload-delay-ms:200}") long reloadDelayMillis,
+                                 @Value("${member.snapshot.max-incremental:1000}") int maxIncremental) {
+        this.queryFactory = queryFactory;
+        this.collQueryEngine = collQueryEngine;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.scheduler = new RebuildScheduler("member-snapshot-load", reloadDelayMillis, this::update);
+        this.maxIncremental = maxIncremental;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        // 같은 스레드에서 첫 로딩보다 먼저 실행되므로 스냅샷이 fresh 가 될 때는 컴파일이 끝나 있다.
+        scheduler.execute(this::warmUp);
+        scheduler.schedule(0);
+    }
+
+    void warmUp() {
+        try {
+            long start = System.currentTimeMillis();
+            MemberSnapshotQuery.warmUp(collQueryEngine);
+            log.info("member snapshot evaluators compiled. {}ms", System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.warn("member snapshot warm-up failed", e);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${member.snapshot.refresh-interval-ms:300000}",
+               fixedDelayString = "${member.snapshot.refresh-interval-ms:300000}")
+    public void refresh() {
+        synchronized (lock) {
+            fullReload = true;
+        }
+        scheduler.schedule(0);
+    }
+
+    public boolean isFresh() {
+        return snapshot != null && loadedSeq == scheduler.changeSeq();
+    }
+
+    /**
+     * fresh 일 때만 스냅샷을 돌려준다.
+     */
+    public Optional<MemberSnapshot> current() {
+        MemberSnapshot current = snapshot;
+        return current != null && isFresh() ? Optional.of(current) : Optional.empty();
+    }
+
+    public Optional<List<MemberTeamDto>> search(MemberSearchCondition cond) {
+        return current().map(s -> new MemberSnapshotQuery(s, collQueryEngine).search(cond));
+    }
+
+    public Optional<Page<MemberTeamDto>> searchComplexOptimize(MemberSearchCondition cond, Pageable pageable) {
+        return current().map(s -> new MemberSnapshotQuery(s, collQueryEngine).searchComplexOptimize(cond, pageable));
+    }
+
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        synchronized (lock) {
+            if (event.getBefore() == null && event.getAfter() == null) {
+                fullReload = true;
+            }
+            addChanged(event.getBefore());
+            addChanged(event.getAfter());
+        }
+        scheduler.markChanged();
+    }
+
+    @EventListener
+    public void onTeamChanged(TeamChangedEvent event) {
+        synchronized (lock) {
+            changedTeams.add(event.getTeamId());
+        }
+        scheduler.markChanged();
+    }
+
+    @EventListener
+    public void onBulkChanged(BulkChangedEvent event) {
+        synchronized (lock) {
+            fullReload = true;
+        }
+        scheduler.markChanged();
+    }
+
+    /**
+     * lock 안에서 부른다.
+     */
+    private void addChanged(MemberState state) {
+        if (state == null) {
+            return;
+        }
+        changedMembers.add(state.getId());
+        if (state.getTeamId() != null) {
+            changedTeams.add(state.getTeamId());
+        }
+    }
+
+    /**
+     * 모인 변경을 반영한다. 반영하다 실패하면 어떤 id 를 놓쳤는지 모르므로 다음에는 전체를 다시 읽는다.
+     */
+    void update() {
+        long seq = scheduler.changeSeq();
+        MemberSnapshot current = snapshot;
+        Set<Long> memberIds;
+        Set<Long> teamIds;
+        boolean full;
+        synchronized (lock) {
+            full = fullReload || current == null || changedMembers.size() + changedTeams.size() > maxIncremental;
+            memberIds = changedMembers;
+            teamIds = changedTeams;
+            changedMembers = new HashSet<>();
+            changedTeams = new HashSet<>();
+            fullReload = false;
+        }
+        try {
+            if (full) {
+                loadAll(seq);
+            } else {
+                apply(seq, current, memberIds, teamIds);
+            }
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                fullReload = true;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 전체를 다시 읽는다. 모여 있던 변경은 읽은 결과에 들어 있으므로 버린다.
+     */
+    void reload() {
+        long seq = scheduler.changeSeq();
+        synchronized (lock) {
+            changedMembers = new HashSet<>();
+            changedTeams = new HashSet<>();
+            fullReload = false;
+        }
+        loadAll(seq);
+    }
+
+    private void loadAll(long seq) {
+        long start = System.currentTimeMillis();
+        MemberSnapshot loaded = readOnlyTx.execute(status -> load());
+        snapshot = loaded;
+        loadedSeq = seq;
+        log.info("member snapshot loaded. size={}, {}ms", loaded.size(), System.currentTimeMillis() - start);
+    }
+
+    private void apply(long seq, MemberSnapshot current, Set<Long> memberIds, Set<Long> teamIds) {
+        if (!memberIds.isEmpty() || !teamIds.isEmpty()) {
+            long start = System.currentTimeMillis();
+            snapshot = readOnlyTx.execute(status -> loadChanged(current, memberIds, teamIds));
+            log.debug("member snapshot updated. members={}, teams={}, {}ms",
+                    memberIds.size(), teamIds.size(), System.currentTimeMillis() - start);
+        }
+        loadedSeq = seq;
+    }
+
+    /**
+     * 바뀐 member 를 먼저 읽어 지금 속한 team 까지 바꿀 team 에 넣는다.
+     * 이어서 읽는 team 과 그 member 는 같은 영속성 컨텍스트라 member.team 과 teams 의 Team 이 같은 인스턴스다.
+     */
+    private MemberSnapshot loadChanged(MemberSnapshot current, Set<Long> memberIds, Set<Long> teamIds) {
+        Map<Long, Member> members = new LinkedHashMap<>();
+        Set<Long> allTeamIds = new HashSet<>(teamIds);
+        if (!memberIds.isEmpty()) {
+            for (Member found : queryFactory.selectFrom(member)
+                                            .leftJoin(member.team, team).fetchJoin()
+                                            .where(member.id.in(memberIds))
+                                            .fetch()) {
+                members.put(found.getId(), found);
+                if (found.getTeam() != null) {
+                    allTeamIds.add(found.getTeam().getId());
+                }
+            }
+        }
+        List<Team> teams = new ArrayList<>();
+        if (!allTeamIds.isEmpty()) {
+            teams = queryFactory.selectFrom(team)
+                                .where(team.id.in(allTeamIds))
+                                .fetch();
+            for (Member found : queryFactory.selectFrom(member)
+                                            .join(member.team, team).fetchJoin()
+                                            .where(team.id.in(allTeamIds))
+                                            .fetch()) {
+                members.put(found.getId(), found);
+            }
+        }
+        return current.replace(allTeamIds, memberIds, teams, new ArrayList<>(members.values()));
+    }
+
+    private MemberSnapshot load() {
+        // 같은 영속성 컨텍스트에서 읽으므로 member.team 과 teams 의 Team 은 같은 인스턴스다.
+        List<Team> teams = queryFactory.selectFrom(team)
+                                       .fetch();
+        List<Member> members = queryFactory.selectFrom(member)
+                                           .leftJoin(member.team, team).fetchJoin()
+                                           .fetch();
+        return new MemberSnapshot(teams, members);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+}
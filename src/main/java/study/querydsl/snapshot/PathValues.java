@@ -0,0 +1,77 @@
+package study.querydsl.snapshot;
+
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.PathType;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * member.team.name 같은 단순 프로퍼티 경로를 evaluator 컴파일 없이 리플렉션으로 읽는다.
+ * getter 가 있으면 getter 를(프록시도 초기화되도록), 없으면 필드를 읽는다.
+ */
+final class PathValues {
+
+    private static final Map<Class<?>, Map<String, Function<Object, Object>>> ACCESSORS = new ConcurrentHashMap<>();
+
+    private PathValues() {
+    }
+
+    /**
+     * root 를 뺀 프로퍼티 이름 목록. 프로퍼티가 아닌 경로(컬렉션 원소, map 값 등)가 섞여 있으면 null.
+     */
+    static List<String> properties(Path<?> path) {
+        List<String> names = new ArrayList<>();
+        PathMetadata metadata = path.getMetadata();
+        while (!metadata.isRoot()) {
+            if (metadata.getPathType() != PathType.PROPERTY) {
+                return null;
+            }
+            names.add(metadata.getName());
+            metadata = metadata.getParent().getMetadata();
+        }
+        Collections.reverse(names);
+        return names;
+    }
+
+    static Object read(Object root, List<String> properties) {
+        Object value = root;
+        for (String property : properties) {
+            if (value == null) {
+                return null;
+            }
+            value = accessor(value.getClass(), property).apply(value);
+        }
+        return value;
+    }
+
+    private static Function<Object, Object> accessor(Class<?> type, String property) {
+        return ACCESSORS.computeIfAbsent(type, t -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(property, p -> createAccessor(type, p));
+    }
+
+    private static Function<Object, Object> createAccessor(Class<?> type, String property) {
+        PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(type, property);
+        if (descriptor != null && descriptor.getReadMethod() != null) {
+            Method getter = descriptor.getReadMethod();
+            ReflectionUtils.makeAccessible(getter);
+            return target -> ReflectionUtils.invokeMethod(getter, target);
+        }
+        Field field = ReflectionUtils.findField(type, property);
+        if (field == null) {
+            throw new IllegalArgumentException("no property '" + property + "' in " + type.getName());
+        }
+        ReflectionUtils.makeAccessible(field);
+        return target -> ReflectionUtils.getField(field, target);
+    }
+}
@@ -0,0 +1,143 @@
+package study.querydsl.stats;
+
+import study.querydsl.dto.TeamStatsDto;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * team 별 member 수 / age 합 / 최소 / 최대. member 가 바뀔 때마다 그 member 의 몫만 빼고 더한다.
+ * <p>
+ * member 별 (teamId, age) 를 같이 들고 있어서 putMember / removeMember 는 멱등이다.
+ * 같은 변경이 두 번 들어오거나 이전 값을 모르는 update 가 와도 집계가 틀어지지 않는다.
+ * 삭제 후에도 최소 / 최대를 맞추기 위해 team 마다 age 별 인원 수를 둔다.
+ * 스레드 안전하지 않다.
+ */
+public class TeamStats {
+
+    private final Map<Long, Aggregate> teams = new HashMap<>();
+    private final Map<Long, Assignment> members = new HashMap<>();
+
+    public void putTeam(Long teamId, String name) {
+        aggregate(teamId).name = name;
+    }
+
+    public void removeTeam(Long teamId) {
+        teams.remove(teamId);
+    }
+
+    /**
+     * @param teamId team 이 없는 member 면 null. 집계에는 들어가지 않는다.
+     */
+    public void putMember(Long memberId, Long teamId, int age) {
+        Assignment next = new Assignment(teamId, age);
+        Assignment previous = members.put(memberId, next);
+        if (next.equals(previous)) {
+            return;
+        }
+        unassign(previous);
+        if (teamId != null) {
+            aggregate(teamId).add(age);
+        }
+    }
+
+    public void removeMember(Long memberId) {
+        unassign(members.remove(memberId));
+    }
+
+    public int teamCount() {
+        return teams.size();
+    }
+
+    public int memberCount() {
+        return members.size();
+    }
+
+    /**
+     * @return team id 오름차순
+     */
+    public List<TeamStatsDto> toList() {
+        List<TeamStatsDto> result = new ArrayList<>(teams.size());
+        teams.keySet().stream()
+             .sorted()
+             .forEach(teamId -> result.add(teams.get(teamId).toDto(teamId)));
+        return result;
+    }
+
+    public Optional<TeamStatsDto> get(Long teamId) {
+        Aggregate aggregate = teams.get(teamId);
+        return aggregate == null ? Optional.empty() : Optional.of(aggregate.toDto(teamId));
+    }
+
+    private void unassign(Assignment previous) {
+        if (previous == null || previous.teamId == null) {
+            return;
+        }
+        Aggregate aggregate = teams.get(previous.teamId);
+        if (aggregate != null) {
+            aggregate.remove(previous.age);
+        }
+    }
+
+    private Aggregate aggregate(Long teamId) {
+        return teams.computeIfAbsent(teamId, id -> new Aggregate());
+    }
+
+    private static final class Assignment {
+
+        private final Long teamId;
+        private final int age;
+
+        private Assignment(Long teamId, int age) {
+            this.teamId = teamId;
+            this.age = age;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Assignment)) {
+                return false;
+            }
+            Assignment other = (Assignment) o;
+            return age == other.age && Objects.equals(teamId, other.teamId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(teamId, age);
+        }
+    }
+
+    private static final class Aggregate {
+
+        // team insert 이벤트보다 member 가 먼저 오면 잠시 null 이다.
+        private String name;
+        private long count;
+        private long sum;
+        // age -> 인원 수
+        private final TreeMap<Integer, Integer> ages = new TreeMap<>();
+
+        private void add(int age) {
+            count++;
+            sum += age;
+            ages.merge(age, 1, Integer::sum);
+        }
+
+        private void remove(int age) {
+            count--;
+            sum -= age;
+            ages.computeIfPresent(age, (key, n) -> n == 1 ? null : n - 1);
+        }
+
+        private TeamStatsDto toDto(Long teamId) {
+            return new TeamStatsDto(teamId, name, count, sum,
+                    ages.isEmpty() ? null : ages.firstKey(),
+                    ages.isEmpty() ? null : ages.lastKey());
+        }
+    }
+}
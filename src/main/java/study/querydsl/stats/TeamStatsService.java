@@ -0,0 +1,211 @@
+package study.querydsl.stats;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.BulkChangedEvent;
+import study.querydsl.event.ChangeType;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.MemberState;
+import study.querydsl.event.TeamChangedEvent;
+import study.querydsl.support.RebuildScheduler;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * TeamStats 를 커밋된 Member / Team 변경 이벤트로 바로 고친다. 조회는 team 수만큼만 걸린다.
+ * <p>
+ * 벌크 update / delete 는 어느 row 가 바뀌었는지 모르므로 DB 에서 다시 읽는다. 다시 읽기 전까지 stats 는 빈 Optional 이다.
+ * 다시 읽는 동안 들어온 이벤트는 모아 두었다가 읽은 결과에 다시 적용한다. (TeamStats 가 멱등이라 두 번 적용돼도 된다)
+ */
+@Slf4j
+@ConditionalOnProperty(name = "member.stats.enabled", havingValue = "true")
+@Component
+public class TeamStatsService {
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTx;
+    private final long rebuildDelayMillis;
+
+    // 벌크 변경마다 changeSeq 가 늘어난다.
+    private final RebuildScheduler scheduler;
+
+    private final Object lock = new Object();
+    // 아래는 lock 으로 보호한다.
+    private TeamStats stats;
+    private boolean valid;
+    private List<Consumer<TeamStats>> replay;
+
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+
+    public TeamStatsService(JPAQueryFactory queryFactory,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${member.stats.rebuild-delay-ms:200}") long rebuildDelayMillis) {
+        this.queryFactory = queryFactory;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.rebuildDelayMillis = rebuildDelayMillis;
+        this.scheduler = new RebuildScheduler("team-stats-rebuild", rebuildDelayMillis, this::rebuild);
+
+        FunctionCounter.builder("member.stats.applied", applied, LongAdder::sum)
+                       .description("집계에 바로 반영한 변경 이벤트 수")
+                       .register(meterRegistry);
+        FunctionCounter.builder("member.stats.rebuilds", rebuilds, LongAdder::sum)
+                       .register(meterRegistry);
+        Gauge.builder("member.stats.valid", this, service -> service.isValid() ? 1 : 0)
+             .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        scheduler.schedule(0);
+    }
+
+    /**
+     * 이벤트를 놓쳤을 때(예: 다른 인스턴스에서 직접 SQL 로 바꾼 경우)를 위해 주기적으로 DB 와 맞춘다.
+     */
+    @Scheduled(initialDelayString = "${member.stats.reconcile-interval-ms:600000}",
+               fixedDelayString = "${member.stats.reconcile-interval-ms:600000}")
+    public void reconcile() {
+        scheduler.schedule(0);
+    }
+
+    public boolean isValid() {
+        synchronized (lock) {
+            return valid;
+        }
+    }
+
+    /**
+     * @return team id 오름차순. 벌크 변경 뒤 다시 읽기 전이면 빈 Optional.
+     */
+    public Optional<List<TeamStatsDto>> stats() {
+        synchronized (lock) {
+            return valid ? Optional.of(stats.toList()) : Optional.empty();
+        }
+    }
+
+    public Optional<TeamStatsDto> stats(Long teamId) {
+        synchronized (lock) {
+            if (!valid) {
+                return Optional.empty();
+            }
+            return stats.get(teamId);
+        }
+    }
+
+    @EventListener
+    public void onMemberChanged(MemberChangedEvent event) {
+        MemberState after = event.getAfter();
+        if (event.getType() == ChangeType.DELETE) {
+            Long memberId = event.getBefore().getId();
+            apply(stats -> stats.removeMember(memberId));
+        } else {
+            apply(stats -> stats.putMember(after.getId(), after.getTeamId(), after.getAge()));
+        }
+    }
+
+    @EventListener
+    public void onTeamChanged(TeamChangedEvent event) {
+        if (event.getType() == ChangeType.DELETE) {
+            apply(stats -> stats.removeTeam(event.getTeamId()));
+        } else {
+            apply(stats -> stats.putTeam(event.getTeamId(), event.getAfterName()));
+        }
+    }
+
+    @EventListener
+    public void onBulkChanged(BulkChangedEvent event) {
+        if (!Member.class.isAssignableFrom(event.getEntityType()) && !Team.class.isAssignableFrom(event.getEntityType())) {
+            return;
+        }
+        // rebuild 가 valid 를 정할 때와 겹치지 않도록 lock 안에서 changeSeq 를 올린다.
+        synchronized (lock) {
+            valid = false;
+            scheduler.markChanged();
+        }
+    }
+
+    private void apply(Consumer<TeamStats> change) {
+        synchronized (lock) {
+            if (replay != null) {
+                replay.add(change);
+            }
+            if (stats != null) {
+                change.accept(stats);
+            }
+        }
+        applied.increment();
+    }
+
+    void rebuild() {
+        long seq;
+        synchronized (lock) {
+            seq = scheduler.changeSeq();
+            replay = new ArrayList<>();
+        }
+        try {
+            long start = System.currentTimeMillis();
+            TeamStats loaded = readOnlyTx.execute(status -> load());
+            synchronized (lock) {
+                replay.forEach(change -> change.accept(loaded));
+                stats = loaded;
+                // 읽는 도중 벌크 변경이 커밋됐으면 그 변경이 읽혔는지 알 수 없다.
+                valid = seq == scheduler.changeSeq();
+                replay = null;
+            }
+            rebuilds.increment();
+            log.info("team stats rebuilt. teams={}, members={}, {}ms",
+                    loaded.teamCount(), loaded.memberCount(), System.currentTimeMillis() - start);
+            if (!isValid()) {
+                scheduler.schedule(rebuildDelayMillis);
+            }
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                replay = null;
+            }
+            throw e;
+        }
+    }
+
+    TeamStats load() {
+        TeamStats loaded = new TeamStats();
+        for (Tuple row : queryFactory.select(team.id, team.name).from(team).fetch()) {
+            loaded.putTeam(row.get(team.id), row.get(team.name));
+        }
+        // team 은 join 하지 않고 외래 키 값만 읽는다.
+        for (Tuple row : queryFactory.select(member.id, member.team.id, member.age).from(member).fetch()) {
+            loaded.putMember(row.get(member.id), row.get(member.team.id), row.get(member.age));
+        }
+        return loaded;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+}
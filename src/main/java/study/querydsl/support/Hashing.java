@@ -0,0 +1,34 @@
+package study.querydsl.support;
+
+/**
+ * 확률적 자료구조(ScalableBloomFilter, HyperLogLog)가 같이 쓰는 문자열 hash.
+ */
+public final class Hashing {
+
+    private Hashing() {
+    }
+
+    /**
+     * FNV-1a 를 murmur3 finalizer 로 한 번 더 섞는다. 하위 / 상위 비트를 나눠 써도 고르게 퍼진다.
+     */
+    public static long hash64(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return fmix64(h);
+    }
+
+    /**
+     * murmur3 의 64bit finalizer. hash 하나에서 독립적인 두 번째 값을 얻을 때 쓴다. (double hashing)
+     */
+    public static long fmix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
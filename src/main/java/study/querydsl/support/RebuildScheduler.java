@@ -0,0 +1,97 @@
+package study.querydsl.support;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 변경 이벤트가 오면 잠시 뒤 한 번만 다시 만드는 백그라운드 작업. (MemberIndexService, UsernameNgramService 등)
+ * <ul>
+ *     <li>전용 daemon 스레드 하나에서 돌린다. 다시 만드는 작업끼리는 겹치지 않는다.</li>
+ *     <li>이미 예약돼 있으면 다시 예약하지 않는다. 짧은 시간에 몰린 이벤트는 한 번으로 합쳐진다.</li>
+ *     <li>markChanged 마다 changeSeq 가 늘어난다. 작업을 시작할 때 읽은 값이 끝날 때도 같으면 그 결과는 fresh 다.</li>
+ *     <li>작업이 RuntimeException 을 던지면 delay 의 10 배(최소 1 초) 뒤에 다시 한다.</li>
+ * </ul>
+ */
+@Slf4j
+public class RebuildScheduler {
+
+    private final String name;
+    private final long delayMillis;
+    private final Runnable task;
+
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicLong changeSeq = new AtomicLong();
+
+    /**
+     * @param name        스레드 이름, 로그에 쓴다.
+     * @param delayMillis markChanged 뒤 다시 만들기까지 기다리는 시간
+     * @param task        다시 만드는 작업
+     */
+    public RebuildScheduler(String name, long delayMillis, Runnable task) {
+        this.name = name;
+        this.delayMillis = delayMillis;
+        this.task = task;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public long changeSeq() {
+        return changeSeq.get();
+    }
+
+    /**
+     * 지금 가진 결과가 stale 이 됐다. delay 뒤에 다시 만든다.
+     * @return 늘어난 changeSeq
+     */
+    public long markChanged() {
+        long seq = changeSeq.incrementAndGet();
+        schedule(delayMillis);
+        return seq;
+    }
+
+    /**
+     * changeSeq 를 바꾸지 않고 다시 만들기만 예약한다. 이미 예약돼 있으면 아무것도 하지 않는다.
+     */
+    public void schedule(long delayMillis) {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.schedule(this::run, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 다시 만드는 작업과 같은 스레드에서 실행한다. (파일에서 복원하기 등) 먼저 넣은 것이 먼저 실행된다.
+     */
+    public void execute(Runnable work) {
+        executor.execute(() -> {
+            try {
+                work.run();
+            } catch (RuntimeException e) {
+                log.warn("{} failed", name, e);
+            }
+        });
+    }
+
+    private void run() {
+        scheduled.set(false);
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            long retryMillis = Math.max(delayMillis, 100) * 10;
+            log.warn("{} failed. retry in {}ms", name, retryMillis, e);
+            schedule(retryMillis);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,119 @@
+package study.querydsl.support;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 스냅샷 파일(MemberIndexSnapshotFile, TeamSketchFile) 공통 형식.
+ * <pre>
+ * body    : 파일마다 다르다.
+ * trailer : body 의 CRC32(long)
+ * </pre>
+ * 쓰기는 임시 파일에 한 뒤 이름을 바꿔서, 쓰다가 죽어도 이전 파일이 남는다.
+ */
+public final class SnapshotFiles {
+
+    private SnapshotFiles() {
+    }
+
+    @FunctionalInterface
+    public interface Body {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * 바로 파일에 쓴다. body 가 크면 이쪽을 쓴다.
+     */
+    public static void write(Path file, Body body) throws IOException {
+        replace(file, temp -> {
+            CRC32 crc = new CRC32();
+            try (OutputStream fileOut = Files.newOutputStream(temp);
+                 DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(fileOut, 1 << 16), crc))) {
+                body.writeTo(out);
+                out.flush();
+                // trailer 는 CRC 계산에 넣지 않는다.
+                DataOutputStream trailer = new DataOutputStream(fileOut);
+                trailer.writeLong(crc.getValue());
+                trailer.flush();
+            }
+        });
+    }
+
+    /**
+     * trailer 까지 메모리에 쓴다. 호출하는 쪽이 lock 을 잡은 채로 부르고, 파일 쓰기는 lock 밖에서 write 로 한다.
+     */
+    public static byte[] encode(Body body) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(bytes, crc));
+            body.writeTo(out);
+            out.flush();
+            new DataOutputStream(bytes).writeLong(crc.getValue());
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param encoded encode 결과
+     */
+    public static void write(Path file, byte[] encoded) throws IOException {
+        replace(file, temp -> Files.write(temp, encoded));
+    }
+
+    /**
+     * mmap 으로 읽고 CRC 를 확인한다.
+     * @return trailer 를 뺀 body (position 0)
+     * @throws IOException 파일이 없거나, minBodyLength 보다 짧거나, CRC 가 맞지 않으면
+     */
+    public static ByteBuffer read(Path file, int minBodyLength) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < minBodyLength + 8 || length > Integer.MAX_VALUE) {
+                throw new IOException("invalid snapshot length " + length + ": " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+
+            ByteBuffer body = buffer.duplicate();
+            body.limit((int) length - 8);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if (crc.getValue() != buffer.getLong((int) length - 8)) {
+                throw new IOException("snapshot checksum mismatch: " + file);
+            }
+            body.position(0);
+            return body.slice();
+        }
+    }
+
+    private interface TempWriter {
+        void write(Path temp) throws IOException;
+    }
+
+    private static void replace(Path file, TempWriter writer) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            writer.write(temp);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
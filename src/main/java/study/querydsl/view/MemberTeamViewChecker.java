@@ -0,0 +1,112 @@
+package study.querydsl.view;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * member / team 과 member_team_view 를 비교해서 어긋난 row(drift)를 찾는다.
+ * 주기적으로 두 번 비교해서 두 번 모두 나온 것만 drift 로 보고, member.view.check.repair 가 켜져 있으면 그 row 들만 다시 맞춘다.
+ */
+@Slf4j
+@ConditionalOnProperty(name = "member.view.enabled", havingValue = "true")
+@Component
+public class MemberTeamViewChecker {
+
+    private static final String MISSING = "select m.member_id from member m"
+            + " left join member_team_view v on v.member_id = m.member_id"
+            + " where v.member_id is null"
+            + " order by m.member_id limit ?";
+    private static final String ORPHANED = "select v.member_id from member_team_view v"
+            + " left join member m on m.member_id = v.member_id"
+            + " where m.member_id is null"
+            + " order by v.member_id limit ?";
+    private static final String MISMATCHED = "select m.member_id from member m"
+            + " join member_team_view v on v.member_id = m.member_id"
+            + " left join team t on t.id = m.team_id"
+            + " where v.username is distinct from m.username"
+            + " or v.age <> m.age"
+            + " or v.team_id is distinct from m.team_id"
+            + " or v.team_name is distinct from t.name"
+            + " order by m.member_id limit ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MemberTeamViewMaintainer maintainer;
+    private final TransactionTemplate readOnlyTx;
+    private final TransactionTemplate tx;
+    private final int maxIds;
+    private final long confirmDelayMillis;
+    private final boolean repair;
+
+    private final AtomicInteger lastDrift = new AtomicInteger();
+    private final Counter repaired;
+
+    public MemberTeamViewChecker(JdbcTemplate jdbcTemplate,
+                                 MemberTeamViewMaintainer maintainer,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${member.view.check.max-ids:1000}") int maxIds,
+                                 @Value("${member.view.check.confirm-delay-ms:200}") long confirmDelayMillis,
+                                 @Value("${member.view.check.repair:true}") boolean repair) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maintainer = maintainer;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.tx = new TransactionTemplate(transactionManager);
+        this.maxIds = maxIds;
+        this.confirmDelayMillis = confirmDelayMillis;
+        this.repair = repair;
+
+        Gauge.builder("member.view.drift", lastDrift, AtomicInteger::get)
+             .description("마지막 검사에서 확인된 drift row 수 (종류별 max-ids 개까지)")
+             .register(meterRegistry);
+        this.repaired = Counter.builder("member.view.repaired").register(meterRegistry);
+    }
+
+    /**
+     * 한 번 비교한다. 호출하는 쪽에 트랜잭션이 있으면 그 안에서 읽는다.
+     */
+    public MemberTeamViewDrift check() {
+        return readOnlyTx.execute(status -> new MemberTeamViewDrift(
+                ids(MISSING), ids(ORPHANED), ids(MISMATCHED)));
+    }
+
+    @Scheduled(initialDelayString = "${member.view.check.interval-ms:600000}",
+               fixedDelayString = "${member.view.check.interval-ms:600000}")
+    public void checkAndRepair() throws InterruptedException {
+        MemberTeamViewDrift drift = check();
+        if (!drift.isEmpty()) {
+            Thread.sleep(confirmDelayMillis);
+            drift = drift.retainAll(check());
+        }
+        lastDrift.set(drift.size());
+        if (drift.isEmpty()) {
+            return;
+        }
+
+        log.warn("member_team_view drift found. {}", drift);
+        if (repair) {
+            MemberTeamViewDrift confirmed = drift;
+            tx.execute(status -> {
+                maintainer.refresh(confirmed.memberIds());
+                return null;
+            });
+            repaired.increment(confirmed.size());
+        }
+    }
+
+    private List<Long> ids(String sql) {
+        return jdbcTemplate.queryForList(sql, Long.class, maxIds);
+    }
+}
@@ -0,0 +1,62 @@
+package study.querydsl.view;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * member / team 과 member_team_view 가 어긋난 member id. 종류별로 max-ids 개까지만 담는다.
+ * <ul>
+ *     <li>missing : member 는 있는데 view 에 row 가 없다.</li>
+ *     <li>orphaned : view 에만 row 가 있다.</li>
+ *     <li>mismatched : 둘 다 있지만 username / age / team_id / team_name 중 하나가 다르다.</li>
+ * </ul>
+ */
+@Getter
+@ToString
+public class MemberTeamViewDrift {
+
+    private final List<Long> missing;
+    private final List<Long> orphaned;
+    private final List<Long> mismatched;
+
+    public MemberTeamViewDrift(List<Long> missing, List<Long> orphaned, List<Long> mismatched) {
+        this.missing = missing;
+        this.orphaned = orphaned;
+        this.mismatched = mismatched;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int size() {
+        return missing.size() + orphaned.size() + mismatched.size();
+    }
+
+    public Collection<Long> memberIds() {
+        TreeSet<Long> ids = new TreeSet<>(missing);
+        ids.addAll(orphaned);
+        ids.addAll(mismatched);
+        return ids;
+    }
+
+    /**
+     * 두 번 연달아 확인해서 모두 나온 것만 남긴다. 확인하는 사이에 커밋된 쓰기 때문에 잠깐 달라 보인 row 를 거른다.
+     */
+    public MemberTeamViewDrift retainAll(MemberTeamViewDrift other) {
+        return new MemberTeamViewDrift(retain(missing, other.missing),
+                retain(orphaned, other.orphaned),
+                retain(mismatched, other.mismatched));
+    }
+
+    private static List<Long> retain(List<Long> ids, List<Long> others) {
+        List<Long> retained = new ArrayList<>(ids);
+        retained.retainAll(new TreeSet<>(others));
+        return retained;
+    }
+}
@@ -0,0 +1,266 @@
+package study.querydsl.view;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.BulkChangingEvent;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * member_team_view 를 Member / Team 을 쓰는 트랜잭션 안에서 같이 고친다. (outbox 없이 같은 커밋에 들어간다)
+ * <ul>
+ *     <li>Member insert / update : 그 member 의 row 를 member, team 에서 다시 읽어 넣는다.</li>
+ *     <li>Member delete : row 를 지운다.</li>
+ *     <li>Team 이름 변경 : 그 team 의 row 들의 team_name 을 한 번에 바꾼다.</li>
+ *     <li>Member / Team 벌크 update, delete : 어떤 row 가 바뀌었는지 모르므로 커밋 직전에 member, team 과 비교해서
+ *     어긋난 row 만 고친다. (sync)</li>
+ * </ul>
+ * 애플리케이션이 뜰 때도 꺼져 있던 동안의 쓰기를 반영하도록 sync 한다.
+ * Hibernate 를 거치지 않는 쓰기(JDBC, 네이티브 쿼리)는 반영되지 않으므로 MemberTeamViewChecker 가 찾아서 고친다.
+ * <p>
+ * team_name 을 복사하기 전과 이름을 바꾸기 전에 team row 를 select ... for update 로 잠근다.
+ * 잠그지 않으면 이름을 바꾸는 트랜잭션이 아직 커밋되지 않은 member row 를 못 보고, member 쪽은 커밋된 옛 이름을 복사해서
+ * 둘 다 커밋된 뒤에도 옛 이름이 남는다.
+ */
+@Slf4j
+@ConditionalOnProperty(name = "member.view.enabled", havingValue = "true")
+@Component
+public class MemberTeamViewMaintainer implements PostInsertEventListener,
+                                                 PostUpdateEventListener,
+                                                 PostDeleteEventListener {
+
+    private static final String LOCK_TEAM = "select id from team where id = ? for update";
+    private static final String LOCK_MEMBER_TEAM = "select id from team"
+            + " where id = (select team_id from member where member_id = ?) for update";
+    private static final String DELETE_ROW = "delete from member_team_view where member_id = ?";
+    private static final String INSERT_ROW = "insert into member_team_view (member_id, username, age, team_id, team_name)"
+            + " select m.member_id, m.username, m.age, m.team_id, t.name"
+            + " from member m left join team t on t.id = m.team_id"
+            + " where m.member_id = ?";
+    private static final String RENAME_TEAM = "update member_team_view set team_name = ? where team_id = ?";
+    private static final String DETACH_TEAM = "update member_team_view set team_id = null, team_name = null where team_id = ?";
+    // sync : 지워졌거나 값이 달라진 row 를 지우고, 없는 row 를 넣는다. 맞는 row 는 건드리지 않는다.
+    private static final String DELETE_ORPHANED = "delete from member_team_view v"
+            + " where not exists (select 1 from member m where m.member_id = v.member_id)";
+    private static final String DELETE_MISMATCHED = "delete from member_team_view v"
+            + " where exists (select 1 from member m left join team t on t.id = m.team_id"
+            + " where m.member_id = v.member_id"
+            + " and (v.username is distinct from m.username"
+            + " or v.age <> m.age"
+            + " or v.team_id is distinct from m.team_id"
+            + " or v.team_name is distinct from t.name))";
+    private static final String INSERT_MISSING = "insert into member_team_view (member_id, username, age, team_id, team_name)"
+            + " select m.member_id, m.username, m.age, m.team_id, t.name"
+            + " from member m left join team t on t.id = m.team_id"
+            + " where not exists (select 1 from member_team_view v where v.member_id = m.member_id)";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate tx;
+    // 트랜잭션마다 벌크 sync 를 한 번만 등록하기 위한 리소스 key
+    private final Object bulkSyncKey = new Object();
+
+    private final Counter rowUpdates;
+    private final Counter teamRenames;
+    private final Counter syncs;
+
+    public MemberTeamViewMaintainer(EntityManagerFactory entityManagerFactory,
+                                    JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    MeterRegistry meterRegistry) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.jdbcTemplate = jdbcTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.rowUpdates = Counter.builder("member.view.updates").tag("kind", "row").register(meterRegistry);
+        this.teamRenames = Counter.builder("member.view.updates").tag("kind", "team").register(meterRegistry);
+        this.syncs = Counter.builder("member.view.syncs")
+                            .description("member_team_view 를 member, team 과 비교해서 맞춘 횟수")
+                            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                                                             .getServiceRegistry()
+                                                             .getService(EventListenerRegistry.class);
+
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    /**
+     * 처음 켰을 때(비어 있음)와 꺼져 있던 동안 member / team 이 바뀐 경우 모두 어긋난 row 만 맞춘다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        tx.execute(status -> sync());
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Member) {
+            refresh(event.getSession(), (Long) event.getId());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Member) {
+            refresh(event.getSession(), (Long) event.getId());
+        } else if (entity instanceof Team) {
+            Object[] oldState = event.getOldState();
+            String name = ((Team) entity).getName();
+            int nameIndex = event.getPersister().getEntityMetamodel().getPropertyIndex("name");
+            // oldState 가 없으면(detached merge) 바뀌었는지 모르므로 고친다.
+            if (oldState == null || !Objects.equals(oldState[nameIndex], name)) {
+                lock(event.getSession(), LOCK_TEAM, event.getId());
+                execute(event.getSession(), RENAME_TEAM, name, event.getId());
+                teamRenames.increment();
+            }
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Member) {
+            execute(event.getSession(), DELETE_ROW, event.getId());
+            rowUpdates.increment();
+        } else if (entity instanceof Team) {
+            // FK 때문에 보통은 member 가 먼저 옮겨져 있다. 남은 row 가 있으면 team 없는 member 로 맞춘다.
+            execute(event.getSession(), DETACH_TEAM, event.getId());
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * 벌크 update / delete 는 Hibernate 이벤트가 없으므로 커밋 직전에 sync 한다. 트랜잭션마다 한 번만 한다.
+     */
+    @EventListener
+    public void onBulkChanging(BulkChangingEvent event) {
+        Class<?> type = event.getEntityType();
+        if (!Member.class.isAssignableFrom(type) && !Team.class.isAssignableFrom(type)) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(bulkSyncKey)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(bulkSyncKey, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                sync();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(bulkSyncKey);
+            }
+        });
+    }
+
+    /**
+     * member, team 과 비교해서 어긋난 row 만 지우고 다시 넣는다. 맞는 row 는 지우지 않으므로 잠그지도 않는다.
+     * 호출하는 쪽의 트랜잭션 안에서 실행해야 한다.
+     * @return 지운 row 수 + 넣은 row 수
+     */
+    public int sync() {
+        long start = System.currentTimeMillis();
+        int deleted = jdbcTemplate.update(DELETE_ORPHANED) + jdbcTemplate.update(DELETE_MISMATCHED);
+        int inserted = jdbcTemplate.update(INSERT_MISSING);
+        syncs.increment();
+        rowUpdates.increment(deleted + inserted);
+        log.info("member_team_view synced. deleted={}, inserted={}, {}ms", deleted, inserted, System.currentTimeMillis() - start);
+        return deleted + inserted;
+    }
+
+    /**
+     * 주어진 member 의 row 를 다시 맞춘다. member 가 없으면 row 가 지워진다. 호출하는 쪽의 트랜잭션 안에서 실행해야 한다.
+     */
+    public void refresh(Collection<Long> memberIds) {
+        List<Object[]> args = new ArrayList<>(memberIds.size());
+        for (Long memberId : memberIds) {
+            args.add(new Object[]{memberId});
+        }
+        for (Long memberId : memberIds) {
+            jdbcTemplate.queryForList(LOCK_MEMBER_TEAM, Long.class, memberId);
+        }
+        jdbcTemplate.batchUpdate(DELETE_ROW, args);
+        jdbcTemplate.batchUpdate(INSERT_ROW, args);
+        rowUpdates.increment(args.size());
+    }
+
+    private void refresh(EventSource session, Long memberId) {
+        lock(session, LOCK_MEMBER_TEAM, memberId);
+        execute(session, DELETE_ROW, memberId);
+        execute(session, INSERT_ROW, memberId);
+        rowUpdates.increment();
+    }
+
+    /**
+     * team row 를 커밋까지 잠근다. 다른 트랜잭션이 잠가 두었으면 그 트랜잭션이 끝날 때까지 기다린 뒤 커밋된 이름을 읽는다.
+     */
+    private static void lock(EventSource session, String sql, Object param) {
+        session.getJdbcCoordinator().executeBatch();
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setObject(1, param);
+                try (ResultSet ignored = statement.executeQuery()) {
+                    // 잠그기만 한다.
+                }
+            }
+        });
+    }
+
+    /**
+     * flush 중인 세션의 커넥션에서 실행한다. JDBC batch 에 쌓여 있는 쓰기가 먼저 나가야 insert ... select 가 그 값을 읽는다.
+     */
+    private static void execute(EventSource session, String sql, Object... params) {
+        session.getJdbcCoordinator().executeBatch();
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < params.length; i++) {
+                    statement.setObject(i + 1, params[i]);
+                }
+                statement.executeUpdate();
+            }
+        });
+    }
+}
@@ -0,0 +1,58 @@
+package study.querydsl.view;
+
+import com.querydsl.core.support.ReplaceVisitor;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.Predicate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QMemberTeamView.memberTeamView;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * member / team 경로로 만든 검색 조건을 member_team_view 경로로 바꾼다.
+ * 리포지토리의 조건 메서드(usernameEq, UsernameLikePredicate 등)를 그대로 쓰고 마지막에 rebind 만 하면 된다.
+ * member / team 이 아닌 경로는 바꾸지 않는다.
+ */
+public final class MemberTeamViewPaths {
+
+    private static final Map<Path<?>, Path<?>> PATHS = new HashMap<>();
+
+    static {
+        PATHS.put(member.id, memberTeamView.memberId);
+        PATHS.put(member.username, memberTeamView.username);
+        PATHS.put(member.usernameLower, memberTeamView.usernameLower);
+        PATHS.put(member.age, memberTeamView.age);
+        PATHS.put(team.id, memberTeamView.teamId);
+        PATHS.put(team.name, memberTeamView.teamName);
+    }
+
+    private static final ReplaceVisitor<Void> REBINDER = new ReplaceVisitor<Void>() {
+        @Override
+        public Expression<?> visit(Path<?> expr, Void context) {
+            Path<?> replaced = PATHS.get(expr);
+            if (replaced != null) {
+                return replaced;
+            }
+            // 서브쿼리의 다른 엔티티(lookup_key 등)는 그대로 둔다.
+            Path<?> root = expr.getRoot();
+            if (root.equals(member) || root.equals(team)) {
+                throw new IllegalArgumentException("member_team_view has no column for " + expr);
+            }
+            return expr;
+        }
+    };
+
+    private MemberTeamViewPaths() {
+    }
+
+    /**
+     * @return predicate 가 null 이면 null
+     */
+    public static Predicate rebind(Predicate predicate) {
+        return predicate == null ? null : (Predicate) predicate.accept(REBINDER, null);
+    }
+}
@@ -0,0 +1,145 @@
+package study.querydsl.web;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * gradient 방식의 동시 처리 한도.
+ * <p>
+ * 지연이 최소 지연(minRtt)에 가까우면 한도를 sqrt(limit) 만큼 늘리고, 지연이 늘어나면 minRtt / rtt 비율로 줄인다.
+ * Little's law 로 보면 (처리량 x 최소 지연) 근처에 작은 대기열만 허용하는 셈이다.
+ * priority 요청은 한도 전체를, 일반 요청은 priorityReserve 만큼을 뺀 나머지만 쓸 수 있다.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double TOLERANCE = 1.5;
+    // DB 자체가 느려진 경우 minRtt 가 예전 값에 고정되지 않도록, 혼잡하지 않을 때의 지연 쪽으로 조금씩 끌어올린다.
+    private static final double MIN_RTT_DRIFT = 0.01;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double priorityReserve;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder rejectedPriority = new LongAdder();
+
+    private volatile double limit;
+    private volatile long minRttNanos = Long.MAX_VALUE;
+    private volatile long lastRttNanos;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double priorityReserve) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.priorityReserve = priorityReserve;
+    }
+
+    /**
+     * @return 허용되면 처리가 끝난 뒤 release 해야 하는 Permit, 한도를 넘었으면 null
+     */
+    public Permit tryAcquire(boolean priority) {
+        double allowed = priority ? limit : Math.max(1, limit * (1 - priorityReserve));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                (priority ? rejectedPriority : rejected).increment();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(current + 1, System.nanoTime());
+            }
+        }
+    }
+
+    private void release(Permit permit, boolean dropped) {
+        inFlight.decrementAndGet();
+        long rtt = System.nanoTime() - permit.startNanos;
+        lastRttNanos = rtt;
+        if (!dropped) {
+            update(rtt, permit.inFlightAtStart);
+        }
+    }
+
+    private synchronized void update(long rttNanos, int inFlightAtStart) {
+        if (rttNanos < minRttNanos) {
+            minRttNanos = rttNanos;
+        } else if (inFlightAtStart <= minLimit) {
+            minRttNanos += (long) ((rttNanos - minRttNanos) * MIN_RTT_DRIFT);
+        }
+
+        double current = limit;
+        // 한도의 절반도 안 쓰고 있었다면 지연은 한도와 무관하므로 늘리지 않는다.
+        if (inFlightAtStart < current / 2 && rttNanos <= minRttNanos * TOLERANCE) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * minRttNanos / rttNanos));
+        double queueSize = Math.sqrt(current);
+        double newLimit = current * gradient + queueSize;
+        newLimit = current * (1 - SMOOTHING) + newLimit * SMOOTHING;
+
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    /**
+     * 거절된 요청에 돌려줄 Retry-After (초). 현재 지연 기준으로 최소 1초.
+     */
+    public long retryAfterSeconds() {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(lastRttNanos * 2));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getRejectedPriorityCount() {
+        return rejectedPriority.sum();
+    }
+
+    public double getMinRttMillis() {
+        long minRtt = minRttNanos;
+        return minRtt == Long.MAX_VALUE ? 0 : minRtt / 1_000_000.0;
+    }
+
+    public class Permit {
+        private final int inFlightAtStart;
+        private final long startNanos;
+        // 비동기 요청은 AsyncListener 가 다른 스레드에서 반납할 수 있다.
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(int inFlightAtStart, long startNanos) {
+            this.inFlightAtStart = inFlightAtStart;
+            this.startNanos = startNanos;
+        }
+
+        public void release() {
+            release(false);
+        }
+
+        /**
+         * 실패해서 지연 값을 믿을 수 없는 경우. 한도 계산에는 쓰지 않는다.
+         */
+        public void releaseDropped() {
+            release(true);
+        }
+
+        private void release(boolean dropped) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            AdaptiveConcurrencyLimiter.this.release(this, dropped);
+        }
+    }
+}
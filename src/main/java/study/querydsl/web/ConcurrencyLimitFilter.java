@@ -0,0 +1,153 @@
+package study.querydsl.web;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * /v1 ~ /v5 member 검색 endpoint 묶음(family)별로 동시 처리 수를 제한한다.
+ * 한도를 넘는 요청은 커넥션 풀에서 기다리게 하지 않고 바로 503 + Retry-After 로 돌려보낸다.
+ * 검색은 Callable 로 처리되므로 한도는 filter 를 빠져나갈 때가 아니라 async 요청이 끝날 때(AsyncListener) 반납한다.
+ */
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final Pattern MEMBER_ENDPOINT = Pattern.compile("^/(v[1-5])/members$");
+
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new LinkedHashMap<>();
+
+    public ConcurrencyLimitFilter(MeterRegistry meterRegistry,
+                                  @Value("${member.limiter.initial-limit:20}") int initialLimit,
+                                  @Value("${member.limiter.min-limit:4}") int minLimit,
+                                  @Value("${member.limiter.max-limit:200}") int maxLimit,
+                                  @Value("${member.limiter.priority-reserve:0.2}") double priorityReserve) {
+        for (String family : new String[]{"v1", "v2", "v3", "v4", "v5"}) {
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, priorityReserve);
+            limiters.put(family, limiter);
+            bindMetrics(meterRegistry, family, limiter);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return family(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        AdaptiveConcurrencyLimiter limiter = limiters.get(family(request));
+
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire(isCheap(request));
+        if (permit == null) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(limiter.retryAfterSeconds()));
+            return;
+        }
+
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (isAsyncStarted(request)) {
+                // 조회는 작업 스레드에서 이어지므로 응답이 끝날 때 반납한다.
+                request.getAsyncContext().addListener(new PermitListener(permit));
+                async = true;
+            } else {
+                release(permit, response);
+            }
+        } finally {
+            if (!async) {
+                permit.releaseDropped();
+            }
+        }
+    }
+
+    private static void release(AdaptiveConcurrencyLimiter.Permit permit, HttpServletResponse response) {
+        if (response.getStatus() >= 500) {
+            permit.releaseDropped();
+        } else {
+            permit.release();
+        }
+    }
+
+    /**
+     * username 동등 조건이 있는 검색은 결과가 거의 한 건이라 싸다. 이런 요청은 우선 처리 대상으로 본다.
+     */
+    private boolean isCheap(HttpServletRequest request) {
+        return StringUtils.hasText(request.getParameter("username"));
+    }
+
+    private String family(HttpServletRequest request) {
+        Matcher matcher = MEMBER_ENDPOINT.matcher(request.getRequestURI().substring(request.getContextPath().length()));
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    public AdaptiveConcurrencyLimiter limiter(String family) {
+        return limiters.get(family);
+    }
+
+    private static class PermitListener implements AsyncListener {
+
+        private final AdaptiveConcurrencyLimiter.Permit permit;
+
+        private PermitListener(AdaptiveConcurrencyLimiter.Permit permit) {
+            this.permit = permit;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release(permit, (HttpServletResponse) event.getSuppliedResponse());
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            permit.releaseDropped();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            permit.releaseDropped();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    private static void bindMetrics(MeterRegistry registry, String family, AdaptiveConcurrencyLimiter limiter) {
+        Tags tags = Tags.of("family", family);
+
+        Gauge.builder("member.limiter.limit", limiter, AdaptiveConcurrencyLimiter::getLimit).tags(tags).register(registry);
+        Gauge.builder("member.limiter.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight).tags(tags).register(registry);
+        Gauge.builder("member.limiter.min.rtt", limiter, AdaptiveConcurrencyLimiter::getMinRttMillis)
+             .tags(tags)
+             .baseUnit("milliseconds")
+             .register(registry);
+        FunctionCounter.builder("member.limiter.rejected", limiter, AdaptiveConcurrencyLimiter::getRejectedCount)
+                       .tags(tags.and("lane", "normal"))
+                       .register(registry);
+        FunctionCounter.builder("member.limiter.rejected", limiter, AdaptiveConcurrencyLimiter::getRejectedPriorityCount)
+                       .tags(tags.and("lane", "priority"))
+                       .register(registry);
+    }
+}
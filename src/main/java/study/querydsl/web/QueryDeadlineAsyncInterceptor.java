@@ -0,0 +1,56 @@
+package study.querydsl.web;
+
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import study.querydsl.repository.support.QueryDeadline;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Callable 로 처리되는 요청의 QueryDeadline 을 작업 스레드에 걸고,
+ * async 요청 타임아웃이나 클라이언트 연결 끊김(AsyncListener.onError)이 오면 실행 중인 쿼리를 취소한다.
+ * 응답은 그대로 WebAsyncManager 의 기본 처리(타임아웃 503, 오류는 예외 처리기)에 맡긴다.
+ * 같은 검색을 다른 요청과 같이 기다리는 중이면(SingleFlight) 이 요청만 빠지고, 쿼리는 마지막 요청이 떠날 때 취소된다.
+ */
+public class QueryDeadlineAsyncInterceptor implements CallableProcessingInterceptor {
+
+    @Override
+    public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+        QueryDeadline deadline = deadline(request);
+        if (deadline != null) {
+            deadline.attach();
+        }
+    }
+
+    @Override
+    public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+        QueryDeadline deadline = deadline(request);
+        if (deadline != null) {
+            deadline.detach();
+        }
+    }
+
+    @Override
+    public <T> Object handleTimeout(NativeWebRequest request, Callable<T> task) {
+        cancel(request);
+        return RESULT_NONE;
+    }
+
+    @Override
+    public <T> Object handleError(NativeWebRequest request, Callable<T> task, Throwable t) {
+        cancel(request);
+        return RESULT_NONE;
+    }
+
+    private static void cancel(NativeWebRequest request) {
+        QueryDeadline deadline = deadline(request);
+        if (deadline != null) {
+            deadline.cancel();
+        }
+    }
+
+    private static QueryDeadline deadline(NativeWebRequest request) {
+        return (QueryDeadline) request.getAttribute(QueryDeadlineInterceptor.ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    }
+}
@@ -0,0 +1,25 @@
+package study.querydsl.web;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import study.querydsl.repository.support.QueryDeadlineExceededException;
+
+/**
+ * 마감 시각을 넘긴 요청은 503 으로 돌려준다.
+ * cancel() 된 H2 쿼리(57014)와 실행 전에 마감된 쿼리(SQLTimeoutException)는 Hibernate 가 QueryTimeoutException 으로 바꿔준다.
+ */
+@RestControllerAdvice
+public class QueryDeadlineExceptionHandler {
+
+    @ExceptionHandler({QueryDeadlineExceededException.class,
+                       org.springframework.dao.QueryTimeoutException.class,
+                       javax.persistence.QueryTimeoutException.class})
+    public ResponseEntity<Void> deadlineExceeded() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                             .header(HttpHeaders.RETRY_AFTER, "1")
+                             .build();
+    }
+}
@@ -0,0 +1,50 @@
+package study.querydsl.web;
+
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import study.querydsl.repository.support.QueryDeadline;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 요청 처리 동안 QueryDeadline 을 건다. 요청이 끝나면 남아 있는 쿼리 취소 예약도 같이 정리된다.
+ * <p>
+ * handler 가 Callable 을 돌려주면 쿼리는 작업 스레드에서 실행된다. 이때는 요청 스레드에서 마감을 떼기만 하고,
+ * 작업 스레드에 거는 일과 타임아웃 / 클라이언트 연결 끊김 때의 취소는 QueryDeadlineAsyncInterceptor 가 한다.
+ * 결과를 쓰는 async dispatch 에서 다시 불리면 같은 마감을 그대로 쓰고, 그 dispatch 가 끝날 때 정리한다.
+ */
+public class QueryDeadlineInterceptor implements AsyncHandlerInterceptor {
+
+    static final String ATTRIBUTE = QueryDeadline.class.getName();
+
+    private final long budgetMillis;
+
+    public QueryDeadlineInterceptor(long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(ATTRIBUTE) == null) {
+            request.setAttribute(ATTRIBUTE, QueryDeadline.start(budgetMillis));
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        QueryDeadline deadline = (QueryDeadline) request.getAttribute(ATTRIBUTE);
+        if (deadline != null) {
+            deadline.detach();
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        QueryDeadline deadline = (QueryDeadline) request.getAttribute(ATTRIBUTE);
+        if (deadline != null) {
+            deadline.close();
+            request.removeAttribute(ATTRIBUTE);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package study.querydsl.web;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Value("${member.deadline.v1-ms:2000}")
+    private long v1DeadlineMillis;
+
+    @Value("${member.deadline.v2-ms:3000}")
+    private long v2DeadlineMillis;
+
+    @Value("${member.deadline.v3-ms:3000}")
+    private long v3DeadlineMillis;
+
+    @Value("${member.deadline.v4-ms:2000}")
+    private long v4DeadlineMillis;
+
+    @Value("${member.deadline.v5-ms:2000}")
+    private long v5DeadlineMillis;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new QueryDeadlineInterceptor(v1DeadlineMillis)).addPathPatterns("/v1/members");
+        registry.addInterceptor(new QueryDeadlineInterceptor(v2DeadlineMillis)).addPathPatterns("/v2/members");
+        registry.addInterceptor(new QueryDeadlineInterceptor(v3DeadlineMillis)).addPathPatterns("/v3/members");
+        registry.addInterceptor(new QueryDeadlineInterceptor(v4DeadlineMillis)).addPathPatterns("/v4/members");
+        registry.addInterceptor(new QueryDeadlineInterceptor(v5DeadlineMillis)).addPathPatterns("/v5/members");
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new QueryDeadlineAsyncInterceptor());
+    }
+}
@@ -0,0 +1,63 @@
+package study.querydsl.bloom;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    public void noFalseNegativesWhileGrowing() throws Exception {
+        //given capacity 의 20 배를 넣어서 layer 가 여러 개 붙게 한다.
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01);
+
+        //when
+        for (int i = 0; i < 20_000; i++) {
+            filter.put("member" + i);
+        }
+
+        //then
+        assertThat(filter.layerCount()).isGreaterThan(1);
+        for (int i = 0; i < 20_000; i++) {
+            assertThat(filter.mightContain("member" + i)).isTrue();
+        }
+    }
+
+    @Test
+    public void falsePositiveRateStaysUnderTarget() throws Exception {
+        //given
+        ScalableBloomFilter filter = new ScalableBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 50_000; i++) {
+            filter.put("member" + i);
+        }
+
+        //when 넣지 않은 username 으로 확인
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain("nobody" + i)) {
+                falsePositives++;
+            }
+        }
+
+        //then
+        double observed = (double) falsePositives / probes;
+        assertThat(observed).isLessThan(0.01);
+        assertThat(filter.expectedFpp()).isLessThan(0.01);
+    }
+
+    @Test
+    public void duplicatePutIsIgnored() throws Exception {
+        //given
+        ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.01);
+
+        //when
+        boolean first = filter.put("member1");
+        boolean second = filter.put("member1");
+
+        //then
+        assertThat(first).isTrue();
+        assertThat(second).isFalse();
+        assertThat(filter.approximateElementCount()).isEqualTo(1);
+    }
+}
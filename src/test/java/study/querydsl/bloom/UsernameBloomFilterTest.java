@@ -0,0 +1,231 @@
+package study.querydsl.bloom;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.event.BulkChangingEvent;
+import study.querydsl.event.ChangeType;
+import study.querydsl.repository.MemberJPARepository;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 쓰기 트랜잭션 안에서는 필터를 쓰지 않으므로 클래스에 @Transactional 을 붙이지 않는다.
+ * 재구성 도중의 일은 loadUsernames 를 덮어쓴 인스턴스로 만든다. 이 인스턴스는 Hibernate 에 등록하지 않는다.
+ */
+@AutoConfigureMockMvc
+@SpringBootTest(properties = {"member.bloom.enabled=true", "member.bloom.rebuild-delay-ms=600000",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+class UsernameBloomFilterTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    UsernameBloomFilter usernameBloomFilter;
+
+    @Autowired
+    MemberJPARepository memberJPARepository;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @PersistenceContext
+    EntityManager em;
+
+    List<UsernameBloomFilter> created = new ArrayList<>();
+    Statistics statistics;
+
+    @BeforeEach
+    void before() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void after() {
+        created.forEach(UsernameBloomFilter::shutdown);
+    }
+
+    @Test
+    public void bulkChangeDuringRebuildKeepsFilterStale() throws Exception {
+        //given 목록을 읽은 뒤 벌크 update 가 시작된다.
+        UsernameBloomFilter filter = filter(self ->
+                self.onBulkChanging(new BulkChangingEvent(Member.class, ChangeType.UPDATE)));
+
+        //when
+        filter.rebuild();
+
+        //then 다시 만들기 전까지는 DB 로 보낸다.
+        assertThat(filter.isReady()).isFalse();
+        assertThat(filter.mightContain("bloom-nobody")).isTrue();
+        assertThat(filter.bypassedCount()).isEqualTo(1);
+
+        //when
+        filter.rebuild();
+
+        //then
+        assertThat(filter.isReady()).isTrue();
+        assertThat(filter.mightContain("bloom-nobody")).isFalse();
+    }
+
+    @Test
+    public void insertDuringRebuildIsNotLost() throws Exception {
+        //given 목록을 읽은 뒤 flush 된 insert
+        UsernameBloomFilter filter = filter(self ->
+                self.onPostInsert(new PostInsertEvent(new Member("bloom-during-rebuild", 10), 1L, null, null, null)));
+
+        //when
+        filter.rebuild();
+
+        //then
+        assertThat(filter.isReady()).isTrue();
+        assertThat(filter.mightContain("bloom-during-rebuild")).isTrue();
+    }
+
+    @Test
+    public void bulkUpdateInTransactionBypassesUntilRebuilt() throws Exception {
+        //given
+        UsernameBloomFilter filter = filter(self -> {
+        });
+        filter.rebuild();
+
+        //when 트랜잭션 안에서 벌크 update 가 시작된다.
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            filter.onBulkChanging(new BulkChangingEvent(Member.class, ChangeType.UPDATE));
+
+            //then 끝나기 전에는 다른 스레드의 조회도 DB 로 보낸다.
+            assertThat(filter.isReady()).isFalse();
+            assertThat(CompletableFuture.supplyAsync(() -> filter.mightContain("bloom-nobody")).join()).isTrue();
+            status.setRollbackOnly();
+        });
+
+        //then 끝난 뒤에도 다시 만들 때까지는 쓰지 않는다.
+        assertThat(filter.isReady()).isFalse();
+        assertThat(filter.mightContain("bloom-nobody")).isTrue();
+
+        //when
+        filter.rebuild();
+
+        //then
+        assertThat(filter.isReady()).isTrue();
+        assertThat(filter.mightContain("bloom-nobody")).isFalse();
+    }
+
+    @Test
+    public void noFalseNegativesAfterInsert() throws Exception {
+        //given
+        usernameBloomFilter.rebuild();
+        List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            usernames.add("bloom-inserted" + i);
+        }
+
+        //when flush 까지만 하고 커밋하지 않는다.
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            usernames.forEach(username -> em.persist(new Member(username, 20)));
+            em.flush();
+
+            //then 커밋 전이라도 다른 트랜잭션에서 없다고 하면 안 된다.
+            for (String username : usernames) {
+                assertThat(CompletableFuture.supplyAsync(() -> usernameBloomFilter.mightContain(username)).join())
+                        .isTrue();
+            }
+            status.setRollbackOnly();
+        });
+    }
+
+    @Test
+    public void v1SearchForMissingUsernameRunsNoQuery() throws Exception {
+        //given
+        usernameBloomFilter.rebuild();
+        statistics.clear();
+
+        //when
+        MvcResult result = mockMvc.perform(get("/v1/members").param("username", "bloom-nobody-v1"))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+               .andExpect(status().isOk())
+               .andExpect(content().json("[]"));
+
+        //then 검색 메서드는 읽기 전용 트랜잭션이라 필터가 DB 조회 전에 끝낸다.
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    public void repositorySearchForMissingUsernameRunsNoQuery() throws Exception {
+        //given
+        usernameBloomFilter.rebuild();
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setUsername("bloom-nobody-repository");
+        long absent = usernameBloomFilter.absentCount();
+        statistics.clear();
+
+        //when 트랜잭션 프록시를 거친 검색 메서드
+        assertThat(memberJPARepository.searchByCondition(cond)).isEmpty();
+        assertThat(memberJPARepository.searchByConditionWhere(cond)).isEmpty();
+        assertThat(memberJPARepository.searchMembers(cond)).isEmpty();
+        assertThat(memberRepository.search(cond)).isEmpty();
+        assertThat(memberRepository.searchComplexOptimize(cond, PageRequest.of(0, 10))).isEmpty();
+
+        //then
+        assertThat(usernameBloomFilter.absentCount()).isEqualTo(absent + 5);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    private UsernameBloomFilter filter(DuringLoad duringLoad) {
+        UsernameBloomFilter filter = new UsernameBloomFilter(entityManagerFactory, queryFactory, transactionManager,
+                100_000, 0.01, 600_000) {
+            @Override
+            List<String> loadUsernames() {
+                List<String> usernames = super.loadUsernames();
+                duringLoad.run(this);
+                return usernames;
+            }
+        };
+        created.add(filter);
+        return filter;
+    }
+
+    private interface DuringLoad {
+        void run(UsernameBloomFilter self);
+    }
+}
@@ -0,0 +1,222 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.BulkChangedEvent;
+import study.querydsl.event.DataVersion;
+import study.querydsl.repository.MemberJPARepository;
+import study.querydsl.search.MemberBatchSearchService;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * /v1 ~ /v5 는 Callable 로 다른 스레드에서 조회하므로 테스트 트랜잭션을 쓰지 않는다. 필요한 데이터는 커밋하고 지운다.
+ */
+@AutoConfigureMockMvc
+@SpringBootTest
+class MemberControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    DataVersion dataVersion;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    @Autowired
+    MemberBatchSearchService memberBatchSearchService;
+
+    @PersistenceContext
+    EntityManager em;
+
+    @SpyBean
+    MemberJPARepository memberJPARepository;
+
+    @Test
+    public void notModifiedWithoutQuery() throws Exception {
+        //given
+        MvcResult first = mockMvc.perform(get("/v1/members").param("teamName", "teamA"))
+                                 .andExpect(request().asyncStarted())
+                                 .andExpect(header().exists(HttpHeaders.ETAG))
+                                 .andReturn();
+        mockMvc.perform(asyncDispatch(first))
+               .andExpect(status().isOk());
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        //when, then 304 는 요청 스레드에서 바로 끝난다.
+        mockMvc.perform(get("/v1/members").param("teamName", "teamA")
+                                          .header(HttpHeaders.IF_NONE_MATCH, etag))
+               .andExpect(request().asyncNotStarted())
+               .andExpect(status().isNotModified());
+
+        verify(memberJPARepository, times(1)).searchByConditionWhere(any());
+    }
+
+    @Test
+    public void modifiedAfterWrite() throws Exception {
+        //given
+        MvcResult first = mockMvc.perform(get("/v2/members"))
+                                 .andExpect(request().asyncStarted())
+                                 .andReturn();
+        mockMvc.perform(asyncDispatch(first))
+               .andExpect(status().isOk());
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        //when
+        dataVersion.onBulkChanged(new BulkChangedEvent(Member.class, 1));
+
+        //then
+        MvcResult second = mockMvc.perform(get("/v2/members").header(HttpHeaders.IF_NONE_MATCH, etag))
+                                  .andExpect(request().asyncStarted())
+                                  .andExpect(header().string(HttpHeaders.ETAG, dataVersion.etag()))
+                                  .andReturn();
+        mockMvc.perform(asyncDispatch(second))
+               .andExpect(status().isOk());
+    }
+
+    @Test
+    public void lookupByIds() throws Exception {
+        //when, then
+        mockMvc.perform(post("/members/lookup/ids").contentType(MediaType.APPLICATION_JSON).content("[-1, -2]"))
+               .andExpect(status().isOk())
+               .andExpect(content().json("[]"));
+    }
+
+    @Test
+    public void batchSameAsV1AcrossRandomConditions() throws Exception {
+        //given like 의 특수 문자, 대소문자, null username, 이름이 없는 team
+        List<Long> teamIds = new ArrayList<>();
+        List<Long> memberIds = new ArrayList<>();
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            Team unnamed = new Team(null);
+            em.persist(teamA);
+            em.persist(teamB);
+            em.persist(unnamed);
+            List<Member> members = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                members.add(new Member("Member" + i, i * 10, i % 2 == 0 ? teamA : teamB));
+            }
+            members.add(new Member("teamless", 0));
+            members.add(new Member("mem%ber", 15, teamA));
+            members.add(new Member("mem_ber", 25, teamB));
+            members.add(new Member("memXber", 35, teamA));
+            members.add(new Member("a!b", 45, teamB));
+            members.add(new Member("MEMBER1", 55, teamA));
+            members.add(new Member(null, 65, teamB));
+            members.add(new Member("Member1", 75, unnamed));
+            for (Member member : members) {
+                em.persist(member);
+                memberIds.add(member.getId());
+            }
+            teamIds.add(teamA.getId());
+            teamIds.add(teamB.getId());
+            teamIds.add(unnamed.getId());
+        });
+
+        try {
+            Random random = new Random(1);
+            String[] usernames = {"Member1", "member1", "MEMBER1", "mem%ber", "mem_ber", "nobody"};
+            String[] likes = {"mem%*", "mem_*", "*%*", "*_*", "*!*", "member*", "*ber*", "*1", "M*r*1", "*"};
+            String[] teamNames = {"teamA", "teamB", "nobody"};
+
+            for (int round = 0; round < 30; round++) {
+                List<MemberSearchCondition> conds = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    MemberSearchCondition cond = new MemberSearchCondition();
+                    if (random.nextInt(3) == 0) {
+                        cond.setUsername(usernames[random.nextInt(usernames.length)]);
+                    }
+                    if (random.nextBoolean()) {
+                        cond.setUsernameLike(likes[random.nextInt(likes.length)]);
+                    }
+                    cond.setUsernameIgnoreCase(random.nextBoolean());
+                    if (random.nextBoolean()) {
+                        cond.setTeamName(teamNames[random.nextInt(teamNames.length)]);
+                    }
+                    if (random.nextBoolean()) {
+                        cond.setAgeGoe(random.nextInt(100));
+                    }
+                    if (random.nextBoolean()) {
+                        cond.setAgeLoe(random.nextInt(100));
+                    }
+                    conds.add(cond);
+                }
+
+                //when
+                List<List<MemberTeamDto>> results = memberBatchSearchService.search(conds);
+
+                //then
+                for (int i = 0; i < conds.size(); i++) {
+                    MvcResult v1 = mockMvc.perform(v1(conds.get(i)))
+                                          .andExpect(request().asyncStarted())
+                                          .andReturn();
+                    mockMvc.perform(asyncDispatch(v1))
+                           .andExpect(status().isOk())
+                           .andExpect(content().json(objectMapper.writeValueAsString(results.get(i))));
+                }
+            }
+        } finally {
+            tx.executeWithoutResult(status -> {
+                em.createQuery("delete from Member m where m.id in :ids").setParameter("ids", memberIds).executeUpdate();
+                em.createQuery("delete from Team t where t.id in :ids").setParameter("ids", teamIds).executeUpdate();
+            });
+        }
+    }
+
+    private static MockHttpServletRequestBuilder v1(MemberSearchCondition cond) {
+        MockHttpServletRequestBuilder request = get("/v1/members")
+                .param("usernameIgnoreCase", String.valueOf(cond.isUsernameIgnoreCase()));
+        if (cond.getUsername() != null) {
+            request.param("username", cond.getUsername());
+        }
+        if (cond.getUsernameLike() != null) {
+            request.param("usernameLike", cond.getUsernameLike());
+        }
+        if (cond.getTeamName() != null) {
+            request.param("teamName", cond.getTeamName());
+        }
+        if (cond.getAgeGoe() != null) {
+            request.param("ageGoe", String.valueOf(cond.getAgeGoe()));
+        }
+        if (cond.getAgeLoe() != null) {
+            request.param("ageLoe", String.valueOf(cond.getAgeLoe()));
+        }
+        return request;
+    }
+}
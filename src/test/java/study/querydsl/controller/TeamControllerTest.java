@@ -0,0 +1,34 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Transactional
+@AutoConfigureMockMvc
+@SpringBootTest
+class TeamControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    public void sortByName() throws Exception {
+        //when, then
+        mockMvc.perform(get("/teams/with-members").param("sort", "name,desc"))
+               .andExpect(status().isOk());
+    }
+
+    @Test
+    public void unsupportedSortIsBadRequest() throws Exception {
+        //when, then
+        mockMvc.perform(get("/teams/with-members").param("sort", "members"))
+               .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,106 @@
+package study.querydsl.entity;
+
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * member 100,000 명인 team 에서 member 수 / 첫 페이지 / member 추가를
+ * <ul>
+ *     <li>loaded : Team.members 를 읽어서 처리</li>
+ *     <li>lazy : extra lazy size(), TeamRepository.findMembers, 컬렉션을 건드리지 않는 member 배정</li>
+ * </ul>
+ * 으로 처리할 때의 쿼리 수, 읽은 엔티티 수, 힙 사용량을 비교한다.
+ */
+@Tag("benchmark")
+@Transactional
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class TeamMembersBenchmarkTest {
+
+    static final int MEMBERS = 100_000;
+    static final long TEAM_ID = 10_000_000L;
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Test
+    public void bigTeam() throws Exception {
+        //given
+        jdbcTemplate.update("insert into team (id, name) values (?, ?)", TEAM_ID, "bigTeam");
+        List<Object[]> members = new ArrayList<>();
+        for (int i = 0; i < MEMBERS; i++) {
+            members.add(new Object[]{TEAM_ID + 1 + i, "member" + i, i % 100, TEAM_ID});
+            if (members.size() == 10_000) {
+                jdbcTemplate.batchUpdate("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", members);
+                members.clear();
+            }
+        }
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        //when lazy
+        Team team = em.find(Team.class, TEAM_ID);
+        statistics.clear();
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        int size = team.getMembers().size();
+        int firstPage = teamRepository.findMembers(TEAM_ID, PageRequest.of(0, 20)).getContent().size();
+        em.persist(new Member("added", 1, team));
+        em.flush();
+        long lazyNanos = System.nanoTime() - start;
+        long lazyHeap = usedHeap() - heapBefore;
+        long lazyEntities = statistics.getEntityLoadCount();
+
+        //then
+        assertThat(size).isEqualTo(MEMBERS);
+        assertThat(firstPage).isEqualTo(20);
+        assertThat(Hibernate.isInitialized(team.getMembers())).isFalse();
+        assertThat(statistics.getCollectionLoadCount()).isZero();
+        assertThat(lazyEntities).isEqualTo(20);
+
+        //when loaded
+        em.clear();
+        team = em.find(Team.class, TEAM_ID);
+        statistics.clear();
+        heapBefore = usedHeap();
+        start = System.nanoTime();
+        Hibernate.initialize(team.getMembers());
+        int loadedSize = team.getMembers().size();
+        long loadedNanos = System.nanoTime() - start;
+        long loadedHeap = usedHeap() - heapBefore;
+        long loadedEntities = statistics.getEntityLoadCount();
+
+        //then
+        assertThat(loadedSize).isEqualTo(MEMBERS + 1);
+        assertThat(loadedEntities).isEqualTo(MEMBERS + 1);
+
+        System.out.printf("lazy   : %8.3fms entities=%-7d heap=%,d bytes%n", lazyNanos / 1e6, lazyEntities, lazyHeap);
+        System.out.printf("loaded : %8.3fms entities=%-7d heap=%,d bytes%n", loadedNanos / 1e6, loadedEntities, loadedHeap);
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,142 @@
+package study.querydsl.entity;
+
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Team.members 를 읽지 않고 개수 / 페이지 / member 배정을 처리하는지 Hibernate 통계로 확인한다.
+ */
+@Transactional
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class TeamMembersTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    Statistics statistics;
+    Long teamAId;
+    Long teamBId;
+
+    @BeforeEach
+    void before() {
+        statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        for (int i = 0; i < 20; i++) {
+            em.persist(new Member("member" + i, i, teamA));
+        }
+        em.flush();
+        em.clear();
+        teamAId = teamA.getId();
+        teamBId = teamB.getId();
+    }
+
+    @Test
+    public void sizeWithoutLoadingMembers() throws Exception {
+        //given
+        Team team = em.find(Team.class, teamAId);
+        statistics.clear();
+
+        //when
+        int size = team.getMembers().size();
+
+        //then count 쿼리 한 번
+        assertThat(size).isEqualTo(20);
+        assertThat(Hibernate.isInitialized(team.getMembers())).isFalse();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    public void assignWithoutLoadingMembers() throws Exception {
+        //given
+        Team teamA = em.find(Team.class, teamAId);
+        Team teamB = em.find(Team.class, teamBId);
+        Member moved = teamRepository.findMembers(teamAId, PageRequest.of(0, 1)).getContent().get(0);
+        statistics.clear();
+
+        //when
+        em.persist(new Member("added", 100, teamA));
+        moved.changeTeam(teamB);
+
+        //then add 는 읽지 않은 컬렉션에 쌓이기만 한다.
+        assertThat(Hibernate.isInitialized(teamA.getMembers())).isFalse();
+        assertThat(Hibernate.isInitialized(teamB.getMembers())).isFalse();
+        em.flush();
+        assertThat(statistics.getCollectionLoadCount()).isZero();
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        assertThat(teamRepository.countMembers(teamAId)).isEqualTo(20);
+        assertThat(teamRepository.countMembers(teamBId)).isEqualTo(1);
+        assertThat(teamB.getMembers().size()).isEqualTo(1);
+    }
+
+    @Test
+    public void queuedAddVisibleBeforeFlush() throws Exception {
+        //given
+        Team teamA = em.find(Team.class, teamAId);
+        Team teamB = em.find(Team.class, teamBId);
+        Member moved = teamRepository.findMembers(teamAId, PageRequest.of(0, 1)).getContent().get(0);
+
+        //when flush / clear 없이
+        Member added = new Member("added", 100, teamB);
+        em.persist(added);
+        moved.changeTeam(teamB);
+
+        //then 컬렉션을 읽을 때 쌓아 둔 add 가 적용된다.
+        assertThat(teamB.getMembers()).containsExactlyInAnyOrder(added, moved);
+        assertThat(Hibernate.isInitialized(teamA.getMembers())).isFalse();
+    }
+
+    @Test
+    public void loadedMembersStayInSync() throws Exception {
+        //given 이미 읽은 컬렉션에는 그대로 반영한다.
+        Team teamA = em.find(Team.class, teamAId);
+        Team teamB = em.find(Team.class, teamBId);
+        Hibernate.initialize(teamA.getMembers());
+        Hibernate.initialize(teamB.getMembers());
+        Member moved = teamA.getMembers().get(0);
+
+        //when
+        moved.changeTeam(teamB);
+
+        //then
+        assertThat(teamA.getMembers()).hasSize(19).doesNotContain(moved);
+        assertThat(teamB.getMembers()).containsExactly(moved);
+    }
+
+    @Test
+    public void membersBySlice() throws Exception {
+        //given
+        statistics.clear();
+
+        //when
+        Slice<Member> first = teamRepository.findMembers(teamAId, PageRequest.of(0, 8));
+        Slice<Member> last = teamRepository.findMembers(teamAId, PageRequest.of(2, 8));
+
+        //then 페이지마다 쿼리 한 번, count 쿼리 없음
+        assertThat(first.getContent()).hasSize(8);
+        assertThat(first.hasNext()).isTrue();
+        assertThat(last.getContent()).extracting("username").containsExactly("member16", "member17", "member18", "member19");
+        assertThat(last.hasNext()).isFalse();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+}
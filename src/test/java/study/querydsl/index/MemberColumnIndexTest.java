@@ -0,0 +1,157 @@
+package study.querydsl.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberColumnIndexTest {
+
+    MemberColumnIndex index;
+
+    @BeforeEach
+    void before() {
+        index = MemberColumnIndex.builder()
+                                 .add(4L, "member4", 40, 2L, "teamB")
+                                 .add(1L, "member1", 10, 1L, "teamA")
+                                 .add(3L, "member3", 30, 2L, "teamB")
+                                 .add(2L, "member2", 20, 1L, "teamA")
+                                 .build();
+    }
+
+    @Test
+    public void ageRangeAndTeam() throws Exception {
+        //given
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamName("teamB");
+        cond.setAgeGoe(30);
+        cond.setAgeLoe(40);
+
+        //when
+        List<MemberTeamDto> result = index.search(cond);
+
+        //then
+        assertThat(result).extracting("username").containsExactly("member3", "member4");
+        assertThat(result).extracting("teamId").containsExactly(2L, 2L);
+    }
+
+    @Test
+    public void usernameOutsideRange() throws Exception {
+        //given
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setUsername("member1");
+        cond.setAgeGoe(15);
+
+        //when
+        List<MemberTeamDto> result = index.search(cond);
+
+        //then
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    public void unknownTeam() throws Exception {
+        //given
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamName("teamC");
+
+        //when, then
+        assertThat(index.search(cond)).isEmpty();
+    }
+
+    @Test
+    public void ageHistogram() throws Exception {
+        //given
+        MemberSearchCondition all = new MemberSearchCondition();
+        MemberSearchCondition teamA = new MemberSearchCondition();
+        teamA.setTeamName("teamA");
+        MemberSearchCondition range = new MemberSearchCondition();
+        range.setAgeGoe(15);
+        range.setAgeLoe(35);
+
+        //when, then 구간은 (~20), [20, 40), [40, ~)
+        int[] bounds = {20, 40};
+        assertThat(index.ageHistogram(all, bounds)).containsExactly(1, 2, 1);
+        assertThat(index.ageHistogram(teamA, bounds)).containsExactly(1, 1, 0);
+        assertThat(index.ageHistogram(range, bounds)).containsExactly(0, 2, 0);
+        assertThat(index.ageHistogram(range, new int[]{0, 5})).containsExactly(0, 0, 2);
+    }
+
+    @Test
+    public void sameResultAsFullScan() throws Exception {
+        //given
+        Random random = new Random(1);
+        int size = 5_000;
+        long[] ids = new long[size];
+        String[] usernames = new String[size];
+        int[] ages = new int[size];
+        String[] teamNames = new String[size];
+
+        MemberColumnIndex.Builder builder = MemberColumnIndex.builder();
+        for (int i = 0; i < size; i++) {
+            ids[i] = i + 1;
+            usernames[i] = "member" + random.nextInt(3_000);
+            ages[i] = random.nextInt(100);
+            teamNames[i] = "team" + random.nextInt(7);
+            builder.add(ids[i], usernames[i], ages[i], random.nextInt(7), teamNames[i]);
+        }
+        MemberColumnIndex large = builder.build();
+
+        for (int q = 0; q < 1_000; q++) {
+            MemberSearchCondition cond = new MemberSearchCondition();
+            if (random.nextBoolean()) {
+                cond.setAgeGoe(random.nextInt(110) - 5);
+            }
+            if (random.nextBoolean()) {
+                cond.setAgeLoe(random.nextInt(110) - 5);
+            }
+            if (random.nextInt(3) == 0) {
+                cond.setUsername("member" + random.nextInt(3_100));
+            }
+            if (random.nextBoolean()) {
+                cond.setTeamName("team" + random.nextInt(8));
+            }
+
+            //when
+            Set<Long> actual = large.search(cond)
+                                    .stream()
+                                    .map(MemberTeamDto::getMemberId)
+                                    .collect(Collectors.toCollection(TreeSet::new));
+
+            //then
+            Set<Long> expected = new TreeSet<>();
+            for (int i = 0; i < size; i++) {
+                if ((cond.getAgeGoe() == null || ages[i] >= cond.getAgeGoe())
+                        && (cond.getAgeLoe() == null || ages[i] <= cond.getAgeLoe())
+                        && (cond.getUsername() == null || usernames[i].equals(cond.getUsername()))
+                        && (cond.getTeamName() == null || teamNames[i].equals(cond.getTeamName()))) {
+                    expected.add(ids[i]);
+                }
+            }
+            assertThat(actual).isEqualTo(expected);
+
+            Set<Long> matched = new TreeSet<>();
+            for (int i = 0; i < size; i++) {
+                if (MemberColumnIndex.matches(cond, usernames[i], ages[i], teamNames[i])) {
+                    matched.add(ids[i]);
+                }
+            }
+            assertThat(matched).isEqualTo(expected);
+
+            int[] bounds = {random.nextInt(50), 50 + random.nextInt(50)};
+            long[] histogram = new long[bounds.length + 1];
+            for (MemberTeamDto row : large.search(cond)) {
+                histogram[row.getAge() < bounds[0] ? 0 : row.getAge() < bounds[1] ? 1 : 2]++;
+            }
+            assertThat(large.ageHistogram(cond, bounds)).containsExactly(histogram);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package study.querydsl.index;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.support.BenchmarkFixture;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * member 1,000,000 건에서 인덱스를 DB 로부터 만드는 경우(cold start)와 스냅샷 파일에서 읽는 경우를 비교한다.
+ */
+@Tag("benchmark")
+@Transactional
+@SpringBootTest(properties = "member.index.enabled=true")
+class MemberIndexRestartBenchmarkTest {
+
+    static final int TEAMS = 100;
+    static final int MEMBERS = 1_000_000;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    MemberIndexService memberIndexService;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void coldStartVsSnapshotStart() throws Exception {
+        //given
+        Random random = new Random(1);
+        BenchmarkFixture.insert(jdbcTemplate, TEAMS, MEMBERS, random);
+
+        //when
+        long start = System.currentTimeMillis();
+        MemberColumnIndex cold = memberIndexService.load();
+        long coldMillis = System.currentTimeMillis() - start;
+
+        Path file = dir.resolve("member-index.bin");
+        start = System.currentTimeMillis();
+        MemberIndexSnapshotFile.write(cold, 0, file);
+        long writeMillis = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        MemberColumnIndex restored = MemberIndexSnapshotFile.read(file).getIndex();
+        long snapshotMillis = System.currentTimeMillis() - start;
+
+        //then
+        System.out.printf("members=%d, file=%,d bytes%n", MEMBERS, Files.size(file));
+        System.out.printf("cold start (db + build) = %dms%n", coldMillis);
+        System.out.printf("snapshot write          = %dms%n", writeMillis);
+        System.out.printf("snapshot start (mmap)   = %dms%n", snapshotMillis);
+
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamName("team7");
+        cond.setAgeGoe(50);
+        assertThat(restored.size()).isEqualTo(cold.size());
+        assertThat(restored.search(cond)).isEqualTo(cold.search(cond));
+        assertThat(snapshotMillis).isLessThan(coldMillis);
+    }
+}
@@ -0,0 +1,186 @@
+package study.querydsl.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.BulkChangedEvent;
+import study.querydsl.event.ChangeType;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.MemberState;
+import study.querydsl.event.TeamChangedEvent;
+import study.querydsl.search.MemberSearchKey;
+import study.querydsl.search.MemberSearchRouter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * 테스트 데이터는 커밋되지 않으므로 백그라운드 재구성이 돌지 않게 rebuild-delay 를 길게 두고 rebuild 를 직접 부른다.
+ * rebuild 가 스냅샷 파일을 남기므로 restore 도 직접 부를 수 있다.
+ */
+@Transactional
+@SpringBootTest(properties = {"member.index.enabled=true", "member.index.rebuild-delay-ms=600000",
+        "member.index.snapshot-file=${java.io.tmpdir}/member-index-service-test.bin"})
+class MemberIndexServiceTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    MemberIndexService memberIndexService;
+
+    @Autowired
+    MemberSearchRouter memberSearchRouter;
+
+    Team teamA;
+    Team teamB;
+    List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void before() {
+        teamA = new Team("indexTeamA");
+        teamB = new Team("indexTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        for (int i = 0; i < 4; i++) {
+            Member member = new Member("member" + i, 10 * (i + 1), i < 2 ? teamA : teamB);
+            em.persist(member);
+            ids.add(member.getId());
+        }
+        em.flush();
+        em.clear();
+        memberIndexService.rebuild();
+    }
+
+    @Test
+    public void singleChangesStayFresh() throws Exception {
+        //when 인덱스를 다시 만들지 않고 overlay 로 반영한다. teamName 을 모르는 이벤트는 인덱스에서 채운다.
+        memberIndexService.onMemberChanged(new MemberChangedEvent(ChangeType.UPDATE,
+                null, new MemberState(ids.get(0), "member0", 35, teamA.getId(), null)));
+        memberIndexService.onMemberChanged(new MemberChangedEvent(ChangeType.UPDATE,
+                null, new MemberState(ids.get(1), "member1", 20, null, null)));
+        memberIndexService.onMemberChanged(new MemberChangedEvent(ChangeType.DELETE,
+                new MemberState(ids.get(2), "member2", 30, teamB.getId(), "indexTeamB"), null));
+        memberIndexService.onMemberChanged(new MemberChangedEvent(ChangeType.INSERT,
+                null, new MemberState(-1L, "member99", 5, teamB.getId(), "indexTeamB")));
+
+        //then
+        assertThat(memberIndexService.isFresh()).isTrue();
+        assertThat(memberIndexService.search(teamName("indexTeamA")).get())
+                .extracting("memberId", "age")
+                .containsExactly(tuple(ids.get(0), 35));
+        assertThat(memberIndexService.search(teamName("indexTeamB")).get())
+                .extracting("memberId")
+                .containsExactly(-1L, ids.get(3));
+    }
+
+    @Test
+    public void overlayRowsAreMergedInAgeAndIdOrder() throws Exception {
+        //when 같은 age 가 인덱스 행과 overlay 행에 섞인다.
+        memberIndexService.onMemberChanged(new MemberChangedEvent(ChangeType.UPDATE,
+                null, new MemberState(ids.get(3), "member3", 30, teamB.getId(), "indexTeamB")));
+        memberIndexService.onMemberChanged(new MemberChangedEvent(ChangeType.INSERT,
+                null, new MemberState(-1L, "member99", 30, teamB.getId(), "indexTeamB")));
+
+        //then
+        assertThat(memberIndexService.search(teamName("indexTeamB")).get())
+                .extracting("memberId")
+                .containsExactly(-1L, ids.get(2), ids.get(3));
+        assertThat(memberIndexService.ageHistogram(teamName("indexTeamB"), new int[]{25, 35}).get())
+                .containsExactly(0, 3, 0);
+    }
+
+    @Test
+    public void teamRenameStaysFresh() throws Exception {
+        //when
+        memberIndexService.onTeamChanged(new TeamChangedEvent(ChangeType.UPDATE, teamA.getId(), "indexTeamA", "indexTeamC"));
+        memberIndexService.onMemberChanged(new MemberChangedEvent(ChangeType.INSERT,
+                null, new MemberState(-1L, "member99", 5, teamA.getId(), null)));
+
+        //then 이름을 모르는 이벤트도 바뀐 이름을 쓴다.
+        assertThat(memberIndexService.isFresh()).isTrue();
+        assertThat(memberIndexService.search(teamName("indexTeamA")).get()).isEmpty();
+        assertThat(memberIndexService.search(teamName("indexTeamC")).get())
+                .extracting("memberId")
+                .containsExactly(-1L, ids.get(0), ids.get(1));
+    }
+
+    @Test
+    public void rebuildDropsOlderChanges() throws Exception {
+        //given 이벤트는 커밋 뒤에 오므로 재구성을 시작하기 전의 변경은 DB 에서 읽은 값이 기준이다.
+        memberIndexService.onTeamChanged(new TeamChangedEvent(ChangeType.UPDATE, teamA.getId(), "indexTeamA", "indexTeamC"));
+
+        //when 테스트 DB 에는 예전 이름 그대로
+        memberIndexService.rebuild();
+
+        //then
+        assertThat(memberIndexService.search(teamName("indexTeamA")).get()).hasSize(2);
+    }
+
+    @Test
+    public void restoredIndexCatchesUpWithDatabase() throws Exception {
+        //given 파일을 남긴 뒤 이벤트 없이 바뀐 row (내려가 있는 동안의 변경)
+        em.createQuery("update Member m set m.age = 99 where m.id = :id")
+          .setParameter("id", ids.get(0))
+          .executeUpdate();
+        em.createQuery("delete from Member m where m.id = :id")
+          .setParameter("id", ids.get(2))
+          .executeUpdate();
+        em.createQuery("update Team t set t.name = 'indexTeamC' where t.id = :id")
+          .setParameter("id", teamB.getId())
+          .executeUpdate();
+
+        //when
+        memberIndexService.restore();
+
+        //then 파일의 값이 아니라 따라잡은 값을 바로 내보낸다.
+        assertThat(memberIndexService.isFresh()).isTrue();
+        assertThat(memberIndexService.search(teamName("indexTeamA")).get())
+                .extracting("memberId", "age")
+                .containsExactly(tuple(ids.get(1), 20), tuple(ids.get(0), 99));
+        assertThat(memberIndexService.search(teamName("indexTeamB")).get()).isEmpty();
+        assertThat(memberIndexService.search(teamName("indexTeamC")).get())
+                .extracting("memberId")
+                .containsExactly(ids.get(3));
+    }
+
+    @Test
+    public void bulkChangeMakesStale() throws Exception {
+        //when
+        memberIndexService.onBulkChanged(new BulkChangedEvent(Member.class, 3));
+
+        //then
+        assertThat(memberIndexService.isFresh()).isFalse();
+        assertThat(memberIndexService.search(teamName("indexTeamA"))).isEmpty();
+    }
+
+    @Test
+    public void routedToIndex() throws Exception {
+        //given
+        long before = memberSearchRouter.routedCount(MemberSearchRouter.Route.INDEX);
+
+        //when
+        List<MemberTeamDto> result = memberSearchRouter.search(MemberSearchKey.of(teamName("indexTeamB")));
+
+        //then
+        assertThat(result).extracting("memberId").containsExactly(ids.get(2), ids.get(3));
+        assertThat(memberSearchRouter.routedCount(MemberSearchRouter.Route.INDEX)).isEqualTo(before + 1);
+    }
+
+    private static MemberSearchCondition teamName(String teamName) {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamName(teamName);
+        return cond;
+    }
+}
@@ -0,0 +1,105 @@
+package study.querydsl.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class MemberIndexSnapshotFileTest {
+
+    @TempDir
+    Path dir;
+
+    MemberColumnIndex index;
+
+    @BeforeEach
+    void before() {
+        index = MemberColumnIndex.builder()
+                                 .add(4L, "member4", 40, 2L, "teamB")
+                                 .add(1L, "member1", 10, 1L, "teamA")
+                                 .add(3L, "회원3", 30, 2L, "teamB")
+                                 .add(2L, "member2", 20, 1L, "teamA")
+                                 .build();
+    }
+
+    @Test
+    public void writeAndRead() throws Exception {
+        //given
+        Path file = dir.resolve("member-index.bin");
+        MemberIndexSnapshotFile.write(index, 1234L, file);
+
+        //when
+        MemberIndexSnapshotFile.Loaded loaded = MemberIndexSnapshotFile.read(file);
+
+        //then
+        assertThat(loaded.getWatermark()).isEqualTo(1234L);
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamName("teamB");
+        assertThat(loaded.getIndex().search(cond)).isEqualTo(index.search(cond));
+        assertThat(loaded.getIndex().search(new MemberSearchCondition())).isEqualTo(index.search(new MemberSearchCondition()));
+    }
+
+    @Test
+    public void nullUsername() throws Exception {
+        //given username 은 nullable
+        MemberColumnIndex withNull = index.toBuilder()
+                                          .add(5L, null, 50, 1L, "teamA")
+                                          .build();
+        Path file = dir.resolve("member-index.bin");
+
+        //when
+        MemberIndexSnapshotFile.write(withNull, 1234L, file);
+        MemberColumnIndex loaded = MemberIndexSnapshotFile.read(file).getIndex();
+
+        //then 빈 문자열과 구분된다.
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setAgeGoe(50);
+        assertThat(loaded.search(cond)).extracting("memberId", "username").containsExactly(tuple(5L, null));
+        assertThat(loaded.search(new MemberSearchCondition())).isEqualTo(withNull.search(new MemberSearchCondition()));
+    }
+
+    @Test
+    public void corruptedFileIsRejected() throws Exception {
+        //given
+        Path file = dir.resolve("member-index.bin");
+        MemberIndexSnapshotFile.write(index, 1234L, file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[40] ^= 1;
+        Files.write(file, bytes);
+
+        //when, then
+        assertThatThrownBy(() -> MemberIndexSnapshotFile.read(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("checksum");
+    }
+
+    @Test
+    public void catchUpAddsNewRows() throws Exception {
+        //given
+        Path file = dir.resolve("member-index.bin");
+        MemberIndexSnapshotFile.write(index, 1234L, file);
+        MemberIndexSnapshotFile.Loaded loaded = MemberIndexSnapshotFile.read(file);
+
+        //when 파일 이후에 추가된 member, 바뀐 member
+        MemberColumnIndex caughtUp = loaded.getIndex().toBuilder(id -> id == 4L)
+                                           .add(4L, "member4", 25, 2L, "teamB")
+                                           .add(5L, "member5", 35, 2L, "teamB")
+                                           .build();
+
+        //then
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setAgeGoe(30);
+        cond.setTeamName("teamB");
+        assertThat(caughtUp.search(cond)).extracting("memberId").containsExactly(3L, 5L);
+        assertThat(caughtUp.size()).isEqualTo(5);
+        assertThat(caughtUp.maxId()).isEqualTo(5L);
+    }
+}
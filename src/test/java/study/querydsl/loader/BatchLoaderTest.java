@@ -0,0 +1,125 @@
+package study.querydsl.loader;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BatchLoaderTest {
+
+    ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    ExecutorService workers = Executors.newFixedThreadPool(2);
+    List<List<Long>> batches = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        timer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private Map<Long, String> fetch(List<Long> ids) {
+        batches.add(ids);
+        Map<Long, String> result = new HashMap<>();
+        for (Long id : ids) {
+            // 짝수 id 만 있다고 본다.
+            if (id % 2 == 0) {
+                result.put(id, "member" + id);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void concurrentLoadsShareOneBatch() throws Exception {
+        //given
+        BatchLoader<Long, String> loader = new BatchLoader<>(this::fetch, 500, 1000, timer, workers);
+        int callers = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+
+        //when
+        List<Future<String>> results = new ArrayList<>();
+        for (long id = 0; id < callers; id++) {
+            long key = id;
+            results.add(executor.submit(() -> loader.load(key).get(5, TimeUnit.SECONDS)));
+        }
+
+        //then
+        for (int id = 0; id < callers; id++) {
+            assertThat(results.get(id).get(5, TimeUnit.SECONDS)).isEqualTo(id % 2 == 0 ? "member" + id : null);
+        }
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).hasSize(callers);
+        executor.shutdown();
+    }
+
+    @Test
+    public void sameKeyIsLoadedOnce() throws Exception {
+        //given
+        BatchLoader<Long, String> loader = new BatchLoader<>(this::fetch, 50, 1000, timer, workers);
+
+        //when
+        CompletableFuture<String> first = loader.load(2L);
+        CompletableFuture<String> second = loader.load(2L);
+        // 한 호출을 취소해도 같은 key 를 기다리는 다른 호출은 결과를 받는다.
+        first.cancel(false);
+
+        //then
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("member2");
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).containsExactly(2L);
+        assertThat(loader.deduplicatedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void fullBatchIsLoadedWithoutWaiting() throws Exception {
+        //given
+        BatchLoader<Long, String> loader = new BatchLoader<>(this::fetch, TimeUnit.MINUTES.toMillis(1), 4, timer, workers);
+
+        //when
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (long id = 0; id < 10; id++) {
+            results.add(loader.load(id));
+        }
+        loader.flush();
+
+        //then
+        for (CompletableFuture<String> result : results) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+        assertThat(batches).extracting(List::size).containsExactlyInAnyOrder(4, 4, 2);
+    }
+
+    @Test
+    public void failureIsDeliveredToEveryCaller() {
+        //given
+        BatchLoader<Long, String> loader = new BatchLoader<>(ids -> {
+            throw new IllegalStateException("db down");
+        }, 10, 1000, timer, workers);
+
+        //when
+        CompletableFuture<String> first = loader.load(1L);
+        CompletableFuture<String> second = loader.load(2L);
+
+        //then
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseInstanceOf(IllegalStateException.class);
+    }
+}
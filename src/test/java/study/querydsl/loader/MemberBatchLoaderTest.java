@@ -0,0 +1,71 @@
+package study.querydsl.loader;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * loader 는 자기 스레드의 별도 트랜잭션에서 조회하므로 테스트 트랜잭션을 쓰지 않는다. 필요한 데이터는 커밋하고 지운다.
+ */
+@SpringBootTest
+class MemberBatchLoaderTest {
+
+    @Autowired
+    MemberBatchLoader memberBatchLoader;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Test
+    public void loadAllKeepsOrderAndSkipsMissing() throws Exception {
+        //given
+        List<Long> memberIds = new ArrayList<>();
+        Team teamA = new Team("teamA");
+        tx.executeWithoutResult(status -> {
+            em.persist(teamA);
+            Member member1 = new Member("member1", 10, teamA);
+            Member member2 = new Member("member2", 20);
+            em.persist(member1);
+            em.persist(member2);
+            memberIds.add(member1.getId());
+            memberIds.add(member2.getId());
+        });
+
+        try {
+            Long member1 = memberIds.get(0);
+            Long member2 = memberIds.get(1);
+
+            //when 중복, 없는 id, null 이 섞여 있다.
+            Map<Long, MemberTeamDto> found = memberBatchLoader
+                    .loadAll(Arrays.asList(member2, -1L, null, member1, member2))
+                    .get(5, TimeUnit.SECONDS);
+
+            //then 넘긴 순서대로 있는 id 만 나오고, team 이 없는 member 도 나온다.
+            assertThat(found.keySet()).containsExactly(member2, member1);
+            assertThat(found.get(member1).getTeamName()).isEqualTo("teamA");
+            assertThat(found.get(member2).getTeamId()).isNull();
+        } finally {
+            tx.executeWithoutResult(status -> {
+                em.createQuery("delete from Member m where m.id in :ids").setParameter("ids", memberIds).executeUpdate();
+                em.createQuery("delete from Team t where t.id = :id").setParameter("id", teamA.getId()).executeUpdate();
+            });
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package study.querydsl.ngram;
+
+import com.querydsl.core.types.Predicate;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.support.BenchmarkFixture;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * member 500,000 건에서 usernameLike 를 plain like 와 ngram 인덱스 + member.id in (...) 으로 실행해 비교한다.
+ * member4* 처럼 후보가 max-in-size 를 넘는 패턴은 후보 id 를 lookup_key 에 넣고 서브쿼리로 실행된다.
+ */
+@Tag("benchmark")
+@Transactional
+@SpringBootTest(properties = "member.ngram.enabled=true")
+class UsernameLikeBenchmarkTest {
+
+    static final int TEAMS = 100;
+    static final int MEMBERS = 500_000;
+    static final int ROUNDS = 50;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    UsernameNgramService usernameNgramService;
+
+    @Autowired
+    UsernameLikePredicate usernameLikePredicate;
+
+    @Test
+    public void likeVsNgramIndex() throws Exception {
+        //given
+        Random random = new Random(1);
+        BenchmarkFixture.insert(jdbcTemplate, TEAMS, MEMBERS, random);
+        long start = System.currentTimeMillis();
+        usernameNgramService.rebuild();
+        System.out.printf("ngram index build = %dms%n", System.currentTimeMillis() - start);
+        assertThat(usernameNgramService.isFresh()).isTrue();
+
+        //when / then
+        for (String pattern : new String[]{"member12345*", "*23456*", "*99", "member4*"}) {
+            UsernamePattern parsed = UsernamePattern.parse(pattern);
+            Supplier<Predicate> like = () -> member.username.like(parsed.toLikePattern(), UsernamePattern.LIKE_ESCAPE);
+            Supplier<Predicate> indexed = () -> usernameLikePredicate.of(pattern);
+
+            List<Long> expected = ids(like.get());
+            assertThat(ids(indexed.get())).isEqualTo(expected);
+
+            // 인덱스 쪽은 후보 id 계산까지 포함한다.
+            long likeNanos = time(like);
+            long indexedNanos = time(indexed);
+            System.out.printf("%-14s rows=%-6d like=%8.3fms ngram=%8.3fms%n",
+                    pattern, expected.size(), likeNanos / 1e6 / ROUNDS, indexedNanos / 1e6 / ROUNDS);
+        }
+    }
+
+    private List<Long> ids(Predicate where) {
+        return queryFactory.select(member.id)
+                           .from(member)
+                           .where(where)
+                           .orderBy(member.id.asc())
+                           .fetch();
+    }
+
+    private long time(Supplier<Predicate> where) {
+        ids(where.get());
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            ids(where.get());
+        }
+        return System.nanoTime() - start;
+    }
+}
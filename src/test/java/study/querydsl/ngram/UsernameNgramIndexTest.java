@@ -0,0 +1,103 @@
+package study.querydsl.ngram;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UsernameNgramIndexTest {
+
+    UsernameNgramIndex index;
+
+    @BeforeEach
+    void before() {
+        index = UsernameNgramIndex.builder()
+                                  .add(4L, "member4")
+                                  .add(1L, "member1")
+                                  .add(3L, "member10")
+                                  .add(2L, "admin_1")
+                                  .add(5L, null)
+                                  .build();
+    }
+
+    @Test
+    public void prefix() throws Exception {
+        //when
+        long[] ids = index.search(UsernamePattern.parse("member1*"));
+
+        //then
+        assertThat(ids).containsExactly(1L, 3L);
+    }
+
+    @Test
+    public void shortPrefixUsesStartAnchor() throws Exception {
+        //when 한 글자라도 앞에 붙는 START 로 trigram 이 만들어진다.
+        long[] ids = index.search(UsernamePattern.parse("a*"));
+
+        //then
+        assertThat(ids).containsExactly(2L);
+    }
+
+    @Test
+    public void substringAndSuffix() throws Exception {
+        //when
+        long[] contains = index.search(UsernamePattern.parse("*mber*"));
+        long[] suffix = index.search(UsernamePattern.parse("*_1"));
+        long[] both = index.search(UsernamePattern.parse("mem*0"));
+
+        //then
+        assertThat(contains).containsExactly(1L, 3L, 4L);
+        assertThat(suffix).containsExactly(2L);
+        assertThat(both).containsExactly(3L);
+    }
+
+    @Test
+    public void unanchoredShortLiteralIsNotIndexable() throws Exception {
+        //when
+        long[] ids = index.search(UsernamePattern.parse("*10*"));
+        long[] missing = index.search(UsernamePattern.parse("*xyz*"));
+
+        //then 두 글자 이하 부분 문자열은 인덱스로 좁힐 수 없다.
+        assertThat(ids).isNull();
+        assertThat(missing).isEmpty();
+    }
+
+    @Test
+    public void sameAsPatternMatchOnRandomNames() throws Exception {
+        //given
+        Random random = new Random(1);
+        String[] names = new String[5_000];
+        UsernameNgramIndex.Builder builder = UsernameNgramIndex.builder();
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "user" + Integer.toString(random.nextInt(100_000), 36);
+            builder.add(i, names[i]);
+        }
+        UsernameNgramIndex random5000 = builder.build();
+
+        for (String raw : new String[]{"user1*", "*r1a*", "*z", "us*9*", "user"}) {
+            UsernamePattern pattern = UsernamePattern.parse(raw);
+
+            //when
+            long[] ids = random5000.search(pattern);
+
+            //then
+            long[] expected = LongStream.range(0, names.length).filter(i -> pattern.matches(names[(int) i])).toArray();
+            assertThat(ids).as(raw).containsExactly(expected);
+        }
+    }
+
+    @Test
+    public void likePatternEscapesWildcards() throws Exception {
+        //when
+        UsernamePattern pattern = UsernamePattern.parse("admin_1%*");
+
+        //then
+        assertThat(pattern.toLikePattern()).isEqualTo("admin!_1!%%");
+        assertThat(pattern.matches("admin_1%x")).isTrue();
+        assertThat(pattern.matches("adminx1%x")).isFalse();
+        assertThat(UsernamePattern.parse("**")).isNull();
+    }
+}
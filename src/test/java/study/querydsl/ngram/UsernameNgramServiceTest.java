@@ -0,0 +1,128 @@
+package study.querydsl.ngram;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.BulkChangedEvent;
+import study.querydsl.event.ChangeType;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.MemberState;
+import study.querydsl.repository.MemberJPARepository;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * max-in-size 를 3 으로 낮춰서 IN 경로와 lookup_key 경로를 모두 확인한다.
+ * 테스트 데이터는 커밋되지 않으므로 백그라운드 재구성이 돌지 않게 rebuild-delay 를 길게 두고 rebuild 를 직접 부른다.
+ */
+@Transactional
+@SpringBootTest(properties = {"member.ngram.enabled=true", "member.ngram.max-in-size=3", "member.ngram.rebuild-delay-ms=600000"})
+class UsernameNgramServiceTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    UsernameNgramService usernameNgramService;
+
+    @Autowired
+    MemberJPARepository memberJPARepository;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void before() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 10; i++) {
+            Member member = new Member("member" + i, i, teamA);
+            em.persist(member);
+            ids.add(member.getId());
+        }
+        em.flush();
+        em.clear();
+        usernameNgramService.rebuild();
+    }
+
+    @Test
+    public void singleChangesStayFresh() throws Exception {
+        //when 인덱스를 다시 만들지 않고 overlay 로 반영한다.
+        usernameNgramService.onMemberChanged(new MemberChangedEvent(ChangeType.UPDATE,
+                state(ids.get(1), "member1"), state(ids.get(1), "renamed1")));
+        usernameNgramService.onMemberChanged(new MemberChangedEvent(ChangeType.DELETE,
+                state(ids.get(2), "member2"), null));
+        usernameNgramService.onMemberChanged(new MemberChangedEvent(ChangeType.INSERT,
+                null, state(-1L, "member99")));
+
+        //then
+        assertThat(usernameNgramService.isFresh()).isTrue();
+        assertThat(usernameNgramService.candidateIds(UsernamePattern.parse("member*")).get())
+                .containsExactly(-1L, ids.get(0), ids.get(3), ids.get(4), ids.get(5), ids.get(6), ids.get(7), ids.get(8), ids.get(9));
+        assertThat(usernameNgramService.candidateIds(UsernamePattern.parse("renamed*")).get())
+                .containsExactly(ids.get(1));
+    }
+
+    @Test
+    public void overlayIsMergedInIdOrder() throws Exception {
+        //when 같은 member 가 두 번 바뀌고, 인덱스 중간 id 가 바뀐다.
+        usernameNgramService.onMemberChanged(new MemberChangedEvent(ChangeType.UPDATE,
+                state(ids.get(5), "member5"), state(ids.get(5), "other5")));
+        usernameNgramService.onMemberChanged(new MemberChangedEvent(ChangeType.UPDATE,
+                state(ids.get(5), "other5"), state(ids.get(5), "member5x")));
+        usernameNgramService.onMemberChanged(new MemberChangedEvent(ChangeType.UPDATE,
+                state(ids.get(3), "member3"), state(ids.get(3), "other3")));
+
+        //then 마지막 값으로, id 오름차순이다.
+        assertThat(usernameNgramService.candidateIds(UsernamePattern.parse("member*")).get())
+                .containsExactly(ids.get(0), ids.get(1), ids.get(2), ids.get(4), ids.get(5), ids.get(6), ids.get(7), ids.get(8), ids.get(9));
+        assertThat(usernameNgramService.candidateIds(UsernamePattern.parse("other*")).get())
+                .containsExactly(ids.get(3));
+    }
+
+    @Test
+    public void bulkChangeMakesStale() throws Exception {
+        //when
+        usernameNgramService.onBulkChanged(new BulkChangedEvent(Member.class, 3));
+
+        //then
+        assertThat(usernameNgramService.isFresh()).isFalse();
+        assertThat(usernameNgramService.candidateIds(UsernamePattern.parse("member*"))).isEmpty();
+    }
+
+    @Test
+    public void manyCandidatesUseWorkTable() throws Exception {
+        //given
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setUsernameLike("member*");
+
+        //when 후보 10 개 > max-in-size 3
+        List<MemberTeamDto> result = memberJPARepository.searchByConditionWhere(cond);
+        Page<MemberTeamDto> page = memberRepository.searchComplexOptimize(cond, PageRequest.of(0, 4));
+
+        //then like 와 같은 결과이고, content 와 count 가 같은 조건을 본다.
+        assertThat(result).hasSize(10);
+        assertThat(page.getContent()).hasSize(4);
+        assertThat(page.getTotalElements()).isEqualTo(10);
+    }
+
+    private static MemberState state(Long id, String username) {
+        return new MemberState(id, username, 0, null, null);
+    }
+}
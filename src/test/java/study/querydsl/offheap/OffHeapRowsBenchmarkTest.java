@@ -0,0 +1,124 @@
+package study.querydsl.offheap;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 검색 결과 2,000,000 행을 heap(List&lt;MemberTeamDto&gt;) 과 off-heap(OffHeapRows) 으로 들고 있으면서
+ * 짧게 사는 객체를 계속 만들 때 heap 사용량과 GC 시간을 비교한다.
+ */
+@Tag("benchmark")
+class OffHeapRowsBenchmarkTest {
+
+    static final int ROWS = 2_000_000;
+    static final int CHUNK = 10_000;
+    static final long CHURN_MILLIS = 5_000;
+
+    @Test
+    public void heapVsOffHeap() throws Exception {
+        //when
+        Result heap = run("heap", () -> {
+            List<List<MemberTeamDto>> retained = new ArrayList<>();
+            for (int i = 0; i < ROWS; i += CHUNK) {
+                retained.add(chunk(i));
+            }
+            return retained;
+        });
+        Result offHeap = run("off-heap", () -> {
+            List<OffHeapRows> retained = new ArrayList<>();
+            for (int i = 0; i < ROWS; i += CHUNK) {
+                retained.add(OffHeapRows.of(chunk(i)));
+            }
+            return retained;
+        });
+
+        System.out.println(heap);
+        System.out.println(offHeap);
+
+        //then
+        assertThat(offHeap.retainedHeapBytes).isLessThan(heap.retainedHeapBytes / 10);
+    }
+
+    private static List<MemberTeamDto> chunk(int from) {
+        List<MemberTeamDto> rows = new ArrayList<>(CHUNK);
+        for (int i = from; i < from + CHUNK; i++) {
+            rows.add(new MemberTeamDto((long) i, "member" + i, i % 100, (long) (i % 1_000), "team" + (i % 1_000)));
+        }
+        return rows;
+    }
+
+    private static Result run(String name, Supplier<Object> retain) {
+        long before = usedHeapAfterGc();
+        Object retained = retain.get();
+        long after = usedHeapAfterGc();
+
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        long deadline = System.currentTimeMillis() + CHURN_MILLIS;
+        long sink = 0;
+        while (System.currentTimeMillis() < deadline) {
+            // 요청 처리 중 생기는 짧은 수명의 객체
+            List<MemberTeamDto> garbage = chunk(0);
+            sink += garbage.size();
+        }
+
+        Result result = new Result(name, after - before, gcCount() - gcCount, gcMillis() - gcMillis);
+        // 측정이 끝날 때까지 살려 둔다.
+        assertThat(retained).isNotNull();
+        assertThat(sink).isPositive();
+        return result;
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    static class Result {
+        final String name;
+        final long retainedHeapBytes;
+        final long gcCount;
+        final long gcMillis;
+
+        Result(String name, long retainedHeapBytes, long gcCount, long gcMillis) {
+            this.name = name;
+            this.retainedHeapBytes = retainedHeapBytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-8s retained heap=%,d KB, gc count=%d, gc time=%dms",
+                    name, retainedHeapBytes / 1024, gcCount, gcMillis);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package study.querydsl.offheap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapRowsTest {
+
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    List<MemberTeamDto> dtos = Arrays.asList(
+            new MemberTeamDto(1L, "member1", 10, 1L, "teamA"),
+            new MemberTeamDto(2L, "회원\"2\"", 20, 1L, "teamA"),
+            new MemberTeamDto(3L, null, null, null, null));
+
+    @Test
+    public void roundTrip() throws Exception {
+        //when
+        OffHeapRows rows = OffHeapRows.of(dtos);
+
+        //then
+        assertThat(rows.size()).isEqualTo(3);
+        assertThat(rows.toList()).isEqualTo(dtos);
+        assertThat(rows.teamIds()).containsExactly(1L);
+
+        MemberTeamRowView view = rows.view();
+        assertThat(view.at(1).username()).isEqualTo("회원\"2\"");
+        // teamA 는 한 번만 저장된다.
+        assertThat(view.at(0).teamNameCode()).isEqualTo(view.at(1).teamNameCode());
+        assertThat(view.at(2).hasAge()).isFalse();
+    }
+
+    @Test
+    public void serializedLikeDtoList() throws Exception {
+        //given
+        OffHeapRows rows = OffHeapRows.of(dtos);
+        JsonNode expected = objectMapper.readTree(objectMapper.writeValueAsString(dtos));
+
+        //when UTF-8 스트림(응답과 같은 경로)과 문자열 두 경우 모두
+        byte[] bytes = objectMapper.writeValueAsBytes(rows);
+        String string = objectMapper.writeValueAsString(rows);
+
+        //then
+        assertThat(objectMapper.readTree(new String(bytes, StandardCharsets.UTF_8))).isEqualTo(expected);
+        assertThat(objectMapper.readTree(string)).isEqualTo(expected);
+    }
+}
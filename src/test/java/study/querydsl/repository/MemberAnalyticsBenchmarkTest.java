@@ -0,0 +1,133 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberAgeVsTeamDto;
+import study.querydsl.dto.MemberRankDto;
+import study.querydsl.dto.QMemberAgeVsTeamDto;
+import study.querydsl.dto.QMemberRankDto;
+import study.querydsl.entity.QMember;
+import study.querydsl.support.BenchmarkFixture;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * member 20,000 건 (team 100 개) 에서
+ * <ul>
+ *     <li>subquery : JPAExpressions 상관 서브쿼리 (바깥 row 마다 같은 team 의 member 를 다시 읽는다)</li>
+ *     <li>window : MemberAnalyticsRepository (querydsl-sql window function, member 를 한 번 읽는다)</li>
+ * </ul>
+ * 를 비교한다. 서브쿼리 쪽은 team 크기에 비례해서 느려지므로 건수를 크게 잡지 않는다.
+ */
+@Tag("benchmark")
+@Transactional
+@SpringBootTest
+class MemberAnalyticsBenchmarkTest {
+
+    static final int TEAMS = 100;
+    static final int MEMBERS = 20_000;
+    static final int ROUNDS = 5;
+    static final int TOP_N = 3;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    MemberAnalyticsRepository memberAnalyticsRepository;
+
+    QMember other = new QMember("other");
+
+    @BeforeEach
+    void before() {
+        Random random = new Random(1);
+        BenchmarkFixture.insert(jdbcTemplate, TEAMS, MEMBERS, random);
+    }
+
+    @Test
+    public void rankWithinTeam() throws Exception {
+        List<MemberRankDto> subquery = measure("rank subquery", () ->
+                queryFactory.select(new QMemberRankDto(member.id, member.username, member.age, team.id, team.name,
+                                    JPAExpressions.select(other.count().add(1L))
+                                                  .from(other)
+                                                  .where(other.team.eq(member.team), other.age.gt(member.age))))
+                            .from(member)
+                            .join(member.team, team)
+                            .orderBy(team.id.asc(), member.age.desc(), member.id.asc())
+                            .fetch());
+        List<MemberRankDto> window = measure("rank window", memberAnalyticsRepository::rankWithinTeam);
+
+        assertThat(window).isEqualTo(subquery);
+    }
+
+    @Test
+    public void ageVsTeamAverage() throws Exception {
+        List<MemberAgeVsTeamDto> subquery = measure("avg subquery", () ->
+                queryFactory.select(new QMemberAgeVsTeamDto(member.id, member.username, member.age, team.id, team.name,
+                                    JPAExpressions.select(other.age.avg())
+                                                  .from(other)
+                                                  .where(other.team.eq(member.team))))
+                            .from(member)
+                            .join(member.team, team)
+                            .orderBy(team.id.asc(), member.id.asc())
+                            .fetch());
+        List<MemberAgeVsTeamDto> window = measure("avg window", memberAnalyticsRepository::ageVsTeamAverage);
+
+        assertThat(window).hasSameSizeAs(subquery);
+        for (int i = 0; i < window.size(); i++) {
+            assertThat(window.get(i).getMemberId()).isEqualTo(subquery.get(i).getMemberId());
+            assertThat(window.get(i).getTeamAvgAge()).isCloseTo(subquery.get(i).getTeamAvgAge(), offset(1e-9));
+        }
+    }
+
+    @Test
+    public void topNPerTeam() throws Exception {
+        List<MemberRankDto> subquery = measure("top-n subquery", () ->
+                queryFactory.select(new QMemberRankDto(member.id, member.username, member.age, team.id, team.name,
+                                    JPAExpressions.select(other.count().add(1L))
+                                                  .from(other)
+                                                  .where(other.team.eq(member.team),
+                                                          other.age.gt(member.age)
+                                                               .or(other.age.eq(member.age).and(other.id.lt(member.id))))))
+                            .from(member)
+                            .join(member.team, team)
+                            .where(JPAExpressions.select(other.count())
+                                                 .from(other)
+                                                 .where(other.team.eq(member.team),
+                                                         other.age.gt(member.age)
+                                                              .or(other.age.eq(member.age).and(other.id.lt(member.id))))
+                                                 .lt((long) TOP_N))
+                            .orderBy(team.id.asc(), member.age.desc(), member.id.asc())
+                            .fetch());
+        List<MemberRankDto> window = measure("top-n window", () -> memberAnalyticsRepository.topNPerTeam(TOP_N));
+
+        assertThat(window).isEqualTo(subquery);
+    }
+
+    private static <T> List<T> measure(String name, Supplier<List<T>> query) {
+        // 첫 실행은 SQL 파싱 / 캐시 준비가 섞이므로 빼고 잰다.
+        List<T> result = query.get();
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            result = query.get();
+        }
+        System.out.printf("%-15s rows=%-6d %9.3fms%n", name, result.size(), (System.nanoTime() - start) / 1e6 / ROUNDS);
+        return result;
+    }
+}
@@ -0,0 +1,109 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberAgeVsTeamDto;
+import study.querydsl.dto.MemberRankDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@Transactional
+@SpringBootTest
+class MemberAnalyticsRepositoryTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    MemberAnalyticsRepository memberAnalyticsRepository;
+
+    @BeforeEach
+    void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 30, teamA));
+        em.persist(new Member("member3", 30, teamA));
+        em.persist(new Member("member4", 20, teamA));
+        em.persist(new Member("member5", 15, teamB));
+        em.persist(new Member("member6", 25, teamB));
+        em.persist(new Member("teamless", 99));
+        // JPA 로 넣은 내용을 querydsl-sql 이 같은 커넥션에서 읽는다.
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void rankWithinTeam() throws Exception {
+        //when
+        List<MemberRankDto> result = memberAnalyticsRepository.rankWithinTeam();
+
+        //then 같은 age 는 같은 순위, 다음 순위는 건너뛴다.
+        assertThat(result).extracting("teamName", "username", "rank")
+                          .containsExactly(
+                                  tuple("teamA", "member2", 1L),
+                                  tuple("teamA", "member3", 1L),
+                                  tuple("teamA", "member4", 3L),
+                                  tuple("teamA", "member1", 4L),
+                                  tuple("teamB", "member6", 1L),
+                                  tuple("teamB", "member5", 2L));
+    }
+
+    @Test
+    public void ageVsTeamAverage() throws Exception {
+        //when
+        List<MemberAgeVsTeamDto> result = memberAnalyticsRepository.ageVsTeamAverage();
+
+        //then teamA 평균 22.5, teamB 평균 20
+        assertThat(result).extracting("username", "teamAvgAge", "diff")
+                          .containsExactly(
+                                  tuple("member1", 22.5, -12.5),
+                                  tuple("member2", 22.5, 7.5),
+                                  tuple("member3", 22.5, 7.5),
+                                  tuple("member4", 22.5, -2.5),
+                                  tuple("member5", 20.0, -5.0),
+                                  tuple("member6", 20.0, 5.0));
+    }
+
+    @Test
+    public void topNPerTeam() throws Exception {
+        //when
+        List<MemberRankDto> result = memberAnalyticsRepository.topNPerTeam(2);
+
+        //then age 가 같으면 member id 가 작은 쪽이 먼저다.
+        assertThat(result).extracting("teamName", "username", "age", "rank")
+                          .containsExactly(
+                                  tuple("teamA", "member2", 30, 1L),
+                                  tuple("teamA", "member3", 30, 2L),
+                                  tuple("teamB", "member6", 25, 1L),
+                                  tuple("teamB", "member5", 15, 2L));
+        assertThat(memberAnalyticsRepository.topNPerTeam(0)).isEmpty();
+    }
+
+    @Test
+    public void noAutoFlush() throws Exception {
+        //given
+        Team teamC = new Team("teamC");
+        em.persist(teamC);
+        em.persist(new Member("member7", 40, teamC));
+
+        //when then JPQL 과 달리 flush 전에는 보이지 않는다.
+        assertThat(memberAnalyticsRepository.rankWithinTeam()).extracting("username").doesNotContain("member7");
+
+        em.flush();
+        assertThat(memberAnalyticsRepository.rankWithinTeam()).extracting("username").contains("member7");
+    }
+}
@@ -0,0 +1,88 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.support.BenchmarkFixture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * member 200,000 건에서 id 목록 크기별로
+ * <ul>
+ *     <li>raw : 패딩 없이 member.id.in(list)</li>
+ *     <li>lookup : MemberLookupRepository (패딩된 IN, 1024 개 초과는 작업 테이블 join)</li>
+ * </ul>
+ * 을 비교한다. 목록 크기가 매번 다르면 raw 는 크기마다 새 SQL 이 만들어진다.
+ */
+@Tag("benchmark")
+@Transactional
+@SpringBootTest
+class MemberLookupBenchmarkTest {
+
+    static final int TEAMS = 100;
+    static final int MEMBERS = 200_000;
+    static final int ROUNDS = 20;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    MemberLookupRepository memberLookupRepository;
+
+    @Test
+    public void listSizes() throws Exception {
+        //given
+        Random random = new Random(1);
+        BenchmarkFixture.insert(jdbcTemplate, TEAMS, MEMBERS, random);
+
+        //when / then
+        for (int size : new int[]{10, 100, 1_000, 5_000, 20_000}) {
+            long rawNanos = 0;
+            long lookupNanos = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                // 크기를 조금씩 흔들어서 매번 다른 길이의 목록을 만든다.
+                List<Long> ids = randomIds(random, size + random.nextInt(Math.max(1, size / 10)));
+
+                long start = System.nanoTime();
+                int raw = queryFactory.select(new QMemberTeamDto(member.id, member.username, member.age, team.id, team.name))
+                                      .from(member)
+                                      .join(member.team, team)
+                                      .where(member.id.in(ids))
+                                      .fetch()
+                                      .size();
+                rawNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                int lookup = memberLookupRepository.findByIds(ids).size();
+                lookupNanos += System.nanoTime() - start;
+
+                assertThat(lookup).isEqualTo(raw);
+            }
+            System.out.printf("size=%-6d raw in=%9.3fms lookup=%9.3fms%n",
+                    size, rawNanos / 1e6 / ROUNDS, lookupNanos / 1e6 / ROUNDS);
+        }
+    }
+
+    private static List<Long> randomIds(Random random, int size) {
+        List<Long> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add(BenchmarkFixture.memberId(TEAMS, random.nextInt(MEMBERS)));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,88 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.InListPadding;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * in-threshold 를 4 로 낮춰서 IN 경로와 작업 테이블 경로를 모두 확인한다.
+ */
+@Transactional
+@SpringBootTest(properties = "member.lookup.in-threshold=4")
+class MemberLookupRepositoryTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    MemberLookupRepository memberLookupRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void before() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 10; i++) {
+            Member member = new Member("member" + i, i * 10, teamA);
+            em.persist(member);
+            ids.add(member.getId());
+        }
+        em.persist(new Member("teamless", 0));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void smallListUsesPaddedIn() throws Exception {
+        //when 3 개 -> 4 개로 채워진다.
+        List<MemberTeamDto> result = memberLookupRepository.findByIds(Arrays.asList(ids.get(2), ids.get(0), ids.get(2), ids.get(1)));
+
+        //then
+        assertThat(result).extracting("username").containsExactly("member0", "member1", "member2");
+    }
+
+    @Test
+    public void largeListJoinsWorkTable() throws Exception {
+        //when
+        List<MemberTeamDto> byIds = memberLookupRepository.findByIds(ids.subList(3, 10));
+        List<MemberTeamDto> byUsernames = memberLookupRepository.findByUsernames(
+                Arrays.asList("member9", "member8", "member7", "member6", "nobody", "teamless"));
+
+        //then
+        assertThat(byIds).extracting("username")
+                         .containsExactly("member3", "member4", "member5", "member6", "member7", "member8", "member9");
+        assertThat(byUsernames).extracting("username").containsExactly("member6", "member7", "member8", "member9");
+        assertThat(jdbcTemplate.queryForObject("select count(*) from lookup_key", Long.class)).isZero();
+    }
+
+    @Test
+    public void padding() throws Exception {
+        //when
+        List<Integer> padded = InListPadding.pad(Arrays.asList(1, 2, 3, 4, 5));
+
+        //then
+        assertThat(padded).containsExactly(1, 2, 3, 4, 5, 5, 5, 5);
+        assertThat(InListPadding.bucket(1)).isEqualTo(1);
+        assertThat(InListPadding.bucket(8)).isEqualTo(8);
+        assertThat(InListPadding.bucket(9)).isEqualTo(16);
+    }
+}
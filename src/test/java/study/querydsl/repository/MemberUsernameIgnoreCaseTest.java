@@ -0,0 +1,119 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 대소문자 무시 검색은 username_lower(generated column) 와 그 인덱스로 처리한다.
+ */
+@Transactional
+@SpringBootTest
+class MemberUsernameIgnoreCaseTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void before() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("Member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void ignoreCaseSearch() throws Exception {
+        //given
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setUsername("MEMBER1");
+        cond.setUsernameIgnoreCase(true);
+
+        //when
+        List<MemberTeamDto> result = memberRepository.search(cond);
+
+        //then
+        assertThat(result).extracting("username").containsExactly("Member1");
+    }
+
+    @Test
+    public void ignoreCaseLike() throws Exception {
+        //given
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setUsernameLike("MEMBER*");
+        cond.setUsernameIgnoreCase(true);
+        cond.setTeamName("teamA");
+
+        //when
+        List<MemberTeamDto> result = memberRepository.search(cond);
+
+        //then
+        assertThat(result).extracting("username").containsExactlyInAnyOrder("Member1", "member2");
+    }
+
+    @Test
+    public void bulkUpdateKeepsLowerColumnInSync() throws Exception {
+        //given
+        queryFactory.update(member)
+                    .set(member.username, "RENAMED")
+                    .where(member.username.eq("member2"))
+                    .execute();
+
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setUsername("renamed");
+        cond.setUsernameIgnoreCase(true);
+
+        //when
+        List<MemberTeamDto> result = memberRepository.search(cond);
+
+        //then
+        assertThat(result).extracting("username").containsExactly("RENAMED");
+    }
+
+    @Test
+    public void explainUsesUsernameLowerIndex() throws Exception {
+        //when
+        String plan = jdbcTemplate.queryForObject(
+                "explain select member_id from member where username_lower = 'member1'", String.class);
+
+        //then
+        assertThat(plan).containsIgnoringCase("idx_member_username_lower");
+    }
+
+    @Test
+    public void explainLowerFunctionScansTable() throws Exception {
+        //when sqlFunction2 처럼 lower(username) 으로 비교하면
+        String plan = jdbcTemplate.queryForObject(
+                "explain select member_id from member where lower(username) = 'member1'", String.class);
+
+        //then
+        assertThat(plan).doesNotContainIgnoringCase("idx_member_username_lower")
+                        .containsIgnoringCase("tableScan");
+    }
+}
@@ -0,0 +1,92 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.TeamMembersDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.UnsupportedSortException;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Transactional
+@SpringBootTest
+class TeamRepositoryTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @BeforeEach
+    void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        Team teamC = new Team("teamC");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(teamC);
+        for (int i = 0; i < 6; i++) {
+            em.persist(new Member("member" + i, i * 10, i < 4 ? teamA : teamC));
+        }
+        em.persist(new Member("teamless", 0));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void teamsWithMembers() throws Exception {
+        //when
+        Page<TeamMembersDto> first = teamRepository.findTeamsWithMembers(PageRequest.of(0, 2));
+        Page<TeamMembersDto> second = teamRepository.findTeamsWithMembers(PageRequest.of(1, 2));
+
+        //then
+        assertThat(first.getTotalElements()).isEqualTo(3);
+        assertThat(first.getContent()).extracting("teamName").containsExactly("teamA", "teamB");
+        assertThat(first.getContent().get(0).getMembers()).extracting("username")
+                                                          .containsExactly("member0", "member1", "member2", "member3");
+        // member 가 없는 team 도 빈 목록으로 나온다.
+        assertThat(first.getContent().get(1).getMembers()).isEmpty();
+
+        assertThat(second.getContent()).extracting("teamName").containsExactly("teamC");
+        assertThat(second.getContent().get(0).getMembers()).extracting("username").containsExactly("member4", "member5");
+    }
+
+    @Test
+    public void pageAfterLastTeam() throws Exception {
+        //when
+        Page<TeamMembersDto> page = teamRepository.findTeamsWithMembers(PageRequest.of(5, 2));
+
+        //then
+        assertThat(page.getContent()).isEmpty();
+        assertThat(page.getTotalElements()).isEqualTo(3);
+    }
+
+    @Test
+    public void teamsWithMembersSortedByName() throws Exception {
+        //when
+        Page<TeamMembersDto> page = teamRepository.findTeamsWithMembers(PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "name")));
+
+        //then groupBy 는 team id 순으로 읽지만 결과는 sort 순서다.
+        assertThat(page.getContent()).extracting("teamName").containsExactly("teamC", "teamB");
+        assertThat(page.getContent().get(0).getMembers()).extracting("username").containsExactly("member4", "member5");
+    }
+
+    @Test
+    public void unsupportedSort() throws Exception {
+        //when then
+        assertThatThrownBy(() -> teamRepository.findTeamsWithMembers(PageRequest.of(0, 2, Sort.by("age"))))
+                .isInstanceOf(UnsupportedSortException.class);
+    }
+}
@@ -0,0 +1,109 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@Transactional
+@SpringBootTest
+class FetchJoinPagingTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @BeforeEach
+    void before() {
+        for (int t = 0; t < 5; t++) {
+            Team team = new Team("team" + t);
+            em.persist(team);
+            for (int m = 0; m < 3; m++) {
+                em.persist(new Member("member" + t + m, t * 10 + m, team));
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void pageRootsBeforeFetchJoin() throws Exception {
+        //when
+        Page<Team> page = teamRepository.findTeamsFetchMembers(PageRequest.of(1, 2));
+
+        //then 자식 수만큼 중복되지 않고 team 2 개만 나온다.
+        assertThat(page.getTotalElements()).isEqualTo(5);
+        assertThat(page.getContent()).extracting("name").containsExactly("team2", "team3");
+        for (Team team : page.getContent()) {
+            assertThat(Hibernate.isInitialized(team.getMembers())).isTrue();
+            assertThat(team.getMembers()).hasSize(3);
+        }
+    }
+
+    @Test
+    public void keepsRequestedOrder() throws Exception {
+        //when
+        Page<Team> page = FetchJoinPaging.of(queryFactory, team, team.id, Team::getId)
+                                         .where(team.name.ne("team4"))
+                                         .orderBy(team.name.desc())
+                                         .fetchJoin(query -> query.leftJoin(team.members, member).fetchJoin())
+                                         .fetchPage(PageRequest.of(0, 3));
+
+        //then
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(page.getContent()).extracting("name").containsExactly("team3", "team2", "team1");
+    }
+
+    @Test
+    public void memberRoot() throws Exception {
+        //when
+        Page<Member> page = FetchJoinPaging.of(queryFactory, member, member.id, Member::getId)
+                                           .where(member.age.goe(20))
+                                           .orderBy(member.age.desc())
+                                           .fetchJoin(query -> query.join(member.team, team).fetchJoin())
+                                           .fetchPage(PageRequest.of(0, 4));
+
+        //then
+        assertThat(page.getTotalElements()).isEqualTo(9);
+        assertThat(page.getContent()).extracting("age").containsExactly(42, 41, 40, 32);
+        assertThat(Hibernate.isInitialized(page.getContent().get(0).getTeam())).isTrue();
+    }
+
+    @Test
+    public void pageableSort() throws Exception {
+        //when
+        Page<Team> page = teamRepository.findTeamsFetchMembers(PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "name")));
+
+        //then
+        assertThat(page.getContent()).extracting("name").containsExactly("team4", "team3");
+    }
+
+    @Test
+    public void unsupportedSort() throws Exception {
+        //when then 조용히 id 순으로 돌려주지 않는다.
+        assertThatThrownBy(() -> teamRepository.findTeamsFetchMembers(PageRequest.of(0, 2, Sort.by("members"))))
+                .isInstanceOf(UnsupportedSortException.class);
+    }
+}
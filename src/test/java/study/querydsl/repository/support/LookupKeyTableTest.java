@@ -0,0 +1,137 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberLookupRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 커밋 / 롤백 뒤 lookup_key 를 봐야 하므로 @Transactional 을 붙이지 않고 끝나면 직접 지운다.
+ */
+@SpringBootTest(properties = "member.lookup.in-threshold=4")
+class LookupKeyTableTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    LookupKeyTable lookupKeyTable;
+
+    @Autowired
+    MemberLookupRepository memberLookupRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void before() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            em.persist(teamA);
+            for (int i = 0; i < 10; i++) {
+                Member member = new Member("member" + i, i, teamA);
+                em.persist(member);
+                ids.add(member.getId());
+            }
+        });
+    }
+
+    @AfterEach
+    void after() {
+        jdbcTemplate.update("delete from lookup_key");
+        jdbcTemplate.update("delete from member");
+        jdbcTemplate.update("delete from team");
+    }
+
+    @Test
+    public void releasedBeforeCommitEvenWithoutRelease() throws Exception {
+        //when release 를 부르지 않고 커밋한다.
+        Long visibleInTx = tx.execute(status -> {
+            long batchId = lookupKeyTable.insert(Arrays.asList(1L, 2L, 3L));
+            return count(batchId);
+        });
+
+        //then
+        assertThat(visibleInTx).isEqualTo(3);
+        assertThat(committedRows()).isZero();
+    }
+
+    @Test
+    public void rolledBackWithTransaction() throws Exception {
+        //when 조회 도중 실패
+        assertThatThrownBy(() -> tx.executeWithoutResult(status -> {
+            lookupKeyTable.insert(Arrays.asList("a", "b"));
+            throw new IllegalStateException("query failed");
+        })).hasMessage("query failed");
+
+        //then
+        assertThat(committedRows()).isZero();
+    }
+
+    @Test
+    public void repositoryLeavesNothingCommitted() throws Exception {
+        //when 작업 테이블 경로 (in-threshold 4 보다 많다)
+        List<MemberTeamDto> result = memberLookupRepository.findByIds(ids);
+
+        //then
+        assertThat(result).hasSize(10);
+        assertThat(committedRows()).isZero();
+    }
+
+    @Test
+    public void readOnlyTransactionInsertsSeparately() throws Exception {
+        //given
+        TransactionTemplate readOnlyTx = new TransactionTemplate(transactionManager);
+        readOnlyTx.setReadOnly(true);
+
+        //when
+        Long visibleInTx = readOnlyTx.execute(status -> count(lookupKeyTable.insert(Arrays.asList(1L, 2L, 3L))));
+
+        //then 따로 커밋해서 보이고, 바깥 트랜잭션이 끝나면 지워진다.
+        assertThat(visibleInTx).isEqualTo(3);
+        assertThat(committedRows()).isZero();
+    }
+
+    @Test
+    public void outsideTransaction() throws Exception {
+        //when, then 지울 시점이 없으므로 넣지 않는다.
+        assertThatThrownBy(() -> lookupKeyTable.insert(Arrays.asList(1L)))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(committedRows()).isZero();
+    }
+
+    private long count(long batchId) {
+        return jdbcTemplate.queryForObject("select count(*) from lookup_key where batch_id = ?", Long.class, batchId);
+    }
+
+    /**
+     * 트랜잭션 밖에서 읽으므로 커밋된 row 만 보인다.
+     */
+    private long committedRows() {
+        return jdbcTemplate.queryForObject("select count(*) from lookup_key", Long.class);
+    }
+}
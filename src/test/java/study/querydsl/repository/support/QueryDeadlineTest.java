@@ -0,0 +1,89 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+@Transactional
+@SpringBootTest
+class QueryDeadlineTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    void before() {
+        // 행마다 20ms 씩 잠드는 느린 함수. 100건이면 2초가 걸린다.
+        em.createNativeQuery("CREATE ALIAS IF NOT EXISTS SLEEP_MS FOR 'java.lang.Thread.sleep'")
+          .executeUpdate();
+
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 100; i++) {
+            em.persist(new Member("member" + i, i, teamA));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    private List<Member> slowQuery() {
+        return queryFactory.selectFrom(member)
+                           .where(Expressions.booleanTemplate("function('sleep_ms', {0}) is null",
+                                   member.age.multiply(0).add(20)))
+                           .fetch();
+    }
+
+    @Test
+    public void slowQueryIsCancelledAtDeadline() throws Exception {
+        //given
+        long start = System.currentTimeMillis();
+
+        //when, then
+        try (QueryDeadline deadline = QueryDeadline.start(300)) {
+            assertThatThrownBy(this::slowQuery).isInstanceOf(RuntimeException.class);
+            assertThat(deadline.isCancelled()).isTrue();
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        System.out.println("elapsed = " + elapsed);
+
+        assertThat(elapsed).isLessThan(1_500);
+    }
+
+    @Test
+    public void expiredDeadlineFailsBeforeExecution() throws Exception {
+        //given
+        try (QueryDeadline deadline = QueryDeadline.start(0)) {
+            //when, then
+            assertThatThrownBy(this::slowQuery).isInstanceOf(QueryDeadlineExceededException.class);
+        }
+    }
+
+    @Test
+    public void noDeadlineRunsToCompletion() throws Exception {
+        //when
+        List<Member> members = queryFactory.selectFrom(member)
+                                           .where(member.age.lt(3))
+                                           .fetch();
+
+        //then
+        assertThat(members).hasSize(3);
+        assertThat(QueryDeadline.current()).isNull();
+    }
+}
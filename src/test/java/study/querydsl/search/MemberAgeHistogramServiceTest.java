@@ -0,0 +1,115 @@
+package study.querydsl.search;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.AgeBucketDto;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@Transactional
+@SpringBootTest
+class MemberAgeHistogramServiceTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    MemberAgeHistogramService memberAgeHistogramService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        for (int i = 0; i < 10; i++) {
+            em.persist(new Member("member" + i, i * 10, i % 2 == 0 ? teamA : teamB));
+        }
+        em.persist(new Member("teamless", 0));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void countsPerBucket() throws Exception {
+        //given
+        MemberSearchCondition cond = new MemberSearchCondition();
+
+        //when
+        List<AgeBucketDto> result = memberAgeHistogramService.histogram(cond, Arrays.asList(25, 50, 70));
+
+        //then team 이 없는 member 는 세지 않는다.
+        assertThat(result).extracting("from", "to", "count")
+                          .containsExactly(
+                                  tuple(null, 25, 3L),
+                                  tuple(25, 50, 2L),
+                                  tuple(50, 70, 2L),
+                                  tuple(70, null, 3L));
+    }
+
+    @Test
+    public void searchConditionFilters() throws Exception {
+        //given
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamName("teamA");
+        cond.setAgeGoe(20);
+
+        //when teamA : 20, 40, 60, 80
+        List<AgeBucketDto> result = memberAgeHistogramService.histogram(cond, Arrays.asList(50));
+
+        //then
+        assertThat(result).extracting("count").containsExactly(2L, 2L);
+    }
+
+    @Test
+    public void sameConfigurationIsCached() throws Exception {
+        //given
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setUsernameLike("member*");
+        memberAgeHistogramService.histogram(cond, Arrays.asList(10, 20));
+        double loaded = loadCount();
+
+        //when
+        List<AgeBucketDto> cached = memberAgeHistogramService.histogram(cond, Arrays.asList(10, 20));
+        memberAgeHistogramService.histogram(cond, Arrays.asList(10, 30));
+
+        //then 구간 설정이 다르면 따로 센다.
+        assertThat(cached).extracting("count").containsExactly(1L, 1L, 8L);
+        assertThat(loadCount()).isEqualTo(loaded + 1);
+    }
+
+    @Test
+    public void invalidBounds() throws Exception {
+        MemberSearchCondition cond = new MemberSearchCondition();
+
+        assertThatThrownBy(() -> memberAgeHistogramService.histogram(cond, Arrays.asList(30, 20)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> memberAgeHistogramService.histogram(cond, Arrays.<Integer>asList()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private double loadCount() {
+        return meterRegistry.get("member.histogram.route").functionCounters()
+                            .stream()
+                            .mapToDouble(FunctionCounter::count)
+                            .sum();
+    }
+}
@@ -0,0 +1,121 @@
+package study.querydsl.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.support.BenchmarkFixture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * member 100,000 건에서 조건 N 개를
+ * <ul>
+ *     <li>separate : /v1/members 를 N 번 호출</li>
+ *     <li>batch : /members/search/batch 한 번 호출</li>
+ * </ul>
+ * 으로 처리해 비교한다.
+ * /v1/members 는 다른 스레드에서 조회하므로 데이터를 커밋하고 끝나면 지운다.
+ */
+@Tag("benchmark")
+@AutoConfigureMockMvc
+@SpringBootTest
+class MemberBatchSearchBenchmarkTest {
+
+    static final int TEAMS = 100;
+    static final int MEMBERS = 100_000;
+    static final int ROUNDS = 20;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @AfterEach
+    void after() {
+        BenchmarkFixture.delete(jdbcTemplate);
+    }
+
+    @Test
+    public void separateVsBatch() throws Exception {
+        //given
+        Random random = new Random(1);
+        BenchmarkFixture.insert(jdbcTemplate, TEAMS, MEMBERS, random);
+
+        //when / then
+        for (int size : new int[]{10, 20, 50}) {
+            long separateNanos = 0;
+            long batchNanos = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                List<MemberSearchCondition> conds = randomConditions(random, size);
+
+                long start = System.nanoTime();
+                int separateRows = 0;
+                for (MemberSearchCondition cond : conds) {
+                    MvcResult v1 = mockMvc.perform(get("/v1/members")
+                                                  .param("teamName", cond.getTeamName())
+                                                  .param("ageGoe", String.valueOf(cond.getAgeGoe()))
+                                                  .param("ageLoe", String.valueOf(cond.getAgeLoe())))
+                                          .andExpect(request().asyncStarted())
+                                          .andReturn();
+                    String body = mockMvc.perform(asyncDispatch(v1))
+                                         .andExpect(status().isOk())
+                                         .andReturn().getResponse().getContentAsString();
+                    separateRows += objectMapper.readTree(body).size();
+                }
+                separateNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                String body = mockMvc.perform(post("/members/search/batch")
+                                             .contentType(MediaType.APPLICATION_JSON)
+                                             .content(objectMapper.writeValueAsString(conds)))
+                                     .andExpect(status().isOk())
+                                     .andReturn().getResponse().getContentAsString();
+                batchNanos += System.nanoTime() - start;
+
+                int batchRows = 0;
+                for (JsonNode result : objectMapper.readTree(body)) {
+                    batchRows += result.size();
+                }
+                assertThat(batchRows).isEqualTo(separateRows);
+            }
+            System.out.printf("conditions=%-3d separate=%9.3fms batch=%9.3fms%n",
+                    size, separateNanos / 1e6 / ROUNDS, batchNanos / 1e6 / ROUNDS);
+        }
+    }
+
+    private static List<MemberSearchCondition> randomConditions(Random random, int size) {
+        List<MemberSearchCondition> conds = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            MemberSearchCondition cond = new MemberSearchCondition();
+            cond.setTeamName("team" + random.nextInt(TEAMS));
+            int ageGoe = random.nextInt(90);
+            cond.setAgeGoe(ageGoe);
+            cond.setAgeLoe(ageGoe + random.nextInt(10));
+            conds.add(cond);
+        }
+        return conds;
+    }
+}
@@ -0,0 +1,103 @@
+package study.querydsl.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJPARepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * max-merge 를 2 로 낮춰서 조건이 여러 쿼리로 나뉘는 경우도 확인한다.
+ */
+@Transactional
+@SpringBootTest(properties = "member.search.batch.max-merge=2")
+class MemberBatchSearchServiceTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    MemberBatchSearchService memberBatchSearchService;
+
+    @Autowired
+    MemberJPARepository memberJPARepository;
+
+    @BeforeEach
+    void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        for (int i = 0; i < 10; i++) {
+            em.persist(new Member("Member" + i, i * 10, i % 2 == 0 ? teamA : teamB));
+        }
+        em.persist(new Member("teamless", 0));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void eachConditionGetsItsOwnResult() throws Exception {
+        //given 겹치는 조건, 같은 조건, 조건 없는 검색, 아무것도 안 나오는 조건
+        List<MemberSearchCondition> conds = Arrays.asList(
+                cond("teamA", null, null, null),
+                cond(null, 30, 60, null),
+                cond("teamA", null, null, null),
+                cond(null, null, null, "member3"),
+                cond("teamB", 80, null, null),
+                cond("nobody", null, null, null),
+                new MemberSearchCondition());
+        conds.get(3).setUsernameIgnoreCase(true);
+
+        //when
+        List<List<MemberTeamDto>> results = memberBatchSearchService.search(conds);
+
+        //then 조건마다 따로 조회한 것과 같다.
+        assertThat(results).hasSize(conds.size());
+        for (int i = 0; i < conds.size(); i++) {
+            assertThat(results.get(i)).containsExactlyInAnyOrderElementsOf(memberJPARepository.searchByConditionWhere(conds.get(i)));
+        }
+        assertThat(results.get(0)).extracting("username").containsExactlyInAnyOrder("Member0", "Member2", "Member4", "Member6", "Member8");
+        assertThat(results.get(3)).extracting("username").containsExactly("Member3");
+        assertThat(results.get(5)).isEmpty();
+        assertThat(results.get(6)).hasSize(10);
+    }
+
+    @Test
+    public void usernameLike() throws Exception {
+        //given
+        MemberSearchCondition prefix = new MemberSearchCondition();
+        prefix.setUsernameLike("Member1*");
+        MemberSearchCondition contains = new MemberSearchCondition();
+        contains.setUsernameLike("*ber*");
+        contains.setAgeLoe(20);
+
+        //when
+        List<List<MemberTeamDto>> results = memberBatchSearchService.search(Arrays.asList(prefix, contains));
+
+        //then
+        assertThat(results.get(0)).extracting("username").containsExactly("Member1");
+        assertThat(results.get(1)).extracting("username").containsExactlyInAnyOrder("Member0", "Member1", "Member2");
+    }
+
+    static MemberSearchCondition cond(String teamName, Integer ageGoe, Integer ageLoe, String username) {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamName(teamName);
+        cond.setAgeGoe(ageGoe);
+        cond.setAgeLoe(ageLoe);
+        cond.setUsername(username);
+        return cond;
+    }
+}
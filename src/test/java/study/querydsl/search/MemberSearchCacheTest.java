@@ -0,0 +1,182 @@
+package study.querydsl.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.event.BulkChangedEvent;
+import study.querydsl.event.ChangeType;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.MemberState;
+import study.querydsl.event.TeamChangedEvent;
+import study.querydsl.entity.Member;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberSearchCacheTest {
+
+    MemberSearchCache<List<MemberTeamDto>> cache;
+    AtomicInteger loads;
+
+    @BeforeEach
+    void before() {
+        cache = new MemberSearchCache<>(100, 60_000, 600_000, 10, rows -> rows, Runnable::run);
+        loads = new AtomicInteger();
+    }
+
+    private MemberSearchKey teamBBetween30And40() {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamName("teamB");
+        cond.setAgeGoe(30);
+        cond.setAgeLoe(40);
+        return MemberSearchKey.of(cond);
+    }
+
+    private List<MemberTeamDto> search(MemberSearchKey key) {
+        return cache.get(key, k -> {
+            loads.incrementAndGet();
+            return Arrays.asList(new MemberTeamDto(3L, "member3", 30, 2L, "teamB"),
+                                 new MemberTeamDto(4L, "member4", 40, 2L, "teamB"));
+        });
+    }
+
+    @Test
+    public void hitAfterFirstLoad() throws Exception {
+        //given
+        MemberSearchKey key = teamBBetween30And40();
+
+        //when
+        search(key);
+        search(key);
+
+        //then
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void ageChangeOutsideRangeKeepsEntry() throws Exception {
+        //given
+        MemberSearchKey key = teamBBetween30And40();
+        search(key);
+
+        //when 10 -> 20 살로 변경, 30~40 범위 밖
+        cache.onMemberChanged(new MemberChangedEvent(ChangeType.UPDATE,
+                new MemberState(1L, "member1", 10, 2L, "teamB"),
+                new MemberState(1L, "member1", 20, 2L, "teamB")));
+        search(key);
+
+        //then
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.invalidationCount()).isZero();
+    }
+
+    @Test
+    public void ageChangeIntoRangeDropsEntry() throws Exception {
+        //given
+        MemberSearchKey key = teamBBetween30And40();
+        search(key);
+
+        //when
+        cache.onMemberChanged(new MemberChangedEvent(ChangeType.UPDATE,
+                new MemberState(1L, "member1", 10, 2L, "teamB"),
+                new MemberState(1L, "member1", 35, 2L, "teamB")));
+        search(key);
+
+        //then
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void otherTeamInsertKeepsEntry() throws Exception {
+        //given
+        MemberSearchKey key = teamBBetween30And40();
+        search(key);
+
+        //when
+        cache.onMemberChanged(new MemberChangedEvent(ChangeType.INSERT, null,
+                new MemberState(5L, "member5", 35, 1L, "teamA")));
+        search(key);
+
+        //then
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void teamRenameDropsEntriesContainingTeam() throws Exception {
+        //given
+        MemberSearchKey all = MemberSearchKey.of(new MemberSearchCondition());
+        search(all);
+
+        //when
+        cache.onTeamChanged(new TeamChangedEvent(ChangeType.UPDATE, 1L, "teamA", "teamC"));
+        search(all);
+
+        //then 결과에 teamA(id=1) 가 없으므로 유지
+        assertThat(loads.get()).isEqualTo(1);
+
+        //when
+        cache.onTeamChanged(new TeamChangedEvent(ChangeType.UPDATE, 2L, "teamB", "teamD"));
+        search(all);
+
+        //then
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void bulkChangeDropsEverything() throws Exception {
+        //given
+        MemberSearchKey key = teamBBetween30And40();
+        search(key);
+
+        //when
+        cache.onBulkChanged(new BulkChangedEvent(Member.class, 3));
+        search(key);
+
+        //then
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void evictsByWeight() throws Exception {
+        //given 결과 한 건을 무게 1 로 보고 합계 3 까지
+        MemberSearchCache<List<MemberTeamDto>> weighed = new MemberSearchCache<>(100, 3, List::size,
+                60_000, 600_000, 10, MemberSearchCache::teamIdsOf, Runnable::run);
+        MemberSearchKey first = teamBBetween30And40();
+        MemberSearchKey second = MemberSearchKey.of(new MemberSearchCondition());
+
+        //when
+        weighed.get(first, k -> Arrays.asList(new MemberTeamDto(3L, "member3", 30, 2L, "teamB"),
+                                              new MemberTeamDto(4L, "member4", 40, 2L, "teamB")));
+        weighed.get(second, k -> Arrays.asList(new MemberTeamDto(1L, "member1", 10, 1L, "teamA"),
+                                               new MemberTeamDto(2L, "member2", 20, 1L, "teamA")));
+
+        //then 오래된 first 가 빠진다.
+        assertThat(weighed.size()).isEqualTo(1);
+        assertThat(weighed.weight()).isEqualTo(2);
+        assertThat(weighed.evictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void changeDuringLoadIsNotCached() throws Exception {
+        //given
+        MemberSearchKey key = teamBBetween30And40();
+
+        //when 로딩 도중 결과에 영향을 주는 변경이 커밋됨
+        cache.get(key, k -> {
+            loads.incrementAndGet();
+            cache.onMemberChanged(new MemberChangedEvent(ChangeType.DELETE,
+                    new MemberState(3L, "member3", 30, 2L, "teamB"), null));
+            return Arrays.asList(new MemberTeamDto(3L, "member3", 30, 2L, "teamB"));
+        });
+        search(key);
+
+        //then
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,96 @@
+package study.querydsl.search;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.event.ChangeType;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.MemberState;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MemberSearchServiceTest {
+
+    static final MemberTeamDto BEFORE = new MemberTeamDto(1L, "member1", 10, 1L, "teamA");
+    static final MemberTeamDto AFTER = new MemberTeamDto(1L, "member1", 11, 1L, "teamA");
+
+    MemberSearchRouter router = mock(MemberSearchRouter.class);
+    MemberSearchService service;
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void before() {
+        service = new MemberSearchService(router, new SimpleMeterRegistry(), 100, 60_000, 600_000, 10);
+    }
+
+    @AfterEach
+    void after() {
+        release.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    public void requestAfterCommitDoesNotJoinEarlierLoad() throws Exception {
+        //given 변경 전 값을 읽는 조회가 진행 중이다.
+        when(router.search(any()))
+                .thenAnswer(invocation -> {
+                    started.countDown();
+                    release.await();
+                    return Collections.singletonList(BEFORE);
+                })
+                .thenReturn(Collections.singletonList(AFTER));
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamName("teamA");
+        CompletableFuture<List<MemberTeamDto>> first = CompletableFuture.supplyAsync(() -> service.search(cond));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        //when 결과에 영향을 주는 변경이 커밋된 뒤 같은 검색이 들어온다.
+        service.onMemberChanged(new MemberChangedEvent(ChangeType.UPDATE,
+                new MemberState(1L, "member1", 10, 1L, "teamA"),
+                new MemberState(1L, "member1", 11, 1L, "teamA")));
+        CompletableFuture<List<MemberTeamDto>> second = CompletableFuture.supplyAsync(() -> service.search(cond));
+
+        //then 먼저 시작된 조회를 기다리지 않고 새로 읽는다.
+        assertThat(second.get(5, TimeUnit.SECONDS)).containsExactly(AFTER);
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).containsExactly(BEFORE);
+        // 변경 전 결과는 캐시에 남지 않는다.
+        assertThat(service.search(cond)).containsExactly(AFTER);
+        verify(router, times(2)).search(any());
+    }
+
+    @Test
+    public void unalignedOffsetIsRejected() throws Exception {
+        //given offset 15, size 10
+        PageRequest pageable = new PageRequest(1, 10, Sort.unsorted()) {
+            @Override
+            public long getOffset() {
+                return 15;
+            }
+        };
+
+        //when, then 10 부터 읽은 결과를 캐시하는 대신 거절한다.
+        assertThatThrownBy(() -> service.searchComplexOptimize(new MemberSearchCondition(), pageable))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(router, never()).searchComplexOptimize(any());
+    }
+}
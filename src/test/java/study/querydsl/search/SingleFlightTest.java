@@ -0,0 +1,223 @@
+package study.querydsl.search;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.repository.support.QueryDeadline;
+import study.querydsl.repository.support.QueryDeadlineExceededException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    @Test
+    public void concurrentCallsShareOneExecution() throws Exception {
+        //given
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+
+        //when
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(executor.submit(() -> flight.execute("teamA", () -> {
+                loads.incrementAndGet();
+                await(release);
+                return 42;
+            })));
+        }
+        // 모든 호출이 in-flight 상태에 합류할 때까지 대기
+        while (flight.executionCount() + flight.sharedCount() < callers) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        //then
+        for (Future<Integer> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(42);
+        }
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(flight.sharedCount()).isEqualTo(callers - 1);
+        assertThat(flight.inFlightCount()).isZero();
+        executor.shutdown();
+    }
+
+    @Test
+    public void completedCallIsNotCached() throws Exception {
+        //given
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+
+        //when
+        flight.execute("teamA", loads::incrementAndGet);
+        flight.execute("teamA", loads::incrementAndGet);
+
+        //then
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(flight.sharedCount()).isZero();
+    }
+
+    @Test
+    public void failureIsPropagatedAndKeyReleased() throws Exception {
+        //given
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+
+        //when, then
+        assertThatThrownBy(() -> flight.execute("teamA", () -> {
+            throw new IllegalStateException("db down");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(flight.inFlightCount()).isZero();
+        assertThat(flight.execute("teamA", () -> 1)).isEqualTo(1);
+    }
+
+    @Test
+    public void oneCallerLeavingDoesNotCancelSharedQuery() throws Exception {
+        //given 마감이 있는 두 요청이 한 실행을 같이 기다린다.
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicReference<QueryDeadline> running = new AtomicReference<>();
+        AtomicReference<QueryDeadline> leaderDeadline = new AtomicReference<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        Future<Integer> leader = executor.submit(() -> {
+            try (QueryDeadline deadline = QueryDeadline.start(5_000)) {
+                leaderDeadline.set(deadline);
+                return flight.execute("teamA", () -> {
+                    running.set(QueryDeadline.current());
+                    started.countDown();
+                    await(release);
+                    return 42;
+                });
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<Integer> waiter = executor.submit(() -> {
+            try (QueryDeadline deadline = QueryDeadline.start(5_000)) {
+                return flight.execute("teamA", () -> -1);
+            }
+        });
+        while (flight.sharedCount() < 1) {
+            Thread.sleep(5);
+        }
+
+        //when 먼저 온 요청의 클라이언트가 떠난다.
+        leaderDeadline.get().cancel();
+        release.countDown();
+
+        //then 실행은 남은 요청을 위해 계속된다.
+        assertThat(waiter.get(5, TimeUnit.SECONDS)).isEqualTo(42);
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(42);
+        assertThat(running.get().isShared()).isTrue();
+        assertThat(running.get().isCancelled()).isFalse();
+        executor.shutdown();
+    }
+
+    @Test
+    public void lastCallerLeavingCancelsSharedQuery() throws Exception {
+        //given
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        AtomicReference<QueryDeadline> running = new AtomicReference<>();
+        List<QueryDeadline> deadlines = new ArrayList<>();
+        CountDownLatch started = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        Future<Integer> leader = executor.submit(() -> {
+            try (QueryDeadline deadline = QueryDeadline.start(5_000)) {
+                synchronized (deadlines) {
+                    deadlines.add(deadline);
+                }
+                return flight.execute("teamA", () -> {
+                    running.set(QueryDeadline.current());
+                    started.countDown();
+                    // 취소될 때까지 실행 중인 쿼리 흉내
+                    while (!QueryDeadline.current().isCancelled()) {
+                        sleep(5);
+                    }
+                    throw new QueryDeadlineExceededException(0);
+                });
+            }
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<Integer> waiter = executor.submit(() -> {
+            try (QueryDeadline deadline = QueryDeadline.start(5_000)) {
+                synchronized (deadlines) {
+                    deadlines.add(deadline);
+                }
+                return flight.execute("teamA", () -> -1);
+            }
+        });
+        while (flight.sharedCount() < 1) {
+            Thread.sleep(5);
+        }
+
+        //when
+        deadlines.get(0).cancel();
+        sleep(50);
+        assertThat(running.get().isCancelled()).isFalse();
+        deadlines.get(1).cancel();
+
+        //then
+        assertThatThrownBy(() -> waiter.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(QueryDeadlineExceededException.class);
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(QueryDeadlineExceededException.class);
+        assertThat(running.get().isCancelled()).isTrue();
+        assertThat(flight.inFlightCount()).isZero();
+        executor.shutdown();
+    }
+
+    @Test
+    public void waiterStopsAtItsOwnDeadline() throws Exception {
+        //given 마감이 없는 호출이 오래 걸리는 실행을 시작했다.
+        SingleFlight<String, Integer> flight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Integer> leader = executor.submit(() -> flight.execute("teamA", () -> {
+            started.countDown();
+            await(release);
+            return 42;
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        //when
+        long start = System.currentTimeMillis();
+        try (QueryDeadline deadline = QueryDeadline.start(100)) {
+            assertThatThrownBy(() -> flight.execute("teamA", () -> -1))
+                    .isInstanceOf(QueryDeadlineExceededException.class);
+        }
+
+        //then 자기 마감에 끝나고 실행은 계속된다.
+        assertThat(System.currentTimeMillis() - start).isLessThan(1_000);
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(42);
+        executor.shutdown();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
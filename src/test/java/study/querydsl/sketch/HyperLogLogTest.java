@@ -0,0 +1,70 @@
+package study.querydsl.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+
+    @Test
+    public void errorWithinThreeSigma() throws Exception {
+        for (int distinct : new int[]{10, 1_000, 10_000, 100_000, 1_000_000}) {
+            //given 같은 값을 두 번씩 넣는다.
+            HyperLogLog hll = new HyperLogLog(12);
+            for (int i = 0; i < distinct; i++) {
+                hll.add("member" + i);
+                hll.add("member" + i);
+            }
+
+            //then
+            double error = (hll.cardinality() - distinct) / (double) distinct;
+            assertThat(error).isCloseTo(0, within(3 * hll.relativeStandardError()));
+        }
+    }
+
+    @Test
+    public void mergeIsUnion() throws Exception {
+        //given 반씩 겹친다.
+        HyperLogLog teamA = new HyperLogLog(12);
+        HyperLogLog teamB = new HyperLogLog(12);
+        HyperLogLog all = new HyperLogLog(12);
+        for (int i = 0; i < 50_000; i++) {
+            teamA.add("member" + i);
+            all.add("member" + i);
+        }
+        for (int i = 25_000; i < 75_000; i++) {
+            teamB.add("member" + i);
+            all.add("member" + i);
+        }
+
+        //when
+        teamA.merge(teamB);
+
+        //then
+        assertThat(teamA.cardinality()).isEqualTo(all.cardinality());
+    }
+
+    @Test
+    public void writeAndRead() throws Exception {
+        //given
+        HyperLogLog hll = new HyperLogLog(10);
+        for (int i = 0; i < 5_000; i++) {
+            hll.add("member" + i);
+        }
+
+        //when
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        hll.write(new DataOutputStream(bytes));
+        HyperLogLog read = HyperLogLog.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        //then
+        assertThat(read.cardinality()).isEqualTo(hll.cardinality());
+        assertThat(read.precision()).isEqualTo(10);
+    }
+}
@@ -0,0 +1,97 @@
+package study.querydsl.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class TDigestTest {
+
+    static final double[] QUANTILES = {0.01, 0.1, 0.5, 0.9, 0.99};
+
+    @Test
+    public void rankErrorWithinBounds() throws Exception {
+        //given
+        Random random = new Random(1);
+        double[] values = new double[500_000];
+        TDigest digest = new TDigest(100);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian() * 10 + 40;
+            digest.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        //then
+        for (double q : QUANTILES) {
+            assertThat(rank(values, digest.quantile(q))).isCloseTo(q, within(0.005));
+        }
+        assertThat(digest.size()).isEqualTo(values.length);
+        assertThat(digest.centroidCount()).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    public void mergedDigestKeepsAccuracy() throws Exception {
+        //given team 별로 나눠 넣은 digest 를 합친다.
+        Random random = new Random(2);
+        double[] values = new double[200_000];
+        TDigest[] parts = new TDigest[10];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = new TDigest(100);
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(100);
+            parts[i % parts.length].add(values[i]);
+        }
+        Arrays.sort(values);
+
+        //when
+        TDigest merged = new TDigest(100);
+        for (TDigest part : parts) {
+            merged.merge(part);
+        }
+
+        //then 정수 값이라 rank 대신 값으로 비교한다. (1 살 안)
+        for (double q : QUANTILES) {
+            assertThat(merged.quantile(q)).isCloseTo(values[(int) (q * (values.length - 1))], within(1.0));
+        }
+        assertThat(merged.size()).isEqualTo(values.length);
+    }
+
+    @Test
+    public void writeAndRead() throws Exception {
+        //given
+        TDigest digest = new TDigest(100);
+        for (int i = 0; i < 10_000; i++) {
+            digest.add(i % 97);
+        }
+
+        //when
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        digest.write(new DataOutputStream(bytes));
+        TDigest read = TDigest.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        //then
+        for (double q : QUANTILES) {
+            assertThat(read.quantile(q)).isEqualTo(digest.quantile(q));
+        }
+        assertThat(read.quantile(0)).isEqualTo(0);
+        assertThat(read.quantile(1)).isEqualTo(96);
+    }
+
+    @Test
+    public void empty() throws Exception {
+        assertThat(new TDigest(100).quantile(0.5)).isNaN();
+    }
+
+    private static double rank(double[] sorted, double value) {
+        int index = Arrays.binarySearch(sorted, value);
+        return (index < 0 ? -index - 1 : index) / (double) sorted.length;
+    }
+}
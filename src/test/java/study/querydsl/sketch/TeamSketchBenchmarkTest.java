@@ -0,0 +1,110 @@
+package study.querydsl.sketch;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.TeamSketchDto;
+import study.querydsl.support.BenchmarkFixture;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * member 300,000 건에서 team 별 age 분위수와 서로 다른 username 수를
+ * <ul>
+ *     <li>exact : Querydsl 로 team 별 age 를 정렬해서 읽고 username.countDistinct() 를 group by</li>
+ *     <li>sketch : TeamSketchService (DB 에서 한 번 만든 뒤 메모리에서 조회)</li>
+ * </ul>
+ * 로 구해서 오차와 조회 시간을 비교한다.
+ */
+@Tag("benchmark")
+@Transactional
+@SpringBootTest(properties = "member.sketch.enabled=true")
+class TeamSketchBenchmarkTest {
+
+    static final int TEAMS = 20;
+    static final int MEMBERS = 300_000;
+    static final List<Double> QUANTILES = Arrays.asList(0.5, 0.9, 0.99);
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    TeamSketchService teamSketchService;
+
+    @Test
+    public void sketchVsExact() throws Exception {
+        //given username 은 절반 정도 겹치게 만든다.
+        BenchmarkFixture.insert(jdbcTemplate, TEAMS, MEMBERS, new Random(1), (i, random) -> {
+            int age = (int) Math.max(0, Math.min(99, random.nextGaussian() * 15 + 40));
+            return new Object[]{"member" + random.nextInt(MEMBERS / 2), age};
+        });
+
+        //when exact
+        long start = System.nanoTime();
+        Map<Long, Long> exactDistinct = new HashMap<>();
+        for (Tuple row : queryFactory.select(team.id, member.username.countDistinct())
+                                     .from(member)
+                                     .join(member.team, team)
+                                     .groupBy(team.id)
+                                     .fetch()) {
+            exactDistinct.put(row.get(team.id), row.get(member.username.countDistinct()));
+        }
+        Map<Long, List<Integer>> exactAges = new HashMap<>();
+        for (Tuple row : queryFactory.select(team.id, member.age)
+                                     .from(member)
+                                     .join(member.team, team)
+                                     .orderBy(team.id.asc(), member.age.asc())
+                                     .fetch()) {
+            exactAges.computeIfAbsent(row.get(team.id), id -> new ArrayList<>()).add(row.get(member.age));
+        }
+        long exactNanos = System.nanoTime() - start;
+
+        //when sketch
+        start = System.nanoTime();
+        teamSketchService.rebuild();
+        long buildNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        List<TeamSketchDto> sketches = teamSketchService.sketches(QUANTILES).orElseThrow(IllegalStateException::new);
+        long sketchNanos = System.nanoTime() - start;
+
+        //then
+        double maxAgeError = 0;
+        double maxDistinctError = 0;
+        for (TeamSketchDto sketch : sketches) {
+            List<Integer> ages = exactAges.get(sketch.getTeamId());
+            assertThat(sketch.getCount()).isEqualTo(ages.size());
+            for (Double q : QUANTILES) {
+                int exact = ages.get((int) (q * (ages.size() - 1)));
+                double error = Math.abs(sketch.getAgeQuantiles().get(String.valueOf(q)) - exact);
+                maxAgeError = Math.max(maxAgeError, error);
+                assertThat(error).isLessThanOrEqualTo(1.0);
+            }
+            long exact = exactDistinct.get(sketch.getTeamId());
+            double error = (sketch.getDistinctUsernames() - exact) / (double) exact;
+            maxDistinctError = Math.max(maxDistinctError, Math.abs(error));
+            assertThat(error).isCloseTo(0, within(3 * sketch.getDistinctUsernamesError()));
+        }
+
+        System.out.printf("exact query=%9.3fms  sketch build=%9.3fms  sketch read=%9.3fms%n",
+                exactNanos / 1e6, buildNanos / 1e6, sketchNanos / 1e6);
+        System.out.printf("max age error=%.3f years  max distinct error=%.3f%%%n", maxAgeError, maxDistinctError * 100);
+    }
+}
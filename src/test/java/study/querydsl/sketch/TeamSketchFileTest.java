@@ -0,0 +1,63 @@
+package study.querydsl.sketch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TeamSketchFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void writeAndRead() throws Exception {
+        //given
+        TeamSketch teamA = new TeamSketch("teamA", 100, 12);
+        for (int i = 0; i < 1_000; i++) {
+            teamA.add("member" + i, i % 100);
+        }
+        teamA.markStale();
+        Map<Long, TeamSketch> sketches = new LinkedHashMap<>();
+        sketches.put(1L, teamA);
+        sketches.put(2L, new TeamSketch(null, 100, 12));
+        Path file = dir.resolve("team-sketch.bin");
+
+        //when
+        TeamSketchFile.write(TeamSketchFile.encode(sketches), file);
+        Map<Long, TeamSketch> read = TeamSketchFile.read(file);
+
+        //then
+        assertThat(read).containsOnlyKeys(1L, 2L);
+        TeamSketch readA = read.get(1L);
+        assertThat(readA.getTeamName()).isEqualTo("teamA");
+        assertThat(readA.count()).isEqualTo(1_000);
+        assertThat(readA.getStaleChanges()).isEqualTo(1);
+        assertThat(readA.getAges().quantile(0.9)).isEqualTo(teamA.getAges().quantile(0.9));
+        assertThat(readA.getUsernames().cardinality()).isEqualTo(teamA.getUsernames().cardinality());
+        assertThat(read.get(2L).getTeamName()).isNull();
+        assertThat(read.get(2L).count()).isZero();
+    }
+
+    @Test
+    public void corruptedFileIsRejected() throws Exception {
+        //given
+        Map<Long, TeamSketch> sketches = new LinkedHashMap<>();
+        sketches.put(1L, new TeamSketch("teamA", 100, 12));
+        Path file = dir.resolve("team-sketch.bin");
+        TeamSketchFile.write(TeamSketchFile.encode(sketches), file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[20] ^= 1;
+        Files.write(file, bytes);
+
+        //then
+        assertThatThrownBy(() -> TeamSketchFile.read(file)).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,92 @@
+package study.querydsl.sketch;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.TeamSketchDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.ChangeType;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.MemberState;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * 테스트 데이터는 커밋되지 않으므로 백그라운드 재구성이 돌지 않게 rebuild-delay 를 길게 두고 rebuild 를 직접 부른다.
+ */
+@Transactional
+@SpringBootTest(properties = {"member.sketch.enabled=true", "member.sketch.rebuild-delay-ms=600000"})
+class TeamSketchServiceTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @SpyBean
+    TeamSketchService teamSketchService;
+
+    Team teamA;
+    Member member1;
+
+    @BeforeEach
+    void before() {
+        teamA = new Team("sketchTeamA");
+        em.persist(teamA);
+        member1 = new Member("member1", 10, teamA);
+        em.persist(member1);
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void eventDuringLoadIsNotCountedTwice() throws Exception {
+        //given DB 에서 읽는 도중 이미 읽힌 member 의 INSERT 이벤트가 도착한다.
+        doAnswer(invocation -> {
+            Map<Long, TeamSketch> loaded = (Map<Long, TeamSketch>) invocation.callRealMethod();
+            teamSketchService.onMemberChanged(new MemberChangedEvent(ChangeType.INSERT, null,
+                    new MemberState(member1.getId(), "member1", 10, teamA.getId(), "sketchTeamA")));
+            return loaded;
+        }).when(teamSketchService).load();
+
+        //when
+        teamSketchService.rebuild();
+
+        //then 다시 더하지 않고 stale 로만 센다.
+        TeamSketchDto sketch = sketchOf(teamA.getId());
+        assertThat(sketch.getCount()).isEqualTo(1);
+        assertThat(sketch.getStaleChanges()).isEqualTo(1);
+    }
+
+    @Test
+    public void insertAfterRebuildIsAdded() throws Exception {
+        //given
+        teamSketchService.rebuild();
+
+        //when
+        teamSketchService.onMemberChanged(new MemberChangedEvent(ChangeType.INSERT, null,
+                new MemberState(-1L, "member2", 20, teamA.getId(), "sketchTeamA")));
+
+        //then
+        TeamSketchDto sketch = sketchOf(teamA.getId());
+        assertThat(sketch.getCount()).isEqualTo(2);
+        assertThat(sketch.getStaleChanges()).isZero();
+    }
+
+    private TeamSketchDto sketchOf(Long teamId) {
+        return teamSketchService.sketches(Collections.singletonList(0.5))
+                                .get()
+                                .stream()
+                                .filter(dto -> dto.getTeamId().equals(teamId))
+                                .findFirst()
+                                .get();
+    }
+}
@@ -0,0 +1,90 @@
+package study.querydsl.snapshot;
+
+import com.querydsl.collections.CollQuery;
+import com.querydsl.collections.CollQueryTemplates;
+import com.querydsl.collections.QueryEngine;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+class EvaluatorShapeCacheTest {
+
+    Team teamA = new Team("teamA");
+    List<Member> members = Arrays.asList(new Member("member1", 10, teamA), new Member("member2", 20, teamA));
+
+    private QueryEngine engine(EvaluatorShapeCache cache) {
+        return new HashJoinQueryEngine(new CachingEvaluatorFactory(CollQueryTemplates.DEFAULT, cache));
+    }
+
+    @Test
+    public void sameShapeWithOtherConstantIsNotCompiledAgain() throws Exception {
+        //given
+        EvaluatorShapeCache cache = new EvaluatorShapeCache(10);
+        QueryEngine engine = engine(cache);
+
+        //when
+        List<String> first = new CollQuery<Void>(engine).from(member, members)
+                                                        .where(member.age.goe(15))
+                                                        .select(member.username)
+                                                        .fetch();
+        long compiled = cache.missCount();
+        List<String> second = new CollQuery<Void>(engine).from(member, members)
+                                                         .where(member.age.goe(5))
+                                                         .select(member.username)
+                                                         .fetch();
+
+        //then
+        assertThat(first).containsExactly("member2");
+        assertThat(second).containsExactly("member1", "member2");
+        assertThat(compiled).isPositive();
+        assertThat(cache.missCount()).isEqualTo(compiled);
+        assertThat(cache.hitCount()).isPositive();
+    }
+
+    @Test
+    public void sizeIsBounded() throws Exception {
+        //given
+        EvaluatorShapeCache cache = new EvaluatorShapeCache(2);
+        QueryEngine engine = engine(cache);
+
+        //when shape 가 서로 다른 쿼리 여러 개
+        new CollQuery<Void>(engine).from(member, members).where(member.age.goe(1)).select(member.username).fetch();
+        new CollQuery<Void>(engine).from(member, members).where(member.age.loe(1)).select(member.username).fetch();
+        new CollQuery<Void>(engine).from(member, members).where(member.age.lt(1)).select(member.username).fetch();
+        new CollQuery<Void>(engine).from(member, members).where(member.age.gt(1)).select(member.username).fetch();
+        new CollQuery<Void>(engine).from(member, members).where(member.username.startsWith("m")).select(member.age).fetch();
+
+        //then
+        assertThat(cache.size()).isLessThanOrEqualTo(2);
+        assertThat(cache.evictionCount()).isPositive();
+        assertThat(cache.generationCount()).isGreaterThan(1);
+    }
+
+    @Test
+    public void warmUpCoversMemberSearchShapes() throws Exception {
+        //given
+        EvaluatorShapeCache cache = new EvaluatorShapeCache(256);
+        QueryEngine engine = engine(cache);
+        MemberSnapshotQuery.warmUp(engine);
+        long compiled = cache.missCount();
+
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamName("teamA");
+        cond.setAgeGoe(15);
+        MemberSnapshotQuery query = new MemberSnapshotQuery(new MemberSnapshot(Arrays.asList(teamA), members), engine);
+
+        //when
+        query.search(cond);
+
+        //then
+        assertThat(compiled).isPositive();
+        assertThat(cache.missCount()).isEqualTo(compiled);
+    }
+}
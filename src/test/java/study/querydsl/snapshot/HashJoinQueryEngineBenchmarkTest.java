@@ -0,0 +1,88 @@
+package study.querydsl.snapshot;
+
+import com.querydsl.collections.CollQuery;
+import com.querydsl.collections.CollQueryTemplates;
+import com.querydsl.collections.DefaultEvaluatorFactory;
+import com.querydsl.collections.DefaultQueryEngine;
+import com.querydsl.collections.QueryEngine;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * member 100,000 x team 1,000 에서 join 쿼리를 중첩 루프(DefaultQueryEngine)와 hash join 으로 비교한다.
+ */
+@Tag("benchmark")
+class HashJoinQueryEngineBenchmarkTest {
+
+    static final int TEAMS = 1_000;
+    static final int MEMBERS = 100_000;
+
+    @Test
+    public void hashJoinVsNestedLoop() throws Exception {
+        //given
+        Random random = new Random(1);
+        List<Team> teamList = new ArrayList<>();
+        for (int i = 0; i < TEAMS; i++) {
+            teamList.add(new Team("team" + i));
+        }
+        List<Member> memberList = new ArrayList<>();
+        for (int i = 0; i < MEMBERS; i++) {
+            // 1% 는 팀 이름과 같은 username (thetaJoin)
+            String username = random.nextInt(100) == 0 ? "team" + random.nextInt(TEAMS) : "member" + i;
+            memberList.add(new Member(username, random.nextInt(100), teamList.get(random.nextInt(TEAMS))));
+        }
+        IndexedCollection<Team> teams = new IndexedCollection<>(teamList);
+        IndexedCollection<Member> members = new IndexedCollection<>(memberList);
+
+        QueryEngine nestedLoop = new DefaultQueryEngine(new DefaultEvaluatorFactory(CollQueryTemplates.DEFAULT));
+        QueryEngine hashJoin = new HashJoinQueryEngine(new DefaultEvaluatorFactory(CollQueryTemplates.DEFAULT));
+
+        //when
+        long thetaNested = millis(() -> thetaJoin(nestedLoop, members, teams));
+        long thetaHash = millis(() -> thetaJoin(hashJoin, members, teams));
+        long relationNested = millis(() -> relationJoin(nestedLoop, members, teams));
+        long relationHash = millis(() -> relationJoin(hashJoin, members, teams));
+
+        //then
+        System.out.printf("members=%d, teams=%d%n", MEMBERS, TEAMS);
+        System.out.printf("username = team.name  nested=%dms, hash=%dms%n", thetaNested, thetaHash);
+        System.out.printf("member.team = team    nested=%dms, hash=%dms%n", relationNested, relationHash);
+
+        assertThat(thetaJoin(hashJoin, members, teams)).isEqualTo(thetaJoin(nestedLoop, members, teams));
+        assertThat(thetaHash).isLessThan(thetaNested);
+        assertThat(relationHash).isLessThan(relationNested);
+    }
+
+    private static List<String> thetaJoin(QueryEngine engine, List<Member> members, List<Team> teams) {
+        return new CollQuery<Void>(engine).from(member, members).from(team, teams)
+                                          .where(member.username.eq(team.name))
+                                          .select(member.username)
+                                          .fetch();
+    }
+
+    private static List<String> relationJoin(QueryEngine engine, List<Member> members, List<Team> teams) {
+        return new CollQuery<Void>(engine).from(member, members).from(team, teams)
+                                          .where(member.team.eq(team), member.age.between(20, 29))
+                                          .select(team.name)
+                                          .fetch();
+    }
+
+    private static long millis(Supplier<?> query) {
+        // 첫 실행은 evaluator 컴파일이 섞이므로 한 번 돌리고 잰다.
+        query.get();
+        long start = System.currentTimeMillis();
+        query.get();
+        return System.currentTimeMillis() - start;
+    }
+}
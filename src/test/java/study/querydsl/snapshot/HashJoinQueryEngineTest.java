@@ -0,0 +1,98 @@
+package study.querydsl.snapshot;
+
+import com.querydsl.collections.CollQuery;
+import com.querydsl.collections.CollQueryTemplates;
+import com.querydsl.collections.DefaultEvaluatorFactory;
+import com.querydsl.collections.DefaultQueryEngine;
+import com.querydsl.collections.QueryEngine;
+import com.querydsl.core.Tuple;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+class HashJoinQueryEngineTest {
+
+    QueryEngine nestedLoop = new DefaultQueryEngine(new DefaultEvaluatorFactory(CollQueryTemplates.DEFAULT));
+    QueryEngine hashJoin = HashJoinQueryEngine.DEFAULT;
+
+    IndexedCollection<Team> teams;
+    IndexedCollection<Member> members;
+
+    @BeforeEach
+    void before() {
+        List<Team> teamList = new ArrayList<>();
+        List<Member> memberList = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            teamList.add(new Team("team" + i));
+        }
+        for (int i = 0; i < 50; i++) {
+            memberList.add(new Member("member" + i, i, teamList.get(i % 5)));
+        }
+        // thetaJoin 처럼 팀 이름과 같은 이름의 member (팀 없음)
+        memberList.add(new Member("team1", 100));
+        memberList.add(new Member("team3", 101));
+        teams = new IndexedCollection<>(teamList);
+        members = new IndexedCollection<>(memberList);
+    }
+
+    @Test
+    public void thetaJoin() throws Exception {
+        //when
+        List<String> expected = new CollQuery<Void>(nestedLoop).from(member, members).from(team, teams)
+                                                               .where(member.username.eq(team.name))
+                                                               .select(member.username)
+                                                               .fetch();
+        List<String> result = new CollQuery<Void>(hashJoin).from(member, members).from(team, teams)
+                                                           .where(member.username.eq(team.name))
+                                                           .select(member.username)
+                                                           .fetch();
+
+        //then
+        assertThat(result).containsExactly("team1", "team3");
+        assertThat(result).isEqualTo(expected);
+    }
+
+    @Test
+    public void relationJoinWithResidualAndOrder() throws Exception {
+        //when
+        List<Tuple> expected = query(nestedLoop);
+        List<Tuple> result = query(hashJoin);
+
+        //then
+        assertThat(result).hasSize(3);
+        assertThat(result).isEqualTo(expected);
+        assertThat(result.get(0).get(member.username)).isEqualTo("member47");
+    }
+
+    private List<Tuple> query(QueryEngine engine) {
+        return new CollQuery<Void>(engine).from(member, members).from(team, teams)
+                                          .where(member.team.isNotNull(),
+                                                  member.team.eq(team),
+                                                  team.name.eq("team2"),
+                                                  member.age.goe(20))
+                                          .select(member.username, team.name)
+                                          .orderBy(member.age.desc())
+                                          .limit(3)
+                                          .fetch();
+    }
+
+    @Test
+    public void constantEqUsesIndex() throws Exception {
+        //when
+        long count = new CollQuery<Void>(hashJoin).from(member, members)
+                                                  .where(member.team.name.eq("team4"), member.age.lt(30))
+                                                  .fetchCount();
+
+        //then
+        assertThat(count).isEqualTo(6);
+        assertThat(members.indexCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,129 @@
+package study.querydsl.snapshot;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 같은 검색 조건을 H2(JPA) 와 MemberSnapshot(querydsl-collections) 에서 실행해 결과와 평균 시간을 비교한다.
+ */
+@Tag("benchmark")
+@Transactional
+@SpringBootTest
+class MemberSnapshotBenchmarkTest {
+
+    static final int TEAMS = 10;
+    static final int MEMBERS = 20_000;
+    static final int QUERIES = 500;
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @BeforeEach
+    void before() {
+        Random random = new Random(1);
+        List<Team> teams = new ArrayList<>();
+        for (int i = 0; i < TEAMS; i++) {
+            Team t = new Team("team" + i);
+            em.persist(t);
+            teams.add(t);
+        }
+        for (int i = 0; i < MEMBERS; i++) {
+            em.persist(new Member("member" + i, random.nextInt(100), teams.get(random.nextInt(TEAMS))));
+            if (i % 1_000 == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void snapshotVsJpa() throws Exception {
+        //given
+        List<Team> teams = queryFactory.selectFrom(team).fetch();
+        List<Member> members = queryFactory.selectFrom(member)
+                                           .leftJoin(member.team, team).fetchJoin()
+                                           .fetch();
+        em.clear();
+        MemberSnapshotQuery snapshot = new MemberSnapshotQuery(new MemberSnapshot(teams, members), HashJoinQueryEngine.DEFAULT);
+        List<MemberSearchCondition> conditions = conditions(new Random(2));
+
+        // 결과가 같은지 먼저 확인 (워밍업 겸)
+        for (MemberSearchCondition cond : conditions.subList(0, 50)) {
+            assertThat(ids(snapshot.search(cond))).isEqualTo(ids(memberRepository.search(cond)));
+        }
+
+        //when
+        double jpaMicros = averageMicros(conditions, memberRepository::search);
+        double snapshotMicros = averageMicros(conditions, snapshot::search);
+
+        //then
+        System.out.printf("members=%d, queries=%d%n", MEMBERS, QUERIES);
+        System.out.printf("jpa(h2)  avg = %.1f us%n", jpaMicros);
+        System.out.printf("snapshot avg = %.1f us%n", snapshotMicros);
+    }
+
+    private double averageMicros(List<MemberSearchCondition> conditions,
+                                 Function<MemberSearchCondition, List<MemberTeamDto>> search) {
+        long start = System.nanoTime();
+        for (MemberSearchCondition cond : conditions) {
+            search.apply(cond);
+            em.clear();
+        }
+        return (System.nanoTime() - start) / 1_000.0 / conditions.size();
+    }
+
+    private static List<MemberSearchCondition> conditions(Random random) {
+        List<MemberSearchCondition> conditions = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) {
+            MemberSearchCondition cond = new MemberSearchCondition();
+            int ageGoe = random.nextInt(100);
+            cond.setAgeGoe(ageGoe);
+            cond.setAgeLoe(ageGoe + random.nextInt(5));
+            if (random.nextBoolean()) {
+                cond.setTeamName("team" + random.nextInt(TEAMS));
+            }
+            if (random.nextInt(4) == 0) {
+                cond.setUsername("member" + random.nextInt(MEMBERS));
+            }
+            conditions.add(cond);
+        }
+        return conditions;
+    }
+
+    private static List<Long> ids(List<MemberTeamDto> rows) {
+        return rows.stream()
+                   .map(MemberTeamDto::getMemberId)
+                   .sorted()
+                   .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,72 @@
+package study.querydsl.snapshot;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MemberSnapshotQueryTest {
+
+    MemberSnapshotQuery query;
+
+    @BeforeEach
+    void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        List<Member> members = Arrays.asList(
+                new Member("member1", 10, teamA),
+                new Member("member2", 20, teamA),
+                new Member("member3", 30, teamB),
+                new Member("member4", 40, teamB),
+                new Member("member5", 50));
+        query = new MemberSnapshotQuery(new MemberSnapshot(Arrays.asList(teamA, teamB), members), HashJoinQueryEngine.DEFAULT);
+    }
+
+    @Test
+    public void search() throws Exception {
+        //given
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setAgeGoe(35);
+        cond.setAgeLoe(40);
+        cond.setTeamName("teamB");
+
+        //when
+        List<MemberTeamDto> result = query.search(cond);
+
+        //then
+        assertThat(result).extracting("username").containsExactly("member4");
+        assertThat(result).extracting("teamName").containsExactly("teamB");
+    }
+
+    @Test
+    public void memberWithoutTeamIsExcluded() throws Exception {
+        //when
+        List<MemberTeamDto> result = query.search(new MemberSearchCondition());
+
+        //then
+        assertThat(result).extracting("username").containsExactly("member1", "member2", "member3", "member4");
+    }
+
+    @Test
+    public void searchComplexOptimize() throws Exception {
+        //given
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setAgeGoe(15);
+
+        //when
+        Page<MemberTeamDto> result = query.searchComplexOptimize(cond, PageRequest.of(0, 2));
+
+        //then
+        assertThat(result.getContent()).extracting("username").containsExactly("member2", "member3");
+        assertThat(result.getTotalElements()).isEqualTo(3);
+    }
+}
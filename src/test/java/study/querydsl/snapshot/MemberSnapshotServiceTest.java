@@ -0,0 +1,103 @@
+package study.querydsl.snapshot;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.event.BulkChangedEvent;
+import study.querydsl.event.ChangeType;
+import study.querydsl.event.MemberChangedEvent;
+import study.querydsl.event.MemberState;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 백그라운드 로딩이 돌지 않게 reload-delay 를 길게 두고 reload 를 직접 부른다.
+ */
+@Transactional
+@SpringBootTest(properties = {"member.snapshot.enabled=true", "member.snapshot.reload-delay-ms=600000",
+        "member.snapshot.refresh-interval-ms=600000"})
+class MemberSnapshotServiceTest {
+
+    @Autowired
+    MemberSnapshotService memberSnapshotService;
+
+    @Autowired
+    EntityManager em;
+
+    @BeforeEach
+    void before() {
+        memberSnapshotService.reload();
+    }
+
+    @Test
+    public void periodicRefreshKeepsServing() throws Exception {
+        //when 알려진 변경 없이 주기적으로 다시 읽는다.
+        memberSnapshotService.refresh();
+
+        //then 새 스냅샷으로 바꿀 때까지 기존 것을 쓴다.
+        assertThat(memberSnapshotService.isFresh()).isTrue();
+        assertThat(memberSnapshotService.current()).isPresent();
+    }
+
+    @Test
+    public void changeMakesStale() throws Exception {
+        //when
+        memberSnapshotService.onBulkChanged(new BulkChangedEvent(Member.class, 1));
+
+        //then
+        assertThat(memberSnapshotService.isFresh()).isFalse();
+        assertThat(memberSnapshotService.current()).isEmpty();
+
+        //when
+        memberSnapshotService.reload();
+
+        //then
+        assertThat(memberSnapshotService.isFresh()).isTrue();
+    }
+
+    @Test
+    public void memberChangeIsAppliedToCurrentSnapshot() throws Exception {
+        //given
+        Team teamA = new Team("snapshotTeamA");
+        Team teamB = new Team("snapshotTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        Member member1 = new Member("snapshotMember1", 10, teamA);
+        Member member2 = new Member("snapshotMember2", 20, teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.flush();
+        memberSnapshotService.reload();
+        MemberSnapshot loaded = memberSnapshotService.current().get();
+
+        //when member1 이 teamB 로 옮긴다.
+        MemberState before = MemberState.of(member1);
+        member1.changeTeam(teamB);
+        em.flush();
+        memberSnapshotService.onMemberChanged(new MemberChangedEvent(ChangeType.UPDATE, before, MemberState.of(member1)));
+
+        //then 반영할 때까지는 stale 이다.
+        assertThat(memberSnapshotService.isFresh()).isFalse();
+
+        //when 바뀐 member 와 관련 team 만 다시 읽어 바꿔 끼운다.
+        memberSnapshotService.update();
+
+        //then
+        assertThat(memberSnapshotService.isFresh()).isTrue();
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamName("snapshotTeamB");
+        assertThat(memberSnapshotService.search(cond).get())
+                .extracting("username")
+                .containsExactly("snapshotMember1", "snapshotMember2");
+        cond.setTeamName("snapshotTeamA");
+        assertThat(memberSnapshotService.search(cond).get()).isEmpty();
+        assertThat(memberSnapshotService.current().get().size()).isEqualTo(loaded.size());
+    }
+}
@@ -0,0 +1,59 @@
+package study.querydsl.stats;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.TeamStatsDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Transactional
+@SpringBootTest(properties = "member.stats.enabled=true")
+class TeamStatsServiceTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    TeamStatsService teamStatsService;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Test
+    public void loadedStatsMatchGroupByQuery() throws Exception {
+        //given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        Team teamC = new Team("teamC");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(teamC);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("teamless", 50));
+        em.flush();
+        em.clear();
+
+        //when
+        List<TeamStatsDto> loaded = teamStatsService.load().toList();
+        List<TeamStatsDto> queried = teamRepository.findTeamStats();
+
+        //then
+        assertThat(loaded).isEqualTo(queried);
+        assertThat(queried).extracting("teamName").containsExactly("teamA", "teamB", "teamC");
+        assertThat(queried.get(0).getAvg()).isEqualTo(15.0);
+        assertThat(queried.get(1).getMax()).isEqualTo(40);
+        assertThat(queried.get(2).getCount()).isZero();
+    }
+}
@@ -0,0 +1,81 @@
+package study.querydsl.stats;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.TeamStatsDto;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TeamStatsTest {
+
+    @Test
+    public void incrementalChanges() throws Exception {
+        //given
+        TeamStats stats = new TeamStats();
+        stats.putTeam(1L, "teamA");
+        stats.putTeam(2L, "teamB");
+        stats.putMember(10L, 1L, 10);
+        stats.putMember(11L, 1L, 20);
+        stats.putMember(12L, 2L, 30);
+        stats.putMember(13L, null, 99);
+
+        //when 최대값인 member 삭제, 팀 이동, 같은 변경 두 번
+        stats.removeMember(11L);
+        stats.putMember(12L, 1L, 40);
+        stats.putMember(12L, 1L, 40);
+
+        //then
+        List<TeamStatsDto> result = stats.toList();
+        assertThat(result).extracting("teamName").containsExactly("teamA", "teamB");
+        assertThat(result.get(0)).isEqualTo(new TeamStatsDto(1L, "teamA", 2, 50, 10, 40));
+        assertThat(result.get(0).getAvg()).isEqualTo(25.0);
+        assertThat(result.get(1)).isEqualTo(new TeamStatsDto(2L, "teamB", 0, 0, null, null));
+    }
+
+    @Test
+    public void sameAsRecomputed() throws Exception {
+        //given
+        TeamStats stats = new TeamStats();
+        Map<Long, long[]> members = new HashMap<>();
+        for (long teamId = 1; teamId <= 5; teamId++) {
+            stats.putTeam(teamId, "team" + teamId);
+        }
+        Random random = new Random(1);
+
+        //when
+        for (int i = 0; i < 100_000; i++) {
+            long memberId = random.nextInt(1_000);
+            if (random.nextInt(4) == 0) {
+                stats.removeMember(memberId);
+                members.remove(memberId);
+            } else {
+                long teamId = 1 + random.nextInt(5);
+                int age = random.nextInt(100);
+                stats.putMember(memberId, teamId, age);
+                members.put(memberId, new long[]{teamId, age});
+            }
+        }
+
+        //then
+        for (TeamStatsDto dto : stats.toList()) {
+            long count = 0;
+            long sum = 0;
+            Integer min = null;
+            Integer max = null;
+            for (long[] member : members.values()) {
+                if (member[0] == dto.getTeamId()) {
+                    int age = (int) member[1];
+                    count++;
+                    sum += age;
+                    min = min == null ? age : Math.min(min, age);
+                    max = max == null ? age : Math.max(max, age);
+                }
+            }
+            assertThat(dto).isEqualTo(new TeamStatsDto(dto.getTeamId(), dto.getTeamName(), count, sum, min, max));
+        }
+    }
+}
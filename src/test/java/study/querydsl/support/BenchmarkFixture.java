@@ -0,0 +1,68 @@
+package study.querydsl.support;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 벤치마크용 team / member 를 JDBC batch 로 넣는다.
+ * team id 는 FIRST_ID + i, member id 는 FIRST_ID + teams + i 라서 다른 테스트 데이터와 겹치지 않는다.
+ * 같은 random 을 넘기면 같은 데이터가 만들어지고, 이어서 그 random 으로 조회 조건을 만들 수 있다.
+ */
+public final class BenchmarkFixture {
+
+    public static final long FIRST_ID = 10_000_000L;
+    static final int BATCH_SIZE = 10_000;
+
+    /**
+     * member 의 {username, age}. team 은 그 다음에 random 으로 고른다.
+     */
+    public interface MemberRow {
+        Object[] usernameAndAge(int i, Random random);
+    }
+
+    private BenchmarkFixture() {
+    }
+
+    /**
+     * username 은 "member" + i, age 는 0 ~ 99.
+     */
+    public static void insert(JdbcTemplate jdbcTemplate, int teams, int members, Random random) {
+        insert(jdbcTemplate, teams, members, random, (i, r) -> new Object[]{"member" + i, r.nextInt(100)});
+    }
+
+    public static void insert(JdbcTemplate jdbcTemplate, int teams, int members, Random random, MemberRow row) {
+        List<Object[]> teamRows = new ArrayList<>();
+        for (int i = 0; i < teams; i++) {
+            teamRows.add(new Object[]{FIRST_ID + i, "team" + i});
+        }
+        jdbcTemplate.batchUpdate("insert into team (id, name) values (?, ?)", teamRows);
+
+        List<Object[]> memberRows = new ArrayList<>();
+        for (int i = 0; i < members; i++) {
+            Object[] usernameAndAge = row.usernameAndAge(i, random);
+            memberRows.add(new Object[]{memberId(teams, i), usernameAndAge[0], usernameAndAge[1], FIRST_ID + random.nextInt(teams)});
+            if (memberRows.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", memberRows);
+                memberRows.clear();
+            }
+        }
+        if (!memberRows.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", memberRows);
+        }
+    }
+
+    public static long memberId(int teams, int i) {
+        return FIRST_ID + teams + i;
+    }
+
+    /**
+     * 트랜잭션 없이 넣은 경우에만 부른다.
+     */
+    public static void delete(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("delete from member where member_id >= ?", FIRST_ID);
+        jdbcTemplate.update("delete from team where id >= ?", FIRST_ID);
+    }
+}
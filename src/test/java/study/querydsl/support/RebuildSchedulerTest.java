@@ -0,0 +1,78 @@
+package study.querydsl.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RebuildSchedulerTest {
+
+    AtomicInteger runs = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(1);
+    RebuildScheduler scheduler;
+
+    @AfterEach
+    void after() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void coalescesChanges() throws Exception {
+        //given
+        scheduler = new RebuildScheduler("test-rebuild", 100, () -> {
+            runs.incrementAndGet();
+            done.countDown();
+        });
+
+        //when delay 안에 들어온 변경은 한 번으로 합쳐진다.
+        for (int i = 0; i < 10; i++) {
+            scheduler.markChanged();
+        }
+
+        //then
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(200);
+        assertThat(runs.get()).isEqualTo(1);
+        assertThat(scheduler.changeSeq()).isEqualTo(10);
+    }
+
+    @Test
+    public void retriesAfterFailure() throws Exception {
+        //given 처음 한 번은 실패한다.
+        scheduler = new RebuildScheduler("test-rebuild", 0, () -> {
+            if (runs.incrementAndGet() == 1) {
+                throw new IllegalStateException("db down");
+            }
+            done.countDown();
+        });
+
+        //when
+        scheduler.schedule(0);
+
+        //then 최소 1 초 뒤 다시 한다.
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(runs.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void executeRunsInOrderBeforeScheduled() throws Exception {
+        //given
+        StringBuilder order = new StringBuilder();
+        scheduler = new RebuildScheduler("test-rebuild", 0, () -> {
+            order.append("rebuild");
+            done.countDown();
+        });
+
+        //when
+        scheduler.execute(() -> order.append("restore,"));
+        scheduler.schedule(0);
+
+        //then
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(order.toString()).isEqualTo("restore,rebuild");
+    }
+}
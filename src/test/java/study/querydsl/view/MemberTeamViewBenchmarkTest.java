@@ -0,0 +1,115 @@
+package study.querydsl.view;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJPARepository;
+import study.querydsl.support.BenchmarkFixture;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.support.BenchmarkFixture.FIRST_ID;
+
+/**
+ * member 200,000 건 (team 100 개) 에서
+ * <ul>
+ *     <li>join : searchByConditionWhere (member join team)</li>
+ *     <li>view : searchByConditionView (member_team_view, join 없음)</li>
+ * </ul>
+ * 의 조건별 평균 응답 시간과, team 이름 변경 / 전체 재구성에 드는 시간을 잰다.
+ */
+@Tag("benchmark")
+@Transactional
+@SpringBootTest(properties = "member.view.enabled=true")
+class MemberTeamViewBenchmarkTest {
+
+    static final int TEAMS = 100;
+    static final int MEMBERS = 200_000;
+    static final int ROUNDS = 20;
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    MemberJPARepository memberJPARepository;
+
+    @Autowired
+    MemberTeamViewMaintainer maintainer;
+
+    @Autowired
+    MemberTeamViewChecker checker;
+
+    @Test
+    public void joinFreeLatency() throws Exception {
+        //given JDBC 로 넣었으므로 view 는 직접 채운다.
+        Random random = new Random(1);
+        BenchmarkFixture.insert(jdbcTemplate, TEAMS, MEMBERS, random);
+
+        long start = System.nanoTime();
+        maintainer.sync();
+        System.out.printf("sync (all missing)%9.3fms%n", (System.nanoTime() - start) / 1e6);
+
+        //when / then
+        measure("teamName", cond("team7", null, null, null));
+        measure("age range", cond(null, 30, 35, null));
+        measure("team + age", cond("team7", 30, 60, null));
+        measure("username", cond(null, null, null, "member12345"));
+        measure("all", cond(null, null, null, null));
+
+        // team 이름 변경은 같은 flush 안에서 그 team 의 view row 를 모두 고친다.
+        start = System.nanoTime();
+        em.find(Team.class, FIRST_ID + 7).changeName("team7-renamed");
+        em.flush();
+        System.out.printf("team rename       %9.3fms%n", (System.nanoTime() - start) / 1e6);
+        assertThat(memberJPARepository.searchByConditionView(cond("team7-renamed", null, null, null)))
+                .hasSameSizeAs(memberJPARepository.searchByConditionWhere(cond("team7-renamed", null, null, null)));
+
+        start = System.nanoTime();
+        assertThat(checker.check().isEmpty()).isTrue();
+        System.out.printf("consistency check %9.3fms%n", (System.nanoTime() - start) / 1e6);
+    }
+
+    private void measure(String name, MemberSearchCondition cond) {
+        // 첫 실행은 빼고 잰다.
+        int rows = memberJPARepository.searchByConditionWhere(cond).size();
+        assertThat(memberJPARepository.searchByConditionView(cond)).hasSize(rows);
+
+        long joinNanos = 0;
+        long viewNanos = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            List<MemberTeamDto> joined = memberJPARepository.searchByConditionWhere(cond);
+            joinNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<MemberTeamDto> view = memberJPARepository.searchByConditionView(cond);
+            viewNanos += System.nanoTime() - start;
+
+            assertThat(view).hasSameSizeAs(joined);
+        }
+        System.out.printf("%-12s rows=%-7d join=%9.3fms view=%9.3fms%n",
+                name, rows, joinNanos / 1e6 / ROUNDS, viewNanos / 1e6 / ROUNDS);
+    }
+
+    private static MemberSearchCondition cond(String teamName, Integer ageGoe, Integer ageLoe, String username) {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamName(teamName);
+        cond.setAgeGoe(ageGoe);
+        cond.setAgeLoe(ageLoe);
+        cond.setUsername(username);
+        return cond;
+    }
+}
@@ -0,0 +1,101 @@
+package study.querydsl.view;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 두 트랜잭션이 실제로 커밋되어야 하므로 @Transactional 을 붙이지 않고 끝나면 직접 지운다.
+ */
+@SpringBootTest(properties = "member.view.enabled=true")
+class MemberTeamViewConcurrencyTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    MemberTeamViewChecker checker;
+
+    @AfterEach
+    void after() {
+        jdbcTemplate.update("delete from member_team_view");
+        jdbcTemplate.update("delete from member");
+        jdbcTemplate.update("delete from team");
+    }
+
+    @Test
+    public void insertWhileRenaming() throws Exception {
+        //given
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long teamId = tx.execute(status -> {
+            Team team = new Team("before");
+            em.persist(team);
+            return team.getId();
+        });
+
+        CountDownLatch renamed = new CountDownLatch(1);
+        CountDownLatch inserting = new CountDownLatch(1);
+
+        //when 이름을 바꾼 트랜잭션이 커밋되기 전에 다른 트랜잭션이 그 team 에 member 를 넣는다.
+        CompletableFuture<Void> rename = CompletableFuture.runAsync(() -> tx.executeWithoutResult(status -> {
+            em.find(Team.class, teamId).changeName("after");
+            em.flush();
+            renamed.countDown();
+            await(inserting);
+            sleep(300);
+        }));
+        CompletableFuture<Void> insert = CompletableFuture.runAsync(() -> {
+            await(renamed);
+            tx.executeWithoutResult(status -> {
+                em.persist(new Member("member1", 10, em.getReference(Team.class, teamId)));
+                inserting.countDown();
+                em.flush();
+            });
+        });
+        rename.get(10, TimeUnit.SECONDS);
+        insert.get(10, TimeUnit.SECONDS);
+
+        //then insert 쪽이 team row 잠금을 기다렸으므로 바뀐 이름을 복사한다.
+        assertThat(jdbcTemplate.queryForObject("select team_name from member_team_view where username = 'member1'", String.class))
+                .isEqualTo("after");
+        assertThat(tx.execute(status -> checker.check().isEmpty())).isTrue();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
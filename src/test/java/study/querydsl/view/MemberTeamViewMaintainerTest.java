@@ -0,0 +1,219 @@
+package study.querydsl.view;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.MemberTeamView;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberJPARepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QMemberTeamView.memberTeamView;
+
+@Transactional
+@SpringBootTest(properties = "member.view.enabled=true")
+class MemberTeamViewMaintainerTest {
+
+    @PersistenceContext
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    MemberJPARepository memberJPARepository;
+
+    @Autowired
+    MemberTeamViewMaintainer maintainer;
+
+    @Autowired
+    MemberTeamViewChecker checker;
+
+    Team teamA;
+    Team teamB;
+    Member member1;
+    Member member2;
+
+    @BeforeEach
+    void before() {
+        teamA = new Team("teamA");
+        teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        member1 = new Member("member1", 10, teamA);
+        member2 = new Member("member2", 20, teamB);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(new Member("teamless", 30));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void insertedWithTeamName() throws Exception {
+        //then
+        assertThat(view()).extracting("username", "age", "teamName")
+                          .containsExactly(
+                                  tuple("member1", 10, "teamA"),
+                                  tuple("member2", 20, "teamB"),
+                                  tuple("teamless", 30, null));
+        assertThat(checker.check().isEmpty()).isTrue();
+    }
+
+    @Test
+    public void memberUpdateAndTeamRename() throws Exception {
+        //when
+        Member found = em.find(Member.class, member1.getId());
+        found.changeTeam(em.find(Team.class, teamB.getId()));
+        em.find(Team.class, teamB.getId()).changeName("teamB2");
+        em.find(Member.class, member2.getId()).changeTeam(null);
+        em.flush();
+        em.clear();
+
+        //then
+        assertThat(view()).extracting("username", "teamId", "teamName")
+                          .containsExactly(
+                                  tuple("member1", teamB.getId(), "teamB2"),
+                                  tuple("member2", null, null),
+                                  tuple("teamless", null, null));
+        assertThat(checker.check().isEmpty()).isTrue();
+    }
+
+    @Test
+    public void memberDelete() throws Exception {
+        //when
+        em.remove(em.find(Member.class, member1.getId()));
+        em.flush();
+        em.clear();
+
+        //then
+        assertThat(view()).extracting("username").containsExactly("member2", "teamless");
+    }
+
+    @Test
+    public void checkerFindsAndRepairsDrift() throws Exception {
+        //given Hibernate 를 거치지 않은 쓰기
+        jdbcTemplate.update("update member set age = 99 where member_id = ?", member1.getId());
+        jdbcTemplate.update("delete from member_team_view where member_id = ?", member2.getId());
+        jdbcTemplate.update("insert into member_team_view (member_id, username, age) values (?, ?, ?)", -1L, "ghost", 0);
+
+        //when
+        MemberTeamViewDrift drift = checker.check();
+
+        //then
+        assertThat(drift.getMismatched()).containsExactly(member1.getId());
+        assertThat(drift.getMissing()).containsExactly(member2.getId());
+        assertThat(drift.getOrphaned()).containsExactly(-1L);
+
+        maintainer.refresh(drift.memberIds());
+        assertThat(checker.check().isEmpty()).isTrue();
+        assertThat(view()).extracting("username", "age")
+                          .containsExactly(tuple("member1", 99), tuple("member2", 20), tuple("teamless", 30));
+    }
+
+    @Test
+    public void syncFillsEmptyView() throws Exception {
+        //given
+        jdbcTemplate.update("delete from member_team_view");
+
+        //when
+        int changed = maintainer.sync();
+
+        //then
+        assertThat(changed).isEqualTo(3);
+        assertThat(view()).hasSize(3);
+        assertThat(checker.check().isEmpty()).isTrue();
+    }
+
+    @Test
+    public void syncTouchesOnlyDriftedRows() throws Exception {
+        //given 꺼져 있던 동안의 쓰기
+        jdbcTemplate.update("update member set age = 99 where member_id = ?", member1.getId());
+        jdbcTemplate.update("delete from member_team_view where member_id = ?", member2.getId());
+        jdbcTemplate.update("insert into member_team_view (member_id, username, age) values (?, ?, ?)", -1L, "ghost", 0);
+
+        //when 시작할 때와 같은 경로
+        maintainer.init();
+
+        //then member1 은 지우고 다시 넣고, member2 는 넣고, ghost 는 지운다. teamless 는 그대로다.
+        assertThat(maintainer.sync()).isZero();
+        assertThat(view()).extracting("username", "age")
+                          .containsExactly(tuple("member1", 99), tuple("member2", 20), tuple("teamless", 30));
+        assertThat(checker.check().isEmpty()).isTrue();
+    }
+
+    @Test
+    public void bulkUpdateSyncsBeforeCommit() throws Exception {
+        //given
+        queryFactory.update(member)
+                    .set(member.age, member.age.add(1))
+                    .where(member.age.goe(20))
+                    .execute();
+
+        //when 테스트 트랜잭션은 커밋되지 않으므로 beforeCommit 에서 하는 일을 직접 부른다.
+        int changed = maintainer.sync();
+
+        //then 바뀐 두 row 만 지우고 다시 넣는다.
+        assertThat(changed).isEqualTo(4);
+        assertThat(view()).extracting("username", "age")
+                          .containsExactly(tuple("member1", 10), tuple("member2", 21), tuple("teamless", 31));
+    }
+
+    @Test
+    public void sameResultAsJoinSearch() throws Exception {
+        //given
+        for (int i = 0; i < 20; i++) {
+            em.persist(new Member("Member" + i, i * 5, em.find(Team.class, i % 2 == 0 ? teamA.getId() : teamB.getId())));
+        }
+        em.flush();
+        em.clear();
+
+        for (MemberSearchCondition cond : Arrays.asList(
+                cond(null, null, null, null, false),
+                cond("teamA", 20, 60, null, false),
+                cond(null, null, null, "member1*", false),
+                cond(null, null, null, "member1*", true),
+                cond("teamB", null, 40, "*ber1*", false))) {
+            //when
+            List<MemberTeamDto> joined = memberJPARepository.searchByConditionWhere(cond);
+            List<MemberTeamDto> view = memberJPARepository.searchByConditionView(cond);
+
+            //then
+            assertThat(view).containsExactlyInAnyOrderElementsOf(joined);
+        }
+    }
+
+    private List<MemberTeamView> view() {
+        return queryFactory.selectFrom(memberTeamView)
+                           .orderBy(memberTeamView.memberId.asc())
+                           .fetch();
+    }
+
+    private static MemberSearchCondition cond(String teamName, Integer ageGoe, Integer ageLoe, String usernameLike,
+                                              boolean ignoreCase) {
+        MemberSearchCondition cond = new MemberSearchCondition();
+        cond.setTeamName(teamName);
+        cond.setAgeGoe(ageGoe);
+        cond.setAgeLoe(ageLoe);
+        cond.setUsernameLike(usernameLike);
+        cond.setUsernameIgnoreCase(ignoreCase);
+        return cond;
+    }
+}
@@ -0,0 +1,151 @@
+package study.querydsl.web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.test.web.servlet.setup.StandaloneMockMvcBuilder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * 커넥션 8개짜리 DB 를 흉내 내는 /v1/members 에 클라이언트 64개로 부하를 준다.
+ * 요청은 MockMvc 로 실제 ConcurrencyLimitFilter 를 거치고, MemberController 처럼 Callable 로 처리된다.
+ * 한도가 없으면 64 / 8 개씩 줄을 서므로 지연이 쿼리 시간의 8배 가까이 되고,
+ * 한도가 있으면 초과분은 바로 503 으로 거절되고 처리된 요청의 지연은 3배 안쪽으로 유지된다.
+ */
+@Tag("benchmark")
+class AdaptiveConcurrencyLimiterLoadTest {
+
+    static final int DB_CONNECTIONS = 8;
+    static final int CLIENTS = 64;
+    static final long QUERY_MILLIS = 5;
+    static final long DURATION_MILLIS = 3_000;
+
+    @Test
+    public void tailLatencyStaysBounded() throws Exception {
+        //given
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(new SimpleMeterRegistry(), 20, 4, 200, 0.2);
+
+        //when 한도가 없는 쪽을 먼저 돌려서 JIT 예열도 겸한다.
+        Result unlimited = run(mockMvc(null));
+        Result limited = run(mockMvc(filter));
+
+        System.out.println("unlimited = " + unlimited);
+        System.out.println("limited   = " + limited + ", limit=" + filter.limiter("v1").getLimit());
+
+        //then
+        assertThat(unlimited.p99Nanos).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(QUERY_MILLIS * 6));
+        assertThat(limited.p99Nanos).isLessThan(TimeUnit.MILLISECONDS.toNanos(QUERY_MILLIS * 3));
+        assertThat(limited.rejected).isPositive();
+        assertThat(filter.limiter("v1").getInFlight()).isZero();
+    }
+
+    private static MockMvc mockMvc(ConcurrencyLimitFilter filter) {
+        StandaloneMockMvcBuilder builder = MockMvcBuilders.standaloneSetup(
+                new SlowMemberController(new Semaphore(DB_CONNECTIONS, true)));
+        if (filter != null) {
+            builder.addFilters(filter);
+        }
+        return builder.build();
+    }
+
+    private Result run(MockMvc mockMvc) throws InterruptedException {
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicLong rejected = new AtomicLong();
+        long deadline = System.currentTimeMillis() + DURATION_MILLIS;
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        CountDownLatch done = new CountDownLatch(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) {
+            clients.execute(() -> {
+                try {
+                    while (System.currentTimeMillis() < deadline) {
+                        long start = System.nanoTime();
+                        MvcResult result = mockMvc.perform(get("/v1/members")).andReturn();
+                        if (result.getRequest().isAsyncStarted()) {
+                            result = mockMvc.perform(asyncDispatch(result)).andReturn();
+                        }
+                        int status = result.getResponse().getStatus();
+                        if (status == HttpStatus.SERVICE_UNAVAILABLE.value()) {
+                            rejected.incrementAndGet();
+                            // 실제 클라이언트라면 Retry-After 만큼 쉬겠지만 여기서는 계속 두드린다.
+                            Thread.sleep(QUERY_MILLIS);
+                            continue;
+                        }
+                        latencies.add(System.nanoTime() - start);
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        clients.shutdown();
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        long p99 = sorted.get((int) (sorted.size() * 0.99));
+        return new Result(p99, sorted.size(), rejected.get());
+    }
+
+    @RestController
+    static class SlowMemberController {
+
+        private final Semaphore db;
+
+        SlowMemberController(Semaphore db) {
+            this.db = db;
+        }
+
+        @GetMapping("/v1/members")
+        public Callable<String> members() {
+            return () -> {
+                db.acquire();
+                try {
+                    Thread.sleep(QUERY_MILLIS);
+                } finally {
+                    db.release();
+                }
+                return "[]";
+            };
+        }
+    }
+
+    static class Result {
+        final long p99Nanos;
+        final long completed;
+        final long rejected;
+
+        Result(long p99Nanos, long completed, long rejected) {
+            this.p99Nanos = p99Nanos;
+            this.completed = completed;
+            this.rejected = rejected;
+        }
+
+        @Override
+        public String toString() {
+            return "p99=" + TimeUnit.NANOSECONDS.toMillis(p99Nanos) + "ms, completed=" + completed + ", rejected=" + rejected;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package study.querydsl.web;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import study.querydsl.repository.MemberJPARepository;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * /v1/members 의 JPA 조회를 5초 걸리는 느린 쿼리로 바꾸고, 실행 도중 클라이언트 연결이 끊기게 한다.
+ * 컨테이너는 async 요청의 연결이 끊기면 AsyncListener.onError 를 부르므로 MockAsyncContext 의 listener 를 직접 부른다.
+ */
+@AutoConfigureMockMvc
+@SpringBootTest
+class QueryDeadlineDisconnectTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @SpyBean
+    MemberJPARepository memberJPARepository;
+
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch finished = new CountDownLatch(1);
+    AtomicLong queryMillis = new AtomicLong();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    @BeforeEach
+    void before() {
+        jdbcTemplate.execute("CREATE ALIAS IF NOT EXISTS SLEEP_MS FOR 'java.lang.Thread.sleep'");
+
+        // 행마다 20ms 씩 250 행. H2 는 행 사이에서 cancel 을 확인한다.
+        doAnswer(invocation -> {
+            started.countDown();
+            long start = System.currentTimeMillis();
+            try {
+                jdbcTemplate.queryForList("select sleep_ms(20) from system_range(1, 250)");
+                return new ArrayList<>();
+            } catch (RuntimeException e) {
+                failure.set(e);
+                throw e;
+            } finally {
+                queryMillis.set(System.currentTimeMillis() - start);
+                finished.countDown();
+            }
+        }).when(memberJPARepository).searchByConditionWhere(any());
+    }
+
+    @Test
+    public void disconnectCancelsRunningStatement() throws Exception {
+        //given 캐시에 없는 조건
+        MvcResult result = mockMvc.perform(get("/v1/members").param("teamName", "disconnect-" + System.nanoTime()))
+                                  .andExpect(request().asyncStarted())
+                                  .andReturn();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        //when 클라이언트가 끊긴다.
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : new ArrayList<>(asyncContext.getListeners())) {
+            listener.onError(new AsyncEvent(asyncContext, new IOException("Connection reset by peer")));
+        }
+
+        //then 마감(2초)이나 쿼리 완료(5초)를 기다리지 않고 바로 취소된다.
+        assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+        System.out.println("queryMillis = " + queryMillis.get());
+        assertThat(failure.get()).isNotNull();
+        assertThat(queryMillis.get()).isLessThan(1_500);
+    }
+}